@@ -0,0 +1,154 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.messaging.contract.cloudevents.serializer;
+
+import java.net.URI;
+import java.time.OffsetDateTime;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.CloudEventData;
+import io.cloudevents.SpecVersion;
+
+/**
+ * A {@link CloudEvent} kept as serialized bytes, which is deserialized on the first access to its attributes or data.
+ * <p/>
+ * Released timer messages can be passed as this, so that the bytes written on register are sent as they are
+ * by a message converter of the same event format, without deserializing and serializing them again.
+ */
+public final class SerializedCloudEvent implements CloudEvent {
+	private final byte[] serialized;
+	private final CloudEventDeserializer cloudEventDeserializer;
+
+	@Nullable
+	private volatile CloudEvent cloudEvent;
+
+	/**
+	 * @param serialized bytes serialized by a {@link CloudEventSerializer}. not copied.
+	 * @param cloudEventDeserializer deserializer of the same event format with serialized.
+	 */
+	public SerializedCloudEvent(byte[] serialized, CloudEventDeserializer cloudEventDeserializer) {
+		this.serialized = serialized;
+		this.cloudEventDeserializer = cloudEventDeserializer;
+	}
+
+	/**
+	 * @return the serialized bytes. should not be modified.
+	 */
+	public byte[] getSerialized() {
+		return this.serialized;
+	}
+
+	/**
+	 * @return whether the bytes are already deserialized.
+	 */
+	public boolean isDeserialized() {
+		return this.cloudEvent != null;
+	}
+
+	/**
+	 * @return the deserialized cloudEvent. deserialized only once.
+	 */
+	public CloudEvent getCloudEvent() {
+		CloudEvent result = this.cloudEvent;
+		if (result == null) {
+			// deserializing twice on a race is harmless.
+			result = this.cloudEventDeserializer.deserialize(this.serialized);
+			this.cloudEvent = result;
+		}
+		return result;
+	}
+
+	@Nullable
+	@Override
+	public CloudEventData getData() {
+		return this.getCloudEvent().getData();
+	}
+
+	@Override
+	public SpecVersion getSpecVersion() {
+		return this.getCloudEvent().getSpecVersion();
+	}
+
+	@Override
+	public String getId() {
+		return this.getCloudEvent().getId();
+	}
+
+	@Override
+	public String getType() {
+		return this.getCloudEvent().getType();
+	}
+
+	@Override
+	public URI getSource() {
+		return this.getCloudEvent().getSource();
+	}
+
+	@Nullable
+	@Override
+	public String getDataContentType() {
+		return this.getCloudEvent().getDataContentType();
+	}
+
+	@Nullable
+	@Override
+	public URI getDataSchema() {
+		return this.getCloudEvent().getDataSchema();
+	}
+
+	@Nullable
+	@Override
+	public String getSubject() {
+		return this.getCloudEvent().getSubject();
+	}
+
+	@Nullable
+	@Override
+	public OffsetDateTime getTime() {
+		return this.getCloudEvent().getTime();
+	}
+
+	@Nullable
+	@Override
+	public Object getAttribute(String attributeName) throws IllegalArgumentException {
+		return this.getCloudEvent().getAttribute(attributeName);
+	}
+
+	@Nullable
+	@Override
+	public Object getExtension(String extensionName) {
+		return this.getCloudEvent().getExtension(extensionName);
+	}
+
+	@Override
+	public Set<String> getExtensionNames() {
+		return this.getCloudEvent().getExtensionNames();
+	}
+
+	@Override
+	public String toString() {
+		return "SerializedCloudEvent{"
+			+ "size=" + this.serialized.length
+			+ ", deserialized=" + this.isDeserialized()
+			+ '}';
+	}
+}
@@ -85,9 +85,10 @@ public class TimerMessagePublisherIntegrationAdapter extends MessagePublisherInt
 
 	@Override
 	protected IntegrationFlowDefinition<?> buildFlow() {
+		// register timer messages before split, to register published messages at once.
 		return IntegrationFlow.from(this.getMessagePublisher())
-			.split()
 			.handle(this.getSpringTimerMessageHandler())
+			.split()
 			.transform(Message.class, this.getMessageConverter()::convert)
 			.enrichHeaders(this.enrichCloudEventHeaderSpec())
 			.filter(this.getCloudEventFilter()::accept)
@@ -32,9 +32,13 @@ import io.cloudevents.CloudEvent;
 import io.cloudevents.core.format.ContentType;
 
 import com.navercorp.eventeria.messaging.contract.cloudevents.serializer.CloudEventSerializerDeserializer;
+import com.navercorp.eventeria.messaging.contract.cloudevents.serializer.SerializedCloudEvent;
 
 /**
  * Implementation of {@link MessageConverter} for {@link CloudEvent}.
+ * <p/>
+ * {@link SerializedCloudEvent} is written as its serialized bytes without serializing again,
+ * so it should be serialized in the same event format with cloudEventSerializerDeserializer.
  */
 public class SpringCloudEventMessageConverter extends AbstractMessageConverter {
 	private final CloudEventSerializerDeserializer cloudEventSerializerDeserializer;
@@ -65,6 +69,10 @@ public class SpringCloudEventMessageConverter extends AbstractMessageConverter {
 			return null;
 		}
 
+		if (payload instanceof SerializedCloudEvent serializedCloudEvent) {
+			return serializedCloudEvent.getSerialized();
+		}
+
 		return this.cloudEventSerializerDeserializer.serialize((CloudEvent)payload);
 	}
 
@@ -36,6 +36,7 @@ import com.navercorp.eventeria.messaging.contract.Message;
 import com.navercorp.eventeria.messaging.contract.cloudevents.converter.CloudEventToMessageConverter;
 import com.navercorp.eventeria.messaging.contract.cloudevents.converter.MessageToCloudEventConverter;
 import com.navercorp.eventeria.messaging.contract.cloudevents.serializer.CloudEventSerializerDeserializer;
+import com.navercorp.eventeria.messaging.contract.cloudevents.serializer.SerializedCloudEvent;
 import com.navercorp.eventeria.messaging.converter.CompositeCloudEventExtensionsConverter;
 import com.navercorp.eventeria.messaging.converter.DefaultCloudEventAttributesConverter;
 import com.navercorp.eventeria.messaging.converter.DefaultCloudEventToMessageConverter;
@@ -93,6 +94,26 @@ class SpringCloudEventMessageConverterTest {
 		then(actual.getHeaders().get("contentType")).isEqualTo(MimeType.valueOf("application/cloudevents+json"));
 	}
 
+	@Example
+	@Domain(EventFixtures.class)
+	void toMessageWithSerializedCloudEvent(@ForAll TestDomainEvent testDomainEvent) {
+		// given
+		byte[] serialized = this.cloudEventSerializerDeserializer.serialize(
+			this.messageToCloudEventConverter.convert(testDomainEvent));
+		SerializedCloudEvent serializedCloudEvent = new SerializedCloudEvent(
+			serialized, this.cloudEventSerializerDeserializer);
+		Map<String, Object> headers = new HashMap<>();
+		headers.put("content-type", "application/cloudevents+json");
+		MessageHeaders messageHeaders = new MessageHeaders(headers);
+
+		// when
+		org.springframework.messaging.Message<?> actual = this.sut.toMessage(serializedCloudEvent, messageHeaders);
+
+		then(actual.getPayload()).isSameAs(serialized);
+		then(serializedCloudEvent.isDeserialized()).isFalse();
+		then(serializedCloudEvent.getId()).isEqualTo(testDomainEvent.getId().toString());
+	}
+
 	@Example
 	@Domain(EventFixtures.class)
 	void fromMessage(@ForAll TestDomainEvent testDomainEvent) {
@@ -0,0 +1,785 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.eventeria.messaging.timer.kafka.handler;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.cloudevents.CloudEvent;
+
+import com.navercorp.eventeria.messaging.contract.Message;
+import com.navercorp.eventeria.messaging.contract.cloudevents.serializer.CloudEventMessageReaderWriter;
+import com.navercorp.eventeria.messaging.contract.cloudevents.serializer.SerializedCloudEvent;
+import com.navercorp.eventeria.timer.contract.TimerMessage;
+import com.navercorp.eventeria.timer.contract.handler.ReleaseBudget;
+import com.navercorp.eventeria.timer.contract.handler.ReleaseResult;
+import com.navercorp.eventeria.timer.contract.handler.TimerMessageHandler;
+import com.navercorp.eventeria.timer.contract.handler.TokenBucketRateLimiter;
+
+/**
+ * A {@link TimerMessageHandler} which keeps timer messages in kafka, on a ladder of delay topics.
+ * <p/>
+ * Each tier topic delays its records by a fixed duration (ex. 1s, 10s, 1m, 10m, 1h).
+ * A message is registered to the longest tier not exceeding its remaining delay,
+ * and when a record has been delayed by its tier, it is forwarded to the next tier by the remaining delay,
+ * or released if its time has come.
+ * Records of a tier partition become due in order of their timestamps,
+ * so the consumer pauses a partition until its head record is due instead of polling it.
+ * <p/>
+ * Nodes share the tier topics by the consumer group, so release scales with tier partitions,
+ * without any datastore but kafka.
+ * Offsets are committed after records are released or forwarded, so a message may be released twice on failures.
+ * A record failed to be released is logged and skipped.
+ * A record failed to be forwarded pauses its partition for a while, and records from it are polled again.
+ * A message scheduled sooner than the shortest tier may be released late up to the shortest tier.
+ * <p/>
+ * A cancelled message is dropped when its record is polled, instead of being released or forwarded.
+ * Without a cancel consumer, cancelled ids are kept only by this node, so it fits a single node.
+ * With a cancel consumer, cancels are sent to a compacted topic ({@link #getCancelTopic()}),
+ * which every node reads from the beginning, and a tombstone clears the cancel once its record is dropped.
+ * <p/>
+ * The consumer should be configured with {@code enable.auto.commit=false}, a group id and byte array values,
+ * and tier topics ({@link #getTopics()}) should exist before release.
+ * The cancel consumer should be a separate consumer of byte array values without a group id,
+ * and the cancel topic should exist with {@code cleanup.policy=compact}.
+ * Records keep {@code CreateTime} of forwarding, or use {@code LogAppendTime} on tier topics.
+ *
+ * <pre>
+ * KafkaTieredTimerMessageHandler handler = new KafkaTieredTimerMessageHandler(
+ *     "eventeria-timer", kafkaProducer, kafkaConsumer, cloudEventMessageReaderWriter);
+ * </pre>
+ */
+public class KafkaTieredTimerMessageHandler implements TimerMessageHandler, AutoCloseable {
+	private static final Logger LOG = LoggerFactory.getLogger(KafkaTieredTimerMessageHandler.class);
+
+	public static final List<Duration> DEFAULT_TIERS = List.of(
+		Duration.ofSeconds(1),
+		Duration.ofSeconds(10),
+		Duration.ofMinutes(1),
+		Duration.ofMinutes(10),
+		Duration.ofHours(1)
+	);
+
+	static final String RELEASE_AT_HEADER = "eventeria-timer-release-at";
+	static final String CLOUD_EVENT_TYPE_HEADER = "eventeria-timer-cloudevent-type";
+
+	private static final Duration DEFAULT_POLL_TIMEOUT = Duration.ofMillis(100);
+	private static final Duration FORWARD_RETRY_BACKOFF = Duration.ofSeconds(1);
+
+	private final List<Duration> tiers;
+	private final Map<String, Duration> tierByTopic = new LinkedHashMap<>();
+	private final Map<Duration, String> topicByTier = new HashMap<>();
+	private final Producer<String, byte[]> producer;
+	private final org.apache.kafka.clients.consumer.Consumer<String, byte[]> consumer;
+	private final CloudEventMessageReaderWriter cloudEventMessageReaderWriter;
+	private final Duration pollTimeout;
+	private final boolean releaseSerialized;
+	private final String cancelTopic;
+	@Nullable
+	private final org.apache.kafka.clients.consumer.Consumer<String, byte[]> cancelConsumer;
+	private final Set<String> cancelledIds = ConcurrentHashMap.newKeySet();
+
+	// kafka consumer is not thread-safe.
+	private final ReentrantLock consumerLock = new ReentrantLock();
+	private final Map<TopicPartition, Instant> pausedUntil = new HashMap<>();    // guarded by consumerLock
+	private boolean subscribed;    // guarded by consumerLock
+	private boolean cancelAssigned;    // guarded by consumerLock
+
+	/**
+	 * @param topicPrefix prefix of tier topic names.
+	 * @param producer producer of byte array values.
+	 * @param consumer consumer of byte array values, without auto commit.
+	 * @param cloudEventMessageReaderWriter
+	 */
+	public KafkaTieredTimerMessageHandler(
+		String topicPrefix,
+		Producer<String, byte[]> producer,
+		org.apache.kafka.clients.consumer.Consumer<String, byte[]> consumer,
+		CloudEventMessageReaderWriter cloudEventMessageReaderWriter
+	) {
+		this(
+			topicPrefix,
+			DEFAULT_TIERS,
+			producer,
+			consumer,
+			cloudEventMessageReaderWriter,
+			DEFAULT_POLL_TIMEOUT,
+			false
+		);
+	}
+
+	/**
+	 * @param topicPrefix prefix of tier topic names.
+	 * @param tiers delays of tier topics.
+	 * @param producer producer of byte array values.
+	 * @param consumer consumer of byte array values, without auto commit.
+	 * @param cloudEventMessageReaderWriter
+	 * @param pollTimeout max time to wait for records of a poll.
+	 * @param releaseSerialized whether to release messages as {@link SerializedCloudEvent}.
+	 */
+	public KafkaTieredTimerMessageHandler(
+		String topicPrefix,
+		List<Duration> tiers,
+		Producer<String, byte[]> producer,
+		org.apache.kafka.clients.consumer.Consumer<String, byte[]> consumer,
+		CloudEventMessageReaderWriter cloudEventMessageReaderWriter,
+		Duration pollTimeout,
+		boolean releaseSerialized
+	) {
+		this(
+			topicPrefix,
+			tiers,
+			producer,
+			consumer,
+			cloudEventMessageReaderWriter,
+			pollTimeout,
+			releaseSerialized,
+			null
+		);
+	}
+
+	/**
+	 * @param topicPrefix prefix of tier topic names.
+	 * @param tiers delays of tier topics.
+	 * @param producer producer of byte array values.
+	 * @param consumer consumer of byte array values, without auto commit.
+	 * @param cloudEventMessageReaderWriter
+	 * @param pollTimeout max time to wait for records of a poll.
+	 * @param releaseSerialized whether to release messages as {@link SerializedCloudEvent}.
+	 * @param cancelConsumer consumer of the cancel topic without a group id, to share cancels between nodes.
+	 *                       cancels are kept only by this node if null.
+	 */
+	public KafkaTieredTimerMessageHandler(
+		String topicPrefix,
+		List<Duration> tiers,
+		Producer<String, byte[]> producer,
+		org.apache.kafka.clients.consumer.Consumer<String, byte[]> consumer,
+		CloudEventMessageReaderWriter cloudEventMessageReaderWriter,
+		Duration pollTimeout,
+		boolean releaseSerialized,
+		@Nullable org.apache.kafka.clients.consumer.Consumer<String, byte[]> cancelConsumer
+	) {
+		if (tiers.isEmpty()) {
+			throw new IllegalArgumentException("tiers must not be empty.");
+		}
+
+		List<Duration> sortedTiers = new ArrayList<>(tiers);
+		sortedTiers.sort(null);
+		for (Duration tier : sortedTiers) {
+			if (tier.toMillis() <= 0) {
+				throw new IllegalArgumentException("tier must be at least 1 millisecond. tiers: " + tiers);
+			}
+
+			String topic = topicPrefix + "-delay-" + tierName(tier);
+			if (this.tierByTopic.put(topic, tier) != null) {
+				throw new IllegalArgumentException("tiers must not be duplicated. tiers: " + tiers);
+			}
+			this.topicByTier.put(tier, topic);
+		}
+
+		this.tiers = sortedTiers;
+		this.producer = producer;
+		this.consumer = consumer;
+		this.cloudEventMessageReaderWriter = cloudEventMessageReaderWriter;
+		this.pollTimeout = pollTimeout;
+		this.releaseSerialized = releaseSerialized;
+		this.cancelTopic = topicPrefix + "-cancel";
+		this.cancelConsumer = cancelConsumer;
+	}
+
+	@Override
+	public boolean isTimerMessage(Object message) {
+		return message instanceof TimerMessage timerMessage && timerMessage.timerTime().isPresent();
+	}
+
+	@Override
+	public String register(Object message) {
+		return this.registerAll(List.of(message)).get(0);
+	}
+
+	/**
+	 * Send messages to tier topics, and wait until all of them are acknowledged.
+	 * Records are sent by linger.ms of the producer, without flushing records of other senders.
+	 *
+	 * @param messages messages to be scheduled
+	 * @return the identifier values of scheduled messages, in order of messages.
+	 */
+	@Override
+	public List<String> registerAll(List<?> messages) {
+		Instant now = Instant.now();
+		List<String> registeredIds = new ArrayList<>(messages.size());
+		List<Future<RecordMetadata>> futures = new ArrayList<>(messages.size());
+		for (Object message : messages) {
+			Instant releaseDateTime = message instanceof TimerMessage timerMessage
+				? timerMessage.timerTime().orElse(now)
+				: now;
+			Duration tier = this.findTier(Duration.between(now, releaseDateTime));
+			if (tier == null) {
+				tier = this.tiers.get(0);
+			}
+
+			String registeredId = UUID.randomUUID().toString();
+			Headers headers = new RecordHeaders();
+			headers.add(RELEASE_AT_HEADER, toBytes(releaseDateTime.toEpochMilli()));
+			headers.add(CLOUD_EVENT_TYPE_HEADER, toBytes(isCloudEventType(message) ? 1L : 0L));
+			futures.add(this.producer.send(new ProducerRecord<>(
+				this.topicByTier.get(tier), null, registeredId, this.serialize(message), headers)));
+			registeredIds.add(registeredId);
+		}
+
+		this.await(futures);
+		return registeredIds;
+	}
+
+	@Override
+	public void releaseMessages(Consumer<Object> consumeReleasedMessage) {
+		this.releaseMessages(consumeReleasedMessage, ReleaseBudget.UNLIMITED);
+	}
+
+	/**
+	 * Poll tier topics until every assigned partition is caught up or paused,
+	 * releasing due records to consumeReleasedMessage and forwarding the others to next tiers.
+	 *
+	 * @param consumeReleasedMessage behavior per popped message.
+	 * @param releaseBudget limits of this release. forwarded records are not counted.
+	 * @return count of released messages, and count of records left in assigned partitions
+	 *         if the budget is exhausted.
+	 */
+	@Override
+	public ReleaseResult releaseMessages(Consumer<Object> consumeReleasedMessage, ReleaseBudget releaseBudget) {
+		this.consumerLock.lock();
+		try {
+			if (!this.subscribed) {
+				this.consumer.subscribe(this.getTopics(), new PauseClearingRebalanceListener());
+				this.subscribed = true;
+			}
+			this.pollCancels();
+			this.resumeDuePartitions(Instant.now());
+
+			Instant deadline = releaseBudget.getMaxDuration() == null
+				? null
+				: Instant.now().plus(releaseBudget.getMaxDuration());
+			long releasedCount = 0L;
+			boolean exhausted = false;
+			while (!exhausted) {
+				ConsumerRecords<String, byte[]> records = this.consumer.poll(this.pollTimeout);
+				if (records.isEmpty()) {
+					break;
+				}
+
+				Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+				List<ConsumerRecord<String, byte[]>> dropped = new ArrayList<>();
+				Map<TopicPartition, Map<ConsumerRecord<String, byte[]>, Future<RecordMetadata>>> forwardsOfPartitions =
+					new HashMap<>();
+				for (TopicPartition topicPartition : records.partitions()) {
+					Map<ConsumerRecord<String, byte[]>, Future<RecordMetadata>> forwards = new LinkedHashMap<>();
+					for (ConsumerRecord<String, byte[]> record : records.records(topicPartition)) {
+						if (!exhausted) {
+							Instant holdUntil = this.dueDateTime(record, Instant.now());
+							if (this.cancelledIds.contains(record.key())) {
+								// skipped by committing past it.
+								dropped.add(record);
+							} else if (holdUntil != null) {
+								this.pause(topicPartition, holdUntil);
+							} else if (this.isReleasable(record)) {
+								exhausted = this.isExhausted(releaseBudget, releasedCount, deadline);
+								if (!exhausted && this.release(record, consumeReleasedMessage)) {
+									releasedCount++;
+								}
+							} else {
+								this.forward(record, forwards);
+							}
+						}
+
+						if (exhausted || this.pausedUntil.containsKey(topicPartition)) {
+							// the rest are fetched again after resume or on next release.
+							this.consumer.seek(topicPartition, record.offset());
+							break;
+						}
+						offsets.put(topicPartition, new OffsetAndMetadata(record.offset() + 1));
+					}
+					forwardsOfPartitions.put(topicPartition, forwards);
+				}
+
+				// a partition is committed up to its first record failed to be forwarded.
+				forwardsOfPartitions.forEach((topicPartition, forwards) -> {
+					ConsumerRecord<String, byte[]> failed = this.awaitForwards(forwards);
+					if (failed != null) {
+						this.consumer.seek(topicPartition, failed.offset());
+						offsets.put(topicPartition, new OffsetAndMetadata(failed.offset()));
+						this.pause(topicPartition, Instant.now().plus(FORWARD_RETRY_BACKOFF));
+					}
+				});
+
+				if (!offsets.isEmpty()) {
+					this.consumer.commitSync(offsets);
+				}
+				for (ConsumerRecord<String, byte[]> record : dropped) {
+					OffsetAndMetadata committed = offsets.get(new TopicPartition(record.topic(), record.partition()));
+					if (committed != null && committed.offset() > record.offset()) {
+						this.clearCancel(record);
+					}
+				}
+			}
+
+			return new ReleaseResult(releasedCount, exhausted ? this.countRecords() : 0L, exhausted);
+		} finally {
+			this.consumerLock.unlock();
+		}
+	}
+
+	/**
+	 * @return count of records not consumed yet in partitions assigned to this node, including ones not due.
+	 */
+	@Override
+	public long getDelayedMessageCount() {
+		this.consumerLock.lock();
+		try {
+			return this.countRecords();
+		} finally {
+			this.consumerLock.unlock();
+		}
+	}
+
+	/**
+	 * @return the earliest time a paused partition of this node becomes due. empty if nothing is paused.
+	 */
+	@Override
+	public Optional<Instant> getNextReleaseDateTime() {
+		this.consumerLock.lock();
+		try {
+			return this.pausedUntil.values().stream().min(Instant::compareTo);
+		} finally {
+			this.consumerLock.unlock();
+		}
+	}
+
+	/**
+	 * Mark a registered message as cancelled, and drop its record when it is polled.
+	 * Records of kafka can not be deleted one by one, so the record is kept until then.
+	 * The cancel is sent to the cancel topic and acknowledged, if a cancel consumer is given.
+	 */
+	@Override
+	public void cancel(String registeredId) {
+		this.cancelledIds.add(registeredId);
+		if (this.cancelConsumer != null) {
+			this.await(List.of(this.producer.send(new ProducerRecord<>(
+				this.cancelTopic, registeredId, toBytes(Instant.now().toEpochMilli())))));
+		}
+	}
+
+	/**
+	 * @return names of tier topics, in order of tiers.
+	 */
+	public List<String> getTopics() {
+		return new ArrayList<>(this.tierByTopic.keySet());
+	}
+
+	/**
+	 * @return name of the compacted topic of cancelled ids, used only with a cancel consumer.
+	 */
+	public String getCancelTopic() {
+		return this.cancelTopic;
+	}
+
+	/**
+	 * Close the consumer, so that its partitions are reassigned to other nodes. The producer is not closed.
+	 */
+	@Override
+	public void close() {
+		this.consumerLock.lock();
+		try {
+			this.consumer.close();
+			if (this.cancelConsumer != null) {
+				this.cancelConsumer.close();
+			}
+		} finally {
+			this.consumerLock.unlock();
+		}
+	}
+
+	/**
+	 * @return time to hold the record until. null if the record can be released or forwarded now.
+	 */
+	@Nullable
+	private Instant dueDateTime(ConsumerRecord<String, byte[]> record, Instant now) {
+		Instant releaseAt = releaseDateTime(record);
+		Duration tier = this.tierByTopic.get(record.topic());
+		Instant delayedUntil = Instant.ofEpochMilli(record.timestamp()).plus(tier);
+		Instant dueAt = releaseAt.isBefore(delayedUntil) ? releaseAt : delayedUntil;
+		if (now.isBefore(dueAt)) {
+			return dueAt;
+		}
+
+		// shorter than any tier, wait for the rest on this partition.
+		Duration remaining = Duration.between(now, releaseAt);
+		if (remaining.isNegative() || remaining.isZero() || this.findTier(remaining) != null) {
+			return null;
+		}
+		return releaseAt;
+	}
+
+	/**
+	 * Read cancels of other nodes, from the beginning of the cancel topic on first call.
+	 * Reading stops at the end offsets, or when a poll returns nothing.
+	 */
+	private void pollCancels() {
+		if (this.cancelConsumer == null) {
+			return;
+		}
+
+		try {
+			if (!this.cancelAssigned) {
+				List<TopicPartition> partitions = new ArrayList<>();
+				for (PartitionInfo partitionInfo : this.cancelConsumer.partitionsFor(this.cancelTopic)) {
+					partitions.add(new TopicPartition(partitionInfo.topic(), partitionInfo.partition()));
+				}
+				this.cancelConsumer.assign(partitions);
+				this.cancelConsumer.seekToBeginning(partitions);
+				this.cancelAssigned = true;
+			}
+
+			Map<TopicPartition, Long> endOffsets = this.cancelConsumer.endOffsets(this.cancelConsumer.assignment());
+			while (this.isBehind(this.cancelConsumer, endOffsets)) {
+				ConsumerRecords<String, byte[]> records = this.cancelConsumer.poll(this.pollTimeout);
+				if (records.isEmpty()) {
+					break;
+				}
+
+				for (ConsumerRecord<String, byte[]> record : records) {
+					if (record.value() == null) {
+						this.cancelledIds.remove(record.key());
+					} else {
+						this.cancelledIds.add(record.key());
+					}
+				}
+			}
+		} catch (RuntimeException ex) {
+			LOG.warn("timer handler read cancels is failed. It would be read again on next release. topic: {}",
+				this.cancelTopic, ex);
+		}
+	}
+
+	/**
+	 * Clear the cancel of a record committed without release. The tombstone is sent without waiting.
+	 */
+	private void clearCancel(ConsumerRecord<String, byte[]> record) {
+		LOG.debug("timer handler dropped a cancelled record. topic: {}, partition: {}, offset: {}",
+			record.topic(), record.partition(), record.offset());
+		this.cancelledIds.remove(record.key());
+		if (this.cancelConsumer == null) {
+			return;
+		}
+
+		try {
+			this.producer.send(new ProducerRecord<>(this.cancelTopic, record.key(), null), (metadata, ex) -> {
+				if (ex != null) {
+					LOG.warn("timer handler clear cancel is failed. registeredId: {}", record.key(), ex);
+				}
+			});
+		} catch (RuntimeException ex) {
+			LOG.warn("timer handler clear cancel is failed. registeredId: {}", record.key(), ex);
+		}
+	}
+
+	private boolean isReleasable(ConsumerRecord<String, byte[]> record) {
+		return !Instant.now().isBefore(releaseDateTime(record));
+	}
+
+	/**
+	 * @return false if the message is failed to be released. the record is skipped.
+	 */
+	private boolean release(ConsumerRecord<String, byte[]> record, Consumer<Object> consumeReleasedMessage) {
+		try {
+			consumeReleasedMessage.accept(this.deserialize(record));
+			return true;
+		} catch (RuntimeException ex) {
+			LOG.error("timer handler release message is failed. This record would be skipped. "
+				+ "topic: {}, partition: {}, offset: {}", record.topic(), record.partition(), record.offset(), ex);
+			return false;
+		}
+	}
+
+	/**
+	 * Send the record to the next tier. The partition is paused if the record can not be sent.
+	 */
+	private void forward(
+		ConsumerRecord<String, byte[]> record,
+		Map<ConsumerRecord<String, byte[]>, Future<RecordMetadata>> forwards
+	) {
+		Duration tier = this.findTier(Duration.between(Instant.now(), releaseDateTime(record)));
+		if (tier == null) {
+			tier = this.tiers.get(0);
+		}
+
+		// timestamp is set again by the producer, to be delayed from now.
+		Headers headers = new RecordHeaders(record.headers().toArray());
+		try {
+			forwards.put(record, this.producer.send(new ProducerRecord<>(
+				this.topicByTier.get(tier), null, record.key(), record.value(), headers)));
+		} catch (RuntimeException ex) {
+			LOG.warn("timer handler forward record is failed. This record would be forwarded again. "
+				+ "topic: {}, partition: {}, offset: {}", record.topic(), record.partition(), record.offset(), ex);
+			this.pause(new TopicPartition(record.topic(), record.partition()),
+				Instant.now().plus(FORWARD_RETRY_BACKOFF));
+		}
+	}
+
+	/**
+	 * @return the first record failed to be forwarded. null if all of them are forwarded.
+	 */
+	@Nullable
+	private ConsumerRecord<String, byte[]> awaitForwards(
+		Map<ConsumerRecord<String, byte[]>, Future<RecordMetadata>> forwards
+	) {
+		for (Map.Entry<ConsumerRecord<String, byte[]>, Future<RecordMetadata>> entry : forwards.entrySet()) {
+			ConsumerRecord<String, byte[]> record = entry.getKey();
+			try {
+				entry.getValue().get();
+			} catch (ExecutionException ex) {
+				LOG.warn("timer handler forward record is failed. Records from this would be forwarded again. "
+					+ "topic: {}, partition: {}, offset: {}",
+					record.topic(), record.partition(), record.offset(), ex.getCause());
+				return record;
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return record;
+			}
+		}
+		return null;
+	}
+
+	private void pause(TopicPartition topicPartition, Instant until) {
+		this.pausedUntil.put(topicPartition, until);
+		this.consumer.pause(Set.of(topicPartition));
+	}
+
+	/**
+	 * @return the longest tier not exceeding remaining. null if remaining is shorter than all tiers.
+	 */
+	@Nullable
+	private Duration findTier(Duration remaining) {
+		Duration result = null;
+		for (Duration tier : this.tiers) {
+			if (tier.compareTo(remaining) > 0) {
+				break;
+			}
+			result = tier;
+		}
+		return result;
+	}
+
+	private boolean isExhausted(ReleaseBudget releaseBudget, long releasedCount, @Nullable Instant deadline) {
+		if (releasedCount >= releaseBudget.getMaxCount()) {
+			return true;
+		}
+
+		if (deadline != null && !Instant.now().isBefore(deadline)) {
+			return true;
+		}
+
+		TokenBucketRateLimiter rateLimiter = releaseBudget.getRateLimiter();
+		if (rateLimiter == null) {
+			return false;
+		}
+
+		long timeoutNanos = deadline == null
+			? Long.MAX_VALUE
+			: Math.max(0L, Duration.between(Instant.now(), deadline).toNanos());
+		try {
+			return !rateLimiter.tryAcquire(timeoutNanos);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return true;
+		}
+	}
+
+	private void resumeDuePartitions(Instant now) {
+		Set<TopicPartition> assignment = this.consumer.assignment();
+		Iterator<Map.Entry<TopicPartition, Instant>> iterator = this.pausedUntil.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<TopicPartition, Instant> entry = iterator.next();
+			if (!assignment.contains(entry.getKey())) {
+				iterator.remove();
+			} else if (!now.isBefore(entry.getValue())) {
+				this.consumer.resume(Set.of(entry.getKey()));
+				iterator.remove();
+			}
+		}
+	}
+
+	private boolean isBehind(
+		org.apache.kafka.clients.consumer.Consumer<String, byte[]> consumer,
+		Map<TopicPartition, Long> endOffsets
+	) {
+		for (Map.Entry<TopicPartition, Long> endOffset : endOffsets.entrySet()) {
+			if (consumer.position(endOffset.getKey()) < endOffset.getValue()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private long countRecords() {
+		Set<TopicPartition> assignment = this.consumer.assignment();
+		if (assignment.isEmpty()) {
+			return 0L;
+		}
+
+		long count = 0L;
+		Map<TopicPartition, Long> endOffsets = this.consumer.endOffsets(assignment);
+		for (TopicPartition topicPartition : assignment) {
+			Long endOffset = endOffsets.get(topicPartition);
+			if (endOffset != null) {
+				count += Math.max(0L, endOffset - this.consumer.position(topicPartition));
+			}
+		}
+		return count;
+	}
+
+	private void await(List<Future<RecordMetadata>> futures) {
+		// the producer may be shared, so records of others are not flushed here.
+		for (Future<RecordMetadata> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException ex) {
+				throw new IllegalStateException("send timer message record is failed.", ex.getCause());
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("send timer message record is interrupted.", ex);
+			}
+		}
+	}
+
+	private byte[] serialize(Object message) {
+		if (message instanceof SerializedCloudEvent serializedCloudEvent) {
+			return serializedCloudEvent.getSerialized();
+		} else if (message instanceof CloudEvent cloudEvent) {
+			return this.cloudEventMessageReaderWriter.serialize(cloudEvent);
+		} else if (message instanceof Message msg) {
+			return this.cloudEventMessageReaderWriter.write(msg);
+		}
+
+		throw new UnsupportedOperationException("unsupported message type: " + message.getClass().getName());
+	}
+
+	private Object deserialize(ConsumerRecord<String, byte[]> record) {
+		byte[] serialized = record.value();
+		if (this.releaseSerialized) {
+			return new SerializedCloudEvent(serialized, this.cloudEventMessageReaderWriter);
+		}
+
+		Header cloudEventType = record.headers().lastHeader(CLOUD_EVENT_TYPE_HEADER);
+		if (cloudEventType != null && fromBytes(cloudEventType.value()) == 1L) {
+			return this.cloudEventMessageReaderWriter.deserialize(serialized);
+		}
+		return this.cloudEventMessageReaderWriter.read(serialized);
+	}
+
+	private static boolean isCloudEventType(Object message) {
+		// released serialized messages are restored as CloudEvent, because their original types are not kept.
+		return message instanceof CloudEvent;
+	}
+
+	private static Instant releaseDateTime(ConsumerRecord<String, byte[]> record) {
+		Header releaseAt = record.headers().lastHeader(RELEASE_AT_HEADER);
+		if (releaseAt == null) {
+			return Instant.ofEpochMilli(record.timestamp());
+		}
+
+		try {
+			return Instant.ofEpochMilli(fromBytes(releaseAt.value()));
+		} catch (NumberFormatException ex) {
+			// not to block the partition by a malformed record.
+			LOG.warn("timer message record has invalid release time. It would be released by its timestamp. "
+				+ "topic: {}, partition: {}, offset: {}", record.topic(), record.partition(), record.offset());
+			return Instant.ofEpochMilli(record.timestamp());
+		}
+	}
+
+	private static String tierName(Duration tier) {
+		long millis = tier.toMillis();
+		if (millis % TimeUnit.HOURS.toMillis(1) == 0) {
+			return TimeUnit.MILLISECONDS.toHours(millis) + "h";
+		} else if (millis % TimeUnit.MINUTES.toMillis(1) == 0) {
+			return TimeUnit.MILLISECONDS.toMinutes(millis) + "m";
+		} else if (millis % TimeUnit.SECONDS.toMillis(1) == 0) {
+			return TimeUnit.MILLISECONDS.toSeconds(millis) + "s";
+		}
+		return millis + "ms";
+	}
+
+	private static byte[] toBytes(long value) {
+		return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static long fromBytes(byte[] value) {
+		return Long.parseLong(new String(value, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Forget pauses of revoked partitions. Newly assigned partitions are not paused by kafka consumer.
+	 */
+	private final class PauseClearingRebalanceListener implements ConsumerRebalanceListener {
+		@Override
+		public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+			partitions.forEach(KafkaTieredTimerMessageHandler.this.pausedUntil::remove);
+		}
+
+		@Override
+		public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+			LOG.debug("timer message tier partitions are assigned. partitions: {}", partitions);
+		}
+	}
+}
@@ -0,0 +1,456 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.eventeria.messaging.timer.kafka.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.assertj.core.data.TemporalUnitWithinOffset;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaZKBroker;
+
+import net.jqwik.api.Example;
+
+import com.navercorp.eventeria.messaging.contract.cloudevents.serializer.CloudEventMessageReaderWriter;
+import com.navercorp.eventeria.timer.fixture.CloudEventFixtures;
+import com.navercorp.eventeria.timer.fixture.TestTimerCommand;
+
+class KafkaTieredTimerMessageHandlerTest {
+	private static final EmbeddedKafkaBroker BROKER;
+	private static final List<Duration> TIERS = List.of(Duration.ofMillis(500), Duration.ofSeconds(2));
+
+	static {
+		BROKER = new EmbeddedKafkaZKBroker(1, true, 1)
+			.kafkaPorts(0)
+			.brokerProperties(
+				Map.of(
+					"offsets.topic.replication.factor", "1",
+					"transaction.state.log.replication.factor", "1",
+					"transaction.state.log.min.isr", "1"
+				)
+			);
+		BROKER.afterPropertiesSet();
+	}
+
+	private final CloudEventMessageReaderWriter cloudEventMessageReaderWriter =
+		CloudEventFixtures.createCloudEventMessageReaderWriter();
+
+	@Example
+	void releaseThroughTiers() throws InterruptedException {
+		try (
+			KafkaProducer<String, byte[]> producer = new KafkaProducer<>(producerProps());
+			KafkaTieredTimerMessageHandler sut = new KafkaTieredTimerMessageHandler(
+				"tiered-timer",
+				TIERS,
+				producer,
+				new KafkaConsumer<>(consumerProps()),
+				this.cloudEventMessageReaderWriter,
+				Duration.ofMillis(100),
+				false
+			)
+		) {
+			BROKER.addTopics(sut.getTopics().toArray(String[]::new));
+
+			// given
+			Instant releaseDateTime = Instant.now().plusSeconds(3);
+			sut.register(new TestTimerCommand("hello", releaseDateTime));
+
+			// when
+			List<Object> released = new ArrayList<>();
+			Instant deadline = Instant.now().plusSeconds(30);
+			while (released.isEmpty() && Instant.now().isBefore(deadline)) {
+				sut.releaseMessages(released::add);
+				Thread.sleep(100L);
+			}
+
+			// then
+			assertThat(released).hasSize(1);
+			assertThat(Instant.now()).isAfterOrEqualTo(releaseDateTime);
+			assertThat(released.get(0)).isInstanceOf(TestTimerCommand.class);
+
+			TestTimerCommand actual = (TestTimerCommand)released.get(0);
+			assertThat(actual.getName()).isEqualTo("hello");
+			assertThat(actual.getScheduledAt()).isCloseTo(
+				releaseDateTime,
+				new TemporalUnitWithinOffset(1, ChronoUnit.MILLIS)
+			);
+		}
+	}
+
+	@Example
+	void topicsPerTier() {
+		try (
+			KafkaProducer<String, byte[]> producer = new KafkaProducer<>(producerProps());
+			KafkaTieredTimerMessageHandler sut = new KafkaTieredTimerMessageHandler(
+				"tiered-timer",
+				producer,
+				new KafkaConsumer<>(consumerProps()),
+				this.cloudEventMessageReaderWriter
+			)
+		) {
+			assertThat(sut.getTopics()).containsExactly(
+				"tiered-timer-delay-1s",
+				"tiered-timer-delay-10s",
+				"tiered-timer-delay-1m",
+				"tiered-timer-delay-10m",
+				"tiered-timer-delay-1h"
+			);
+		}
+	}
+
+	@Example
+	void skipRecordFailedToBeReleased() {
+		// given
+		Instant past = Instant.now().minusSeconds(60);
+		MockConsumer<String, byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		try (KafkaTieredTimerMessageHandler sut = this.mockHandler(mockProducer(new AtomicBoolean()), consumer)) {
+			TopicPartition topicPartition = new TopicPartition(sut.getTopics().get(0), 0);
+			this.assignRecords(consumer, topicPartition, List.of(
+				this.record(topicPartition, 0L, past, past, "poison"),
+				this.record(topicPartition, 1L, past, past, "hello")
+			));
+
+			// when
+			List<Object> released = new ArrayList<>();
+			sut.releaseMessages(it -> {
+				if (((TestTimerCommand)it).getName().equals("poison")) {
+					throw new IllegalStateException("poison");
+				}
+				released.add(it);
+			});
+
+			// then
+			assertThat(released).hasSize(1);
+			assertThat(((TestTimerCommand)released.get(0)).getName()).isEqualTo("hello");
+			assertThat(consumer.committed(Set.of(topicPartition)).get(topicPartition))
+				.isEqualTo(new OffsetAndMetadata(2L));
+			assertThat(consumer.paused()).isEmpty();
+		}
+	}
+
+	@Example
+	void rewindPartitionFailedToBeForwarded() {
+		// given
+		Instant past = Instant.now().minusSeconds(60);
+		Instant later = Instant.now().plus(1, ChronoUnit.HOURS);
+		MockConsumer<String, byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		MockProducer<String, byte[]> producer = mockProducer(new AtomicBoolean(true));
+		try (KafkaTieredTimerMessageHandler sut = this.mockHandler(producer, consumer)) {
+			TopicPartition topicPartition = new TopicPartition(sut.getTopics().get(0), 0);
+			this.assignRecords(consumer, topicPartition, List.of(
+				this.record(topicPartition, 0L, past, later, "first"),
+				this.record(topicPartition, 1L, past, later, "second")
+			));
+
+			// when
+			sut.releaseMessages(it -> {
+			});
+
+			// then
+			assertThat(producer.history()).hasSize(1);
+			assertThat(consumer.position(topicPartition)).isZero();
+			assertThat(consumer.committed(Set.of(topicPartition)).get(topicPartition))
+				.isEqualTo(new OffsetAndMetadata(0L));
+			assertThat(consumer.paused()).containsExactly(topicPartition);
+			assertThat(sut.getNextReleaseDateTime()).hasValueSatisfying(it -> assertThat(it).isAfter(Instant.now()));
+		}
+	}
+
+	@Example
+	void pausePartitionOnSendException() {
+		// given
+		Instant past = Instant.now().minusSeconds(60);
+		Instant later = Instant.now().plus(1, ChronoUnit.HOURS);
+		MockConsumer<String, byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		MockProducer<String, byte[]> producer =
+			new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer()) {
+				@Override
+				public synchronized Future<RecordMetadata> send(ProducerRecord<String, byte[]> record) {
+					throw new KafkaException("buffer exhausted");
+				}
+			};
+		try (KafkaTieredTimerMessageHandler sut = this.mockHandler(producer, consumer)) {
+			TopicPartition topicPartition = new TopicPartition(sut.getTopics().get(0), 0);
+			this.assignRecords(consumer, topicPartition, List.of(
+				this.record(topicPartition, 0L, past, later, "first")
+			));
+
+			// when
+			sut.releaseMessages(it -> {
+			});
+
+			// then
+			assertThat(consumer.position(topicPartition)).isZero();
+			assertThat(consumer.committed(Set.of(topicPartition))).doesNotContainKey(topicPartition);
+			assertThat(consumer.paused()).containsExactly(topicPartition);
+		}
+	}
+
+	@Example
+	void pausePartitionUntilHeadRecordIsDue() {
+		// given
+		Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+		MockConsumer<String, byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		try (KafkaTieredTimerMessageHandler sut = this.mockHandler(mockProducer(new AtomicBoolean()), consumer)) {
+			TopicPartition topicPartition = new TopicPartition(sut.getTopics().get(1), 0);
+			this.assignRecords(consumer, topicPartition, List.of(
+				this.record(topicPartition, 0L, now, now.plus(1, ChronoUnit.HOURS), "later")
+			));
+
+			// when
+			List<Object> released = new ArrayList<>();
+			sut.releaseMessages(released::add);
+
+			// then
+			assertThat(released).isEmpty();
+			assertThat(consumer.paused()).containsExactly(topicPartition);
+			assertThat(consumer.position(topicPartition)).isZero();
+			assertThat(sut.getNextReleaseDateTime()).hasValue(now.plus(TIERS.get(1)));
+		}
+	}
+
+	@Example
+	void dropCancelledRecords() {
+		// given
+		Instant past = Instant.now().minusSeconds(60);
+		Instant later = Instant.now().plus(1, ChronoUnit.HOURS);
+		MockConsumer<String, byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		MockProducer<String, byte[]> producer = mockProducer(new AtomicBoolean());
+		try (KafkaTieredTimerMessageHandler sut = this.mockHandler(producer, consumer)) {
+			TopicPartition topicPartition = new TopicPartition(sut.getTopics().get(0), 0);
+			this.assignRecords(consumer, topicPartition, List.of(
+				this.record(topicPartition, 0L, past, past, "due"),
+				this.record(topicPartition, 1L, past, later, "later"),
+				this.record(topicPartition, 2L, past, past, "hello")
+			));
+			sut.cancel("due");
+			sut.cancel("later");
+
+			// when
+			List<Object> released = new ArrayList<>();
+			sut.releaseMessages(released::add);
+
+			// then
+			assertThat(released).hasSize(1);
+			assertThat(((TestTimerCommand)released.get(0)).getName()).isEqualTo("hello");
+			assertThat(producer.history()).isEmpty();
+			assertThat(consumer.committed(Set.of(topicPartition)).get(topicPartition))
+				.isEqualTo(new OffsetAndMetadata(3L));
+		}
+	}
+
+	@Example
+	void shareCancelsThroughCancelTopic() {
+		// given
+		Instant past = Instant.now().minusSeconds(60);
+		MockConsumer<String, byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		MockConsumer<String, byte[]> cancelConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		MockProducer<String, byte[]> producer = mockProducer(new AtomicBoolean());
+		try (KafkaTieredTimerMessageHandler sut = this.mockHandler(producer, consumer, cancelConsumer)) {
+			TopicPartition topicPartition = new TopicPartition(sut.getTopics().get(0), 0);
+			this.assignRecords(consumer, topicPartition, List.of(
+				this.record(topicPartition, 0L, past, past, "cancelled"),
+				this.record(topicPartition, 1L, past, past, "hello")
+			));
+
+			// cancelled by another node
+			TopicPartition cancelPartition = new TopicPartition(sut.getCancelTopic(), 0);
+			cancelConsumer.updatePartitions(
+				sut.getCancelTopic(),
+				List.of(new PartitionInfo(sut.getCancelTopic(), 0, null, null, null))
+			);
+			cancelConsumer.updateBeginningOffsets(Map.of(cancelPartition, 0L));
+			cancelConsumer.updateEndOffsets(Map.of(cancelPartition, 1L));
+			cancelConsumer.schedulePollTask(() -> cancelConsumer.addRecord(
+				new ConsumerRecord<>(sut.getCancelTopic(), 0, 0L, "cancelled", new byte[8])));
+
+			// when
+			List<Object> released = new ArrayList<>();
+			sut.releaseMessages(released::add);
+
+			// then
+			assertThat(released).hasSize(1);
+			assertThat(((TestTimerCommand)released.get(0)).getName()).isEqualTo("hello");
+			assertThat(consumer.committed(Set.of(topicPartition)).get(topicPartition))
+				.isEqualTo(new OffsetAndMetadata(2L));
+
+			// cancel is cleared by a tombstone
+			assertThat(producer.history()).hasSize(1);
+			assertThat(producer.history().get(0).topic()).isEqualTo(sut.getCancelTopic());
+			assertThat(producer.history().get(0).key()).isEqualTo("cancelled");
+			assertThat(producer.history().get(0).value()).isNull();
+		}
+	}
+
+	@Example
+	void sendCancelToCancelTopic() {
+		// given
+		MockConsumer<String, byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		MockProducer<String, byte[]> producer = mockProducer(new AtomicBoolean());
+		try (KafkaTieredTimerMessageHandler sut = this.mockHandler(
+			producer,
+			consumer,
+			new MockConsumer<>(OffsetResetStrategy.EARLIEST)
+		)) {
+			// when
+			sut.cancel("registered");
+
+			// then
+			assertThat(producer.history()).hasSize(1);
+			assertThat(producer.history().get(0).topic()).isEqualTo(sut.getCancelTopic());
+			assertThat(producer.history().get(0).key()).isEqualTo("registered");
+			assertThat(producer.history().get(0).value()).isNotNull();
+		}
+	}
+
+	private KafkaTieredTimerMessageHandler mockHandler(
+		MockProducer<String, byte[]> producer,
+		MockConsumer<String, byte[]> consumer
+	) {
+		return this.mockHandler(producer, consumer, null);
+	}
+
+	private KafkaTieredTimerMessageHandler mockHandler(
+		MockProducer<String, byte[]> producer,
+		MockConsumer<String, byte[]> consumer,
+		@Nullable MockConsumer<String, byte[]> cancelConsumer
+	) {
+		return new KafkaTieredTimerMessageHandler(
+			"mock-timer",
+			TIERS,
+			producer,
+			consumer,
+			this.cloudEventMessageReaderWriter,
+			Duration.ofMillis(10),
+			false,
+			cancelConsumer
+		);
+	}
+
+	private void assignRecords(
+		MockConsumer<String, byte[]> consumer,
+		TopicPartition topicPartition,
+		List<ConsumerRecord<String, byte[]>> records
+	) {
+		consumer.updateBeginningOffsets(Map.of(topicPartition, 0L));
+		consumer.schedulePollTask(() -> {
+			consumer.rebalance(List.of(topicPartition));
+			records.forEach(consumer::addRecord);
+		});
+	}
+
+	private ConsumerRecord<String, byte[]> record(
+		TopicPartition topicPartition,
+		long offset,
+		Instant timestamp,
+		Instant releaseDateTime,
+		String name
+	) {
+		RecordHeaders headers = new RecordHeaders();
+		headers.add(
+			KafkaTieredTimerMessageHandler.RELEASE_AT_HEADER,
+			String.valueOf(releaseDateTime.toEpochMilli()).getBytes(StandardCharsets.UTF_8)
+		);
+		headers.add(KafkaTieredTimerMessageHandler.CLOUD_EVENT_TYPE_HEADER, "0".getBytes(StandardCharsets.UTF_8));
+		return new ConsumerRecord<>(
+			topicPartition.topic(),
+			topicPartition.partition(),
+			offset,
+			timestamp.toEpochMilli(),
+			TimestampType.CREATE_TIME,
+			-1,
+			-1,
+			name,
+			this.cloudEventMessageReaderWriter.write(new TestTimerCommand(name, releaseDateTime)),
+			headers,
+			Optional.empty()
+		);
+	}
+
+	/**
+	 * @param failNext whether to fail the next send. reset after a failure.
+	 */
+	private static MockProducer<String, byte[]> mockProducer(AtomicBoolean failNext) {
+		return new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer()) {
+			@Override
+			public synchronized Future<RecordMetadata> send(ProducerRecord<String, byte[]> record) {
+				if (failNext.compareAndSet(true, false)) {
+					return CompletableFuture.failedFuture(new TimeoutException("expired"));
+				}
+				return super.send(record);
+			}
+		};
+	}
+
+	private static Properties producerProps() {
+		Properties producerProps = new Properties();
+		producerProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, BROKER.getBrokersAsString());
+		producerProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+		producerProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+		return producerProps;
+	}
+
+	private static Properties consumerProps() {
+		Properties consumerProps = new Properties();
+		consumerProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, BROKER.getBrokersAsString());
+		consumerProps.put(ConsumerConfig.GROUP_ID_CONFIG, "tiered-timer-consumer");
+		consumerProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+		consumerProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+		consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+		consumerProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+		return consumerProps;
+	}
+}
@@ -0,0 +1,406 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.eventeria.messaging.timer.spring.jdbc.store;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.cloudevents.CloudEvent;
+
+import com.navercorp.eventeria.messaging.contract.Message;
+import com.navercorp.eventeria.messaging.contract.cloudevents.serializer.CloudEventMessageReaderWriter;
+import com.navercorp.eventeria.messaging.contract.cloudevents.serializer.SerializedCloudEvent;
+import com.navercorp.eventeria.timer.contract.store.LeasedTimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+
+/**
+ * An implementation of {@link TimerMessageStore} for relational databases using spring-jdbc.
+ * <p/>
+ * Messages are rows of a table indexed by {@code (partition_no, release_at)}.
+ * {@link #claimReleaseValues} selects due rows by {@code SELECT ... FOR UPDATE SKIP LOCKED}
+ * and marks them with a lease deadline in its own transaction,
+ * so multiple nodes drain the same partition concurrently without an external lock.
+ * The other operations run on the transaction of the caller, if any,
+ * so that timer messages can be registered in the same transaction with business data.
+ * <p/>
+ * DDL of the table is provided for h2, postgresql and mysql as
+ * {@code com/navercorp/eventeria/messaging/timer/spring/jdbc/schema-*.sql}.
+ * Queries use {@code LIMIT} and {@code SKIP LOCKED}, which are supported by them. (mysql 8.0 or later)
+ */
+public class JdbcCloudEventTimerMessageStore implements LeasedTimerMessageStore {
+	public static final String DEFAULT_TABLE_NAME = "eventeria_timer_message";
+
+	private static final Duration DEFAULT_LEASE_DURATION = Duration.ofMinutes(5);
+	// partitions are not negative, so messages without partition never share rows with partition 0.
+	private static final int NO_PARTITION_NO = -1;
+	private static final Instant MAX_EPOCH_MILLI = Instant.ofEpochMilli(Long.MAX_VALUE);
+	private static final Instant MIN_EPOCH_MILLI = Instant.ofEpochMilli(Long.MIN_VALUE);
+	private static final Pattern TABLE_NAME_PATTERN = Pattern.compile("[A-Za-z0-9_.]+");
+
+	private final JdbcOperations jdbcOperations;
+	private final TransactionTemplate claimTransactionTemplate;
+	private final CloudEventMessageReaderWriter cloudEventMessageReaderWriter;
+	private final Duration leaseDuration;
+	private final boolean releaseSerialized;
+	private final RowMapper<TimerMessageStoreValue> rowMapper = (rs, rowNum) -> this.toTimerMessageStoreValue(
+		rs.getString("id"),
+		rs.getLong("release_at"),
+		rs.getBoolean("cloud_event_type"),
+		rs.getBytes("message")
+	);
+
+	private final String insertSql;
+	private final String deleteSql;
+	private final String countSql;
+	private final String findSql;
+	private final String claimSql;
+	private final String leaseSql;
+	private final String requeueSql;
+	private final String nextReleaseSql;
+
+	/**
+	 * @param jdbcOperations jdbc operations on the table.
+	 * @param transactionManager transaction manager of the datasource of jdbcOperations.
+	 * @param cloudEventMessageReaderWriter (de)serializer for persisting timer messages.
+	 */
+	public JdbcCloudEventTimerMessageStore(
+		JdbcOperations jdbcOperations,
+		PlatformTransactionManager transactionManager,
+		CloudEventMessageReaderWriter cloudEventMessageReaderWriter
+	) {
+		this(
+			jdbcOperations,
+			transactionManager,
+			cloudEventMessageReaderWriter,
+			DEFAULT_TABLE_NAME,
+			DEFAULT_LEASE_DURATION,
+			false
+		);
+	}
+
+	/**
+	 * @param jdbcOperations jdbc operations on the table.
+	 * @param transactionManager transaction manager of the datasource of jdbcOperations.
+	 * @param cloudEventMessageReaderWriter (de)serializer for persisting timer messages.
+	 * @param tableName name of the table, optionally qualified by schema.
+	 * @param leaseDuration duration of claimed messages to be hidden from other claims.
+	 *                      messages not acknowledged in this duration are released again.
+	 * @param releaseSerialized whether to release messages as {@link SerializedCloudEvent}.
+	 */
+	public JdbcCloudEventTimerMessageStore(
+		JdbcOperations jdbcOperations,
+		PlatformTransactionManager transactionManager,
+		CloudEventMessageReaderWriter cloudEventMessageReaderWriter,
+		String tableName,
+		Duration leaseDuration,
+		boolean releaseSerialized
+	) {
+		if (!TABLE_NAME_PATTERN.matcher(tableName).matches()) {
+			throw new IllegalArgumentException("tableName has invalid characters. tableName: " + tableName);
+		}
+
+		this.jdbcOperations = jdbcOperations;
+		this.claimTransactionTemplate = new TransactionTemplate(transactionManager);
+		this.claimTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.cloudEventMessageReaderWriter = cloudEventMessageReaderWriter;
+		this.leaseDuration = leaseDuration;
+		this.releaseSerialized = releaseSerialized;
+
+		String dueCondition = " WHERE partition_no = ? AND release_at < ?"
+			+ " AND (lease_until IS NULL OR lease_until <= ?)";
+		this.insertSql = "INSERT INTO " + tableName
+			+ " (id, partition_no, release_at, lease_until, cloud_event_type, message) VALUES (?, ?, ?, NULL, ?, ?)";
+		this.deleteSql = "DELETE FROM " + tableName + " WHERE id = ? AND partition_no = ?";
+		this.countSql = "SELECT COUNT(*) FROM " + tableName + dueCondition;
+		this.findSql = "SELECT id, release_at, cloud_event_type, message FROM " + tableName + dueCondition
+			+ " ORDER BY release_at LIMIT ?";
+		this.claimSql = this.findSql + " FOR UPDATE SKIP LOCKED";
+		this.leaseSql = "UPDATE " + tableName + " SET lease_until = ? WHERE id = ? AND partition_no = ?";
+		this.requeueSql = "UPDATE " + tableName + " SET lease_until = NULL WHERE id = ? AND partition_no = ?";
+		// claimed rows are released again when their lease expires.
+		this.nextReleaseSql = "SELECT MIN(CASE WHEN lease_until > ? THEN lease_until ELSE release_at END)"
+			+ " FROM " + tableName + " WHERE partition_no = ?";
+	}
+
+	@Override
+	public void save(TimerMessageStoreValue storeValue, @Nullable Integer partition) {
+		this.saveAll(Collections.singletonList(storeValue), partition);
+	}
+
+	/**
+	 * Save messages by batch inserts. A message of the same id in the partition is replaced.
+	 *
+	 * @param storeValues
+	 * @param partition
+	 */
+	@Override
+	public void saveAll(Collection<TimerMessageStoreValue> storeValues, @Nullable Integer partition) {
+		if (storeValues.isEmpty()) {
+			return;
+		}
+
+		int partitionNo = toPartitionNo(partition);
+		List<Object[]> keys = new ArrayList<>(storeValues.size());
+		List<Object[]> rows = new ArrayList<>(storeValues.size());
+		for (TimerMessageStoreValue storeValue : storeValues) {
+			Object message = storeValue.getMessage();
+			keys.add(new Object[] {storeValue.getId().toString(), partitionNo});
+			rows.add(new Object[] {
+				storeValue.getId().toString(),
+				partitionNo,
+				toEpochMilli(storeValue.getReleaseDateTime()),
+				message instanceof CloudEvent,
+				this.serialize(message)
+			});
+		}
+
+		// delete and insert instead of upsert, which differs by database.
+		this.jdbcOperations.batchUpdate(this.deleteSql, keys);
+		this.jdbcOperations.batchUpdate(this.insertSql, rows);
+	}
+
+	@Override
+	public void remove(UUID storeValueId, @Nullable Integer partition) {
+		this.removeAll(Collections.singletonList(storeValueId), partition);
+	}
+
+	/**
+	 * Remove messages by batch deletes.
+	 *
+	 * @param storeValueIds
+	 * @param partition
+	 */
+	@Override
+	public void removeAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		if (storeValueIds.isEmpty()) {
+			return;
+		}
+
+		int partitionNo = toPartitionNo(partition);
+		List<Object[]> keys = new ArrayList<>(storeValueIds.size());
+		for (UUID storeValueId : storeValueIds) {
+			keys.add(new Object[] {storeValueId.toString(), partitionNo});
+		}
+		this.jdbcOperations.batchUpdate(this.deleteSql, keys);
+	}
+
+	/**
+	 * @param conditionDateTime time to search before
+	 * @param partition
+	 * @return count of messages before conditionDateTime, except claimed ones.
+	 */
+	@Override
+	public long count(Instant conditionDateTime, @Nullable Integer partition) {
+		Long result = this.jdbcOperations.queryForObject(
+			this.countSql,
+			Long.class,
+			toPartitionNo(partition),
+			toEpochMilli(conditionDateTime),
+			Instant.now().toEpochMilli()
+		);
+		return result != null ? result : 0L;
+	}
+
+	@Override
+	public List<TimerMessageStoreValue> findReleaseValues(
+		Instant conditionDateTime,
+		int count,
+		@Nullable Integer partition
+	) {
+		return this.jdbcOperations.query(
+			this.findSql,
+			this.rowMapper,
+			toPartitionNo(partition),
+			toEpochMilli(conditionDateTime),
+			Instant.now().toEpochMilli(),
+			count
+		);
+	}
+
+	/**
+	 * @param partition
+	 * @return earliest release time of messages. claimed messages count by their lease deadline instead.
+	 */
+	@Override
+	public Optional<Instant> findNextReleaseDateTime(@Nullable Integer partition) {
+		Long releaseAt = this.jdbcOperations.queryForObject(
+			this.nextReleaseSql,
+			Long.class,
+			Instant.now().toEpochMilli(),
+			toPartitionNo(partition)
+		);
+		return Optional.ofNullable(releaseAt).map(Instant::ofEpochMilli);
+	}
+
+	/**
+	 * Lock due rows not claimed by others, skipping rows locked by concurrent claims,
+	 * and set their lease deadline in a new transaction.
+	 *
+	 * @param conditionDateTime
+	 * @param count
+	 * @param partition
+	 * @return claimed messages.
+	 */
+	@Override
+	public List<TimerMessageStoreValue> claimReleaseValues(
+		Instant conditionDateTime,
+		int count,
+		@Nullable Integer partition
+	) {
+		int partitionNo = toPartitionNo(partition);
+		List<TimerMessageStoreValue> result = this.claimTransactionTemplate.execute(status -> {
+			Instant now = Instant.now();
+			List<TimerMessageStoreValue> claimed = this.jdbcOperations.query(
+				this.claimSql,
+				this.rowMapper,
+				partitionNo,
+				toEpochMilli(conditionDateTime),
+				now.toEpochMilli(),
+				count
+			);
+			if (claimed.isEmpty()) {
+				return claimed;
+			}
+
+			long leaseUntil = toEpochMilli(now.plus(this.leaseDuration));
+			List<Object[]> leases = new ArrayList<>(claimed.size());
+			for (TimerMessageStoreValue storeValue : claimed) {
+				leases.add(new Object[] {leaseUntil, storeValue.getId().toString(), partitionNo});
+			}
+			this.jdbcOperations.batchUpdate(this.leaseSql, leases);
+			return claimed;
+		});
+		return result != null ? result : Collections.emptyList();
+	}
+
+	/**
+	 * Remove a claimed message.
+	 *
+	 * @param storeValueId
+	 * @param partition
+	 */
+	@Override
+	public void acknowledge(UUID storeValueId, @Nullable Integer partition) {
+		this.remove(storeValueId, partition);
+	}
+
+	/**
+	 * Remove claimed messages.
+	 *
+	 * @param storeValueIds
+	 * @param partition
+	 */
+	@Override
+	public void acknowledgeAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		this.removeAll(storeValueIds, partition);
+	}
+
+	/**
+	 * Clear the lease of a claimed message, to be released on next scheduling.
+	 *
+	 * @param storeValueId
+	 * @param partition
+	 */
+	@Override
+	public void requeue(UUID storeValueId, @Nullable Integer partition) {
+		this.jdbcOperations.update(this.requeueSql, storeValueId.toString(), toPartitionNo(partition));
+	}
+
+	/**
+	 * Clear the leases of claimed messages of a partition by a batch update.
+	 *
+	 * @param storeValueIds
+	 * @param partition
+	 */
+	@Override
+	public void requeueAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		if (storeValueIds.isEmpty()) {
+			return;
+		}
+
+		int partitionNo = toPartitionNo(partition);
+		List<Object[]> keys = new ArrayList<>(storeValueIds.size());
+		for (UUID storeValueId : storeValueIds) {
+			keys.add(new Object[] {storeValueId.toString(), partitionNo});
+		}
+		this.jdbcOperations.batchUpdate(this.requeueSql, keys);
+	}
+
+	private byte[] serialize(Object message) {
+		// released serialized messages (ex. moved by TimerMessagePartitionMigrator) are saved as they are.
+		// they are restored as CloudEvent, because their original types are not kept.
+		if (message instanceof SerializedCloudEvent serializedCloudEvent) {
+			return serializedCloudEvent.getSerialized();
+		} else if (message instanceof CloudEvent cloudEvent) {
+			return this.cloudEventMessageReaderWriter.serialize(cloudEvent);
+		} else if (message instanceof Message msg) {
+			return this.cloudEventMessageReaderWriter.write(msg);
+		}
+
+		throw new UnsupportedOperationException("unsupported");
+	}
+
+	private TimerMessageStoreValue toTimerMessageStoreValue(
+		String id,
+		long releaseAt,
+		boolean cloudEventType,
+		byte[] serialized
+	) {
+		Object message;
+		if (this.releaseSerialized) {
+			message = new SerializedCloudEvent(serialized, this.cloudEventMessageReaderWriter);
+		} else if (cloudEventType) {
+			message = this.cloudEventMessageReaderWriter.deserialize(serialized);
+		} else {
+			message = this.cloudEventMessageReaderWriter.read(serialized);
+		}
+		return new TimerMessageStoreValue(UUID.fromString(id), message, Instant.ofEpochMilli(releaseAt));
+	}
+
+	private static int toPartitionNo(@Nullable Integer partition) {
+		return partition != null ? partition : NO_PARTITION_NO;
+	}
+
+	private static long toEpochMilli(Instant instant) {
+		// Instant.MAX and MIN overflow epoch millis, used as unbounded conditions.
+		if (instant.isAfter(MAX_EPOCH_MILLI)) {
+			return Long.MAX_VALUE;
+		} else if (instant.isBefore(MIN_EPOCH_MILLI)) {
+			return Long.MIN_VALUE;
+		}
+		return instant.toEpochMilli();
+	}
+}
@@ -0,0 +1,11 @@
+CREATE TABLE IF NOT EXISTS eventeria_timer_message (
+    id VARCHAR(36) NOT NULL,
+    partition_no INT NOT NULL,
+    release_at BIGINT NOT NULL,
+    lease_until BIGINT,
+    cloud_event_type BOOLEAN NOT NULL,
+    message VARBINARY NOT NULL,
+    PRIMARY KEY (id, partition_no)
+);
+
+CREATE INDEX IF NOT EXISTS eventeria_timer_message_release_idx ON eventeria_timer_message (partition_no, release_at);
@@ -0,0 +1,213 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.eventeria.messaging.timer.spring.jdbc.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import net.jqwik.api.Example;
+import net.jqwik.api.lifecycle.AfterTry;
+import net.jqwik.api.lifecycle.BeforeTry;
+
+import com.navercorp.eventeria.messaging.contract.cloudevents.serializer.CloudEventMessageReaderWriter;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+import com.navercorp.eventeria.timer.fixture.CloudEventFixtures;
+import com.navercorp.eventeria.timer.fixture.TestTimerCommand;
+
+class JdbcCloudEventTimerMessageStoreTest {
+	private EmbeddedDatabase database;
+	private JdbcTemplate jdbcTemplate;
+	private TransactionTemplate transactionTemplate;
+	private JdbcCloudEventTimerMessageStore sut;
+
+	@BeforeTry
+	void setUp() {
+		this.database = new EmbeddedDatabaseBuilder()
+			.setType(EmbeddedDatabaseType.H2)
+			.generateUniqueName(true)
+			.addScript("classpath:com/navercorp/eventeria/messaging/timer/spring/jdbc/schema-h2.sql")
+			.build();
+		this.jdbcTemplate = new JdbcTemplate(this.database);
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(this.database);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.sut = new JdbcCloudEventTimerMessageStore(
+			this.jdbcTemplate,
+			transactionManager,
+			CloudEventFixtures.createCloudEventMessageReaderWriter()
+		);
+	}
+
+	@AfterTry
+	void tearDown() {
+		this.database.shutdown();
+	}
+
+	@Example
+	void saveAndFind() {
+		// given
+		Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+		TimerMessageStoreValue due = storeValue("due", now.minusSeconds(10));
+		TimerMessageStoreValue notDue = storeValue("notDue", now.plusSeconds(10));
+
+		// when
+		this.sut.saveAll(List.of(notDue, due), 1);
+
+		// then
+		List<TimerMessageStoreValue> actual = this.sut.findReleaseValues(now, 10, 1);
+		assertThat(actual).extracting(TimerMessageStoreValue::getId).containsExactly(due.getId());
+		assertThat(((TestTimerCommand)actual.get(0).getMessage()).getName()).isEqualTo("due");
+		assertThat(this.sut.count(now, 1)).isEqualTo(1L);
+		assertThat(this.sut.count(now, 2)).isZero();
+		assertThat(this.sut.findNextReleaseDateTime(1)).hasValue(due.getReleaseDateTime());
+	}
+
+	@Example
+	void registerJoinsTransaction() {
+		// given
+		Instant now = Instant.now();
+
+		// when
+		this.transactionTemplate.executeWithoutResult(status -> {
+			this.sut.save(storeValue("rollback", now.minusSeconds(10)), 1);
+			status.setRollbackOnly();
+		});
+
+		// then
+		assertThat(this.sut.count(now, 1)).isZero();
+	}
+
+	@Example
+	void claimHidesClaimedValuesUntilRequeue() {
+		// given
+		Instant now = Instant.now();
+		TimerMessageStoreValue due = storeValue("due", now.minusSeconds(10));
+		this.sut.save(due, 1);
+
+		// when
+		List<TimerMessageStoreValue> claimed = this.sut.claimReleaseValues(now, 10, 1);
+
+		// then
+		assertThat(claimed).extracting(TimerMessageStoreValue::getId).containsExactly(due.getId());
+		assertThat(this.sut.claimReleaseValues(now, 10, 1)).isEmpty();
+		assertThat(this.sut.count(now, 1)).isZero();
+
+		this.sut.requeue(due.getId(), 1);
+		assertThat(this.sut.claimReleaseValues(now, 10, 1)).extracting(TimerMessageStoreValue::getId)
+			.containsExactly(due.getId());
+
+		this.sut.acknowledge(due.getId(), 1);
+		assertThat(this.sut.findNextReleaseDateTime(1)).isEmpty();
+	}
+
+	@Example
+	void claimSkipsRowsLockedByOthers() {
+		// given
+		Instant now = Instant.now();
+		TimerMessageStoreValue locked = storeValue("locked", now.minusSeconds(20));
+		TimerMessageStoreValue free = storeValue("free", now.minusSeconds(10));
+		this.sut.saveAll(List.of(locked, free), 1);
+
+		// when
+		List<TimerMessageStoreValue> claimed = this.transactionTemplate.execute(status -> {
+			this.jdbcTemplate.queryForList(
+				"SELECT id FROM eventeria_timer_message WHERE id = ? FOR UPDATE",
+				locked.getId().toString()
+			);
+			return CompletableFuture.supplyAsync(() -> this.sut.claimReleaseValues(now, 10, 1)).join();
+		});
+
+		// then
+		assertThat(claimed).extracting(TimerMessageStoreValue::getId).containsExactly(free.getId());
+		assertThat(this.sut.claimReleaseValues(now, 10, 1)).extracting(TimerMessageStoreValue::getId)
+			.containsExactly(locked.getId());
+	}
+
+	@Example
+	void nextReleaseDateTimeSkipsClaimedValues() {
+		// given
+		Instant now = Instant.now();
+		TimerMessageStoreValue claimed = storeValue("claimed", now.minusSeconds(10));
+		TimerMessageStoreValue later = storeValue("later", now.plusSeconds(60));
+		this.sut.saveAll(List.of(claimed, later), 1);
+
+		// when
+		this.sut.claimReleaseValues(now, 1, 1);
+
+		// then
+		assertThat(this.sut.findNextReleaseDateTime(1)).hasValue(later.getReleaseDateTime());
+	}
+
+	@Example
+	void unboundedConditionDateTime() {
+		// given
+		Instant now = Instant.now();
+		TimerMessageStoreValue due = storeValue("due", now.plusSeconds(60));
+		this.sut.save(due, 1);
+
+		// when
+		long count = this.sut.count(Instant.MAX, 1);
+		List<TimerMessageStoreValue> found = this.sut.findReleaseValues(Instant.MAX, 10, 1);
+		List<TimerMessageStoreValue> claimed = this.sut.claimReleaseValues(Instant.MAX, 10, 1);
+
+		// then
+		assertThat(count).isEqualTo(1L);
+		assertThat(found).extracting(TimerMessageStoreValue::getId).containsExactly(due.getId());
+		assertThat(claimed).extracting(TimerMessageStoreValue::getId).containsExactly(due.getId());
+		assertThat(this.sut.count(Instant.MIN, 1)).isZero();
+	}
+
+	@Example
+	void noPartitionIsSeparatedFromPartitionZero() {
+		// given
+		Instant now = Instant.now();
+		TimerMessageStoreValue noPartition = storeValue("noPartition", now.minusSeconds(10));
+		TimerMessageStoreValue partitionZero = storeValue("partitionZero", now.minusSeconds(10));
+
+		// when
+		this.sut.save(noPartition, null);
+		this.sut.save(partitionZero, 0);
+
+		// then
+		assertThat(this.sut.findReleaseValues(now, 10, null)).extracting(TimerMessageStoreValue::getId)
+			.containsExactly(noPartition.getId());
+		assertThat(this.sut.findReleaseValues(now, 10, 0)).extracting(TimerMessageStoreValue::getId)
+			.containsExactly(partitionZero.getId());
+	}
+
+	private static TimerMessageStoreValue storeValue(String name, Instant releaseDateTime) {
+		return new TimerMessageStoreValue(
+			UUID.randomUUID(),
+			new TestTimerCommand(name, releaseDateTime),
+			releaseDateTime.truncatedTo(ChronoUnit.MILLIS)
+		);
+	}
+}
@@ -0,0 +1,433 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.messaging.timer.spring.redis.store;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.ReactiveRedisOperations;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import com.navercorp.eventeria.messaging.contract.cloudevents.serializer.CloudEventMessageReaderWriter;
+import com.navercorp.eventeria.messaging.contract.cloudevents.serializer.SerializedCloudEvent;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+import com.navercorp.eventeria.timer.store.ReactiveTimerMessageStore;
+
+/**
+ * An implementation of {@link ReactiveTimerMessageStore} for integration with redis using reactive spring-data-redis.
+ * <p/>
+ * Keys, scores and scripts are shared with {@link RedisCloudEventTimerMessageStore},
+ * so both stores can work on the same data with the same redisKeyPrefix and serializers.
+ * Values are always saved to their own keys, but values inlined by {@link RedisCloudEventTimerMessageStore}
+ * are also claimed and removed.
+ * <p/>
+ * With releaseSerialized, claimed messages are {@link SerializedCloudEvent} of the stored bytes,
+ * so that they are not deserialized on event loop threads unless their attributes or data are accessed.
+ */
+public class ReactiveRedisCloudEventTimerMessageStore implements ReactiveTimerMessageStore {
+	private static final Logger LOG = LoggerFactory.getLogger(ReactiveRedisCloudEventTimerMessageStore.class);
+
+	private static final Duration DEFAULT_LEASE_DURATION = Duration.ofMinutes(5);
+
+	private static final RedisElementWriter<String> ARGS_WRITER = RedisElementWriter.from(RedisSerializer.string());
+	@SuppressWarnings("unchecked")
+	private static final RedisElementReader<Object> RAW_RESULT_READER =
+		(RedisElementReader<Object>)(RedisElementReader<?>)RedisElementReader.from(RedisSerializer.byteArray());
+
+	private final RedisTimerMessageStoreSupports supports;
+	private final ReactiveRedisOperations<String, String> redisIndexOperations;
+	private final ReactiveRedisOperations<String, RedisCloudEventTimerMessageStoreValue> redisValueOperations;
+	private final Duration leaseDuration;
+
+	/**
+	 * @param redisKeyPrefix prefix to classify timer message.
+	 * @param redisIndexOperations redis operations to index actual values.
+	 * @param redisValueOperations redis operations to handle timer messages.
+	 * @param cloudEventMessageReaderWriter (de)serializer for persisting timer messages.
+	 */
+	public ReactiveRedisCloudEventTimerMessageStore(
+		String redisKeyPrefix,
+		ReactiveRedisOperations<String, String> redisIndexOperations,
+		ReactiveRedisOperations<String, RedisCloudEventTimerMessageStoreValue> redisValueOperations,
+		CloudEventMessageReaderWriter cloudEventMessageReaderWriter
+	) {
+		this(
+			redisKeyPrefix,
+			redisIndexOperations,
+			redisValueOperations,
+			cloudEventMessageReaderWriter,
+			DEFAULT_LEASE_DURATION,
+			ChronoUnit.SECONDS
+		);
+	}
+
+	/**
+	 * @param redisKeyPrefix prefix to classify timer message.
+	 * @param redisIndexOperations redis operations to index actual values.
+	 * @param redisValueOperations redis operations to handle timer messages.
+	 * @param cloudEventMessageReaderWriter (de)serializer for persisting timer messages.
+	 * @param leaseDuration duration of claimed messages to be hidden from other claims.
+	 *                      messages not acknowledged in this duration are released again.
+	 * @param scoreUnit precision of index score, {@link ChronoUnit#SECONDS} or {@link ChronoUnit#MILLIS}.
+	 *                  should be the same with {@link RedisCloudEventTimerMessageStore} sharing the data.
+	 */
+	public ReactiveRedisCloudEventTimerMessageStore(
+		String redisKeyPrefix,
+		ReactiveRedisOperations<String, String> redisIndexOperations,
+		ReactiveRedisOperations<String, RedisCloudEventTimerMessageStoreValue> redisValueOperations,
+		CloudEventMessageReaderWriter cloudEventMessageReaderWriter,
+		Duration leaseDuration,
+		ChronoUnit scoreUnit
+	) {
+		this(
+			redisKeyPrefix,
+			redisIndexOperations,
+			redisValueOperations,
+			cloudEventMessageReaderWriter,
+			leaseDuration,
+			scoreUnit,
+			false
+		);
+	}
+
+	/**
+	 * @param redisKeyPrefix prefix to classify timer message.
+	 * @param redisIndexOperations redis operations to index actual values.
+	 * @param redisValueOperations redis operations to handle timer messages.
+	 * @param cloudEventMessageReaderWriter (de)serializer for persisting timer messages.
+	 * @param leaseDuration duration of claimed messages to be hidden from other claims.
+	 *                      messages not acknowledged in this duration are released again.
+	 * @param scoreUnit precision of index score, {@link ChronoUnit#SECONDS} or {@link ChronoUnit#MILLIS}.
+	 *                  should be the same with {@link RedisCloudEventTimerMessageStore} sharing the data.
+	 * @param releaseSerialized whether to release messages as {@link SerializedCloudEvent} of the stored bytes.
+	 */
+	public ReactiveRedisCloudEventTimerMessageStore(
+		String redisKeyPrefix,
+		ReactiveRedisOperations<String, String> redisIndexOperations,
+		ReactiveRedisOperations<String, RedisCloudEventTimerMessageStoreValue> redisValueOperations,
+		CloudEventMessageReaderWriter cloudEventMessageReaderWriter,
+		Duration leaseDuration,
+		ChronoUnit scoreUnit,
+		boolean releaseSerialized
+	) {
+		this.supports = new RedisTimerMessageStoreSupports(
+			redisKeyPrefix, cloudEventMessageReaderWriter, scoreUnit, releaseSerialized);
+		this.redisIndexOperations = redisIndexOperations;
+		this.redisValueOperations = redisValueOperations;
+		this.leaseDuration = leaseDuration;
+	}
+
+	/**
+	 * Save messages with adding index. Values are set concurrently, and then index is added by a ZADD.
+	 * Index is added after values, so claims never find ids of which values are not written yet.
+	 *
+	 * @param storeValues
+	 * @param partition
+	 */
+	@Override
+	public Mono<Void> saveAll(Collection<TimerMessageStoreValue> storeValues, @Nullable Integer partition) {
+		if (storeValues.isEmpty()) {
+			return Mono.empty();
+		}
+
+		return Mono.defer(() -> {
+			// serialize all values before writing, not to leave index of unsupported messages.
+			List<TypedTuple<String>> indexTuples = new ArrayList<>(storeValues.size());
+			List<RedisCloudEventTimerMessageStoreValue> redisStoreValues = new ArrayList<>(storeValues.size());
+			List<Duration> expirations = new ArrayList<>(storeValues.size());
+			for (TimerMessageStoreValue storeValue : storeValues) {
+				indexTuples.add(TypedTuple.of(
+					storeValue.getId().toString(),
+					(double)this.supports.toScore(storeValue.getReleaseDateTime())
+				));
+				redisStoreValues.add(this.supports.toRedisStoreValue(storeValue));
+				expirations.add(Duration.ofMillis(this.supports.expirationMillis(storeValue)));
+			}
+
+			return Flux.range(0, redisStoreValues.size())
+				.flatMap(i -> {
+					RedisCloudEventTimerMessageStoreValue redisStoreValue = redisStoreValues.get(i);
+					String valueKey = this.supports.generateKey(redisStoreValue.getId(), partition);
+					return this.redisValueOperations.opsForValue().set(valueKey, redisStoreValue, expirations.get(i));
+				})
+				.then(this.redisIndexOperations.opsForZSet()
+					.addAll(this.supports.generateIndexKey(partition), indexTuples))
+				.then();
+		});
+	}
+
+	/**
+	 * Remove messages with deleting index and values, whether they are claimed or not.
+	 * Values are deleted before their index members, so values are not left without index on failures.
+	 *
+	 * @param storeValueIds
+	 * @param partition
+	 */
+	@Override
+	public Mono<Void> removeAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		if (storeValueIds.isEmpty()) {
+			return Mono.empty();
+		}
+
+		Object[] members = storeValueIds.stream().map(UUID::toString).toArray();
+		return this.deleteValues(storeValueIds, partition)
+			.then(Mono.when(
+				this.redisIndexOperations.opsForZSet().remove(this.supports.generateIndexKey(partition), members),
+				this.redisIndexOperations.opsForZSet().remove(this.supports.generateInFlightKey(partition), members)
+			));
+	}
+
+	/**
+	 * Count number of stored messages in index operation.
+	 *
+	 * @param conditionDateTime time to search before
+	 * @param partition
+	 * @return number of rows exists in index of partition and has time before conditionDateTime.
+	 */
+	@Override
+	public Mono<Long> count(Instant conditionDateTime, @Nullable Integer partition) {
+		double conditionScore = (double)this.supports.toScore(conditionDateTime);
+		return this.redisIndexOperations.opsForZSet()
+			.count(this.supports.generateIndexKey(partition), Range.closed(0.0, conditionScore))
+			.defaultIfEmpty(0L);
+	}
+
+	/**
+	 * Claim messages by a scheduled time and partition with a lease, in a single lua script execution.
+	 *
+	 * @param conditionDateTime
+	 * @param count
+	 * @param partition
+	 * @return claimed messages.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public Flux<TimerMessageStoreValue> claimReleaseValues(
+		Instant conditionDateTime,
+		int count,
+		@Nullable Integer partition
+	) {
+		return Flux.defer(() -> {
+			Instant now = Instant.now();
+			String inFlightKey = this.supports.generateInFlightKey(partition);
+			List<String> keys = List.of(
+				this.supports.generateIndexKey(partition),
+				inFlightKey,
+				this.supports.generateInlineValueKey(partition)
+			);
+			List<String> args = List.of(
+				String.valueOf(this.supports.toScore(now)),
+				String.valueOf(this.supports.toScore(conditionDateTime)),
+				String.valueOf(count),
+				String.valueOf(this.supports.toScore(now.plus(this.leaseDuration)))
+			);
+
+			return this.redisIndexOperations.execute(
+					(RedisScript<Object>)(RedisScript<?>)RedisTimerMessageStoreSupports.CLAIM_SCRIPT,
+					keys,
+					args,
+					ARGS_WRITER,
+					RAW_RESULT_READER
+				)
+				.collectList()
+				.flatMap(claimed -> this.resolveReleaseValues(inFlightKey, partition, claimed))
+				.flatMapIterable(it -> it);
+		});
+	}
+
+	/**
+	 * Move a claimed message back to index, to be released on next scheduling.
+	 *
+	 * @param storeValueId
+	 * @param partition
+	 */
+	@Override
+	public Mono<Void> requeue(UUID storeValueId, @Nullable Integer partition) {
+		return Flux.defer(() -> this.redisIndexOperations.execute(
+				RedisTimerMessageStoreSupports.REQUEUE_SCRIPT,
+				List.of(this.supports.generateIndexKey(partition), this.supports.generateInFlightKey(partition)),
+				List.of(storeValueId.toString(), String.valueOf(this.supports.toScore(Instant.now())))
+			))
+			.then();
+	}
+
+	/**
+	 * Read values not inlined by a MGET, deserialize claimed values, and clean up ids of not existing or broken values.
+	 *
+	 * @param indexKey index key to remove ids of not existing values.
+	 * @param claimed flat list of id and its inlined value returned by the script.
+	 *                reactive script results can be emitted per element or as a list.
+	 */
+	private Mono<List<TimerMessageStoreValue>> resolveReleaseValues(
+		String indexKey,
+		@Nullable Integer partition,
+		List<Object> claimed
+	) {
+		List<Object> pairs = new ArrayList<>(claimed.size());
+		for (Object element : claimed) {
+			if (element instanceof List<?> list) {
+				pairs.addAll(list);
+			} else {
+				pairs.add(element);
+			}
+		}
+		if (pairs.isEmpty()) {
+			return Mono.just(Collections.emptyList());
+		}
+
+		// ids are index members, so they are deserialized by the value serializer of index operations.
+		RedisSerializationContext.SerializationPair<String> memberSerializationPair =
+			this.redisIndexOperations.getSerializationContext().getValueSerializationPair();
+		List<String> storeValueIds = new ArrayList<>(pairs.size() / 2);
+		List<byte[]> rawValues = new ArrayList<>(pairs.size() / 2);
+		List<Integer> separatedIndexes = new ArrayList<>();
+		List<ByteBuffer> rawKeys = new ArrayList<>();
+		for (int i = 0; i + 1 < pairs.size(); i += 2) {
+			String storeValueId = memberSerializationPair.read(ByteBuffer.wrap((byte[])pairs.get(i)));
+			byte[] rawValue = (byte[])pairs.get(i + 1);
+			if (rawValue == null || rawValue.length == 0) {
+				separatedIndexes.add(storeValueIds.size());
+				rawKeys.add(this.redisValueOperations.getSerializationContext().getKeySerializationPair()
+					.write(this.supports.generateKey(UUID.fromString(storeValueId), partition)));
+			}
+			storeValueIds.add(storeValueId);
+			rawValues.add(rawValue);
+		}
+
+		Mono<List<byte[]>> resolvedRawValues = separatedIndexes.isEmpty()
+			? Mono.just(rawValues)
+			: this.redisValueOperations.execute(connection -> connection.stringCommands().mGet(rawKeys))
+				.next()
+				.map(separatedRawValues -> {
+					if (separatedRawValues.size() != separatedIndexes.size()) {
+						throw new IllegalStateException("MGET result does not match with requested keys. ids: "
+							+ storeValueIds);
+					}
+					for (int i = 0; i < separatedIndexes.size(); i++) {
+						rawValues.set(separatedIndexes.get(i), toBytes(separatedRawValues.get(i)));
+					}
+					return rawValues;
+				});
+
+		return resolvedRawValues.flatMap(it -> this.resolveReleaseValues(indexKey, partition, storeValueIds, it));
+	}
+
+	/**
+	 * Deserialize claimed values, and clean up ids of not existing or broken values.
+	 */
+	private Mono<List<TimerMessageStoreValue>> resolveReleaseValues(
+		String indexKey,
+		@Nullable Integer partition,
+		List<String> storeValueIds,
+		List<byte[]> rawValues
+	) {
+		// deserialize each value respectively to isolate broken values.
+		List<TimerMessageStoreValue> result = new ArrayList<>(storeValueIds.size());
+		List<String> orphanStoreValueIds = new ArrayList<>();
+		List<UUID> brokenStoreValueIds = new ArrayList<>();
+		for (int i = 0; i < storeValueIds.size(); i++) {
+			String storeValueId = storeValueIds.get(i);
+			byte[] rawValue = rawValues.get(i);
+			if (rawValue == null || rawValue.length == 0) {
+				orphanStoreValueIds.add(storeValueId);
+				continue;
+			}
+
+			try {
+				RedisCloudEventTimerMessageStoreValue redisStoreValue = this.redisValueOperations
+					.getSerializationContext()
+					.getValueSerializationPair()
+					.read(ByteBuffer.wrap(rawValue));
+				if (redisStoreValue == null) {
+					orphanStoreValueIds.add(storeValueId);
+				} else {
+					result.add(this.supports.toTimerMessageStoreValue(redisStoreValue));
+				}
+			} catch (Throwable throwable) {
+				LOG.error("timer handler persisted value can not be deserialize to cloudEvent. "
+					+ "This message would be ignored and deleted from store. "
+					+ "indexKey: {}, storeValueId: {}", indexKey, storeValueId, throwable);
+
+				orphanStoreValueIds.add(storeValueId);
+				brokenStoreValueIds.add(UUID.fromString(storeValueId));
+			}
+		}
+
+		Mono<Long> removeOrphans = orphanStoreValueIds.isEmpty()
+			? Mono.empty()
+			: this.redisIndexOperations.opsForZSet().remove(indexKey, orphanStoreValueIds.toArray());
+		Mono<Void> deleteBrokenValues = brokenStoreValueIds.isEmpty()
+			? Mono.empty()
+			: this.deleteValues(brokenStoreValueIds, partition);
+		return Mono.when(removeOrphans, deleteBrokenValues).thenReturn(result);
+	}
+
+	/**
+	 * Delete values of their own keys and inlined values.
+	 */
+	private Mono<Void> deleteValues(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		String[] valueKeys = new String[storeValueIds.size()];
+		Object[] fields = new Object[storeValueIds.size()];
+		int i = 0;
+		for (UUID storeValueId : storeValueIds) {
+			valueKeys[i] = this.supports.generateKey(storeValueId, partition);
+			fields[i] = storeValueId.toString();
+			i++;
+		}
+
+		return Mono.when(
+			this.redisValueOperations.delete(valueKeys),
+			this.redisIndexOperations.opsForHash().remove(this.supports.generateInlineValueKey(partition), fields)
+		);
+	}
+
+	/**
+	 * Absent values of MGET are null or empty buffers by drivers.
+	 */
+	@Nullable
+	private static byte[] toBytes(@Nullable ByteBuffer buffer) {
+		if (buffer == null) {
+			return null;
+		}
+
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		return bytes;
+	}
+}
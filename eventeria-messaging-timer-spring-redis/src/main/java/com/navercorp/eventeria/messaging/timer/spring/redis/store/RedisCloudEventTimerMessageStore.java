@@ -18,41 +18,76 @@
 
 package com.navercorp.eventeria.messaging.timer.spring.redis.store;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import javax.annotation.Nullable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
-import io.cloudevents.CloudEvent;
-
-import com.navercorp.eventeria.messaging.contract.Message;
 import com.navercorp.eventeria.messaging.contract.cloudevents.serializer.CloudEventMessageReaderWriter;
+import com.navercorp.eventeria.messaging.contract.cloudevents.serializer.SerializedCloudEvent;
+import com.navercorp.eventeria.timer.contract.store.LeasedTimerMessageStore;
 import com.navercorp.eventeria.timer.contract.store.TimerMessageStore;
 import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
 
 /**
  * An implementation of {@link TimerMessageStore} for integration with redis using spring-data-redis
+ * <p/>
+ * {@link #claimReleaseValues} moves due ids from the index to an in-flight index with a lease deadline
+ * and returns their inlined values atomically by a lua script, so the redis server should support EVAL.
+ * Values of their own keys are read by a MGET after the script, with keys serialized by redisValueOperations.
+ * Keys of a partition share the hash tag of the partition, and keys without partition share {@code {none}},
+ * so the index and values of a partition are in the same slot on redis cluster.
+ * <p/>
+ * With inlineValueThreshold, serialized values not larger than the threshold are stored as fields of a hash
+ * per partition instead of their own keys, and {@link #findReleaseValues} reads due ids with their inlined values
+ * by a lua script, and only values not inlined are read by a MGET.
+ * Inlined values have no expiration, they are kept until removed,
+ * and values left without index by failures are removed by {@link RedisTimerMessageOrphanSweeper}.
+ * The hash is keyed by the key serializer of redisIndexOperations, and its fields are serialized ids,
+ * to be read by scripts with the index.
+ * <p/>
+ * With releaseSerialized, released messages are {@link SerializedCloudEvent} of the stored bytes,
+ * which are deserialized only when their attributes or data are accessed.
  */
-public class RedisCloudEventTimerMessageStore implements TimerMessageStore {
+public class RedisCloudEventTimerMessageStore implements LeasedTimerMessageStore {
 	private static final Logger LOG = LoggerFactory.getLogger(RedisCloudEventTimerMessageStore.class);
 
-	private static final long EXPIRATION_BUFFER_HOURS_VALUE = 24L;
+	private static final Duration DEFAULT_LEASE_DURATION = Duration.ofMinutes(5);
 
-	private final String redisKeyPrefix;
+	private final RedisTimerMessageStoreSupports supports;
 	private final RedisOperations<String, String> redisIndexOperations;
 	private final RedisOperations<String, RedisCloudEventTimerMessageStoreValue> redisValueOperations;
-	private final CloudEventMessageReaderWriter cloudEventMessageReaderWriter;
+	private final Duration leaseDuration;
+	private final int inlineValueThreshold;
 
 	/**
 	 * @param redisKeyPrefix prefix to classify timer message.
@@ -66,10 +101,116 @@ public class RedisCloudEventTimerMessageStore implements TimerMessageStore {
 		RedisOperations<String, RedisCloudEventTimerMessageStoreValue> redisValueOperations,
 		CloudEventMessageReaderWriter cloudEventMessageReaderWriter
 	) {
-		this.redisKeyPrefix = redisKeyPrefix;
+		this(
+			redisKeyPrefix,
+			redisIndexOperations,
+			redisValueOperations,
+			cloudEventMessageReaderWriter,
+			DEFAULT_LEASE_DURATION,
+			ChronoUnit.SECONDS
+		);
+	}
+
+	/**
+	 * @param redisKeyPrefix prefix to classify timer message.
+	 * @param redisIndexOperations redis operations to index actual values.
+	 * @param redisValueOperations redis operations to handle timer messages.
+	 * @param cloudEventMessageReaderWriter (de)serializer for persisting timer messages.
+	 * @param leaseDuration duration of claimed messages to be hidden from other claims.
+	 *                      messages not acknowledged in this duration are released again.
+	 * @param scoreUnit precision of index score, {@link ChronoUnit#SECONDS} or {@link ChronoUnit#MILLIS}.
+	 *                  Scores of existing index are not converted,
+	 *                  so change it only with an empty store or a new redisKeyPrefix.
+	 */
+	public RedisCloudEventTimerMessageStore(
+		String redisKeyPrefix,
+		RedisOperations<String, String> redisIndexOperations,
+		RedisOperations<String, RedisCloudEventTimerMessageStoreValue> redisValueOperations,
+		CloudEventMessageReaderWriter cloudEventMessageReaderWriter,
+		Duration leaseDuration,
+		ChronoUnit scoreUnit
+	) {
+		this(
+			redisKeyPrefix,
+			redisIndexOperations,
+			redisValueOperations,
+			cloudEventMessageReaderWriter,
+			leaseDuration,
+			scoreUnit,
+			0
+		);
+	}
+
+	/**
+	 * @param redisKeyPrefix prefix to classify timer message.
+	 * @param redisIndexOperations redis operations to index actual values.
+	 * @param redisValueOperations redis operations to handle timer messages.
+	 * @param cloudEventMessageReaderWriter (de)serializer for persisting timer messages.
+	 * @param leaseDuration duration of claimed messages to be hidden from other claims.
+	 *                      messages not acknowledged in this duration are released again.
+	 * @param scoreUnit precision of index score, {@link ChronoUnit#SECONDS} or {@link ChronoUnit#MILLIS}.
+	 *                  Scores of existing index are not converted,
+	 *                  so change it only with an empty store or a new redisKeyPrefix.
+	 * @param inlineValueThreshold max bytes of a serialized value stored in the hash of partition
+	 *                             instead of its own key. 0 disables inlining.
+	 */
+	public RedisCloudEventTimerMessageStore(
+		String redisKeyPrefix,
+		RedisOperations<String, String> redisIndexOperations,
+		RedisOperations<String, RedisCloudEventTimerMessageStoreValue> redisValueOperations,
+		CloudEventMessageReaderWriter cloudEventMessageReaderWriter,
+		Duration leaseDuration,
+		ChronoUnit scoreUnit,
+		int inlineValueThreshold
+	) {
+		this(
+			redisKeyPrefix,
+			redisIndexOperations,
+			redisValueOperations,
+			cloudEventMessageReaderWriter,
+			leaseDuration,
+			scoreUnit,
+			inlineValueThreshold,
+			false
+		);
+	}
+
+	/**
+	 * @param redisKeyPrefix prefix to classify timer message.
+	 * @param redisIndexOperations redis operations to index actual values.
+	 * @param redisValueOperations redis operations to handle timer messages.
+	 * @param cloudEventMessageReaderWriter (de)serializer for persisting timer messages.
+	 * @param leaseDuration duration of claimed messages to be hidden from other claims.
+	 *                      messages not acknowledged in this duration are released again.
+	 * @param scoreUnit precision of index score, {@link ChronoUnit#SECONDS} or {@link ChronoUnit#MILLIS}.
+	 *                  Scores of existing index are not converted,
+	 *                  so change it only with an empty store or a new redisKeyPrefix.
+	 * @param inlineValueThreshold max bytes of a serialized value stored in the hash of partition
+	 *                             instead of its own key. 0 disables inlining.
+	 * @param releaseSerialized whether to release messages as {@link SerializedCloudEvent} of the stored bytes,
+	 *                          instead of deserialized {@link io.cloudevents.CloudEvent} or Message.
+	 */
+	public RedisCloudEventTimerMessageStore(
+		String redisKeyPrefix,
+		RedisOperations<String, String> redisIndexOperations,
+		RedisOperations<String, RedisCloudEventTimerMessageStoreValue> redisValueOperations,
+		CloudEventMessageReaderWriter cloudEventMessageReaderWriter,
+		Duration leaseDuration,
+		ChronoUnit scoreUnit,
+		int inlineValueThreshold,
+		boolean releaseSerialized
+	) {
+		if (inlineValueThreshold < 0) {
+			throw new IllegalArgumentException("inlineValueThreshold must not be negative. inlineValueThreshold: "
+				+ inlineValueThreshold);
+		}
+
+		this.supports = new RedisTimerMessageStoreSupports(
+			redisKeyPrefix, cloudEventMessageReaderWriter, scoreUnit, releaseSerialized);
 		this.redisIndexOperations = redisIndexOperations;
 		this.redisValueOperations = redisValueOperations;
-		this.cloudEventMessageReaderWriter = cloudEventMessageReaderWriter;
+		this.leaseDuration = leaseDuration;
+		this.inlineValueThreshold = inlineValueThreshold;
 	}
 
 	/**
@@ -83,17 +224,54 @@ public class RedisCloudEventTimerMessageStore implements TimerMessageStore {
 		TimerMessageStoreValue storeValue,
 		@Nullable Integer partition
 	) {
-		String indexKey = this.generateIndexKey(partition);
-		this.redisIndexOperations.opsForZSet()
-			.add(indexKey, storeValue.getId().toString(), (double)storeValue.getReleaseDateTime().getEpochSecond());
+		byte[] rawValue = this.serializeValue(this.supports.toRedisStoreValue(storeValue));
+		long expirationMillis = this.supports.expirationMillis(storeValue);
+		this.redisValueOperations.execute((RedisCallback<Object>)connection -> {
+			this.writeValue(connection, storeValue.getId(), partition, rawValue, expirationMillis);
+			return null;
+		});
 
-		String valueKey = this.generateKey(storeValue.getId(), partition);
-		RedisCloudEventTimerMessageStoreValue redisStoreValue = this.toRedisStoreValue(storeValue);
-		long expirationMillis =
-			storeValue.getReleaseDateTime().plus(EXPIRATION_BUFFER_HOURS_VALUE, ChronoUnit.HOURS).toEpochMilli()
-				- Instant.now().toEpochMilli();
-		this.redisValueOperations.opsForValue()
-			.set(valueKey, redisStoreValue, expirationMillis, TimeUnit.MILLISECONDS);
+		// index is added after the value, not to be claimed and dropped as an orphan before the value is written.
+		String indexKey = this.supports.generateIndexKey(partition);
+		double score = (double)this.supports.toScore(storeValue.getReleaseDateTime());
+		this.redisIndexOperations.opsForZSet().add(indexKey, storeValue.getId().toString(), score);
+	}
+
+	/**
+	 * Save messages with adding index. Values are set in a pipeline, and then index is added by a ZADD.
+	 * Index is added after values, so claims never find ids of which values are not written yet.
+	 * Values left without index by a failed ZADD are removed by the sweeper.
+	 *
+	 * @param storeValues
+	 * @param partition
+	 */
+	@Override
+	public void saveAll(Collection<TimerMessageStoreValue> storeValues, @Nullable Integer partition) {
+		if (storeValues.isEmpty()) {
+			return;
+		}
+
+		// serialize all values before writing, not to leave index of unsupported messages.
+		Set<TypedTuple<String>> indexTuples = new HashSet<>();
+		Map<UUID, byte[]> rawValues = new LinkedHashMap<>();
+		Map<UUID, Long> expirations = new HashMap<>();
+		for (TimerMessageStoreValue storeValue : storeValues) {
+			indexTuples.add(TypedTuple.of(
+				storeValue.getId().toString(),
+				(double)this.supports.toScore(storeValue.getReleaseDateTime())
+			));
+
+			rawValues.put(storeValue.getId(), this.serializeValue(this.supports.toRedisStoreValue(storeValue)));
+			expirations.put(storeValue.getId(), this.supports.expirationMillis(storeValue));
+		}
+
+		this.redisValueOperations.executePipelined((RedisCallback<Object>)connection -> {
+			rawValues.forEach((storeValueId, rawValue) ->
+				this.writeValue(connection, storeValueId, partition, rawValue, expirations.get(storeValueId)));
+			return null;
+		});
+
+		this.redisIndexOperations.opsForZSet().add(this.supports.generateIndexKey(partition), indexTuples);
 	}
 
 	/**
@@ -104,16 +282,41 @@ public class RedisCloudEventTimerMessageStore implements TimerMessageStore {
 	 */
 	@Override
 	public void remove(UUID storeValueId, @Nullable Integer partition) {
-		String indexKey = this.generateIndexKey(partition);
-		this.redisIndexOperations.opsForZSet().remove(indexKey, storeValueId.toString());
+		this.removeAll(Collections.singletonList(storeValueId), partition);
+	}
 
-		try {
-			String valueKey = this.generateKey(storeValueId, partition);
-			this.redisValueOperations.delete(valueKey);
-		} catch (Exception ex) {
-			LOG.warn("Remove timer message value has error. But it would be ignore. storeValueId: {}, partition: {}",
-				storeValueId, partition, ex);
+	/**
+	 * Remove messages with deleting index, by a lua script.
+	 * Values are deleted before their index members, so values are not left without index on failures.
+	 *
+	 * @param storeValueIds
+	 * @param partition
+	 */
+	@Override
+	public void removeAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		if (storeValueIds.isEmpty()) {
+			return;
+		}
+
+		int size = storeValueIds.size();
+		byte[][] keysAndArgs = new byte[3 + size * 2][];
+		keysAndArgs[0] = this.rawIndexKey(this.supports.generateIndexKey(partition));
+		keysAndArgs[1] = this.rawIndexKey(this.supports.generateInFlightKey(partition));
+		keysAndArgs[2] = this.rawIndexKey(this.supports.generateInlineValueKey(partition));
+		int i = 3;
+		for (UUID storeValueId : storeValueIds) {
+			keysAndArgs[i] = this.rawKey(this.supports.generateKey(storeValueId, partition));
+			keysAndArgs[i + size] = this.rawMember(storeValueId.toString());
+			i++;
 		}
+
+		RedisTimerMessageStoreSupports.evalEach(
+			this.redisIndexOperations,
+			RedisTimerMessageStoreSupports.REMOVE_SCRIPT,
+			ReturnType.INTEGER,
+			3 + size,
+			Collections.singletonList(keysAndArgs)
+		);
 	}
 
 	/**
@@ -125,9 +328,9 @@ public class RedisCloudEventTimerMessageStore implements TimerMessageStore {
 	 */
 	@Override
 	public long count(Instant conditionDateTime, @Nullable Integer partition) {
-		String indexKey = this.generateIndexKey(partition);
+		String indexKey = this.supports.generateIndexKey(partition);
 
-		double conditionScore = (double)conditionDateTime.getEpochSecond();
+		double conditionScore = (double)this.supports.toScore(conditionDateTime);
 
 		Long result = this.redisIndexOperations.opsForZSet().count(indexKey, 0, conditionScore);
 
@@ -148,91 +351,945 @@ public class RedisCloudEventTimerMessageStore implements TimerMessageStore {
 		int count,
 		@Nullable Integer partition
 	) {
-		String indexKey = this.generateIndexKey(partition);
-		double conditionScore = (double)conditionDateTime.getEpochSecond();
-		Set<TypedTuple<String>> indexedStoreValueIds = this.redisIndexOperations.opsForZSet()
-			.rangeByScoreWithScores(indexKey, 0, conditionScore, 0, count);
+		String indexKey = this.supports.generateIndexKey(partition);
+		List<String> storeValueIds = new ArrayList<>();
+		List<byte[]> rawValues = new ArrayList<>();
+		if (this.inlineValueThreshold > 0) {
+			this.findIndexedRawValues(conditionDateTime, count, partition, storeValueIds, rawValues);
+		} else {
+			this.multiGetIndexedRawValues(conditionDateTime, count, partition, storeValueIds, rawValues);
+		}
 
-		if (indexedStoreValueIds == null || indexedStoreValueIds.isEmpty()) {
+		return this.resolveReleaseValues(indexKey, partition, storeValueIds, rawValues);
+	}
+
+	/**
+	 * Find the earliest score of index and in-flight index, without reading values.
+	 *
+	 * @param partition
+	 * @return the earliest scheduled time or lease deadline.
+	 */
+	@Override
+	public Optional<Instant> findNextReleaseDateTime(@Nullable Integer partition) {
+		return this.findNextReleaseDateTimeOfPartitions(Collections.singletonList(partition));
+	}
+
+	/**
+	 * Find the earliest scheduled time of index and in-flight index of partitions,
+	 * by a script per partition in a single pipeline.
+	 *
+	 * @param partitions a group of {@link #groupPartitions}.
+	 * @return the earliest releaseDateTime of the partitions. empty if no message is stored.
+	 */
+	@Override
+	public Optional<Instant> findNextReleaseDateTimeOfPartitions(Collection<Integer> partitions) {
+		List<byte[][]> keysAndArgsList = new ArrayList<>(partitions.size());
+		for (Integer partition : partitions) {
+			keysAndArgsList.add(new byte[][] {
+				this.rawIndexKey(this.supports.generateIndexKey(partition)),
+				this.rawIndexKey(this.supports.generateInFlightKey(partition))
+			});
+		}
+
+		Instant result = null;
+		for (Object score : RedisTimerMessageStoreSupports.evalEach(
+			this.redisIndexOperations,
+			RedisTimerMessageStoreSupports.NEXT_RELEASE_SCRIPT,
+			ReturnType.VALUE,
+			2,
+			keysAndArgsList
+		)) {
+			if (score == null) {
+				continue;
+			}
+
+			String rawScore = score instanceof byte[] bytes
+				? new String(bytes, StandardCharsets.UTF_8)
+				: score.toString();
+			Instant dateTime = this.supports.fromScore((long)Double.parseDouble(rawScore));
+			if (result == null || dateTime.isBefore(result)) {
+				result = dateTime;
+			}
+		}
+		return Optional.ofNullable(result);
+	}
+
+	/**
+	 * Claim messages by a scheduled time and partition with a lease, in a single lua script execution.
+	 *
+	 * @param conditionDateTime
+	 * @param count
+	 * @param partition
+	 * @return claimed messages.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public List<TimerMessageStoreValue> claimReleaseValues(
+		Instant conditionDateTime,
+		int count,
+		@Nullable Integer partition
+	) {
+		String indexKey = this.supports.generateIndexKey(partition);
+		String inFlightKey = this.supports.generateInFlightKey(partition);
+		Instant now = Instant.now();
+
+		List<Object> claimed = (List<Object>)this.redisIndexOperations.execute(
+			RedisTimerMessageStoreSupports.CLAIM_SCRIPT,
+			RedisSerializer.string(),
+			(RedisSerializer<List>)(RedisSerializer<?>)RedisSerializer.byteArray(),
+			List.of(indexKey, inFlightKey, this.supports.generateInlineValueKey(partition)),
+			String.valueOf(this.supports.toScore(now)),
+			String.valueOf(this.supports.toScore(conditionDateTime)),
+			String.valueOf(count),
+			String.valueOf(this.supports.toScore(now.plus(this.leaseDuration)))
+		);
+
+		return this.resolveReleaseValues(inFlightKey, partition, claimed);
+	}
+
+	/**
+	 * Group partitions by the redis cluster node serving their keys.
+	 * All partitions are a group if redis is not a cluster.
+	 *
+	 * @param partitions
+	 * @return groups of partitions served by the same node.
+	 */
+	@Override
+	public List<List<Integer>> groupPartitions(List<Integer> partitions) {
+		Map<String, List<Integer>> partitionsByNode = this.redisIndexOperations.execute(
+			(RedisCallback<Map<String, List<Integer>>>)connection -> {
+				if (!RedisTimerMessageStoreSupports.isClusterConnection(connection)) {
+					return null;
+				}
+
+				RedisClusterConnection clusterConnection =
+					(RedisClusterConnection)RedisTimerMessageStoreSupports.unwrap(connection);
+
+				Map<String, List<Integer>> result = new LinkedHashMap<>();
+				for (Integer partition : partitions) {
+					byte[] rawIndexKey = this.rawIndexKey(this.supports.generateIndexKey(partition));
+					RedisClusterNode node = clusterConnection.clusterGetNodeForKey(rawIndexKey);
+					result.computeIfAbsent(node.asString(), it -> new ArrayList<>()).add(partition);
+				}
+				return result;
+			}
+		);
+
+		if (partitionsByNode == null) {
+			return partitions.isEmpty() ? new ArrayList<>() : List.of(new ArrayList<>(partitions));
+		}
+		return new ArrayList<>(partitionsByNode.values());
+	}
+
+	/**
+	 * Find messages of partitions by lua scripts in a pipeline.
+	 *
+	 * @param conditionDateTime
+	 * @param count max count of messages per partition.
+	 * @param partitions a group of {@link #groupPartitions}.
+	 * @return messages per partition.
+	 */
+	@Override
+	public Map<Integer, List<TimerMessageStoreValue>> findReleaseValuesOfPartitions(
+		Instant conditionDateTime,
+		int count,
+		Collection<Integer> partitions
+	) {
+		String conditionScore = String.valueOf(this.supports.toScore(conditionDateTime));
+		List<Integer> orderedPartitions = new ArrayList<>(partitions);
+		List<Object> found = this.evalPipelined(RedisTimerMessageStoreSupports.FIND_SCRIPT, 2, orderedPartitions,
+			partition -> List.of(
+				this.supports.generateIndexKey(partition),
+				this.supports.generateInlineValueKey(partition),
+				conditionScore,
+				String.valueOf(count)
+			));
+
+		return this.resolveReleaseValuesOfPartitions(orderedPartitions, found, this.supports::generateIndexKey);
+	}
+
+	/**
+	 * Claim messages of partitions with a lease by lua scripts in a pipeline.
+	 *
+	 * @param conditionDateTime
+	 * @param count max count of messages to claim per partition.
+	 * @param partitions a group of {@link #groupPartitions}.
+	 * @return claimed messages per partition.
+	 */
+	@Override
+	public Map<Integer, List<TimerMessageStoreValue>> claimReleaseValuesOfPartitions(
+		Instant conditionDateTime,
+		int count,
+		Collection<Integer> partitions
+	) {
+		Instant now = Instant.now();
+		String nowScore = String.valueOf(this.supports.toScore(now));
+		String conditionScore = String.valueOf(this.supports.toScore(conditionDateTime));
+		String leaseDeadlineScore = String.valueOf(this.supports.toScore(now.plus(this.leaseDuration)));
+		List<Integer> orderedPartitions = new ArrayList<>(partitions);
+		List<Object> claimed = this.evalPipelined(RedisTimerMessageStoreSupports.CLAIM_SCRIPT, 3, orderedPartitions,
+			partition -> List.of(
+				this.supports.generateIndexKey(partition),
+				this.supports.generateInFlightKey(partition),
+				this.supports.generateInlineValueKey(partition),
+				nowScore,
+				conditionScore,
+				String.valueOf(count),
+				leaseDeadlineScore
+			));
+
+		return this.resolveReleaseValuesOfPartitions(orderedPartitions, claimed, this.supports::generateInFlightKey);
+	}
+
+	/**
+	 * Remove a claimed message.
+	 *
+	 * @param storeValueId
+	 * @param partition
+	 */
+	@Override
+	public void acknowledge(UUID storeValueId, @Nullable Integer partition) {
+		this.remove(storeValueId, partition);
+	}
+
+	/**
+	 * Remove claimed messages.
+	 *
+	 * @param storeValueIds
+	 * @param partition
+	 */
+	@Override
+	public void acknowledgeAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		this.removeAll(storeValueIds, partition);
+	}
+
+	/**
+	 * Move a claimed message back to index, to be released on next scheduling.
+	 *
+	 * @param storeValueId
+	 * @param partition
+	 */
+	@Override
+	public void requeue(UUID storeValueId, @Nullable Integer partition) {
+		this.requeueAll(Collections.singletonList(storeValueId), partition);
+	}
+
+	/**
+	 * Move claimed messages of a partition back to index at once, by a lua script.
+	 *
+	 * @param storeValueIds
+	 * @param partition
+	 */
+	@Override
+	public void requeueAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		if (storeValueIds.isEmpty()) {
+			return;
+		}
+
+		byte[][] keysAndArgs = new byte[3 + storeValueIds.size()][];
+		keysAndArgs[0] = this.rawIndexKey(this.supports.generateIndexKey(partition));
+		keysAndArgs[1] = this.rawIndexKey(this.supports.generateInFlightKey(partition));
+		keysAndArgs[2] = String.valueOf(this.supports.toScore(Instant.now())).getBytes(StandardCharsets.UTF_8);
+		int i = 3;
+		for (UUID storeValueId : storeValueIds) {
+			keysAndArgs[i++] = this.rawMember(storeValueId.toString());
+		}
+
+		RedisTimerMessageStoreSupports.evalEach(
+			this.redisIndexOperations,
+			RedisTimerMessageStoreSupports.REQUEUE_ALL_SCRIPT,
+			ReturnType.INTEGER,
+			2,
+			Collections.singletonList(keysAndArgs)
+		);
+	}
+
+	/**
+	 * Scan the index and in-flight index of a partition, and find ids of which value does not exist.
+	 * Existence of values is checked in a pipeline per scanned batch.
+	 *
+	 * @param partition
+	 * @param countPerScan count hint of ZSCAN and size of a batch.
+	 * @return ids without value. it can contain ids of which value is being saved.
+	 */
+	Set<String> findOrphanStoreValueIds(@Nullable Integer partition, int countPerScan) {
+		Set<String> result = new LinkedHashSet<>();
+		ScanOptions scanOptions = ScanOptions.scanOptions().count(countPerScan).build();
+		List<String> keys = List.of(
+			this.supports.generateIndexKey(partition),
+			this.supports.generateInFlightKey(partition)
+		);
+		for (String key : keys) {
+			try (Cursor<TypedTuple<String>> cursor = this.redisIndexOperations.opsForZSet().scan(key, scanOptions)) {
+				List<String> batch = new ArrayList<>(countPerScan);
+				while (cursor.hasNext()) {
+					batch.add(cursor.next().getValue());
+					if (batch.size() >= countPerScan) {
+						result.addAll(this.filterNotExistingValues(batch, partition));
+						batch.clear();
+					}
+				}
+				result.addAll(this.filterNotExistingValues(batch, partition));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Remove ids from index and in-flight index of a partition, only if their values still do not exist.
+	 *
+	 * @param partition
+	 * @param storeValueIds ids found by {@link #findOrphanStoreValueIds}.
+	 * @return count of removed index members.
+	 */
+	long removeOrphanStoreValueIds(@Nullable Integer partition, Collection<String> storeValueIds) {
+		if (storeValueIds.isEmpty()) {
+			return 0L;
+		}
+
+		int size = storeValueIds.size();
+		byte[][] keysAndArgs = new byte[3 + size * 2][];
+		keysAndArgs[0] = this.rawIndexKey(this.supports.generateIndexKey(partition));
+		keysAndArgs[1] = this.rawIndexKey(this.supports.generateInFlightKey(partition));
+		keysAndArgs[2] = this.rawIndexKey(this.supports.generateInlineValueKey(partition));
+		int i = 3;
+		for (String storeValueId : storeValueIds) {
+			keysAndArgs[i] = this.rawKey(this.supports.generateKey(UUID.fromString(storeValueId), partition));
+			keysAndArgs[i + size] = this.rawMember(storeValueId);
+			i++;
+		}
+
+		return toCount(RedisTimerMessageStoreSupports.evalEach(
+			this.redisIndexOperations,
+			RedisTimerMessageStoreSupports.REMOVE_ORPHANS_SCRIPT,
+			ReturnType.INTEGER,
+			3 + size,
+			Collections.singletonList(keysAndArgs)
+		).get(0));
+	}
+
+	/**
+	 * Scan the inline value hash of a partition by HSCAN, and find ids in neither index nor in-flight index.
+	 * Such values are left by failed saves or removes, and never expire.
+	 *
+	 * @param partition
+	 * @param countPerScan count hint of HSCAN and size of a batch checked by a lua script.
+	 * @return ids of inlined values without index. it can contain ids of which index is being saved.
+	 */
+	Set<String> findUnindexedInlineValueIds(@Nullable Integer partition, int countPerScan) {
+		byte[] rawInlineValueKey = this.rawIndexKey(this.supports.generateInlineValueKey(partition));
+		ScanOptions scanOptions = ScanOptions.scanOptions().count(countPerScan).build();
+
+		Set<String> result = new LinkedHashSet<>();
+		this.redisIndexOperations.execute((RedisCallback<Object>)connection -> {
+			try (Cursor<Map.Entry<byte[], byte[]>> cursor =
+				connection.hashCommands().hScan(rawInlineValueKey, scanOptions)) {
+				List<byte[]> batch = new ArrayList<>(countPerScan);
+				while (cursor.hasNext()) {
+					batch.add(cursor.next().getKey());
+					if (batch.size() >= countPerScan) {
+						result.addAll(this.filterUnindexed(connection, batch, partition));
+						batch.clear();
+					}
+				}
+				result.addAll(this.filterUnindexed(connection, batch, partition));
+			}
+			return null;
+		});
+		return result;
+	}
+
+	/**
+	 * Remove inlined values of a partition, only if their ids are still in neither index.
+	 *
+	 * @param partition
+	 * @param storeValueIds ids found by {@link #findUnindexedInlineValueIds}.
+	 * @return count of removed values.
+	 */
+	long removeUnindexedInlineValues(@Nullable Integer partition, Collection<String> storeValueIds) {
+		if (storeValueIds.isEmpty()) {
+			return 0L;
+		}
+
+		byte[][] keysAndArgs = new byte[3 + storeValueIds.size()][];
+		keysAndArgs[0] = this.rawIndexKey(this.supports.generateIndexKey(partition));
+		keysAndArgs[1] = this.rawIndexKey(this.supports.generateInFlightKey(partition));
+		keysAndArgs[2] = this.rawIndexKey(this.supports.generateInlineValueKey(partition));
+		int i = 3;
+		for (String storeValueId : storeValueIds) {
+			keysAndArgs[i++] = this.rawMember(storeValueId);
+		}
+
+		return toCount(RedisTimerMessageStoreSupports.evalEach(
+			this.redisIndexOperations,
+			RedisTimerMessageStoreSupports.REMOVE_UNINDEXED_INLINE_VALUES_SCRIPT,
+			ReturnType.INTEGER,
+			3,
+			Collections.singletonList(keysAndArgs)
+		).get(0));
+	}
+
+	/**
+	 * Scan value keys of all partitions by a SCAN, and find ids in neither index nor in-flight index per partition.
+	 * Such values are left by failed saves or removes, and are kept until expired.
+	 * The match pattern is serialized by the key serializer of value operations,
+	 * so the serializer should keep the pattern as a prefix of keys. (as string serializers do)
+	 * Keys are bucketed by the partition of their key prefix, and keys of other partitions are skipped.
+	 * On redis cluster, each master node is scanned once.
+	 *
+	 * @param partitions partitions to find. null for values without partition.
+	 * @param countPerScan count hint of SCAN and size of a batch checked by a lua script.
+	 * @return ids of values without index per partition. it can contain ids of which index is being saved.
+	 */
+	@SuppressWarnings("unchecked")
+	Map<Integer, Set<String>> findUnindexedValueIdsOfPartitions(Collection<Integer> partitions, int countPerScan) {
+		Map<String, Integer> partitionsByKeyPrefix = new HashMap<>();
+		Map<Integer, Set<String>> result = new HashMap<>();
+		Map<Integer, List<byte[]>> batches = new HashMap<>();
+		for (Integer partition : partitions) {
+			partitionsByKeyPrefix.put(this.supports.generateKeyPrefix(partition), partition);
+			result.put(partition, new LinkedHashSet<>());
+			batches.put(partition, new ArrayList<>(countPerScan));
+		}
+
+		byte[] rawPattern = this.rawKey(this.supports.generateKeyPattern());
+		RedisSerializer<String> keySerializer = (RedisSerializer<String>)this.redisValueOperations.getKeySerializer();
+		ScanOptions scanOptions = ScanOptions.scanOptions().match(rawPattern).count(countPerScan).build();
+
+		this.redisValueOperations.execute((RedisCallback<Object>)connection -> {
+			for (Cursor<byte[]> cursor : this.scanCursors(connection, scanOptions)) {
+				try (cursor) {
+					while (cursor.hasNext()) {
+						String key = keySerializer.deserialize(cursor.next());
+						String keyPrefix = key == null ? null : this.supports.extractKeyPrefix(key);
+						if (keyPrefix == null || !partitionsByKeyPrefix.containsKey(keyPrefix)) {
+							continue;
+						}
+
+						Integer partition = partitionsByKeyPrefix.get(keyPrefix);
+						List<byte[]> batch = batches.get(partition);
+						batch.add(this.rawMember(key.substring(keyPrefix.length())));
+						if (batch.size() >= countPerScan) {
+							result.get(partition).addAll(this.filterUnindexed(connection, batch, partition));
+							batch.clear();
+						}
+					}
+				}
+			}
+			batches.forEach((partition, batch) ->
+				result.get(partition).addAll(this.filterUnindexed(connection, batch, partition)));
+			return null;
+		});
+		return result;
+	}
+
+	/**
+	 * Remove values of a partition, only if their ids are still in neither index.
+	 *
+	 * @param partition
+	 * @param storeValueIds ids found by {@link #findUnindexedValueIdsOfPartitions}.
+	 * @return count of removed values.
+	 */
+	long removeUnindexedValues(@Nullable Integer partition, Collection<String> storeValueIds) {
+		if (storeValueIds.isEmpty()) {
+			return 0L;
+		}
+
+		int size = storeValueIds.size();
+		byte[][] keysAndArgs = new byte[2 + size * 2][];
+		keysAndArgs[0] = this.rawIndexKey(this.supports.generateIndexKey(partition));
+		keysAndArgs[1] = this.rawIndexKey(this.supports.generateInFlightKey(partition));
+		int i = 2;
+		for (String storeValueId : storeValueIds) {
+			keysAndArgs[i] = this.rawKey(this.supports.generateKey(UUID.fromString(storeValueId), partition));
+			keysAndArgs[i + size] = this.rawMember(storeValueId);
+			i++;
+		}
+
+		return toCount(RedisTimerMessageStoreSupports.evalEach(
+			this.redisIndexOperations,
+			RedisTimerMessageStoreSupports.REMOVE_UNINDEXED_VALUES_SCRIPT,
+			ReturnType.INTEGER,
+			2 + size,
+			Collections.singletonList(keysAndArgs)
+		).get(0));
+	}
+
+	private List<Cursor<byte[]>> scanCursors(RedisConnection connection, ScanOptions scanOptions) {
+		if (!RedisTimerMessageStoreSupports.isClusterConnection(connection)) {
+			return Collections.singletonList(connection.keyCommands().scan(scanOptions));
+		}
+
+		RedisClusterConnection clusterConnection =
+			(RedisClusterConnection)RedisTimerMessageStoreSupports.unwrap(connection);
+		List<Cursor<byte[]>> cursors = new ArrayList<>();
+		for (RedisClusterNode node : clusterConnection.clusterGetNodes()) {
+			if (node.isMaster()) {
+				cursors.add(clusterConnection.scan(node, scanOptions));
+			}
+		}
+		return cursors;
+	}
+
+	/**
+	 * @param rawStoreValueIds ids serialized by the value serializer of index operations.
+	 * @return ids in neither index nor in-flight index.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<String> filterUnindexed(
+		RedisConnection connection,
+		List<byte[]> rawStoreValueIds,
+		@Nullable Integer partition
+	) {
+		if (rawStoreValueIds.isEmpty()) {
 			return Collections.emptyList();
 		}
 
-		List<TimerMessageStoreValue> result = new ArrayList<>();
-		for (TypedTuple<String> tuple : indexedStoreValueIds) {
-			String storeValueId = tuple.getValue();
-			String valueKey = this.generateKey(UUID.fromString(storeValueId), partition);
+		byte[][] keysAndArgs = new byte[2 + rawStoreValueIds.size()][];
+		keysAndArgs[0] = this.rawIndexKey(this.supports.generateIndexKey(partition));
+		keysAndArgs[1] = this.rawIndexKey(this.supports.generateInFlightKey(partition));
+		for (int i = 0; i < rawStoreValueIds.size(); i++) {
+			keysAndArgs[2 + i] = rawStoreValueIds.get(i);
+		}
+
+		byte[] rawScript = RedisTimerMessageStoreSupports.FILTER_UNINDEXED_SCRIPT.getScriptAsString()
+			.getBytes(StandardCharsets.UTF_8);
+		List<Object> unindexed = connection.scriptingCommands().eval(rawScript, ReturnType.MULTI, 2, keysAndArgs);
+		if (unindexed == null) {
+			return Collections.emptyList();
+		}
+
+		RedisSerializer<String> memberSerializer =
+			(RedisSerializer<String>)this.redisIndexOperations.getValueSerializer();
+		List<String> result = new ArrayList<>(unindexed.size());
+		for (Object rawStoreValueId : unindexed) {
+			result.add(memberSerializer.deserialize((byte[])rawStoreValueId));
+		}
+		return result;
+	}
+
+	private List<String> filterNotExistingValues(List<String> storeValueIds, @Nullable Integer partition) {
+		if (storeValueIds.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		// inlined values are checked only if inlining is enabled, so results are 1 or 2 per id.
+		boolean inline = this.inlineValueThreshold > 0;
+		byte[] rawInlineValueKey = this.rawIndexKey(this.supports.generateInlineValueKey(partition));
+		List<Object> exists = this.redisValueOperations.executePipelined((RedisCallback<Object>)connection -> {
+			for (String storeValueId : storeValueIds) {
+				String valueKey = this.supports.generateKey(UUID.fromString(storeValueId), partition);
+				connection.keyCommands().exists(this.rawKey(valueKey));
+				if (inline) {
+					connection.hashCommands().hExists(rawInlineValueKey, this.rawMember(storeValueId));
+				}
+			}
+			return null;
+		});
+
+		int resultsPerId = inline ? 2 : 1;
+		List<String> result = new ArrayList<>();
+		for (int i = 0; i < storeValueIds.size(); i++) {
+			boolean existing = Boolean.TRUE.equals(exists.get(i * resultsPerId))
+				|| (inline && Boolean.TRUE.equals(exists.get(i * resultsPerId + 1)));
+			if (!existing) {
+				result.add(storeValueIds.get(i));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Evaluate a script for each partition by EVALSHA in a pipeline.
+	 * See {@link RedisTimerMessageStoreSupports#executeEach} for redis cluster.
+	 * Keys are serialized by the key serializer of index operations, and arguments are written as UTF-8 strings.
+	 *
+	 * @return results of scripts in order of partitions.
+	 */
+	private List<Object> evalPipelined(
+		RedisScript<?> script,
+		int numKeys,
+		List<Integer> partitions,
+		Function<Integer, List<String>> keysAndArgsOfPartition
+	) {
+		List<byte[][]> keysAndArgsList = new ArrayList<>(partitions.size());
+		for (Integer partition : partitions) {
+			List<String> keysAndArgsOfScript = keysAndArgsOfPartition.apply(partition);
+			byte[][] keysAndArgs = new byte[keysAndArgsOfScript.size()][];
+			for (int i = 0; i < keysAndArgs.length; i++) {
+				String keyOrArg = keysAndArgsOfScript.get(i);
+				keysAndArgs[i] = i < numKeys
+					? this.rawIndexKey(keyOrArg)
+					: keyOrArg.getBytes(StandardCharsets.UTF_8);
+			}
+			keysAndArgsList.add(keysAndArgs);
+		}
+
+		return RedisTimerMessageStoreSupports.evalEach(
+			this.redisIndexOperations, script, ReturnType.MULTI, numKeys, keysAndArgsList);
+	}
+
+	/**
+	 * @param pairs flat list of id and its inlined value returned by a script.
+	 */
+	private List<TimerMessageStoreValue> resolveReleaseValues(
+		String indexKey,
+		@Nullable Integer partition,
+		@Nullable List<Object> pairs
+	) {
+		return this.resolveReleaseValuesOfPartitions(
+			Collections.singletonList(partition),
+			Collections.<Object>singletonList(pairs),
+			it -> indexKey
+		).get(partition);
+	}
+
+	/**
+	 * Read values not inlined of all partitions at once, and resolve messages per partition.
+	 *
+	 * @param pairsOfPartitions flat lists of id and its inlined value returned by scripts, in order of partitions.
+	 * @param indexKeyOfPartition index key to remove ids of not existing values.
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<Integer, List<TimerMessageStoreValue>> resolveReleaseValuesOfPartitions(
+		List<Integer> partitions,
+		List<Object> pairsOfPartitions,
+		Function<Integer, String> indexKeyOfPartition
+	) {
+		Map<Integer, List<String>> storeValueIdsOfPartitions = new LinkedHashMap<>();
+		Map<Integer, List<byte[]>> rawValuesOfPartitions = new LinkedHashMap<>();
+		for (int i = 0; i < partitions.size(); i++) {
+			List<Object> pairs = (List<Object>)pairsOfPartitions.get(i);
+			List<String> storeValueIds = new ArrayList<>();
+			List<byte[]> rawValues = new ArrayList<>();
+			if (pairs != null) {
+				this.splitIdValuePairs(pairs, storeValueIds, rawValues);
+			}
+			storeValueIdsOfPartitions.put(partitions.get(i), storeValueIds);
+			rawValuesOfPartitions.put(partitions.get(i), rawValues);
+		}
+
+		this.multiGetSeparatedRawValues(storeValueIdsOfPartitions, rawValuesOfPartitions);
+
+		Map<Integer, List<TimerMessageStoreValue>> result = new LinkedHashMap<>();
+		for (Integer partition : partitions) {
+			result.put(partition, this.resolveReleaseValues(
+				indexKeyOfPartition.apply(partition),
+				partition,
+				storeValueIdsOfPartitions.get(partition),
+				rawValuesOfPartitions.get(partition)
+			));
+		}
+		return result;
+	}
+
+	/**
+	 * Fill values not inlined by their own keys, with a MGET per partition in a pipeline.
+	 * Keys of a partition are in the same slot, so MGET works on redis cluster.
+	 */
+	private void multiGetSeparatedRawValues(
+		Map<Integer, List<String>> storeValueIdsOfPartitions,
+		Map<Integer, List<byte[]>> rawValuesOfPartitions
+	) {
+		Map<Integer, List<Integer>> separatedIndexesOfPartitions = new LinkedHashMap<>();
+		Map<Integer, byte[][]> rawKeysOfPartitions = new LinkedHashMap<>();
+		storeValueIdsOfPartitions.forEach((partition, storeValueIds) -> {
+			List<byte[]> rawValues = rawValuesOfPartitions.get(partition);
+			List<Integer> separatedIndexes = new ArrayList<>();
+			List<byte[]> rawKeys = new ArrayList<>();
+			for (int i = 0; i < storeValueIds.size(); i++) {
+				byte[] rawValue = rawValues.get(i);
+				if (rawValue == null || rawValue.length == 0) {
+					separatedIndexes.add(i);
+					UUID storeValueId = UUID.fromString(storeValueIds.get(i));
+					rawKeys.add(this.rawKey(this.supports.generateKey(storeValueId, partition)));
+				}
+			}
+			if (!separatedIndexes.isEmpty()) {
+				separatedIndexesOfPartitions.put(partition, separatedIndexes);
+				rawKeysOfPartitions.put(partition, rawKeys.toArray(new byte[0][]));
+			}
+		});
+
+		if (separatedIndexesOfPartitions.isEmpty()) {
+			return;
+		}
+
+		List<Object> results;
+		if (rawKeysOfPartitions.size() == 1) {
+			byte[][] rawKeys = rawKeysOfPartitions.values().iterator().next();
+			results = Collections.<Object>singletonList(this.redisValueOperations.execute(
+				(RedisCallback<List<byte[]>>)connection -> connection.stringCommands().mGet(rawKeys)));
+		} else {
+			List<RedisCallback<Object>> commands = new ArrayList<>(rawKeysOfPartitions.size());
+			for (byte[][] rawKeys : rawKeysOfPartitions.values()) {
+				commands.add(connection -> connection.stringCommands().mGet(rawKeys));
+			}
+			results = RedisTimerMessageStoreSupports.executeEach(this.redisValueOperations, commands);
+		}
+
+		int resultIndex = 0;
+		for (Map.Entry<Integer, List<Integer>> entry : separatedIndexesOfPartitions.entrySet()) {
+			this.fillRawValues(
+				rawValuesOfPartitions.get(entry.getKey()),
+				entry.getValue(),
+				results.get(resultIndex++)
+			);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void fillRawValues(List<byte[]> rawValues, List<Integer> indexes, @Nullable Object multiGetResult) {
+		if (multiGetResult instanceof Throwable throwable) {
+			throw RedisTimerMessageStoreSupports.toRuntimeException(throwable);
+		}
+
+		List<byte[]> separatedRawValues = (List<byte[]>)multiGetResult;
+		if (separatedRawValues == null || separatedRawValues.size() != indexes.size()) {
+			throw new IllegalStateException("MGET result does not match with requested keys. count: "
+				+ indexes.size());
+		}
+
+		for (int i = 0; i < indexes.size(); i++) {
+			rawValues.set(indexes.get(i), separatedRawValues.get(i));
+		}
+	}
+
+	/**
+	 * Deserialize raw values, and clean up ids of not existing or broken values.
+	 *
+	 * @param indexKey index key to remove ids of not existing values.
+	 */
+	private List<TimerMessageStoreValue> resolveReleaseValues(
+		String indexKey,
+		@Nullable Integer partition,
+		List<String> storeValueIds,
+		List<byte[]> rawValues
+	) {
+		if (storeValueIds.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		// deserialize each value respectively to isolate broken values.
+		List<String> orphanStoreValueIds = new ArrayList<>();
+		List<UUID> brokenStoreValueIds = new ArrayList<>();
+		List<TimerMessageStoreValue> result = this.toTimerMessageStoreValues(
+			indexKey, storeValueIds, rawValues, orphanStoreValueIds, brokenStoreValueIds);
+
+		if (!orphanStoreValueIds.isEmpty()) {
+			this.redisIndexOperations.opsForZSet().remove(indexKey, orphanStoreValueIds.toArray());
+		}
+		if (!brokenStoreValueIds.isEmpty()) {
+			this.deleteValues(brokenStoreValueIds, partition);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Deserialize raw values. Ids of not existing or broken values are collected to be cleaned up.
+	 */
+	private List<TimerMessageStoreValue> toTimerMessageStoreValues(
+		String indexKey,
+		List<String> storeValueIds,
+		List<byte[]> rawValues,
+		List<String> orphanStoreValueIds,
+		List<UUID> brokenStoreValueIds
+	) {
+		List<TimerMessageStoreValue> result = new ArrayList<>(storeValueIds.size());
+		for (int i = 0; i < storeValueIds.size(); i++) {
+			String storeValueId = storeValueIds.get(i);
+			byte[] rawValue = rawValues.get(i);
+			if (rawValue == null || rawValue.length == 0) {
+				orphanStoreValueIds.add(storeValueId);
+				continue;
+			}
+
 			try {
-				RedisCloudEventTimerMessageStoreValue redisStoreValue =
-					this.redisValueOperations.opsForValue().get(valueKey);
+				RedisCloudEventTimerMessageStoreValue redisStoreValue = this.deserializeValue(rawValue);
 				if (redisStoreValue == null) {
-					this.redisIndexOperations.opsForZSet().remove(indexKey, storeValueId);
+					orphanStoreValueIds.add(storeValueId);
 				} else {
-					result.add(this.toTimerMessageStoreValue(redisStoreValue));
+					result.add(this.supports.toTimerMessageStoreValue(redisStoreValue));
 				}
 			} catch (Throwable throwable) {
 				LOG.error("timer handler persisted value can not be deserialize to cloudEvent. "
 					+ "This message would be ignored and deleted from store. "
-					+ "indexKey: {}, storeValueId: {}, score: {}", indexKey, storeValueId, tuple.getScore(), throwable);
+					+ "indexKey: {}, storeValueId: {}", indexKey, storeValueId, throwable);
 
-				this.redisIndexOperations.opsForZSet().remove(indexKey, storeValueId);
-				this.redisValueOperations.delete(valueKey);
+				orphanStoreValueIds.add(storeValueId);
+				brokenStoreValueIds.add(UUID.fromString(storeValueId));
 			}
 		}
-
 		return result;
 	}
 
-	private String generateIndexKey(@Nullable Integer partition) {
-		if (partition == null) {
-			return this.redisKeyPrefix + ":timer:index";
+	/**
+	 * Find due ids by ZRANGEBYSCORE and get their values with a single MGET command.
+	 */
+	private void multiGetIndexedRawValues(
+		Instant conditionDateTime,
+		int count,
+		@Nullable Integer partition,
+		List<String> storeValueIds,
+		List<byte[]> rawValues
+	) {
+		Set<TypedTuple<String>> indexedStoreValueIds = this.redisIndexOperations.opsForZSet()
+			.rangeByScoreWithScores(
+				this.supports.generateIndexKey(partition),
+				0,
+				(double)this.supports.toScore(conditionDateTime),
+				0,
+				count
+			);
+
+		if (indexedStoreValueIds == null || indexedStoreValueIds.isEmpty()) {
+			return;
+		}
+
+		for (TypedTuple<String> tuple : indexedStoreValueIds) {
+			storeValueIds.add(tuple.getValue());
+		}
+		byte[][] rawKeys = storeValueIds.stream()
+			.map(it -> this.rawKey(this.supports.generateKey(UUID.fromString(it), partition)))
+			.toArray(byte[][]::new);
+
+		List<byte[]> result = this.redisValueOperations.execute(
+			(RedisCallback<List<byte[]>>)connection -> connection.stringCommands().mGet(rawKeys)
+		);
+
+		if (result == null || result.size() != storeValueIds.size()) {
+			throw new IllegalStateException("MGET result does not match with requested keys. ids: " + storeValueIds);
+		}
+		rawValues.addAll(result);
+	}
+
+	/**
+	 * Find due ids with their inlined values by a lua script, and values not inlined by a MGET.
+	 */
+	@SuppressWarnings("unchecked")
+	private void findIndexedRawValues(
+		Instant conditionDateTime,
+		int count,
+		@Nullable Integer partition,
+		List<String> storeValueIds,
+		List<byte[]> rawValues
+	) {
+		List<Object> found = (List<Object>)this.redisIndexOperations.execute(
+			RedisTimerMessageStoreSupports.FIND_SCRIPT,
+			RedisSerializer.string(),
+			(RedisSerializer<List>)(RedisSerializer<?>)RedisSerializer.byteArray(),
+			List.of(this.supports.generateIndexKey(partition), this.supports.generateInlineValueKey(partition)),
+			String.valueOf(this.supports.toScore(conditionDateTime)),
+			String.valueOf(count)
+		);
+
+		if (found != null) {
+			this.splitIdValuePairs(found, storeValueIds, rawValues);
+			Map<Integer, List<String>> storeValueIdsOfPartitions = new LinkedHashMap<>();
+			storeValueIdsOfPartitions.put(partition, storeValueIds);
+			Map<Integer, List<byte[]>> rawValuesOfPartitions = new LinkedHashMap<>();
+			rawValuesOfPartitions.put(partition, rawValues);
+			this.multiGetSeparatedRawValues(storeValueIdsOfPartitions, rawValuesOfPartitions);
 		}
+	}
 
-		return String.format("%s:timer:{%d}:index", this.redisKeyPrefix, partition);
+	/**
+	 * Split flat list of id and its value returned by lua scripts.
+	 * Ids are index members, so they are deserialized by the value serializer of index operations.
+	 */
+	@SuppressWarnings("unchecked")
+	private void splitIdValuePairs(List<Object> pairs, List<String> storeValueIds, List<byte[]> rawValues) {
+		RedisSerializer<String> memberSerializer =
+			(RedisSerializer<String>)this.redisIndexOperations.getValueSerializer();
+		for (int i = 0; i + 1 < pairs.size(); i += 2) {
+			storeValueIds.add(memberSerializer.deserialize((byte[])pairs.get(i)));
+			rawValues.add((byte[])pairs.get(i + 1));
+		}
 	}
 
-	private String generateKey(UUID storeValueId, @Nullable Integer partition) {
-		if (partition == null) {
-			return String.format("%s:timer:value:%s", this.redisKeyPrefix, storeValueId.toString());
+	/**
+	 * Write a serialized value into the inline value hash if it is small enough, otherwise into its own key.
+	 */
+	private void writeValue(
+		RedisConnection connection,
+		UUID storeValueId,
+		@Nullable Integer partition,
+		byte[] rawValue,
+		long expirationMillis
+	) {
+		byte[] rawField = this.rawMember(storeValueId.toString());
+		byte[] rawInlineValueKey = this.rawIndexKey(this.supports.generateInlineValueKey(partition));
+		if (this.inlineValueThreshold > 0 && rawValue.length <= this.inlineValueThreshold) {
+			connection.hashCommands().hSet(rawInlineValueKey, rawField, rawValue);
+			return;
 		}
 
-		return String.format("%s:timer:{%d}:value:%s", this.redisKeyPrefix, partition, storeValueId.toString());
+		connection.stringCommands()
+			.pSetEx(this.rawKey(this.supports.generateKey(storeValueId, partition)), expirationMillis, rawValue);
+		if (this.inlineValueThreshold > 0) {
+			// inlined value of the same id is read first.
+			connection.hashCommands().hDel(rawInlineValueKey, rawField);
+		}
 	}
 
-	private RedisCloudEventTimerMessageStoreValue toRedisStoreValue(TimerMessageStoreValue storeValue) {
-		Object message = storeValue.getMessage();
+	private void deleteValues(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		List<String> valueKeys = new ArrayList<>(storeValueIds.size());
+		for (UUID storeValueId : storeValueIds) {
+			valueKeys.add(this.supports.generateKey(storeValueId, partition));
+		}
 
-		CloudEvent cloudEvent;
-		boolean cloudEventType = false;
-		if (message instanceof CloudEvent ce) {
-			cloudEvent = ce;
-			cloudEventType = true;
-		} else if (message instanceof Message msg) {
-			cloudEvent = this.cloudEventMessageReaderWriter.convert(msg);
-		} else {
-			throw new UnsupportedOperationException("unsupported");
+		if (this.inlineValueThreshold == 0) {
+			this.redisValueOperations.delete(valueKeys);
+			return;
 		}
 
-		byte[] serialized = this.cloudEventMessageReaderWriter.serialize(cloudEvent);
-		return new RedisCloudEventTimerMessageStoreValue(
-			storeValue.getId(),
-			serialized,
-			storeValue.getReleaseDateTime(),
-			cloudEventType
-		);
+		byte[][] rawValueKeys = valueKeys.stream().map(this::rawKey).toArray(byte[][]::new);
+		byte[][] rawFields = storeValueIds.stream()
+			.map(it -> this.rawMember(it.toString()))
+			.toArray(byte[][]::new);
+		byte[] rawInlineValueKey = this.rawIndexKey(this.supports.generateInlineValueKey(partition));
+		this.redisValueOperations.executePipelined((RedisCallback<Object>)connection -> {
+			connection.keyCommands().del(rawValueKeys);
+			connection.hashCommands().hDel(rawInlineValueKey, rawFields);
+			return null;
+		});
 	}
 
-	private TimerMessageStoreValue toTimerMessageStoreValue(RedisCloudEventTimerMessageStoreValue storeValue) {
-		Object message;
-		byte[] serialized = storeValue.getMessage();
-		if (storeValue.isCloudEventType()) {
-			message = this.cloudEventMessageReaderWriter.deserialize(serialized);
-		} else {
-			message = this.cloudEventMessageReaderWriter.read(serialized);
-		}
-		return new TimerMessageStoreValue(
-			storeValue.getId(),
-			message,
-			storeValue.getReleaseDateTime()
-		);
+	@SuppressWarnings("unchecked")
+	private byte[] rawIndexKey(String key) {
+		return ((RedisSerializer<String>)this.redisIndexOperations.getKeySerializer()).serialize(key);
+	}
+
+	/**
+	 * Fields of the inline value hash are the same bytes with index members, to be read by scripts with ids.
+	 */
+	@SuppressWarnings("unchecked")
+	private byte[] rawMember(String storeValueId) {
+		return ((RedisSerializer<String>)this.redisIndexOperations.getValueSerializer()).serialize(storeValueId);
+	}
+
+	@SuppressWarnings("unchecked")
+	private byte[] rawKey(String key) {
+		return ((RedisSerializer<String>)this.redisValueOperations.getKeySerializer()).serialize(key);
+	}
+
+	@SuppressWarnings("unchecked")
+	private byte[] serializeValue(RedisCloudEventTimerMessageStoreValue redisStoreValue) {
+		RedisSerializer<RedisCloudEventTimerMessageStoreValue> valueSerializer =
+			(RedisSerializer<RedisCloudEventTimerMessageStoreValue>)this.redisValueOperations.getValueSerializer();
+		return valueSerializer.serialize(redisStoreValue);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Nullable
+	private RedisCloudEventTimerMessageStoreValue deserializeValue(byte[] rawValue) {
+		RedisSerializer<RedisCloudEventTimerMessageStoreValue> valueSerializer =
+			(RedisSerializer<RedisCloudEventTimerMessageStoreValue>)this.redisValueOperations.getValueSerializer();
+		return valueSerializer.deserialize(rawValue);
+	}
+
+	private static long toCount(@Nullable Object result) {
+		return result instanceof Long count ? count : 0L;
 	}
 }
@@ -0,0 +1,233 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.messaging.timer.spring.redis.store;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.annotation.Nullable;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * A {@link RedisSerializer} which writes {@link RedisCloudEventTimerMessageStoreValue} in a compact binary layout,
+ * instead of a generic json serializer repeating field names and encoding the message bytes by base64.
+ * <p/>
+ * Layout (big endian)
+ * <pre>
+ * version(1) | flags(1) | id(16) | releaseDateTime epochSecond(8) nano(4)
+ *   | [original message length(4), only if deflated] | message length(4) | message
+ * </pre>
+ * Messages larger than compressionThreshold are deflated, and kept deflated only if it gets smaller
+ * with the original message length. Otherwise they are written raw.
+ * Values written by another serializer can not be read, so change the serializer only with an empty store
+ * or a new redisKeyPrefix.
+ *
+ * <pre>
+ * redisTemplate.setValueSerializer(new RedisCloudEventTimerMessageStoreValueSerializer(1024));
+ * </pre>
+ */
+public class RedisCloudEventTimerMessageStoreValueSerializer
+	implements RedisSerializer<RedisCloudEventTimerMessageStoreValue> {
+
+	static final byte VERSION = 1;
+
+	private static final int FLAG_CLOUD_EVENT_TYPE = 0x01;
+	private static final int FLAG_DEFLATED = 0x02;
+	private static final int HEADER_SIZE = 1 + 1 + 16 + 8 + 4;
+	private static final int ORIGINAL_LENGTH_SIZE = 4;
+	// deflate can not compress more than 1032:1.
+	private static final int MAX_DEFLATE_RATIO = 1032;
+	// max size of a redis string value, 512MB.
+	private static final int MAX_MESSAGE_LENGTH = 512 * 1024 * 1024;
+
+	private final int compressionThreshold;
+	private final int compressionLevel;
+
+	/**
+	 * Never compress messages.
+	 */
+	public RedisCloudEventTimerMessageStoreValueSerializer() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param compressionThreshold messages larger than this bytes are deflated.
+	 */
+	public RedisCloudEventTimerMessageStoreValueSerializer(int compressionThreshold) {
+		this(compressionThreshold, Deflater.BEST_SPEED);
+	}
+
+	/**
+	 * @param compressionThreshold messages larger than this bytes are deflated.
+	 * @param compressionLevel level of {@link Deflater}, from 0 to 9.
+	 */
+	public RedisCloudEventTimerMessageStoreValueSerializer(int compressionThreshold, int compressionLevel) {
+		if (compressionThreshold < 0) {
+			throw new IllegalArgumentException("compressionThreshold must not be negative. compressionThreshold: "
+				+ compressionThreshold);
+		}
+		if (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+			throw new IllegalArgumentException("compressionLevel must be between 0 and 9. compressionLevel: "
+				+ compressionLevel);
+		}
+
+		this.compressionThreshold = compressionThreshold;
+		this.compressionLevel = compressionLevel;
+	}
+
+	@Override
+	public byte[] serialize(@Nullable RedisCloudEventTimerMessageStoreValue value) throws SerializationException {
+		if (value == null) {
+			return new byte[0];
+		}
+
+		byte[] message = value.getMessage();
+		int flags = value.isCloudEventType() ? FLAG_CLOUD_EVENT_TYPE : 0;
+		byte[] deflated = message.length > this.compressionThreshold ? this.deflate(message) : null;
+		if (deflated != null) {
+			flags |= FLAG_DEFLATED;
+		}
+
+		byte[] body = deflated != null ? deflated : message;
+		ByteBuffer buffer = ByteBuffer.allocate(
+			HEADER_SIZE + (deflated != null ? ORIGINAL_LENGTH_SIZE : 0) + 4 + body.length);
+		buffer.put(VERSION);
+		buffer.put((byte)flags);
+		buffer.putLong(value.getId().getMostSignificantBits());
+		buffer.putLong(value.getId().getLeastSignificantBits());
+		buffer.putLong(value.getReleaseDateTime().getEpochSecond());
+		buffer.putInt(value.getReleaseDateTime().getNano());
+		if (deflated != null) {
+			buffer.putInt(message.length);
+		}
+		buffer.putInt(body.length);
+		buffer.put(body);
+		return buffer.array();
+	}
+
+	@Nullable
+	@Override
+	public RedisCloudEventTimerMessageStoreValue deserialize(@Nullable byte[] bytes) throws SerializationException {
+		if (bytes == null || bytes.length == 0) {
+			return null;
+		}
+
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			byte version = buffer.get();
+			if (version != VERSION) {
+				throw new SerializationException("unsupported timer message store value version. version: " + version);
+			}
+
+			int flags = buffer.get();
+			UUID id = new UUID(buffer.getLong(), buffer.getLong());
+			Instant releaseDateTime = Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+			int originalLength = (flags & FLAG_DEFLATED) != 0 ? buffer.getInt() : -1;
+			int length = buffer.getInt();
+			if (length < 0 || length != buffer.remaining()) {
+				throw new SerializationException("message length does not match. length: " + length
+					+ ", remaining: " + buffer.remaining());
+			}
+
+			byte[] message = Arrays.copyOfRange(bytes, buffer.position(), bytes.length);
+			if ((flags & FLAG_DEFLATED) != 0) {
+				// the length is read from stored bytes, check it before allocating a buffer of it.
+				if (originalLength < 0 || originalLength > MAX_MESSAGE_LENGTH
+					|| originalLength > (long)length * MAX_DEFLATE_RATIO) {
+					throw new SerializationException("original message length is out of range. originalLength: "
+						+ originalLength + ", length: " + length);
+				}
+				message = this.inflate(message, originalLength);
+			}
+			return new RedisCloudEventTimerMessageStoreValue(
+				id,
+				message,
+				releaseDateTime,
+				(flags & FLAG_CLOUD_EVENT_TYPE) != 0
+			);
+		} catch (SerializationException ex) {
+			throw ex;
+		} catch (RuntimeException | DataFormatException ex) {
+			throw new SerializationException("timer message store value can not be deserialized.", ex);
+		}
+	}
+
+	@Override
+	public Class<?> getTargetType() {
+		return RedisCloudEventTimerMessageStoreValue.class;
+	}
+
+	/**
+	 * @return deflated message. null if it is not smaller than the message with the original message length.
+	 */
+	@Nullable
+	private byte[] deflate(byte[] message) {
+		Deflater deflater = new Deflater(this.compressionLevel);
+		try {
+			deflater.setInput(message);
+			deflater.finish();
+
+			ByteArrayOutputStream output = new ByteArrayOutputStream(message.length);
+			byte[] chunk = new byte[Math.min(message.length, 8192) + 64];
+			while (!deflater.finished()) {
+				int length = deflater.deflate(chunk);
+				output.write(chunk, 0, length);
+			}
+
+			if (output.size() + ORIGINAL_LENGTH_SIZE >= message.length) {
+				// incompressible message, write it raw.
+				return null;
+			}
+			return output.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private byte[] inflate(byte[] deflated, int originalLength) throws DataFormatException {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(deflated);
+			byte[] output = new byte[originalLength];
+			int length = 0;
+			while (!inflater.finished() && length < output.length) {
+				int inflated = inflater.inflate(output, length, output.length - length);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				length += inflated;
+			}
+			if (!inflater.finished() || length != originalLength) {
+				throw new DataFormatException("inflated message length does not match. expected: " + originalLength
+					+ ", actual: " + length);
+			}
+			return output;
+		} finally {
+			inflater.end();
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.eventeria.messaging.timer.spring.redis.store;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import com.navercorp.eventeria.timer.contract.store.PartitionLeaseRegistry;
+
+/**
+ * A redis implementation of {@link PartitionLeaseRegistry}.
+ * <p/>
+ * A lease is a key of the partition with expiration, of which value is the owner member id.
+ * The key shares the hash tag of the partition index of {@link RedisCloudEventTimerMessageStore}.
+ * Members are a sorted set scored by expiration time in epoch millis, judged by clock of each node.
+ */
+public class RedisPartitionLeaseRegistry implements PartitionLeaseRegistry {
+	/**
+	 * KEYS[1]: lease key
+	 * ARGV[1]: member id, ARGV[2]: ttl millis
+	 * <p/>
+	 * Returns 1 if the lease is acquired or renewed, 0 if owned by other member.
+	 */
+	private static final RedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+		"local owner = redis.call('GET', KEYS[1])\n"
+			+ "if not owner or owner == ARGV[1] then\n"
+			+ "  redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])\n"
+			+ "  return 1\n"
+			+ "end\n"
+			+ "return 0",
+		Long.class
+	);
+
+	/**
+	 * KEYS[1]: lease key
+	 * ARGV[1]: member id
+	 */
+	private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+		"if redis.call('GET', KEYS[1]) == ARGV[1] then\n"
+			+ "  return redis.call('DEL', KEYS[1])\n"
+			+ "end\n"
+			+ "return 0",
+		Long.class
+	);
+
+	private final String redisKeyPrefix;
+	private final RedisOperations<String, String> redisOperations;
+
+	/**
+	 * @param redisKeyPrefix same prefix with {@link RedisCloudEventTimerMessageStore}.
+	 * @param redisOperations
+	 */
+	public RedisPartitionLeaseRegistry(String redisKeyPrefix, RedisOperations<String, String> redisOperations) {
+		this.redisKeyPrefix = redisKeyPrefix;
+		this.redisOperations = redisOperations;
+	}
+
+	@Override
+	public void heartbeat(String memberId, Duration ttl) {
+		long now = System.currentTimeMillis();
+		String membersKey = this.generateMembersKey();
+		this.redisOperations.opsForZSet().add(membersKey, memberId, (double)(now + ttl.toMillis()));
+		this.redisOperations.opsForZSet().removeRangeByScore(membersKey, Double.NEGATIVE_INFINITY, (double)now);
+	}
+
+	@Override
+	public void leave(String memberId) {
+		this.redisOperations.opsForZSet().remove(this.generateMembersKey(), memberId);
+	}
+
+	@Override
+	public List<String> findMembers() {
+		Set<String> members = this.redisOperations.opsForZSet().rangeByScore(
+			this.generateMembersKey(), (double)System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+		if (members == null) {
+			return new ArrayList<>();
+		}
+
+		return new ArrayList<>(members);
+	}
+
+	@Override
+	public boolean tryAcquire(int partition, String memberId, Duration ttl) {
+		Long acquired = this.redisOperations.execute(
+			ACQUIRE_SCRIPT,
+			List.of(this.generateLeaseKey(partition)),
+			memberId,
+			String.valueOf(ttl.toMillis())
+		);
+		return acquired != null && acquired == 1L;
+	}
+
+	/**
+	 * Acquire or renew leases of partitions by EVALSHA in a pipeline, or one by one on redis cluster.
+	 * Keys and args are serialized same as {@link #tryAcquire}.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public Set<Integer> tryAcquireAll(Collection<Integer> partitions, String memberId, Duration ttl) {
+		List<Integer> partitionList = new ArrayList<>(partitions);
+		if (partitionList.isEmpty()) {
+			return new LinkedHashSet<>();
+		}
+
+		RedisSerializer<String> keySerializer = (RedisSerializer<String>)this.redisOperations.getKeySerializer();
+		RedisSerializer<String> valueSerializer = (RedisSerializer<String>)this.redisOperations.getValueSerializer();
+		byte[] rawMemberId = valueSerializer.serialize(memberId);
+		byte[] rawTtl = valueSerializer.serialize(String.valueOf(ttl.toMillis()));
+		List<byte[][]> keysAndArgsList = new ArrayList<>(partitionList.size());
+		for (Integer partition : partitionList) {
+			byte[] rawLeaseKey = keySerializer.serialize(this.generateLeaseKey(partition));
+			keysAndArgsList.add(new byte[][] {rawLeaseKey, rawMemberId, rawTtl});
+		}
+
+		List<Object> results = RedisTimerMessageStoreSupports.evalEach(
+			this.redisOperations, ACQUIRE_SCRIPT, ReturnType.INTEGER, 1, keysAndArgsList);
+
+		Set<Integer> result = new LinkedHashSet<>();
+		for (int i = 0; i < partitionList.size(); i++) {
+			Object acquired = results.get(i);
+			if (acquired instanceof Number && ((Number)acquired).longValue() == 1L) {
+				result.add(partitionList.get(i));
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public void release(int partition, String memberId) {
+		this.redisOperations.execute(RELEASE_SCRIPT, List.of(this.generateLeaseKey(partition)), memberId);
+	}
+
+	private String generateMembersKey() {
+		return this.redisKeyPrefix + ":timer:lease:members";
+	}
+
+	private String generateLeaseKey(int partition) {
+		return String.format("%s:timer:{%d}:lease", this.redisKeyPrefix, partition);
+	}
+}
@@ -0,0 +1,219 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.messaging.timer.spring.redis.store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A task which removes ids of which value does not exist (expired or evicted) from indexes
+ * of {@link RedisCloudEventTimerMessageStore}, not to waste release pages on them.
+ * It also removes values of which id is in neither index, left by failed saves or removes,
+ * because inlined values never expire and separated values are kept until expired.
+ * <p/>
+ * Each run scans indexes of partitions by ZSCAN and checks values in pipelined batches,
+ * and scans inlined values by HSCAN, and checks indexes by lua scripts.
+ * Separated values of all partitions are scanned by a SCAN per run (per master node on redis cluster),
+ * not to scan the whole keyspace for each partition.
+ * An id or a value is removed only when it is found orphan by two successive runs,
+ * not to remove one of which value or index is being saved. So the interval of runs is the grace period.
+ * Runs should not overlap, schedule it with a fixed delay.
+ *
+ * <pre>
+ * scheduledExecutorService.scheduleWithFixedDelay(
+ *     new RedisTimerMessageOrphanSweeper(redisCloudEventTimerMessageStore, 10), 10, 10, TimeUnit.MINUTES);
+ * </pre>
+ */
+public class RedisTimerMessageOrphanSweeper implements Runnable {
+	private static final Logger LOG = LoggerFactory.getLogger(RedisTimerMessageOrphanSweeper.class);
+
+	private static final int DEFAULT_COUNT_PER_SCAN = 500;
+
+	private final RedisCloudEventTimerMessageStore timerMessageStore;
+	private final List<Integer> partitions;
+	private final int countPerScan;
+
+	// orphan ids found by the previous run, per partition.
+	private final Map<Integer, Set<String>> suspectedStoreValueIds = new HashMap<>();
+	// ids of inlined values without index found by the previous run, per partition.
+	private final Map<Integer, Set<String>> suspectedInlineValueIds = new HashMap<>();
+	// ids of separated values without index found by the previous run, per partition.
+	private final Map<Integer, Set<String>> suspectedValueIds = new HashMap<>();
+
+	private volatile long lastRemovedCount;
+	private volatile long removedCount;
+
+	public RedisTimerMessageOrphanSweeper(RedisCloudEventTimerMessageStore timerMessageStore, int partitionCount) {
+		this(timerMessageStore, partitionCount, DEFAULT_COUNT_PER_SCAN);
+	}
+
+	/**
+	 * @param timerMessageStore
+	 * @param partitionCount count of partitions to sweep, from 0. (seekPartitionCount of handler)
+	 *                       0 if messages are saved without partition.
+	 * @param countPerScan count hint of ZSCAN, HSCAN and SCAN, and size of a batch.
+	 */
+	public RedisTimerMessageOrphanSweeper(
+		RedisCloudEventTimerMessageStore timerMessageStore,
+		int partitionCount,
+		int countPerScan
+	) {
+		if (partitionCount < 0) {
+			throw new IllegalArgumentException("partitionCount must not be negative. partitionCount: "
+				+ partitionCount);
+		}
+		if (countPerScan <= 0) {
+			throw new IllegalArgumentException("countPerScan must be positive. countPerScan: " + countPerScan);
+		}
+
+		this.timerMessageStore = timerMessageStore;
+		this.partitions = new ArrayList<>();
+		if (partitionCount == 0) {
+			this.partitions.add(null);
+		}
+		for (int i = 0; i < partitionCount; i++) {
+			this.partitions.add(i);
+		}
+		this.countPerScan = countPerScan;
+	}
+
+	@Override
+	public void run() {
+		Map<Integer, Set<String>> unindexedValueIds;
+		try {
+			unindexedValueIds = this.timerMessageStore.findUnindexedValueIdsOfPartitions(
+				this.partitions, this.countPerScan);
+		} catch (Exception ex) {
+			LOG.warn("timer message value sweep is failed. It would be retried on next run.", ex);
+			unindexedValueIds = null;
+		}
+
+		long removed = 0L;
+		for (Integer partition : this.partitions) {
+			try {
+				removed += this.sweep(
+					partition,
+					unindexedValueIds == null ? null : unindexedValueIds.getOrDefault(partition, Set.of())
+				);
+			} catch (Exception ex) {
+				LOG.warn("timer message index sweep is failed. It would be retried on next run. partition: {}",
+					partition, ex);
+			}
+		}
+
+		this.lastRemovedCount = removed;
+		this.removedCount += removed;
+		if (removed > 0) {
+			LOG.info("orphan ids and values are removed from timer message store. removedCount: {}", removed);
+		}
+	}
+
+	/**
+	 * @return count of ids and inlined values removed by the last run.
+	 */
+	public long getLastRemovedCount() {
+		return this.lastRemovedCount;
+	}
+
+	/**
+	 * @return count of ids and inlined values removed by all runs.
+	 */
+	public long getRemovedCount() {
+		return this.removedCount;
+	}
+
+	/**
+	 * @param unindexedValueIds ids of separated values without index found by this run. null if failed to find.
+	 */
+	private long sweep(@Nullable Integer partition, @Nullable Set<String> unindexedValueIds) {
+		Set<String> confirmedStoreValueIds = confirm(
+			this.suspectedStoreValueIds,
+			partition,
+			this.timerMessageStore.findOrphanStoreValueIds(partition, this.countPerScan)
+		);
+		long removed = this.removeInBatches(confirmedStoreValueIds,
+			batch -> this.timerMessageStore.removeOrphanStoreValueIds(partition, batch));
+
+		Set<String> confirmedInlineValueIds = confirm(
+			this.suspectedInlineValueIds,
+			partition,
+			this.timerMessageStore.findUnindexedInlineValueIds(partition, this.countPerScan)
+		);
+		long removedInlineValues = this.removeInBatches(confirmedInlineValueIds,
+			batch -> this.timerMessageStore.removeUnindexedInlineValues(partition, batch));
+
+		long removedValues = 0L;
+		if (unindexedValueIds != null) {
+			Set<String> confirmedValueIds = confirm(this.suspectedValueIds, partition, unindexedValueIds);
+			removedValues = this.removeInBatches(confirmedValueIds,
+				batch -> this.timerMessageStore.removeUnindexedValues(partition, batch));
+		}
+
+		if (removed > 0 || removedInlineValues > 0 || removedValues > 0) {
+			LOG.debug("orphan ids and values are removed from timer message store. partition: {}, "
+				+ "removedIdCount: {}, removedInlineValueCount: {}, removedValueCount: {}",
+				partition, removed, removedInlineValues, removedValues);
+		}
+		return removed + removedInlineValues + removedValues;
+	}
+
+	private long removeInBatches(Set<String> storeValueIds, ToLongFunction<List<String>> remover) {
+		long removed = 0L;
+		List<String> batch = new ArrayList<>(this.countPerScan);
+		for (String storeValueId : storeValueIds) {
+			batch.add(storeValueId);
+			if (batch.size() >= this.countPerScan) {
+				removed += remover.applyAsLong(batch);
+				batch.clear();
+			}
+		}
+		if (!batch.isEmpty()) {
+			removed += remover.applyAsLong(batch);
+		}
+		return removed;
+	}
+
+	/**
+	 * Confirm ids found by both of the previous run and this run, and keep the others for the next run.
+	 */
+	private static Set<String> confirm(
+		Map<Integer, Set<String>> suspectedByPartition,
+		@Nullable Integer partition,
+		Set<String> found
+	) {
+		Set<String> suspected = suspectedByPartition.getOrDefault(partition, Set.of());
+
+		Set<String> confirmed = new HashSet<>(found);
+		confirmed.retainAll(suspected);
+		Set<String> nextSuspected = new HashSet<>(found);
+		nextSuspected.removeAll(confirmed);
+		suspectedByPartition.put(partition, nextSuspected);
+		return confirmed;
+	}
+}
@@ -0,0 +1,535 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.messaging.timer.spring.redis.store;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.springframework.data.redis.connection.DecoratedRedisConnection;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.ClassUtils;
+
+import io.cloudevents.CloudEvent;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+
+import com.navercorp.eventeria.messaging.contract.Message;
+import com.navercorp.eventeria.messaging.contract.cloudevents.serializer.CloudEventMessageReaderWriter;
+import com.navercorp.eventeria.messaging.contract.cloudevents.serializer.SerializedCloudEvent;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+
+/**
+ * Keys, scores, scripts and value conversions shared by blocking and reactive redis timer message stores,
+ * so that both stores can work on the same data.
+ */
+class RedisTimerMessageStoreSupports {
+	private static final long EXPIRATION_BUFFER_HOURS_VALUE = 24L;
+	private static final String VALUE_KEY_INFIX = "}:value:";
+
+	/**
+	 * Keys without partition share a hash tag like keys of a partition, so scripts touching them work on redis cluster.
+	 */
+	static final String NO_PARTITION_HASH_TAG = "{none}";
+
+	private static final boolean LETTUCE_PRESENT =
+		ClassUtils.isPresent("io.lettuce.core.RedisClient", RedisTimerMessageStoreSupports.class.getClassLoader());
+
+	/**
+	 * KEYS[1]: index key, KEYS[2]: in-flight key, KEYS[3]: inline value key
+	 * ARGV[1]: now score, ARGV[2]: condition score, ARGV[3]: count, ARGV[4]: lease deadline score
+	 * <p/>
+	 * Returns flat list of claimed id and its inlined value. (value is empty if not inlined)
+	 * Values of their own keys are read by the caller, because their keys are not known before the script runs
+	 * and are serialized by the key serializer of value operations.
+	 */
+	static final RedisScript<List> CLAIM_SCRIPT = new DefaultRedisScript<>(
+		"local expired = redis.call('ZRANGEBYSCORE', KEYS[2], '-inf', ARGV[1])\n"
+			+ "for i = 1, #expired do\n"
+			+ "  redis.call('ZREM', KEYS[2], expired[i])\n"
+			+ "  redis.call('ZADD', KEYS[1], ARGV[1], expired[i])\n"
+			+ "end\n"
+			+ "local ids = redis.call('ZRANGEBYSCORE', KEYS[1], 0, ARGV[2], 'LIMIT', 0, tonumber(ARGV[3]))\n"
+			+ "local result = {}\n"
+			+ "for i = 1, #ids do\n"
+			+ "  redis.call('ZREM', KEYS[1], ids[i])\n"
+			+ "  redis.call('ZADD', KEYS[2], ARGV[4], ids[i])\n"
+			+ "  result[#result + 1] = ids[i]\n"
+			+ "  result[#result + 1] = redis.call('HGET', KEYS[3], ids[i]) or ''\n"
+			+ "end\n"
+			+ "return result",
+		List.class
+	);
+
+	/**
+	 * KEYS[1]: index key, KEYS[2]: inline value key
+	 * ARGV[1]: condition score, ARGV[2]: count
+	 * <p/>
+	 * Returns flat list of due id and its inlined value. (value is empty if not inlined)
+	 */
+	static final RedisScript<List> FIND_SCRIPT = new DefaultRedisScript<>(
+		"local ids = redis.call('ZRANGEBYSCORE', KEYS[1], 0, ARGV[1], 'LIMIT', 0, tonumber(ARGV[2]))\n"
+			+ "local result = {}\n"
+			+ "for i = 1, #ids do\n"
+			+ "  result[#result + 1] = ids[i]\n"
+			+ "  result[#result + 1] = redis.call('HGET', KEYS[2], ids[i]) or ''\n"
+			+ "end\n"
+			+ "return result",
+		List.class
+	);
+
+	/**
+	 * KEYS[1]: index key, KEYS[2]: in-flight key
+	 * ARGV[1]: id, ARGV[2]: score to release
+	 * <p/>
+	 * Requeue only if the id is still in-flight, not to revive acknowledged or canceled messages.
+	 */
+	static final RedisScript<Long> REQUEUE_SCRIPT = new DefaultRedisScript<>(
+		"if redis.call('ZREM', KEYS[2], ARGV[1]) == 1 then\n"
+			+ "  return redis.call('ZADD', KEYS[1], ARGV[2], ARGV[1])\n"
+			+ "end\n"
+			+ "return 0",
+		Long.class
+	);
+
+	/**
+	 * KEYS[1]: index key, KEYS[2]: in-flight key
+	 * ARGV[1]: score to release, ARGV[2..]: ids
+	 * <p/>
+	 * Requeue ids still in-flight only, like {@link #REQUEUE_SCRIPT}. Returns count of requeued ids.
+	 */
+	static final RedisScript<Long> REQUEUE_ALL_SCRIPT = new DefaultRedisScript<>(
+		"local requeued = 0\n"
+			+ "for i = 2, #ARGV do\n"
+			+ "  if redis.call('ZREM', KEYS[2], ARGV[i]) == 1 then\n"
+			+ "    requeued = requeued + redis.call('ZADD', KEYS[1], ARGV[1], ARGV[i])\n"
+			+ "  end\n"
+			+ "end\n"
+			+ "return requeued",
+		Long.class
+	);
+
+	/**
+	 * KEYS[1]: index key, KEYS[2]: in-flight key
+	 * <p/>
+	 * Returns the lowest score of both indexes, or nil if both are empty.
+	 */
+	static final RedisScript<String> NEXT_RELEASE_SCRIPT = new DefaultRedisScript<>(
+		"local result = false\n"
+			+ "for i = 1, 2 do\n"
+			+ "  local first = redis.call('ZRANGE', KEYS[i], 0, 0, 'WITHSCORES')\n"
+			+ "  if first[2] and (not result or tonumber(first[2]) < tonumber(result)) then\n"
+			+ "    result = first[2]\n"
+			+ "  end\n"
+			+ "end\n"
+			+ "return result",
+		String.class
+	);
+
+	/**
+	 * KEYS[1]: index key, KEYS[2]: in-flight key, KEYS[3]: inline value key, KEYS[4..]: value keys of ids
+	 * ARGV[1..]: ids in order of value keys
+	 * <p/>
+	 * Values are deleted before index members, so a failure leaves only index members without values,
+	 * which are removed by claims or the sweeper. Returns count of removed index members.
+	 */
+	static final RedisScript<Long> REMOVE_SCRIPT = new DefaultRedisScript<>(
+		"local removed = 0\n"
+			+ "for i = 1, #ARGV do\n"
+			+ "  redis.call('DEL', KEYS[i + 3])\n"
+			+ "  redis.call('HDEL', KEYS[3], ARGV[i])\n"
+			+ "  removed = removed + redis.call('ZREM', KEYS[1], ARGV[i]) + redis.call('ZREM', KEYS[2], ARGV[i])\n"
+			+ "end\n"
+			+ "return removed",
+		Long.class
+	);
+
+	/**
+	 * KEYS[1]: index key, KEYS[2]: in-flight key
+	 * ARGV[1..]: ids
+	 * <p/>
+	 * Returns ids in neither index nor in-flight index.
+	 */
+	static final RedisScript<List> FILTER_UNINDEXED_SCRIPT = new DefaultRedisScript<>(
+		"local result = {}\n"
+			+ "for i = 1, #ARGV do\n"
+			+ "  if not redis.call('ZSCORE', KEYS[1], ARGV[i]) and not redis.call('ZSCORE', KEYS[2], ARGV[i]) then\n"
+			+ "    result[#result + 1] = ARGV[i]\n"
+			+ "  end\n"
+			+ "end\n"
+			+ "return result",
+		List.class
+	);
+
+	/**
+	 * KEYS[1]: index key, KEYS[2]: in-flight key, KEYS[3]: inline value key
+	 * ARGV[1..]: ids
+	 * <p/>
+	 * Remove inlined values only if their ids are still in neither index. Returns count of removed fields.
+	 */
+	static final RedisScript<Long> REMOVE_UNINDEXED_INLINE_VALUES_SCRIPT = new DefaultRedisScript<>(
+		"local removed = 0\n"
+			+ "for i = 1, #ARGV do\n"
+			+ "  if not redis.call('ZSCORE', KEYS[1], ARGV[i]) and not redis.call('ZSCORE', KEYS[2], ARGV[i]) then\n"
+			+ "    removed = removed + redis.call('HDEL', KEYS[3], ARGV[i])\n"
+			+ "  end\n"
+			+ "end\n"
+			+ "return removed",
+		Long.class
+	);
+
+	/**
+	 * KEYS[1]: index key, KEYS[2]: in-flight key, KEYS[3]: inline value key, KEYS[4..]: value keys of ids
+	 * ARGV[1..]: ids in order of value keys
+	 * <p/>
+	 * Remove ids from indexes only if their values still do not exist. Returns count of removed members.
+	 */
+	static final RedisScript<Long> REMOVE_ORPHANS_SCRIPT = new DefaultRedisScript<>(
+		"local removed = 0\n"
+			+ "for i = 1, #ARGV do\n"
+			+ "  if redis.call('HEXISTS', KEYS[3], ARGV[i]) == 0\n"
+			+ "    and redis.call('EXISTS', KEYS[i + 3]) == 0 then\n"
+			+ "    removed = removed + redis.call('ZREM', KEYS[1], ARGV[i]) + redis.call('ZREM', KEYS[2], ARGV[i])\n"
+			+ "  end\n"
+			+ "end\n"
+			+ "return removed",
+		Long.class
+	);
+
+	/**
+	 * KEYS[1]: index key, KEYS[2]: in-flight key, KEYS[3..]: value keys of ids
+	 * ARGV[1..]: ids in order of value keys
+	 * <p/>
+	 * Remove values only if their ids are still in neither index. Returns count of removed values.
+	 */
+	static final RedisScript<Long> REMOVE_UNINDEXED_VALUES_SCRIPT = new DefaultRedisScript<>(
+		"local removed = 0\n"
+			+ "for i = 1, #ARGV do\n"
+			+ "  if not redis.call('ZSCORE', KEYS[1], ARGV[i]) and not redis.call('ZSCORE', KEYS[2], ARGV[i]) then\n"
+			+ "    removed = removed + redis.call('DEL', KEYS[i + 2])\n"
+			+ "  end\n"
+			+ "end\n"
+			+ "return removed",
+		Long.class
+	);
+
+	private final String redisKeyPrefix;
+	private final CloudEventMessageReaderWriter cloudEventMessageReaderWriter;
+	private final ChronoUnit scoreUnit;
+	private final boolean releaseSerialized;
+
+	/**
+	 * @param redisKeyPrefix
+	 * @param cloudEventMessageReaderWriter
+	 * @param scoreUnit
+	 * @param releaseSerialized whether to release messages as {@link SerializedCloudEvent}.
+	 */
+	RedisTimerMessageStoreSupports(
+		String redisKeyPrefix,
+		CloudEventMessageReaderWriter cloudEventMessageReaderWriter,
+		ChronoUnit scoreUnit,
+		boolean releaseSerialized
+	) {
+		if (scoreUnit != ChronoUnit.SECONDS && scoreUnit != ChronoUnit.MILLIS) {
+			throw new IllegalArgumentException("scoreUnit should be SECONDS or MILLIS. scoreUnit: " + scoreUnit);
+		}
+
+		this.redisKeyPrefix = redisKeyPrefix;
+		this.cloudEventMessageReaderWriter = cloudEventMessageReaderWriter;
+		this.scoreUnit = scoreUnit;
+		this.releaseSerialized = releaseSerialized;
+	}
+
+	String generateIndexKey(@Nullable Integer partition) {
+		if (partition == null) {
+			return this.redisKeyPrefix + ":timer:" + NO_PARTITION_HASH_TAG + ":index";
+		}
+
+		return String.format("%s:timer:{%d}:index", this.redisKeyPrefix, partition);
+	}
+
+	String generateInFlightKey(@Nullable Integer partition) {
+		if (partition == null) {
+			return this.redisKeyPrefix + ":timer:" + NO_PARTITION_HASH_TAG + ":inflight";
+		}
+
+		return String.format("%s:timer:{%d}:inflight", this.redisKeyPrefix, partition);
+	}
+
+	String generateInlineValueKey(@Nullable Integer partition) {
+		if (partition == null) {
+			return this.redisKeyPrefix + ":timer:" + NO_PARTITION_HASH_TAG + ":inline";
+		}
+
+		return String.format("%s:timer:{%d}:inline", this.redisKeyPrefix, partition);
+	}
+
+	String generateKey(UUID storeValueId, @Nullable Integer partition) {
+		return this.generateKeyPrefix(partition) + storeValueId.toString();
+	}
+
+	String generateKeyPrefix(@Nullable Integer partition) {
+		if (partition == null) {
+			return this.redisKeyPrefix + ":timer:" + NO_PARTITION_HASH_TAG + ":value:";
+		}
+
+		return String.format("%s:timer:{%d}:value:", this.redisKeyPrefix, partition);
+	}
+
+	/**
+	 * @return pattern of value keys of all partitions.
+	 */
+	String generateKeyPattern() {
+		return this.redisKeyPrefix + ":timer:{*}:value:*";
+	}
+
+	/**
+	 * @return the prefix of a value key, same as {@link #generateKeyPrefix} of its partition.
+	 *         null if the key is not a value key.
+	 */
+	@Nullable
+	String extractKeyPrefix(String key) {
+		String timerKeyPrefix = this.redisKeyPrefix + ":timer:{";
+		if (!key.startsWith(timerKeyPrefix)) {
+			return null;
+		}
+
+		int end = key.indexOf(VALUE_KEY_INFIX, timerKeyPrefix.length());
+		return end < 0 ? null : key.substring(0, end + VALUE_KEY_INFIX.length());
+	}
+
+	long toScore(Instant dateTime) {
+		if (this.scoreUnit == ChronoUnit.SECONDS) {
+			return dateTime.getEpochSecond();
+		}
+
+		try {
+			return dateTime.toEpochMilli();
+		} catch (ArithmeticException ex) {
+			return dateTime.isBefore(Instant.EPOCH) ? Long.MIN_VALUE : Long.MAX_VALUE;
+		}
+	}
+
+	Instant fromScore(long score) {
+		if (this.scoreUnit == ChronoUnit.SECONDS) {
+			return Instant.ofEpochSecond(score);
+		}
+
+		return Instant.ofEpochMilli(score);
+	}
+
+	long expirationMillis(TimerMessageStoreValue storeValue) {
+		return storeValue.getReleaseDateTime().plus(EXPIRATION_BUFFER_HOURS_VALUE, ChronoUnit.HOURS).toEpochMilli()
+			- Instant.now().toEpochMilli();
+	}
+
+	RedisCloudEventTimerMessageStoreValue toRedisStoreValue(TimerMessageStoreValue storeValue) {
+		Object message = storeValue.getMessage();
+
+		// released serialized messages (ex. moved by TimerMessagePartitionMigrator) are saved as they are.
+		// they are restored as CloudEvent, because their original types are not kept.
+		if (message instanceof SerializedCloudEvent serializedCloudEvent) {
+			return new RedisCloudEventTimerMessageStoreValue(
+				storeValue.getId(),
+				serializedCloudEvent.getSerialized(),
+				storeValue.getReleaseDateTime(),
+				true
+			);
+		}
+
+		CloudEvent cloudEvent;
+		boolean cloudEventType = false;
+		if (message instanceof CloudEvent ce) {
+			cloudEvent = ce;
+			cloudEventType = true;
+		} else if (message instanceof Message msg) {
+			cloudEvent = this.cloudEventMessageReaderWriter.convert(msg);
+		} else {
+			throw new UnsupportedOperationException("unsupported");
+		}
+
+		byte[] serialized = this.cloudEventMessageReaderWriter.serialize(cloudEvent);
+		return new RedisCloudEventTimerMessageStoreValue(
+			storeValue.getId(),
+			serialized,
+			storeValue.getReleaseDateTime(),
+			cloudEventType
+		);
+	}
+
+	TimerMessageStoreValue toTimerMessageStoreValue(RedisCloudEventTimerMessageStoreValue storeValue) {
+		Object message;
+		byte[] serialized = storeValue.getMessage();
+		if (this.releaseSerialized) {
+			message = new SerializedCloudEvent(serialized, this.cloudEventMessageReaderWriter);
+		} else if (storeValue.isCloudEventType()) {
+			message = this.cloudEventMessageReaderWriter.deserialize(serialized);
+		} else {
+			message = this.cloudEventMessageReaderWriter.read(serialized);
+		}
+		return new TimerMessageStoreValue(
+			storeValue.getId(),
+			message,
+			storeValue.getReleaseDateTime()
+		);
+	}
+
+	/**
+	 * Evaluate a script for each keys and args by EVALSHA in a pipeline, see {@link #executeEach}.
+	 * Scripts failed by NOSCRIPT are not executed, so only they are evaluated again by EVAL.
+	 *
+	 * @param keysAndArgsList serialized keys and args of each evaluation.
+	 * @return results in order of keysAndArgsList.
+	 */
+	static List<Object> evalEach(
+		RedisOperations<?, ?> operations,
+		RedisScript<?> script,
+		ReturnType returnType,
+		int numKeys,
+		List<byte[][]> keysAndArgsList
+	) {
+		List<RedisCallback<Object>> commands = new ArrayList<>(keysAndArgsList.size());
+		for (byte[][] keysAndArgs : keysAndArgsList) {
+			commands.add(connection ->
+				connection.scriptingCommands().evalSha(script.getSha1(), returnType, numKeys, keysAndArgs));
+		}
+
+		List<Object> results = executeEach(operations, commands);
+		byte[] rawScript = null;
+		for (int i = 0; i < results.size(); i++) {
+			if (!(results.get(i) instanceof Throwable throwable)) {
+				continue;
+			}
+			if (!isNoScriptError(throwable)) {
+				throw toRuntimeException(throwable);
+			}
+
+			if (rawScript == null) {
+				rawScript = script.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+			}
+			byte[] scriptToLoad = rawScript;
+			byte[][] keysAndArgs = keysAndArgsList.get(i);
+			results.set(i, operations.execute((RedisCallback<Object>)connection ->
+				connection.scriptingCommands().eval(scriptToLoad, returnType, numKeys, keysAndArgs)));
+		}
+		return results;
+	}
+
+	/**
+	 * Execute commands in a pipeline.
+	 * On redis cluster, lettuce sends each command to the node of its keys without waiting for replies,
+	 * so commands of partitions on the same node share a batch.
+	 * Cluster connections of other drivers (ex. jedis) do not support pipelining, so commands are executed one by one.
+	 * Commands of a partition touch keys of the same slot, so each command works on redis cluster.
+	 *
+	 * @return results in order of commands. results of failed commands are their exceptions.
+	 */
+	static List<Object> executeEach(RedisOperations<?, ?> operations, List<RedisCallback<Object>> commands) {
+		if (commands.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		Boolean pipelineSupported = operations.execute(
+			(RedisCallback<Boolean>)RedisTimerMessageStoreSupports::isPipelineSupported);
+		List<Object> results;
+		if (!Boolean.TRUE.equals(pipelineSupported)) {
+			results = operations.execute((RedisCallback<List<Object>>)connection -> {
+				List<Object> executed = new ArrayList<>(commands.size());
+				for (RedisCallback<Object> command : commands) {
+					try {
+						executed.add(command.doInRedis(connection));
+					} catch (RuntimeException ex) {
+						executed.add(ex);
+					}
+				}
+				return executed;
+			});
+		} else {
+			try {
+				results = operations.executePipelined((RedisCallback<Object>)connection -> {
+					for (RedisCallback<Object> command : commands) {
+						command.doInRedis(connection);
+					}
+					return null;
+				}, RedisSerializer.byteArray());
+			} catch (RedisPipelineException ex) {
+				results = ex.getPipelineResult();
+			}
+		}
+
+		if (results == null || results.size() != commands.size()) {
+			throw new IllegalStateException("results do not match with commands. commands: " + commands.size());
+		}
+		return new ArrayList<>(results);
+	}
+
+	static boolean isClusterConnection(RedisConnection connection) {
+		return unwrap(connection) instanceof RedisClusterConnection;
+	}
+
+	/**
+	 * StringRedisTemplate decorates connections.
+	 */
+	static RedisConnection unwrap(RedisConnection connection) {
+		RedisConnection target = connection;
+		while (target instanceof DecoratedRedisConnection decorated) {
+			target = decorated.getDelegate();
+		}
+		return target;
+	}
+
+	/**
+	 * Connections may be proxied by templates, so lettuce is told by its native connection.
+	 */
+	private static boolean isPipelineSupported(RedisConnection connection) {
+		RedisConnection target = unwrap(connection);
+		if (!(target instanceof RedisClusterConnection)) {
+			return true;
+		}
+		return LETTUCE_PRESENT && target.getNativeConnection() instanceof RedisClusterAsyncCommands;
+	}
+
+	static RuntimeException toRuntimeException(Throwable throwable) {
+		if (throwable instanceof RuntimeException runtimeException) {
+			return runtimeException;
+		}
+		return new IllegalStateException(throwable);
+	}
+
+	private static boolean isNoScriptError(Throwable throwable) {
+		for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+			if (cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT")) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
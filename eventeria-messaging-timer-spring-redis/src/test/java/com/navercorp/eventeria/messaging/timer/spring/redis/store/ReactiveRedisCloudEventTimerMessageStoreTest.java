@@ -0,0 +1,174 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.messaging.timer.spring.redis.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import net.jqwik.api.Example;
+import net.jqwik.api.lifecycle.AfterTry;
+import net.jqwik.api.lifecycle.BeforeTry;
+
+import com.github.fppt.jedismock.RedisServer;
+
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+import com.navercorp.eventeria.timer.fixture.CloudEventFixtures;
+import com.navercorp.eventeria.timer.fixture.TestTimerCommand;
+
+class ReactiveRedisCloudEventTimerMessageStoreTest {
+	private static final String KEY_PREFIX = "test";
+
+	private RedisServer redisServer;
+	private LettuceConnectionFactory connectionFactory;
+	private StringRedisTemplate redisIndexOperations;
+	private ReactiveRedisCloudEventTimerMessageStore sut;
+
+	@BeforeTry
+	void setUp() throws Exception {
+		this.redisServer = RedisServer.newRedisServer().start();
+		this.connectionFactory = new LettuceConnectionFactory(
+			new RedisStandaloneConfiguration(this.redisServer.getHost(), this.redisServer.getBindPort())
+		);
+		this.connectionFactory.afterPropertiesSet();
+		this.connectionFactory.start();
+		this.redisIndexOperations = new StringRedisTemplate(this.connectionFactory);
+
+		RedisSerializationContext<String, RedisCloudEventTimerMessageStoreValue> serializationContext =
+			RedisSerializationContext.<String, RedisCloudEventTimerMessageStoreValue>newSerializationContext(
+					RedisSerializer.string())
+				.value(new RedisCloudEventTimerMessageStoreValueSerializer())
+				.build();
+		this.sut = new ReactiveRedisCloudEventTimerMessageStore(
+			KEY_PREFIX,
+			new ReactiveStringRedisTemplate(this.connectionFactory),
+			new ReactiveRedisTemplate<>(this.connectionFactory, serializationContext),
+			CloudEventFixtures.createCloudEventMessageReaderWriter(),
+			Duration.ofMinutes(5),
+			ChronoUnit.MILLIS
+		);
+	}
+
+	@AfterTry
+	void tearDown() throws Exception {
+		this.connectionFactory.destroy();
+		this.redisServer.stop();
+	}
+
+	@Example
+	void claimHidesClaimedValuesUntilRequeue() {
+		// given
+		Instant now = Instant.now();
+		TimerMessageStoreValue due = storeValue("due", now.minusSeconds(10));
+		TimerMessageStoreValue notDue = storeValue("notDue", now.plusSeconds(10));
+		this.sut.saveAll(List.of(due, notDue), 1).block();
+
+		// when
+		List<TimerMessageStoreValue> claimed = this.sut.claimReleaseValues(now, 10, 1).collectList().block();
+
+		// then
+		assertThat(claimed).extracting(TimerMessageStoreValue::getId).containsExactly(due.getId());
+		assertThat(((TestTimerCommand)claimed.get(0).getMessage()).getName()).isEqualTo("due");
+		assertThat(this.sut.claimReleaseValues(now, 10, 1).collectList().block()).isEmpty();
+		assertThat(this.sut.count(now, 1).block()).isZero();
+
+		this.sut.requeue(due.getId(), 1).block();
+		assertThat(this.sut.claimReleaseValues(now, 10, 1).collectList().block())
+			.extracting(TimerMessageStoreValue::getId)
+			.containsExactly(due.getId());
+
+		this.sut.acknowledgeAll(List.of(due.getId()), 1).block();
+		this.sut.requeue(due.getId(), 1).block();
+		assertThat(this.sut.claimReleaseValues(now.plusSeconds(20), 10, 1).collectList().block())
+			.extracting(TimerMessageStoreValue::getId)
+			.containsExactly(notDue.getId());
+	}
+
+	@Example
+	void removeAllDeletesValuesAndIndexes() {
+		// given
+		Instant now = Instant.now();
+		TimerMessageStoreValue first = storeValue("first", now.minusSeconds(10));
+		TimerMessageStoreValue second = storeValue("second", now.plusSeconds(10));
+		this.sut.saveAll(List.of(first, second), 1).block();
+		this.sut.claimReleaseValues(now, 10, 1).collectList().block();
+
+		// when
+		this.sut.removeAll(List.of(first.getId(), second.getId()), 1).block();
+
+		// then
+		assertThat(this.redisIndexOperations.opsForZSet().size(KEY_PREFIX + ":timer:{1}:index")).isZero();
+		assertThat(this.redisIndexOperations.opsForZSet().size(KEY_PREFIX + ":timer:{1}:inflight")).isZero();
+		assertThat(this.redisIndexOperations.hasKey(KEY_PREFIX + ":timer:{1}:value:" + first.getId()))
+			.isEqualTo(false);
+		assertThat(this.redisIndexOperations.hasKey(KEY_PREFIX + ":timer:{1}:value:" + second.getId()))
+			.isEqualTo(false);
+	}
+
+	@Example
+	void claimValuesInlinedByBlockingStore() {
+		// given
+		RedisTemplate<String, RedisCloudEventTimerMessageStoreValue> redisValueOperations = new RedisTemplate<>();
+		redisValueOperations.setConnectionFactory(this.connectionFactory);
+		redisValueOperations.setKeySerializer(RedisSerializer.string());
+		redisValueOperations.setValueSerializer(new RedisCloudEventTimerMessageStoreValueSerializer());
+		redisValueOperations.afterPropertiesSet();
+		RedisCloudEventTimerMessageStore blockingStore = new RedisCloudEventTimerMessageStore(
+			KEY_PREFIX,
+			this.redisIndexOperations,
+			redisValueOperations,
+			CloudEventFixtures.createCloudEventMessageReaderWriter(),
+			Duration.ofMinutes(5),
+			ChronoUnit.MILLIS,
+			1024
+		);
+		Instant now = Instant.now();
+		TimerMessageStoreValue inlined = storeValue("inlined", now.minusSeconds(10));
+		blockingStore.save(inlined, 1);
+
+		// when
+		List<TimerMessageStoreValue> claimed = this.sut.claimReleaseValues(now, 10, 1).collectList().block();
+		this.sut.acknowledgeAll(List.of(inlined.getId()), 1).block();
+
+		// then
+		assertThat(claimed).extracting(TimerMessageStoreValue::getId).containsExactly(inlined.getId());
+		assertThat(this.redisIndexOperations.opsForHash().size(KEY_PREFIX + ":timer:{1}:inline")).isZero();
+	}
+
+	private static TimerMessageStoreValue storeValue(String name, Instant releaseDateTime) {
+		return new TimerMessageStoreValue(
+			UUID.randomUUID(),
+			new TestTimerCommand(name, releaseDateTime),
+			releaseDateTime.truncatedTo(ChronoUnit.MILLIS)
+		);
+	}
+}
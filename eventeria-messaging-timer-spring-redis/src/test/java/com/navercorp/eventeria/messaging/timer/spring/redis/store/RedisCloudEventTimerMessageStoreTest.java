@@ -0,0 +1,603 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.eventeria.messaging.timer.spring.redis.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.connection.RedisClusterConfiguration;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.ClassUtils;
+
+import net.jqwik.api.Example;
+import net.jqwik.api.lifecycle.AfterTry;
+import net.jqwik.api.lifecycle.BeforeTry;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.github.fppt.jedismock.server.ServiceOptions;
+
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+import com.navercorp.eventeria.timer.fixture.CloudEventFixtures;
+import com.navercorp.eventeria.timer.fixture.TestTimerCommand;
+
+class RedisCloudEventTimerMessageStoreTest {
+	private static final String KEY_PREFIX = "test";
+	private static final Set<String> NOT_COMMANDS = Set.of(
+		"isPipelined", "isQueueing", "isClosed", "close", "getNativeConnection", "isSubscribed", "getSubscription",
+		"clusterGetNodeForKey", "clusterGetNodes", "toString", "hashCode", "equals"
+	);
+
+	private RedisServer redisServer;
+	private LettuceConnectionFactory connectionFactory;
+	private StringRedisTemplate redisIndexOperations;
+
+	@BeforeTry
+	void setUp() throws Exception {
+		this.redisServer = RedisServer.newRedisServer().start();
+		this.connectionFactory = new LettuceConnectionFactory(
+			new RedisStandaloneConfiguration(this.redisServer.getHost(), this.redisServer.getBindPort())
+		);
+		this.connectionFactory.afterPropertiesSet();
+		this.connectionFactory.start();
+		this.redisIndexOperations = new StringRedisTemplate(this.connectionFactory);
+	}
+
+	@AfterTry
+	void tearDown() throws Exception {
+		this.connectionFactory.destroy();
+		this.redisServer.stop();
+	}
+
+	@Example
+	void claimHidesClaimedValuesUntilRequeue() {
+		// given
+		RedisCloudEventTimerMessageStore sut = this.store(RedisSerializer.string(), Duration.ofMinutes(5), 0);
+		Instant now = Instant.now();
+		TimerMessageStoreValue due = storeValue("due", now.minusSeconds(10));
+		TimerMessageStoreValue notDue = storeValue("notDue", now.plusSeconds(10));
+		sut.saveAll(List.of(due, notDue), 1);
+
+		// when
+		List<TimerMessageStoreValue> claimed = sut.claimReleaseValues(now, 10, 1);
+
+		// then
+		assertThat(claimed).extracting(TimerMessageStoreValue::getId).containsExactly(due.getId());
+		assertThat(((TestTimerCommand)claimed.get(0).getMessage()).getName()).isEqualTo("due");
+		assertThat(sut.claimReleaseValues(now, 10, 1)).isEmpty();
+		assertThat(sut.count(now, 1)).isZero();
+
+		sut.requeue(due.getId(), 1);
+		assertThat(sut.claimReleaseValues(now, 10, 1)).extracting(TimerMessageStoreValue::getId)
+			.containsExactly(due.getId());
+
+		sut.acknowledge(due.getId(), 1);
+		sut.requeue(due.getId(), 1);
+		assertThat(sut.claimReleaseValues(Instant.MAX, 10, 1)).extracting(TimerMessageStoreValue::getId)
+			.containsExactly(notDue.getId());
+	}
+
+	@Example
+	void claimAgainAfterLeaseExpired() throws InterruptedException {
+		// given
+		RedisCloudEventTimerMessageStore sut = this.store(RedisSerializer.string(), Duration.ofMillis(100), 0);
+		Instant now = Instant.now();
+		TimerMessageStoreValue due = storeValue("due", now.minusSeconds(10));
+		sut.save(due, 1);
+		assertThat(sut.claimReleaseValues(now, 10, 1)).hasSize(1);
+
+		// when
+		Thread.sleep(200L);
+		List<TimerMessageStoreValue> claimed = sut.claimReleaseValues(Instant.now(), 10, 1);
+
+		// then
+		assertThat(claimed).extracting(TimerMessageStoreValue::getId).containsExactly(due.getId());
+	}
+
+	@Example
+	void claimInlinedAndSeparatedValues() {
+		// given
+		RedisCloudEventTimerMessageStore sut = this.store(RedisSerializer.string(), Duration.ofMinutes(5), 1024);
+		Instant now = Instant.now();
+		TimerMessageStoreValue inlined = storeValue("inlined", now.minusSeconds(20));
+		TimerMessageStoreValue separated = storeValue("separated-" + "x".repeat(2048), now.minusSeconds(10));
+		sut.saveAll(List.of(inlined, separated), 1);
+
+		// when
+		List<TimerMessageStoreValue> claimed = sut.claimReleaseValues(now, 10, 1);
+
+		// then
+		assertThat(claimed).extracting(TimerMessageStoreValue::getId)
+			.containsExactly(inlined.getId(), separated.getId());
+		assertThat(this.redisIndexOperations.opsForHash().hasKey(KEY_PREFIX + ":timer:{1}:inline",
+			inlined.getId().toString())).isEqualTo(true);
+	}
+
+	@Example
+	void claimReadsValuesByKeySerializerOfValueOperations() {
+		// given
+		RedisCloudEventTimerMessageStore sut = this.store(namespacedKeySerializer(), Duration.ofMinutes(5), 0);
+		Instant now = Instant.now();
+		TimerMessageStoreValue due = storeValue("due", now.minusSeconds(10));
+		sut.save(due, 1);
+
+		// when
+		List<TimerMessageStoreValue> claimed = sut.claimReleaseValues(now, 10, 1);
+
+		// then
+		assertThat(claimed).extracting(TimerMessageStoreValue::getId).containsExactly(due.getId());
+	}
+
+	@Example
+	void claimReleaseValuesOfPartitions() {
+		// given
+		RedisCloudEventTimerMessageStore sut = this.store(RedisSerializer.string(), Duration.ofMinutes(5), 1024);
+		Instant now = Instant.now();
+		TimerMessageStoreValue first = storeValue("first", now.minusSeconds(10));
+		TimerMessageStoreValue second = storeValue("second-" + "x".repeat(2048), now.minusSeconds(10));
+		sut.save(first, 0);
+		sut.save(second, 1);
+
+		// when
+		Map<Integer, List<TimerMessageStoreValue>> claimed =
+			sut.claimReleaseValuesOfPartitions(now, 10, List.of(0, 1, 2));
+
+		// then
+		assertThat(claimed.get(0)).extracting(TimerMessageStoreValue::getId).containsExactly(first.getId());
+		assertThat(claimed.get(1)).extracting(TimerMessageStoreValue::getId).containsExactly(second.getId());
+		assertThat(claimed.get(2)).isEmpty();
+		assertThat(sut.claimReleaseValuesOfPartitions(now, 10, List.of(0, 1, 2)).get(0)).isEmpty();
+	}
+
+	@Example
+	void claimReleaseValuesOfPartitionsAfterScriptsFlushed() {
+		// given
+		RedisCloudEventTimerMessageStore sut = this.store(RedisSerializer.string(), Duration.ofMinutes(5), 0);
+		Instant now = Instant.now();
+		TimerMessageStoreValue first = storeValue("first", now.minusSeconds(10));
+		TimerMessageStoreValue second = storeValue("second", now.minusSeconds(10));
+		sut.save(first, 0);
+		sut.save(second, 1);
+		assertThat(sut.claimReleaseValuesOfPartitions(now, 10, List.of(2, 3))).hasSize(2);
+
+		// when
+		this.redisIndexOperations.execute((RedisCallback<Object>)connection -> {
+			connection.scriptingCommands().scriptFlush();
+			return null;
+		});
+		Map<Integer, List<TimerMessageStoreValue>> claimed = sut.claimReleaseValuesOfPartitions(now, 10, List.of(0, 1));
+
+		// then
+		assertThat(claimed.get(0)).extracting(TimerMessageStoreValue::getId).containsExactly(first.getId());
+		assertThat(claimed.get(1)).extracting(TimerMessageStoreValue::getId).containsExactly(second.getId());
+	}
+
+	@Example
+	void claimReleaseValuesOfPartitionsOnCluster() throws Exception {
+		// given
+		RedisServer clusterServer = RedisServer.newRedisServer()
+			.setOptions(ServiceOptions.withClusterModeEnabled())
+			.start();
+		LettuceConnectionFactory clusterConnectionFactory = new LettuceConnectionFactory(
+			new RedisClusterConfiguration(List.of(clusterServer.getHost() + ":" + clusterServer.getBindPort()))
+		);
+		clusterConnectionFactory.afterPropertiesSet();
+		clusterConnectionFactory.start();
+		try {
+			RedisCloudEventTimerMessageStore sut =
+				this.store(clusterConnectionFactory, RedisSerializer.string(), Duration.ofMinutes(5), 0);
+			Instant now = Instant.now();
+			TimerMessageStoreValue first = storeValue("first", now.minusSeconds(10));
+			TimerMessageStoreValue second = storeValue("second", now.minusSeconds(10));
+			sut.save(first, 0);
+			sut.save(second, 1);
+
+			// when
+			List<List<Integer>> groups = sut.groupPartitions(List.of(0, 1));
+			Map<Integer, List<TimerMessageStoreValue>> claimed =
+				sut.claimReleaseValuesOfPartitions(now, 10, groups.get(0));
+
+			// then
+			assertThat(groups).hasSize(1);
+			assertThat(claimed.get(0)).extracting(TimerMessageStoreValue::getId).containsExactly(first.getId());
+			assertThat(claimed.get(1)).extracting(TimerMessageStoreValue::getId).containsExactly(second.getId());
+		} finally {
+			clusterConnectionFactory.destroy();
+			clusterServer.stop();
+		}
+	}
+
+	@Example
+	void claimWithoutPartitionOnCluster() throws Exception {
+		// given
+		RedisServer clusterServer = RedisServer.newRedisServer()
+			.setOptions(ServiceOptions.withClusterModeEnabled())
+			.start();
+		LettuceConnectionFactory clusterConnectionFactory = new LettuceConnectionFactory(
+			new RedisClusterConfiguration(List.of(clusterServer.getHost() + ":" + clusterServer.getBindPort()))
+		);
+		clusterConnectionFactory.afterPropertiesSet();
+		clusterConnectionFactory.start();
+		try {
+			RedisCloudEventTimerMessageStore sut =
+				this.store(clusterConnectionFactory, RedisSerializer.string(), Duration.ofMinutes(5), 0);
+			Instant now = Instant.now();
+			TimerMessageStoreValue due = storeValue("due", now.minusSeconds(10));
+			sut.save(due, null);
+
+			// when
+			List<TimerMessageStoreValue> claimed = sut.claimReleaseValues(now, 10, null);
+			sut.acknowledge(due.getId(), null);
+
+			// then
+			assertThat(claimed).extracting(TimerMessageStoreValue::getId).containsExactly(due.getId());
+			assertThat(sut.findNextReleaseDateTime(null)).isEmpty();
+		} finally {
+			clusterConnectionFactory.destroy();
+			clusterServer.stop();
+		}
+	}
+
+	@Example
+	void keysOfAPartitionShareASlot() {
+		// given
+		RedisTimerMessageStoreSupports supports = new RedisTimerMessageStoreSupports(
+			KEY_PREFIX,
+			CloudEventFixtures.createCloudEventMessageReaderWriter(),
+			ChronoUnit.MILLIS,
+			false
+		);
+
+		for (Integer partition : Arrays.asList(null, 0, 7)) {
+			// when
+			int slot = ClusterSlotHashUtil.calculateSlot(supports.generateIndexKey(partition));
+
+			// then
+			assertThat(List.of(
+				supports.generateInFlightKey(partition),
+				supports.generateInlineValueKey(partition),
+				supports.generateKey(UUID.randomUUID(), partition)
+			)).allSatisfy(it -> assertThat(ClusterSlotHashUtil.calculateSlot(it)).isEqualTo(slot));
+		}
+		assertThat(supports.generateIndexKey(null)).isEqualTo(KEY_PREFIX + ":timer:{none}:index");
+	}
+
+	@Example
+	void claimPartitionsOfStandaloneInARoundTrip() {
+		// given
+		AtomicInteger roundTrips = new AtomicInteger();
+		RedisConnectionFactory connectionFactory = roundTripCounting(this.connectionFactory, roundTrips);
+
+		// then
+		this.assertClaimInARoundTrip(connectionFactory, roundTrips);
+	}
+
+	@Example
+	void claimPartitionsOfClusterNodeInARoundTrip() throws Exception {
+		// given
+		RedisServer clusterServer = RedisServer.newRedisServer()
+			.setOptions(ServiceOptions.withClusterModeEnabled())
+			.start();
+		LettuceConnectionFactory clusterConnectionFactory = new LettuceConnectionFactory(
+			new RedisClusterConfiguration(List.of(clusterServer.getHost() + ":" + clusterServer.getBindPort()))
+		);
+		clusterConnectionFactory.afterPropertiesSet();
+		clusterConnectionFactory.start();
+		try {
+			AtomicInteger roundTrips = new AtomicInteger();
+			RedisConnectionFactory connectionFactory = roundTripCounting(clusterConnectionFactory, roundTrips);
+
+			// then
+			this.assertClaimInARoundTrip(connectionFactory, roundTrips);
+		} finally {
+			clusterConnectionFactory.destroy();
+			clusterServer.stop();
+		}
+	}
+
+	@Example
+	void claimRemovesIndexOfNotExistingValue() {
+		// given
+		RedisCloudEventTimerMessageStore sut = this.store(RedisSerializer.string(), Duration.ofMinutes(5), 0);
+		Instant now = Instant.now();
+		String orphanId = UUID.randomUUID().toString();
+		this.redisIndexOperations.opsForZSet()
+			.add(KEY_PREFIX + ":timer:{1}:index", orphanId, now.minusSeconds(10).toEpochMilli());
+
+		// when
+		List<TimerMessageStoreValue> claimed = sut.claimReleaseValues(now, 10, 1);
+
+		// then
+		assertThat(claimed).isEmpty();
+		assertThat(sut.findNextReleaseDateTime(1)).isEmpty();
+	}
+
+	@Example
+	void removeAllDeletesValuesAndIndexes() {
+		// given
+		RedisCloudEventTimerMessageStore sut = this.store(RedisSerializer.string(), Duration.ofMinutes(5), 1024);
+		Instant now = Instant.now();
+		TimerMessageStoreValue inlined = storeValue("inlined", now.minusSeconds(20));
+		TimerMessageStoreValue separated = storeValue("separated-" + "x".repeat(2048), now.plusSeconds(10));
+		sut.saveAll(List.of(inlined, separated), 1);
+		assertThat(sut.claimReleaseValues(now, 10, 1)).hasSize(1);
+
+		// when
+		sut.removeAll(List.of(inlined.getId(), separated.getId()), 1);
+
+		// then
+		assertThat(this.redisIndexOperations.opsForZSet().size(KEY_PREFIX + ":timer:{1}:index")).isZero();
+		assertThat(this.redisIndexOperations.opsForZSet().size(KEY_PREFIX + ":timer:{1}:inflight")).isZero();
+		assertThat(this.redisIndexOperations.opsForHash().size(KEY_PREFIX + ":timer:{1}:inline")).isZero();
+		assertThat(this.redisIndexOperations.hasKey(KEY_PREFIX + ":timer:{1}:value:" + separated.getId()))
+			.isEqualTo(false);
+		assertThat(sut.findNextReleaseDateTime(1)).isEmpty();
+	}
+
+	@Example
+	void findAndRemoveUnindexedInlineValues() {
+		// given
+		RedisCloudEventTimerMessageStore sut = this.store(RedisSerializer.string(), Duration.ofMinutes(5), 1024);
+		Instant now = Instant.now();
+		TimerMessageStoreValue indexed = storeValue("indexed", now.minusSeconds(10));
+		TimerMessageStoreValue claimed = storeValue("claimed", now.minusSeconds(20));
+		sut.saveAll(List.of(indexed, claimed), 1);
+		sut.claimReleaseValues(now.minusSeconds(15), 10, 1);
+		String unindexedId = UUID.randomUUID().toString();
+		this.redisIndexOperations.opsForHash().put(KEY_PREFIX + ":timer:{1}:inline", unindexedId, "value");
+
+		// when
+		Set<String> unindexed = sut.findUnindexedInlineValueIds(1, 1);
+		long removed = sut.removeUnindexedInlineValues(1, List.of(unindexedId, indexed.getId().toString()));
+
+		// then
+		assertThat(unindexed).containsExactly(unindexedId);
+		assertThat(removed).isEqualTo(1L);
+		assertThat(this.redisIndexOperations.opsForHash().keys(KEY_PREFIX + ":timer:{1}:inline"))
+			.containsExactlyInAnyOrder(indexed.getId().toString(), claimed.getId().toString());
+	}
+
+	@Example
+	void findNextReleaseDateTimeOfPartitionsByIndexAndInFlightIndex() {
+		// given
+		RedisCloudEventTimerMessageStore sut = this.store(RedisSerializer.string(), Duration.ofMinutes(5), 1024);
+		Instant now = Instant.now();
+		TimerMessageStoreValue earliest = storeValue("earliest", now.plusSeconds(10));
+		sut.saveAll(List.of(earliest, storeValue("later", now.plusSeconds(60))), 2);
+		TimerMessageStoreValue indexed = storeValue("indexed", now.plusSeconds(30));
+		sut.saveAll(List.of(indexed, storeValue("claimed", now.minusSeconds(10))), 1);
+		assertThat(sut.claimReleaseValues(now, 10, 1)).hasSize(1);
+		sut.save(storeValue("in-flight", now.minusSeconds(10)), 4);
+		assertThat(sut.claimReleaseValues(now, 10, 4)).hasSize(1);
+
+		// when
+		Optional<Instant> ofAll = sut.findNextReleaseDateTimeOfPartitions(List.of(1, 2, 3, 4));
+		Optional<Instant> ofIndexed = sut.findNextReleaseDateTimeOfPartitions(List.of(1, 3));
+		Optional<Instant> ofInFlight = sut.findNextReleaseDateTimeOfPartitions(List.of(3, 4));
+
+		// then
+		assertThat(ofAll).contains(earliest.getReleaseDateTime());
+		assertThat(ofIndexed).contains(indexed.getReleaseDateTime());
+		assertThat(ofInFlight).hasValueSatisfying(it -> assertThat(it).isAfter(now));
+		assertThat(sut.findNextReleaseDateTimeOfPartitions(List.of(3))).isEmpty();
+		assertThat(sut.findNextReleaseDateTime(2)).contains(earliest.getReleaseDateTime());
+	}
+
+	@Example
+	void sweepOrphansByKeySerializerOfValueOperations() {
+		// given
+		RedisCloudEventTimerMessageStore sut = this.store(namespacedKeySerializer(), Duration.ofMinutes(5), 0);
+		TimerMessageStoreValue stored = storeValue("stored", Instant.now().plusSeconds(10));
+		sut.save(stored, 1);
+		String orphanId = UUID.randomUUID().toString();
+		this.redisIndexOperations.opsForZSet().add(KEY_PREFIX + ":timer:{1}:index", orphanId, 0);
+		String unindexedId = UUID.randomUUID().toString();
+		this.redisIndexOperations.opsForValue().set("namespace/" + KEY_PREFIX + ":timer:{1}:value:" + unindexedId, "x");
+
+		// when
+		Set<String> orphans = sut.findOrphanStoreValueIds(1, 10);
+		long removedOrphans = sut.removeOrphanStoreValueIds(1, List.of(orphanId, stored.getId().toString()));
+		Set<String> unindexed = sut.findUnindexedValueIdsOfPartitions(List.of(1), 10).get(1);
+		long removedValues = sut.removeUnindexedValues(1, List.of(unindexedId, stored.getId().toString()));
+
+		// then
+		assertThat(orphans).containsExactly(orphanId);
+		assertThat(removedOrphans).isEqualTo(1L);
+		assertThat(unindexed).containsExactly(unindexedId);
+		assertThat(removedValues).isEqualTo(1L);
+		assertThat(this.redisIndexOperations.keys("namespace/*"))
+			.containsExactly("namespace/" + KEY_PREFIX + ":timer:{1}:value:" + stored.getId());
+	}
+
+	@Example
+	void findUnindexedValueIdsOfPartitionsByAScan() {
+		// given
+		RedisCloudEventTimerMessageStore sut = this.store(RedisSerializer.string(), Duration.ofMinutes(5), 0);
+		TimerMessageStoreValue stored = storeValue("stored", Instant.now().plusSeconds(10));
+		sut.save(stored, 1);
+		String unindexedOf1 = UUID.randomUUID().toString();
+		String unindexedOf12 = UUID.randomUUID().toString();
+		String unindexedOfNone = UUID.randomUUID().toString();
+		String unindexedOf3 = UUID.randomUUID().toString();
+		this.redisIndexOperations.opsForValue().set(KEY_PREFIX + ":timer:{1}:value:" + unindexedOf1, "x");
+		this.redisIndexOperations.opsForValue().set(KEY_PREFIX + ":timer:{12}:value:" + unindexedOf12, "x");
+		this.redisIndexOperations.opsForValue().set(KEY_PREFIX + ":timer:{none}:value:" + unindexedOfNone, "x");
+		this.redisIndexOperations.opsForValue().set(KEY_PREFIX + ":timer:{3}:value:" + unindexedOf3, "x");
+		this.redisIndexOperations.opsForValue().set("other:timer:{1}:value:" + UUID.randomUUID(), "x");
+		List<Integer> partitions = Arrays.asList(1, 12, null);
+
+		// when
+		Map<Integer, Set<String>> unindexed = sut.findUnindexedValueIdsOfPartitions(partitions, 1);
+
+		// then
+		assertThat(unindexed).containsOnlyKeys(partitions);
+		assertThat(unindexed.get(1)).containsExactly(unindexedOf1);
+		assertThat(unindexed.get(12)).containsExactly(unindexedOf12);
+		assertThat(unindexed.get(null)).containsExactly(unindexedOfNone);
+	}
+
+	private void assertClaimInARoundTrip(RedisConnectionFactory connectionFactory, AtomicInteger roundTrips) {
+		RedisCloudEventTimerMessageStore sut =
+			this.store(connectionFactory, RedisSerializer.string(), Duration.ofMinutes(5), 1024);
+		Instant now = Instant.now();
+		List<Integer> partitions = List.of(0, 1, 2, 3);
+		for (Integer partition : partitions) {
+			sut.save(storeValue("partition-" + partition, now.minusSeconds(10)), partition);
+		}
+
+		// scripts are loaded by the first claim.
+		List<List<Integer>> groups = sut.groupPartitions(partitions);
+		sut.claimReleaseValuesOfPartitions(now.minusSeconds(60), 10, groups.get(0));
+		roundTrips.set(0);
+
+		// when
+		Map<Integer, List<TimerMessageStoreValue>> claimed = sut.claimReleaseValuesOfPartitions(now, 10, groups.get(0));
+
+		// then
+		assertThat(groups).containsExactly(partitions);
+		assertThat(claimed).containsOnlyKeys(partitions);
+		assertThat(claimed.values()).allSatisfy(it -> assertThat(it).hasSize(1));
+		assertThat(roundTrips).hasValue(1);
+	}
+
+	private RedisCloudEventTimerMessageStore store(
+		RedisSerializer<String> valueKeySerializer,
+		Duration leaseDuration,
+		int inlineValueThreshold
+	) {
+		return this.store(this.connectionFactory, valueKeySerializer, leaseDuration, inlineValueThreshold);
+	}
+
+	private RedisCloudEventTimerMessageStore store(
+		RedisConnectionFactory connectionFactory,
+		RedisSerializer<String> valueKeySerializer,
+		Duration leaseDuration,
+		int inlineValueThreshold
+	) {
+		RedisTemplate<String, RedisCloudEventTimerMessageStoreValue> redisValueOperations = new RedisTemplate<>();
+		redisValueOperations.setConnectionFactory(connectionFactory);
+		redisValueOperations.setKeySerializer(valueKeySerializer);
+		redisValueOperations.setValueSerializer(new RedisCloudEventTimerMessageStoreValueSerializer());
+		redisValueOperations.afterPropertiesSet();
+
+		return new RedisCloudEventTimerMessageStore(
+			KEY_PREFIX,
+			new StringRedisTemplate(connectionFactory),
+			redisValueOperations,
+			CloudEventFixtures.createCloudEventMessageReaderWriter(),
+			leaseDuration,
+			ChronoUnit.MILLIS,
+			inlineValueThreshold
+		);
+	}
+
+	/**
+	 * Count commands sent to redis out of pipelines, and pipelines.
+	 */
+	private static RedisConnectionFactory roundTripCounting(
+		RedisConnectionFactory connectionFactory,
+		AtomicInteger roundTrips
+	) {
+		return (RedisConnectionFactory)Proxy.newProxyInstance(
+			RedisCloudEventTimerMessageStoreTest.class.getClassLoader(),
+			new Class<?>[] {RedisConnectionFactory.class},
+			(proxy, method, args) -> {
+				Object result = invoke(method, connectionFactory, args);
+				return result instanceof RedisConnection connection
+					? roundTripCounting(connection, roundTrips, new AtomicBoolean())
+					: result;
+			}
+		);
+	}
+
+	private static Object roundTripCounting(Object target, AtomicInteger roundTrips, AtomicBoolean pipelined) {
+		return Proxy.newProxyInstance(
+			RedisCloudEventTimerMessageStoreTest.class.getClassLoader(),
+			ClassUtils.getAllInterfaces(target),
+			(proxy, method, args) -> {
+				String name = method.getName();
+				boolean commands = name.endsWith("Commands") && method.getReturnType().isInterface();
+				if (name.equals("openPipeline")) {
+					pipelined.set(true);
+				} else if (name.equals("closePipeline")) {
+					pipelined.set(false);
+					roundTrips.incrementAndGet();
+				} else if (!pipelined.get() && !commands && !NOT_COMMANDS.contains(name)) {
+					roundTrips.incrementAndGet();
+				}
+
+				Object result = invoke(method, target, args);
+				return commands && result != null ? roundTripCounting(result, roundTrips, pipelined) : result;
+			}
+		);
+	}
+
+	private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException ex) {
+			throw ex.getCause();
+		}
+	}
+
+	private static RedisSerializer<String> namespacedKeySerializer() {
+		return new RedisSerializer<>() {
+			@Override
+			public byte[] serialize(String value) {
+				return ("namespace/" + value).getBytes(StandardCharsets.UTF_8);
+			}
+
+			@Override
+			public String deserialize(byte[] bytes) {
+				return new String(bytes, StandardCharsets.UTF_8).substring("namespace/".length());
+			}
+		};
+	}
+
+	private static TimerMessageStoreValue storeValue(String name, Instant releaseDateTime) {
+		return new TimerMessageStoreValue(
+			UUID.randomUUID(),
+			new TestTimerCommand(name, releaseDateTime),
+			releaseDateTime.truncatedTo(ChronoUnit.MILLIS)
+		);
+	}
+}
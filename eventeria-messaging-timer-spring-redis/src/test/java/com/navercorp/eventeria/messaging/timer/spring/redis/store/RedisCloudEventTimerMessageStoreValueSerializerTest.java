@@ -0,0 +1,176 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.messaging.timer.spring.redis.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+import org.springframework.data.redis.serializer.SerializationException;
+
+import net.jqwik.api.Example;
+
+class RedisCloudEventTimerMessageStoreValueSerializerTest {
+	private final RedisCloudEventTimerMessageStoreValueSerializer sut =
+		new RedisCloudEventTimerMessageStoreValueSerializer(16);
+
+	@Example
+	void roundTripRawMessage() {
+		// given
+		RedisCloudEventTimerMessageStoreValue value = storeValue("small".getBytes(StandardCharsets.UTF_8));
+
+		// when
+		byte[] serialized = this.sut.serialize(value);
+
+		// then
+		assertThat(serialized[1] & 0x02).isZero();
+		assertThat(this.sut.deserialize(serialized)).isEqualTo(value);
+	}
+
+	@Example
+	void roundTripDeflatedMessage() {
+		// given
+		RedisCloudEventTimerMessageStoreValue value = compressibleStoreValue();
+
+		// when
+		byte[] serialized = this.sut.serialize(value);
+
+		// then
+		assertThat(serialized[1] & 0x02).isEqualTo(0x02);
+		assertThat(serialized.length).isLessThan(value.getMessage().length);
+		assertThat(this.sut.deserialize(serialized)).isEqualTo(value);
+	}
+
+	@Example
+	void writeIncompressibleMessageRaw() {
+		// given
+		byte[] message = new byte[1024];
+		new Random(1L).nextBytes(message);
+		RedisCloudEventTimerMessageStoreValue value = storeValue(message);
+
+		// when
+		byte[] serialized = this.sut.serialize(value);
+
+		// then
+		assertThat(serialized[1] & 0x02).isZero();
+		assertThat(serialized).hasSize(1 + 1 + 16 + 8 + 4 + 4 + message.length);
+		assertThat(this.sut.deserialize(serialized)).isEqualTo(value);
+	}
+
+	@Example
+	void readVersion1Layout() {
+		// given
+		byte[] bytes = ByteBuffer.allocate(1 + 1 + 16 + 8 + 4 + 4 + 3)
+			.put((byte)1)
+			.put((byte)0x01)
+			.putLong(1L)
+			.putLong(2L)
+			.putLong(1700000000L)
+			.putInt(123)
+			.putInt(3)
+			.put("abc".getBytes(StandardCharsets.UTF_8))
+			.array();
+
+		// when
+		RedisCloudEventTimerMessageStoreValue actual = this.sut.deserialize(bytes);
+
+		// then
+		assertThat(actual).isEqualTo(new RedisCloudEventTimerMessageStoreValue(
+			new UUID(1L, 2L),
+			"abc".getBytes(StandardCharsets.UTF_8),
+			Instant.ofEpochSecond(1700000000L, 123),
+			true
+		));
+	}
+
+	@Example
+	void rejectUnsupportedVersion() {
+		// given
+		byte[] serialized = this.sut.serialize(storeValue("small".getBytes(StandardCharsets.UTF_8)));
+		serialized[0] = 2;
+
+		// when, then
+		assertThatThrownBy(() -> this.sut.deserialize(serialized))
+			.isInstanceOf(SerializationException.class)
+			.hasMessageContaining("version");
+	}
+
+	@Example
+	void rejectTruncatedValue() {
+		// given
+		byte[] serialized = this.sut.serialize(compressibleStoreValue());
+
+		// when, then
+		assertThatThrownBy(() -> this.sut.deserialize(Arrays.copyOf(serialized, 20)))
+			.isInstanceOf(SerializationException.class);
+		assertThatThrownBy(() -> this.sut.deserialize(Arrays.copyOf(serialized, serialized.length - 1)))
+			.isInstanceOf(SerializationException.class);
+	}
+
+	@Example
+	void rejectOriginalLengthOutOfRange() {
+		// given
+		byte[] serialized = this.sut.serialize(compressibleStoreValue());
+		int originalLengthOffset = 1 + 1 + 16 + 8 + 4;
+		byte[] negative = serialized.clone();
+		ByteBuffer.wrap(negative).putInt(originalLengthOffset, -1);
+		byte[] huge = serialized.clone();
+		ByteBuffer.wrap(huge).putInt(originalLengthOffset, Integer.MAX_VALUE);
+
+		// when, then
+		assertThatThrownBy(() -> this.sut.deserialize(negative))
+			.isInstanceOf(SerializationException.class)
+			.hasMessageContaining("originalLength");
+		assertThatThrownBy(() -> this.sut.deserialize(huge))
+			.isInstanceOf(SerializationException.class)
+			.hasMessageContaining("originalLength");
+	}
+
+	@Example
+	void rejectCorruptedDeflatedMessage() {
+		// given
+		byte[] serialized = this.sut.serialize(compressibleStoreValue());
+		for (int i = 1 + 1 + 16 + 8 + 4 + 4 + 4; i < serialized.length; i++) {
+			serialized[i] = (byte)0xff;
+		}
+
+		// when, then
+		assertThatThrownBy(() -> this.sut.deserialize(serialized))
+			.isInstanceOf(SerializationException.class);
+	}
+
+	private static RedisCloudEventTimerMessageStoreValue compressibleStoreValue() {
+		return storeValue("compressible ".repeat(100).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static RedisCloudEventTimerMessageStoreValue storeValue(byte[] message) {
+		return new RedisCloudEventTimerMessageStoreValue(
+			UUID.randomUUID(),
+			message,
+			Instant.ofEpochSecond(1700000000L, 456),
+			true
+		);
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.eventeria.messaging.timer.spring.redis.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import net.jqwik.api.Example;
+import net.jqwik.api.lifecycle.AfterTry;
+import net.jqwik.api.lifecycle.BeforeTry;
+
+import com.github.fppt.jedismock.RedisServer;
+
+class RedisPartitionLeaseRegistryTest {
+	private static final Duration TTL = Duration.ofMinutes(1);
+
+	private RedisServer redisServer;
+	private LettuceConnectionFactory connectionFactory;
+	private StringRedisTemplate redisOperations;
+	private RedisPartitionLeaseRegistry sut;
+
+	@BeforeTry
+	void setUp() throws Exception {
+		this.redisServer = RedisServer.newRedisServer().start();
+		this.connectionFactory = new LettuceConnectionFactory(
+			new RedisStandaloneConfiguration(this.redisServer.getHost(), this.redisServer.getBindPort())
+		);
+		this.connectionFactory.afterPropertiesSet();
+		this.connectionFactory.start();
+		this.redisOperations = new StringRedisTemplate(this.connectionFactory);
+		this.sut = new RedisPartitionLeaseRegistry("test", this.redisOperations);
+	}
+
+	@AfterTry
+	void tearDown() throws Exception {
+		this.connectionFactory.destroy();
+		this.redisServer.stop();
+	}
+
+	@Example
+	void tryAcquireAllSkipsPartitionsOwnedByOthers() {
+		// given
+		assertThat(this.sut.tryAcquire(1, "b", TTL)).isEqualTo(true);
+
+		// when
+		List<Integer> acquired = List.copyOf(this.sut.tryAcquireAll(List.of(0, 1, 2), "a", TTL));
+
+		// then
+		assertThat(acquired).containsExactly(0, 2);
+		assertThat(List.copyOf(this.sut.tryAcquireAll(List.of(0, 1, 2), "a", TTL))).containsExactly(0, 2);
+		assertThat(List.copyOf(this.sut.tryAcquireAll(List.of(0, 1, 2), "b", TTL))).containsExactly(1);
+	}
+
+	@Example
+	void tryAcquireAllAfterScriptsFlushed() {
+		// given
+		assertThat(List.copyOf(this.sut.tryAcquireAll(List.of(0, 1), "a", TTL))).containsExactly(0, 1);
+
+		// when
+		this.redisOperations.execute((RedisCallback<Object>)connection -> {
+			connection.scriptingCommands().scriptFlush();
+			return null;
+		});
+		List<Integer> acquired = List.copyOf(this.sut.tryAcquireAll(List.of(0, 1, 2), "a", TTL));
+
+		// then
+		assertThat(acquired).containsExactly(0, 1, 2);
+	}
+
+	@Example
+	void releasedPartitionIsAcquiredByOthers() {
+		// given
+		this.sut.tryAcquireAll(List.of(0, 1), "a", TTL);
+
+		// when
+		this.sut.release(0, "b");
+		this.sut.release(1, "a");
+
+		// then
+		assertThat(List.copyOf(this.sut.tryAcquireAll(List.of(0, 1), "b", TTL))).containsExactly(1);
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.messaging.timer.spring.redis.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import net.jqwik.api.Example;
+import net.jqwik.api.lifecycle.AfterTry;
+import net.jqwik.api.lifecycle.BeforeTry;
+
+import com.github.fppt.jedismock.RedisServer;
+
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+import com.navercorp.eventeria.timer.fixture.CloudEventFixtures;
+import com.navercorp.eventeria.timer.fixture.TestTimerCommand;
+
+class RedisTimerMessageOrphanSweeperTest {
+	private static final String KEY_PREFIX = "test";
+
+	private RedisServer redisServer;
+	private LettuceConnectionFactory connectionFactory;
+	private StringRedisTemplate redisIndexOperations;
+	private RedisCloudEventTimerMessageStore timerMessageStore;
+
+	@BeforeTry
+	void setUp() throws Exception {
+		this.redisServer = RedisServer.newRedisServer().start();
+		this.connectionFactory = new LettuceConnectionFactory(
+			new RedisStandaloneConfiguration(this.redisServer.getHost(), this.redisServer.getBindPort())
+		);
+		this.connectionFactory.afterPropertiesSet();
+		this.connectionFactory.start();
+		this.redisIndexOperations = new StringRedisTemplate(this.connectionFactory);
+
+		RedisTemplate<String, RedisCloudEventTimerMessageStoreValue> redisValueOperations = new RedisTemplate<>();
+		redisValueOperations.setConnectionFactory(this.connectionFactory);
+		redisValueOperations.setKeySerializer(this.redisIndexOperations.getStringSerializer());
+		redisValueOperations.setValueSerializer(new RedisCloudEventTimerMessageStoreValueSerializer());
+		redisValueOperations.afterPropertiesSet();
+		this.timerMessageStore = new RedisCloudEventTimerMessageStore(
+			KEY_PREFIX,
+			this.redisIndexOperations,
+			redisValueOperations,
+			CloudEventFixtures.createCloudEventMessageReaderWriter(),
+			Duration.ofMinutes(5),
+			ChronoUnit.MILLIS,
+			1024
+		);
+	}
+
+	@AfterTry
+	void tearDown() throws Exception {
+		this.connectionFactory.destroy();
+		this.redisServer.stop();
+	}
+
+	@Example
+	void removeIndexWithoutValueOnSecondRun() {
+		// given
+		RedisTimerMessageOrphanSweeper sut = new RedisTimerMessageOrphanSweeper(this.timerMessageStore, 2);
+		TimerMessageStoreValue stored = storeValue();
+		this.timerMessageStore.save(stored, 1);
+		String orphanId = UUID.randomUUID().toString();
+		this.redisIndexOperations.opsForZSet().add(KEY_PREFIX + ":timer:{1}:index", orphanId, 0);
+
+		// when
+		sut.run();
+		long firstRemovedCount = sut.getLastRemovedCount();
+		sut.run();
+
+		// then
+		assertThat(firstRemovedCount).isZero();
+		assertThat(sut.getLastRemovedCount()).isEqualTo(1L);
+		assertThat(this.redisIndexOperations.opsForZSet().range(KEY_PREFIX + ":timer:{1}:index", 0, -1))
+			.containsExactly(stored.getId().toString());
+	}
+
+	@Example
+	void removeInlineValueWithoutIndexOnSecondRun() {
+		// given
+		RedisTimerMessageOrphanSweeper sut = new RedisTimerMessageOrphanSweeper(this.timerMessageStore, 2);
+		TimerMessageStoreValue stored = storeValue();
+		this.timerMessageStore.save(stored, 1);
+		String orphanId = UUID.randomUUID().toString();
+		this.redisIndexOperations.opsForHash().put(KEY_PREFIX + ":timer:{1}:inline", orphanId, "value");
+
+		// when
+		sut.run();
+		long firstRemovedCount = sut.getLastRemovedCount();
+		sut.run();
+
+		// then
+		assertThat(firstRemovedCount).isZero();
+		assertThat(sut.getLastRemovedCount()).isEqualTo(1L);
+		assertThat(sut.getRemovedCount()).isEqualTo(1L);
+		assertThat(this.redisIndexOperations.opsForHash().keys(KEY_PREFIX + ":timer:{1}:inline"))
+			.containsExactly(stored.getId().toString());
+	}
+
+	@Example
+	void removeSeparatedValueWithoutIndexOnSecondRun() {
+		// given
+		RedisTimerMessageOrphanSweeper sut = new RedisTimerMessageOrphanSweeper(this.timerMessageStore, 2);
+		String orphanKey = KEY_PREFIX + ":timer:{0}:value:" + UUID.randomUUID();
+		this.redisIndexOperations.opsForValue().set(orphanKey, "value");
+
+		// when
+		sut.run();
+		long firstRemovedCount = sut.getLastRemovedCount();
+		sut.run();
+
+		// then
+		assertThat(firstRemovedCount).isZero();
+		assertThat(sut.getLastRemovedCount()).isEqualTo(1L);
+		assertThat(this.redisIndexOperations.hasKey(orphanKey)).isEqualTo(false);
+	}
+
+	@Example
+	void keepInlineValueIndexedBeforeSecondRun() {
+		// given
+		RedisTimerMessageOrphanSweeper sut = new RedisTimerMessageOrphanSweeper(this.timerMessageStore, 2);
+		String savingId = UUID.randomUUID().toString();
+		this.redisIndexOperations.opsForHash().put(KEY_PREFIX + ":timer:{1}:inline", savingId, "value");
+		sut.run();
+
+		// when
+		this.redisIndexOperations.opsForZSet().add(KEY_PREFIX + ":timer:{1}:index", savingId, 0);
+		this.redisIndexOperations.opsForHash().put(KEY_PREFIX + ":timer:{1}:inline", savingId, "value");
+		sut.run();
+
+		// then
+		assertThat(this.redisIndexOperations.opsForHash().hasKey(KEY_PREFIX + ":timer:{1}:inline", savingId))
+			.isEqualTo(true);
+	}
+
+	private static TimerMessageStoreValue storeValue() {
+		Instant releaseDateTime = Instant.now().plusSeconds(60).truncatedTo(ChronoUnit.MILLIS);
+		return new TimerMessageStoreValue(
+			UUID.randomUUID(),
+			new TestTimerCommand("stored", releaseDateTime),
+			releaseDateTime
+		);
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.benchmark;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.navercorp.eventeria.messaging.contract.distribution.PartitionGenerator;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStore;
+import com.navercorp.eventeria.timer.handler.DistributedTimerMessageHandler;
+
+/**
+ * Benchmark of a full {@link DistributedTimerMessageHandler#releaseMessages} cycle.
+ * <p/>
+ * Each iteration registers {@value #DUE_COUNT} due messages over pendingCount messages scheduled later,
+ * and measures releasing all of due messages.
+ */
+@State(Scope.Benchmark)
+public class DistributedTimerMessageHandlerBenchmark {
+	static final int DUE_COUNT = 10_000;
+	static final int COUNT_PER_RELEASE = 100;
+
+	private static final PartitionGenerator PARTITION_GENERATOR =
+		(payload, numOfPartition, fallbackPartition) -> Math.floorMod(payload.hashCode(), numOfPartition);
+
+	@Param({"InMemory", "ConcurrentInMemory", "TimeBucketed", "MappedFile"})
+	public String storeType;
+
+	// 10000000 is run by -PjmhLarge only for stores other than InMemory, which re-sorts on every save.
+	@Param({"1000", "100000"})
+	public int pendingCount;
+
+	@Param({"1", "8", "64"})
+	public int partitionCount;
+
+	// 0 releases partitions on the caller thread.
+	@Param({"0", "8"})
+	public int releaseConcurrency;
+
+	private TimerMessageStore store;
+	private ExecutorService executor;
+	private DistributedTimerMessageHandler handler;
+	private final List<Object> dueMessages = new ArrayList<>(DUE_COUNT);
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		SplittableRandom random = new SplittableRandom(42L);
+		this.store = TimerMessageStores.create(this.storeType);
+		// not to be released by benchmark
+		Instant later = Instant.now().plus(TimerMessageStores.SPREAD.multipliedBy(2));
+		TimerMessageStores.populate(
+			this.store, this.pendingCount, this.partitionCount, later, random, TimerMessageStores::stringMessage);
+
+		if (this.releaseConcurrency > 0) {
+			this.executor = Executors.newFixedThreadPool(this.releaseConcurrency);
+		}
+		this.handler = new DistributedTimerMessageHandler(
+			this.store,
+			COUNT_PER_RELEASE,
+			PARTITION_GENERATOR,
+			this.partitionCount,
+			this.partitionCount,
+			this.executor,
+			Math.max(1, this.releaseConcurrency)
+		);
+
+		for (int i = 0; i < DUE_COUNT; i++) {
+			this.dueMessages.add(TimerMessageStores.stringMessage(random));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		if (this.executor != null) {
+			this.executor.shutdownNow();
+		}
+		TimerMessageStores.close(this.store);
+	}
+
+	// messages which are not TimerMessage are scheduled at the registered time.
+	@Setup(Level.Iteration)
+	public void registerDueMessages() {
+		this.handler.registerAll(this.dueMessages);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 5)
+	@Measurement(iterations = 20)
+	public long releaseMessages() {
+		// consumed on executor threads
+		LongAdder released = new LongAdder();
+		this.handler.releaseMessages(message -> released.increment());
+		return released.sum();
+	}
+}
@@ -0,0 +1,301 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.benchmark;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.fppt.jedismock.RedisServer;
+
+import io.cloudevents.core.builder.CloudEventBuilder;
+
+import com.navercorp.eventeria.messaging.contract.cloudevents.serializer.CloudEventMessageReaderWriter;
+import com.navercorp.eventeria.messaging.converter.CloudEventTypeAliasExtensionsConverter;
+import com.navercorp.eventeria.messaging.converter.CompositeCloudEventExtensionsConverter;
+import com.navercorp.eventeria.messaging.converter.DefaultCloudEventAttributesConverter;
+import com.navercorp.eventeria.messaging.converter.DefaultCloudEventMessageConverter;
+import com.navercorp.eventeria.messaging.converter.DefaultCloudEventToMessageConverter;
+import com.navercorp.eventeria.messaging.converter.DefaultMessageToCloudEventConverter;
+import com.navercorp.eventeria.messaging.converter.MessageCategoryExtensionsConverter;
+import com.navercorp.eventeria.messaging.converter.PartitionKeyExtensionsConverter;
+import com.navercorp.eventeria.messaging.jackson.serializer.JacksonCloudEventReaderWriter;
+import com.navercorp.eventeria.messaging.jackson.serializer.JacksonMessageSerializer;
+import com.navercorp.eventeria.messaging.timer.spring.redis.store.RedisCloudEventTimerMessageStore;
+import com.navercorp.eventeria.messaging.timer.spring.redis.store.RedisCloudEventTimerMessageStoreValue;
+import com.navercorp.eventeria.messaging.timer.spring.redis.store.RedisCloudEventTimerMessageStoreValueSerializer;
+import com.navercorp.eventeria.messaging.typealias.CloudEventMessageTypeAliasMapper;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+import com.navercorp.eventeria.timer.handler.DistributedTimerMessageHandler;
+
+/**
+ * Benchmarks of {@link RedisCloudEventTimerMessageStore} against an in-process redis server.
+ * <p/>
+ * Numbers include a network round trip to loopback, but not the performance of an actual redis server.
+ * Compare them with each other, not with in-process stores.
+ */
+@State(Scope.Benchmark)
+public class RedisTimerMessageStoreBenchmark {
+	static final int BATCH_SIZE = 1000;
+	static final int COUNT_PER_RELEASE = 100;
+	static final int DUE_COUNT = 1000;
+
+	private static final URI SOURCE = URI.create("/eventeria/timer/benchmark");
+
+	@Param({"1000", "100000"})
+	public int pendingCount;
+
+	@Param({"1", "8", "64"})
+	public int partitionCount;
+
+	@Param({"json", "binary"})
+	public String valueSerializer;
+
+	@Param({"0", "1024"})
+	public int inlineValueThreshold;
+
+	RedisCloudEventTimerMessageStore store;
+	Instant now;
+	SplittableRandom random;
+	List<List<TimerMessageStoreValue>> pendingValues;
+
+	private RedisServer redisServer;
+	private LettuceConnectionFactory connectionFactory;
+	private DistributedTimerMessageHandler handler;
+	private final List<Object> dueMessages = new ArrayList<>(DUE_COUNT);
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		this.redisServer = RedisServer.newRedisServer().start();
+		this.connectionFactory = new LettuceConnectionFactory(
+			new RedisStandaloneConfiguration(this.redisServer.getHost(), this.redisServer.getBindPort())
+		);
+		this.connectionFactory.afterPropertiesSet();
+		this.connectionFactory.start();
+
+		StringRedisTemplate redisIndexOperations = new StringRedisTemplate(this.connectionFactory);
+		RedisTemplate<String, RedisCloudEventTimerMessageStoreValue> redisValueOperations = new RedisTemplate<>();
+		redisValueOperations.setConnectionFactory(this.connectionFactory);
+		redisValueOperations.setKeySerializer(RedisSerializer.string());
+		redisValueOperations.setValueSerializer(valueSerializer(this.valueSerializer));
+		redisValueOperations.afterPropertiesSet();
+
+		this.store = new RedisCloudEventTimerMessageStore(
+			"benchmark",
+			redisIndexOperations,
+			redisValueOperations,
+			cloudEventMessageReaderWriter(),
+			Duration.ofMinutes(5),
+			ChronoUnit.MILLIS,
+			this.inlineValueThreshold
+		);
+
+		this.now = Instant.now();
+		this.random = new SplittableRandom(42L);
+		this.pendingValues = TimerMessageStores.populate(
+			this.store,
+			this.pendingCount,
+			this.partitionCount,
+			// not to be released by releaseMessages benchmark
+			this.now.plus(TimerMessageStores.SPREAD.multipliedBy(2)),
+			this.random,
+			RedisTimerMessageStoreBenchmark::cloudEventMessage
+		);
+
+		this.handler = new DistributedTimerMessageHandler(
+			this.store,
+			COUNT_PER_RELEASE,
+			(payload, numOfPartition, fallbackPartition) -> Math.floorMod(payload.hashCode(), numOfPartition),
+			this.partitionCount,
+			this.partitionCount,
+			null
+		);
+		for (int i = 0; i < DUE_COUNT; i++) {
+			this.dueMessages.add(cloudEventMessage(this.random));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		this.connectionFactory.destroy();
+		this.redisServer.stop();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 5, batchSize = BATCH_SIZE)
+	@Measurement(iterations = 20, batchSize = BATCH_SIZE)
+	public void save(SaveBatch batch) {
+		batch.values.saveNext(this.store);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 5, batchSize = BATCH_SIZE)
+	@Measurement(iterations = 20, batchSize = BATCH_SIZE)
+	public void remove(RemoveBatch batch) {
+		batch.values.removeNext(this.store);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public List<TimerMessageStoreValue> findReleaseValues() {
+		// pending values are scheduled later, so find the earliest ones of a partition.
+		return this.store.findReleaseValues(
+			Instant.MAX, COUNT_PER_RELEASE, this.random.nextInt(this.partitionCount));
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 5)
+	@Measurement(iterations = 20)
+	public void releaseMessages(DueMessages dueMessages, Blackhole blackhole) {
+		this.handler.releaseMessages(blackhole::consume);
+	}
+
+	static Object cloudEventMessage(SplittableRandom random) {
+		return CloudEventBuilder.v1()
+			.withId(UUID.randomUUID().toString())
+			.withSource(SOURCE)
+			.withType("benchmark")
+			.withData("application/json", ("{\"value\":" + random.nextInt() + "}").getBytes(StandardCharsets.UTF_8))
+			.build();
+	}
+
+	private static RedisSerializer<RedisCloudEventTimerMessageStoreValue> valueSerializer(String valueSerializer) {
+		switch (valueSerializer) {
+			case "json":
+				return new Jackson2JsonRedisSerializer<>(
+					JsonMapper.builder().addModule(new JavaTimeModule()).build(),
+					RedisCloudEventTimerMessageStoreValue.class
+				);
+			case "binary":
+				return new RedisCloudEventTimerMessageStoreValueSerializer(1024);
+			default:
+				throw new IllegalArgumentException("unknown valueSerializer: " + valueSerializer);
+		}
+	}
+
+	private static CloudEventMessageReaderWriter cloudEventMessageReaderWriter() {
+		CloudEventMessageTypeAliasMapper typeAliasMapper = new CloudEventMessageTypeAliasMapper();
+		JacksonMessageSerializer messageSerializer = new JacksonMessageSerializer();
+		return new JacksonCloudEventReaderWriter(
+			new DefaultCloudEventMessageConverter(
+				new DefaultMessageToCloudEventConverter(
+					new DefaultCloudEventAttributesConverter(),
+					new CompositeCloudEventExtensionsConverter(
+						new CloudEventTypeAliasExtensionsConverter(typeAliasMapper),
+						new MessageCategoryExtensionsConverter(),
+						new PartitionKeyExtensionsConverter()
+					),
+					messageSerializer
+				),
+				new DefaultCloudEventToMessageConverter(typeAliasMapper, messageSerializer)
+			)
+		);
+	}
+
+	/**
+	 * New values saved in an iteration, removed after the iteration.
+	 */
+	@State(Scope.Benchmark)
+	public static class SaveBatch {
+		final ValueBatch values = new ValueBatch();
+
+		@Setup(Level.Iteration)
+		public void setUp(RedisTimerMessageStoreBenchmark benchmark) {
+			for (int i = 0; i < BATCH_SIZE; i++) {
+				this.values.add(
+					TimerMessageStores.randomValue(
+						benchmark.now, benchmark.random, RedisTimerMessageStoreBenchmark::cloudEventMessage),
+					benchmark.random.nextInt(benchmark.partitionCount)
+				);
+			}
+		}
+
+		@TearDown(Level.Iteration)
+		public void tearDown(RedisTimerMessageStoreBenchmark benchmark) {
+			this.values.removeAll(benchmark.store);
+			this.values.clear();
+		}
+	}
+
+	/**
+	 * Pending values removed in an iteration, saved again after the iteration.
+	 */
+	@State(Scope.Benchmark)
+	public static class RemoveBatch {
+		final ValueBatch values = new ValueBatch();
+
+		@Setup(Level.Iteration)
+		public void setUp(RedisTimerMessageStoreBenchmark benchmark) {
+			this.values.pick(benchmark.pendingValues, BATCH_SIZE, benchmark.random);
+		}
+
+		@TearDown(Level.Iteration)
+		public void tearDown(RedisTimerMessageStoreBenchmark benchmark) {
+			this.values.saveAll(benchmark.store);
+			this.values.clear();
+		}
+	}
+
+	/**
+	 * Due messages registered before each iteration of releaseMessages.
+	 */
+	@State(Scope.Benchmark)
+	public static class DueMessages {
+		@Setup(Level.Iteration)
+		public void setUp(RedisTimerMessageStoreBenchmark benchmark) {
+			benchmark.handler.registerAll(benchmark.dueMessages);
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.benchmark;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+
+/**
+ * Benchmarks of in-process {@link TimerMessageStore} implementations.
+ * <p/>
+ * save and remove are measured as a batch of {@value #BATCH_SIZE} calls per iteration,
+ * and the store is restored after each iteration to keep the pending count.
+ */
+@State(Scope.Benchmark)
+public class TimerMessageStoreBenchmark {
+	static final int BATCH_SIZE = 1000;
+	static final int COUNT_PER_RELEASE = 100;
+
+	@Param({"InMemory", "ConcurrentInMemory", "TimeBucketed", "MappedFile"})
+	public String storeType;
+
+	// 10000000 is run by -PjmhLarge only for stores other than InMemory, which re-sorts on every save.
+	@Param({"1000", "100000"})
+	public int pendingCount;
+
+	@Param({"1", "8", "64"})
+	public int partitionCount;
+
+	TimerMessageStore store;
+	Instant now;
+	SplittableRandom random;
+	List<List<TimerMessageStoreValue>> pendingValues;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.now = Instant.now();
+		this.random = new SplittableRandom(42L);
+		this.store = TimerMessageStores.create(this.storeType);
+		this.pendingValues = TimerMessageStores.populate(
+			this.store,
+			this.pendingCount,
+			this.partitionCount,
+			this.now,
+			this.random,
+			TimerMessageStores::stringMessage
+		);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		TimerMessageStores.close(this.store);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 5, batchSize = BATCH_SIZE)
+	@Measurement(iterations = 20, batchSize = BATCH_SIZE)
+	public void save(SaveBatch batch) {
+		batch.values.saveNext(this.store);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 5, batchSize = BATCH_SIZE)
+	@Measurement(iterations = 20, batchSize = BATCH_SIZE)
+	public void remove(RemoveBatch batch) {
+		batch.values.removeNext(this.store);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public List<TimerMessageStoreValue> findReleaseValues() {
+		return this.store.findReleaseValues(this.now, COUNT_PER_RELEASE, this.random.nextInt(this.partitionCount));
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public Optional<Instant> findNextReleaseDateTime() {
+		return this.store.findNextReleaseDateTime(this.random.nextInt(this.partitionCount));
+	}
+
+	/**
+	 * New values saved in an iteration, removed after the iteration.
+	 */
+	@State(Scope.Benchmark)
+	public static class SaveBatch {
+		final ValueBatch values = new ValueBatch();
+
+		@Setup(Level.Iteration)
+		public void setUp(TimerMessageStoreBenchmark benchmark) {
+			for (int i = 0; i < BATCH_SIZE; i++) {
+				this.values.add(
+					TimerMessageStores.randomValue(benchmark.now, benchmark.random, TimerMessageStores::stringMessage),
+					benchmark.random.nextInt(benchmark.partitionCount)
+				);
+			}
+		}
+
+		@TearDown(Level.Iteration)
+		public void tearDown(TimerMessageStoreBenchmark benchmark) {
+			this.values.removeAll(benchmark.store);
+			this.values.clear();
+		}
+	}
+
+	/**
+	 * Pending values removed in an iteration, saved again after the iteration.
+	 */
+	@State(Scope.Benchmark)
+	public static class RemoveBatch {
+		final ValueBatch values = new ValueBatch();
+
+		@Setup(Level.Iteration)
+		public void setUp(TimerMessageStoreBenchmark benchmark) {
+			this.values.pick(benchmark.pendingValues, BATCH_SIZE, benchmark.random);
+		}
+
+		@TearDown(Level.Iteration)
+		public void tearDown(TimerMessageStoreBenchmark benchmark) {
+			this.values.saveAll(benchmark.store);
+			this.values.clear();
+		}
+	}
+}
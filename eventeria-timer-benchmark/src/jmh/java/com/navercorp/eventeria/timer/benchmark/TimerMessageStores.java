@@ -0,0 +1,127 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+import com.navercorp.eventeria.timer.store.ConcurrentInMemoryTimerMessageStore;
+import com.navercorp.eventeria.timer.store.InMemoryTimerMessageStore;
+import com.navercorp.eventeria.timer.store.MappedFileTimerMessageStore;
+import com.navercorp.eventeria.timer.store.TimeBucketedTimerMessageStore;
+import com.navercorp.eventeria.timer.store.TimerMessageSerializer;
+
+/**
+ * Stores and values under benchmark.
+ */
+final class TimerMessageStores {
+	// pending values are scheduled in [now - SPREAD, now + SPREAD), so about a half of them are due.
+	static final Duration SPREAD = Duration.ofHours(1);
+
+	static final TimerMessageSerializer STRING_SERIALIZER = new TimerMessageSerializer() {
+		@Override
+		public byte[] serialize(Object message) {
+			return ((String)message).getBytes(StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public Object deserialize(byte[] serialized) {
+			return new String(serialized, StandardCharsets.UTF_8);
+		}
+	};
+
+	private TimerMessageStores() {
+	}
+
+	static TimerMessageStore create(String storeType) {
+		switch (storeType) {
+			case "InMemory":
+				return new InMemoryTimerMessageStore();
+			case "ConcurrentInMemory":
+				return new ConcurrentInMemoryTimerMessageStore();
+			case "TimeBucketed":
+				return new TimeBucketedTimerMessageStore();
+			case "MappedFile":
+				try {
+					Path directory = Files.createTempDirectory("timer-message-store-benchmark");
+					return new MappedFileTimerMessageStore(directory, STRING_SERIALIZER);
+				} catch (IOException ex) {
+					throw new UncheckedIOException(ex);
+				}
+			default:
+				throw new IllegalArgumentException("unknown storeType: " + storeType);
+		}
+	}
+
+	static void close(TimerMessageStore store) throws Exception {
+		if (store instanceof AutoCloseable closeable) {
+			closeable.close();
+		}
+	}
+
+	/**
+	 * Save pendingCount values scheduled around center, spread to partitions. one saveAll per partition.
+	 *
+	 * @return saved values per partition.
+	 */
+	static List<List<TimerMessageStoreValue>> populate(
+		TimerMessageStore store,
+		int pendingCount,
+		int partitionCount,
+		Instant center,
+		SplittableRandom random,
+		Function<SplittableRandom, Object> messageFactory
+	) {
+		List<List<TimerMessageStoreValue>> valuesByPartition = new ArrayList<>(partitionCount);
+		for (int partition = 0; partition < partitionCount; partition++) {
+			int count = pendingCount / partitionCount + (partition < pendingCount % partitionCount ? 1 : 0);
+			List<TimerMessageStoreValue> values = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				values.add(randomValue(center, random, messageFactory));
+			}
+			store.saveAll(values, partition);
+			valuesByPartition.add(values);
+		}
+		return valuesByPartition;
+	}
+
+	static TimerMessageStoreValue randomValue(
+		Instant center,
+		SplittableRandom random,
+		Function<SplittableRandom, Object> messageFactory
+	) {
+		long offsetMillis = random.nextLong(-SPREAD.toMillis(), SPREAD.toMillis());
+		return new TimerMessageStoreValue(messageFactory.apply(random), center.plusMillis(offsetMillis));
+	}
+
+	static Object stringMessage(SplittableRandom random) {
+		return "message-" + random.nextInt();
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+
+/**
+ * Values saved or removed one by one in a measurement iteration, to be restored after the iteration.
+ */
+final class ValueBatch {
+	private final List<TimerMessageStoreValue> values = new ArrayList<>();
+	private final List<Integer> partitions = new ArrayList<>();
+	private int cursor;
+
+	void add(TimerMessageStoreValue value, int partition) {
+		this.values.add(value);
+		this.partitions.add(partition);
+	}
+
+	/**
+	 * Pick size distinct values of pendingValues at random.
+	 */
+	void pick(List<List<TimerMessageStoreValue>> pendingValues, int size, SplittableRandom random) {
+		int pendingCount = pendingValues.stream().mapToInt(List::size).sum();
+		Set<UUID> picked = new HashSet<>();
+		while (this.values.size() < Math.min(size, pendingCount)) {
+			int partition = random.nextInt(pendingValues.size());
+			List<TimerMessageStoreValue> values = pendingValues.get(partition);
+			if (values.isEmpty()) {
+				continue;
+			}
+
+			TimerMessageStoreValue value = values.get(random.nextInt(values.size()));
+			if (picked.add(value.getId())) {
+				this.add(value, partition);
+			}
+		}
+	}
+
+	void saveNext(TimerMessageStore store) {
+		int index = this.next();
+		store.save(this.values.get(index), this.partitions.get(index));
+	}
+
+	void removeNext(TimerMessageStore store) {
+		int index = this.next();
+		store.remove(this.values.get(index).getId(), this.partitions.get(index));
+	}
+
+	void saveAll(TimerMessageStore store) {
+		for (int i = 0; i < this.values.size(); i++) {
+			store.save(this.values.get(i), this.partitions.get(i));
+		}
+	}
+
+	void removeAll(TimerMessageStore store) {
+		for (int i = 0; i < this.values.size(); i++) {
+			store.remove(this.values.get(i).getId(), this.partitions.get(i));
+		}
+	}
+
+	void clear() {
+		this.values.clear();
+		this.partitions.clear();
+		this.cursor = 0;
+	}
+
+	private int next() {
+		int index = this.cursor;
+		this.cursor = (this.cursor + 1) % this.values.size();
+		return index;
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.contract.handler;
+
+import java.time.Duration;
+
+import javax.annotation.Nullable;
+
+/**
+ * Limits of a release cycle of {@link TimerMessageHandler#releaseMessages(java.util.function.Consumer, ReleaseBudget)}.
+ * <p/>
+ * A cycle stops when maxCount messages are released or maxDuration is elapsed,
+ * and the rest of due messages are left to the next cycle.
+ * With a rate limiter, each message waits for a permit before it is released.
+ */
+public final class ReleaseBudget {
+	/**
+	 * Releases all due messages at once.
+	 */
+	public static final ReleaseBudget UNLIMITED = new ReleaseBudget(Long.MAX_VALUE, null, null);
+
+	private final long maxCount;
+	@Nullable
+	private final Duration maxDuration;
+	@Nullable
+	private final TokenBucketRateLimiter rateLimiter;
+
+	/**
+	 * @param maxCount max count of messages to release in a cycle.
+	 * @param maxDuration max wall time of a cycle. null is unlimited.
+	 */
+	public ReleaseBudget(long maxCount, @Nullable Duration maxDuration) {
+		this(maxCount, maxDuration, null);
+	}
+
+	/**
+	 * @param maxCount max count of messages to release in a cycle.
+	 * @param maxDuration max wall time of a cycle. null is unlimited.
+	 * @param rateLimiter limiter shared across cycles. null is unlimited.
+	 */
+	public ReleaseBudget(long maxCount, @Nullable Duration maxDuration, @Nullable TokenBucketRateLimiter rateLimiter) {
+		if (maxCount <= 0) {
+			throw new IllegalArgumentException("maxCount must be positive. maxCount: " + maxCount);
+		}
+		if (maxDuration != null && (maxDuration.isNegative() || maxDuration.isZero())) {
+			throw new IllegalArgumentException("maxDuration must be positive. maxDuration: " + maxDuration);
+		}
+
+		this.maxCount = maxCount;
+		this.maxDuration = maxDuration;
+		this.rateLimiter = rateLimiter;
+	}
+
+	public long getMaxCount() {
+		return this.maxCount;
+	}
+
+	@Nullable
+	public Duration getMaxDuration() {
+		return this.maxDuration;
+	}
+
+	@Nullable
+	public TokenBucketRateLimiter getRateLimiter() {
+		return this.rateLimiter;
+	}
+
+	@Override
+	public String toString() {
+		return "ReleaseBudget{"
+			+ "maxCount=" + this.maxCount
+			+ ", maxDuration=" + this.maxDuration
+			+ ", rateLimiter=" + this.rateLimiter
+			+ '}';
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.contract.handler;
+
+/**
+ * Result of a release cycle with {@link ReleaseBudget}.
+ */
+public final class ReleaseResult {
+	private final long releasedCount;
+	private final long remainingCount;
+	private final boolean exhausted;
+
+	/**
+	 * @param releasedCount count of messages released successfully.
+	 * @param remainingCount count of due messages left when the budget is exhausted. 0 if not exhausted.
+	 * @param exhausted whether the cycle is stopped by the budget.
+	 */
+	public ReleaseResult(long releasedCount, long remainingCount, boolean exhausted) {
+		this.releasedCount = releasedCount;
+		this.remainingCount = remainingCount;
+		this.exhausted = exhausted;
+	}
+
+	public long getReleasedCount() {
+		return this.releasedCount;
+	}
+
+	public long getRemainingCount() {
+		return this.remainingCount;
+	}
+
+	public boolean isExhausted() {
+		return this.exhausted;
+	}
+
+	@Override
+	public String toString() {
+		return "ReleaseResult{"
+			+ "releasedCount=" + this.releasedCount
+			+ ", remainingCount=" + this.remainingCount
+			+ ", exhausted=" + this.exhausted
+			+ '}';
+	}
+}
@@ -18,6 +18,11 @@
 
 package com.navercorp.eventeria.timer.contract.handler;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 /**
@@ -40,6 +45,20 @@ public interface TimerMessageHandler {
 	 */
 	String register(Object message);
 
+	/**
+	 * Register messages into delayed queue at once.
+	 *
+	 * @param messages messages to be scheduled
+	 * @return the identifier values of scheduled messages, in order of messages.
+	 */
+	default List<String> registerAll(List<?> messages) {
+		List<String> registeredIds = new ArrayList<>(messages.size());
+		for (Object message : messages) {
+			registeredIds.add(this.register(message));
+		}
+		return registeredIds;
+	}
+
 	/**
 	 * Retrieve all messages with a scheduled time before this operation is called
 	 *
@@ -47,8 +66,36 @@ public interface TimerMessageHandler {
 	 */
 	void releaseMessages(Consumer<Object> consumeReleasedMessage);
 
+	/**
+	 * Retrieve messages with a scheduled time before this operation is called, within a budget.
+	 * Messages left by the budget are released on next cycles.
+	 * <p/>
+	 * The budget is not applied by default, all due messages are released.
+	 *
+	 * @param consumeReleasedMessage behavior per popped message.
+	 * @param releaseBudget limits of this cycle.
+	 * @return count of released messages and remaining backlog.
+	 */
+	default ReleaseResult releaseMessages(Consumer<Object> consumeReleasedMessage, ReleaseBudget releaseBudget) {
+		AtomicLong releasedCount = new AtomicLong();
+		this.releaseMessages(message -> {
+			consumeReleasedMessage.accept(message);
+			releasedCount.incrementAndGet();
+		});
+		return new ReleaseResult(releasedCount.get(), 0L, false);
+	}
+
 	long getDelayedMessageCount();
 
+	/**
+	 * Returns the earliest scheduled time of registered messages.
+	 *
+	 * @return the earliest scheduled time. empty if there is no registered message or it is not supported.
+	 */
+	default Optional<Instant> getNextReleaseDateTime() {
+		return Optional.empty();
+	}
+
 	/**
 	 * Cancel a scheduled message.
 	 * 
@@ -0,0 +1,102 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.contract.handler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A token bucket limiting released messages per second, shared across release cycles and threads.
+ * <p/>
+ * Tokens are refilled by permitsPerSecond up to burst.
+ * A permit is reserved in arrival order, and the caller sleeps until its reservation is due.
+ */
+public final class TokenBucketRateLimiter {
+	private final double permitsPerNano;
+	private final double burst;
+
+	// not synchronized, not to pin a virtual thread while sleeping.
+	private final ReentrantLock lock = new ReentrantLock();
+	private double tokens;    // guarded by lock. negative when permits are reserved ahead.
+	private long refilledNanos;    // guarded by lock
+
+	/**
+	 * @param permitsPerSecond
+	 */
+	public TokenBucketRateLimiter(double permitsPerSecond) {
+		this(permitsPerSecond, Math.max(1.0, permitsPerSecond));
+	}
+
+	/**
+	 * @param permitsPerSecond
+	 * @param burst max count of permits acquired at once after idle.
+	 */
+	public TokenBucketRateLimiter(double permitsPerSecond, double burst) {
+		if (!(permitsPerSecond > 0.0)) {
+			throw new IllegalArgumentException("permitsPerSecond must be positive. permitsPerSecond: "
+				+ permitsPerSecond);
+		}
+		if (!(burst >= 1.0)) {
+			throw new IllegalArgumentException("burst must be equal or greater than 1. burst: " + burst);
+		}
+
+		this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.burst = burst;
+		this.tokens = burst;
+		this.refilledNanos = System.nanoTime();
+	}
+
+	/**
+	 * Acquire a permit, waiting up to timeoutNanos.
+	 *
+	 * @param timeoutNanos max time to wait.
+	 * @return false if a permit is not available within timeoutNanos. nothing is reserved in this case.
+	 * @throws InterruptedException if interrupted while waiting. the reserved permit is not returned.
+	 */
+	public boolean tryAcquire(long timeoutNanos) throws InterruptedException {
+		long waitNanos;
+		this.lock.lock();
+		try {
+			long now = System.nanoTime();
+			this.tokens = Math.min(this.burst, this.tokens + (now - this.refilledNanos) * this.permitsPerNano);
+			this.refilledNanos = now;
+
+			waitNanos = this.tokens >= 1.0 ? 0L : (long)Math.ceil((1.0 - this.tokens) / this.permitsPerNano);
+			if (waitNanos > timeoutNanos) {
+				return false;
+			}
+			this.tokens -= 1.0;
+		} finally {
+			this.lock.unlock();
+		}
+
+		if (waitNanos > 0L) {
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "TokenBucketRateLimiter{"
+			+ "permitsPerSecond=" + this.permitsPerNano * TimeUnit.SECONDS.toNanos(1)
+			+ ", burst=" + this.burst
+			+ '}';
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.contract.store;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+/**
+ * A {@link TimerMessageStore} which supports claiming messages to release with a lease.
+ * <p/>
+ * Claimed messages are hidden from other claims until they are acknowledged or requeued.
+ * If a lease is expired before acknowledgement, the message is delivered again.
+ * So multiple releasers can claim the same partition concurrently without a global lock.
+ */
+public interface LeasedTimerMessageStore extends TimerMessageStore {
+	/**
+	 * Claim messages by a scheduled time and partition.
+	 *
+	 * @param conditionDateTime
+	 * @param count max count of messages to claim.
+	 * @param partition
+	 * @return claimed messages. each message should be {@link #acknowledge}d or {@link #requeue}d.
+	 */
+	List<TimerMessageStoreValue> claimReleaseValues(Instant conditionDateTime, int count, @Nullable Integer partition);
+
+	/**
+	 * Claim messages by a scheduled time of partitions at once.
+	 *
+	 * @param conditionDateTime
+	 * @param count max count of messages to claim per partition.
+	 * @param partitions a group of {@link #groupPartitions}.
+	 * @return claimed messages per partition.
+	 */
+	default Map<Integer, List<TimerMessageStoreValue>> claimReleaseValuesOfPartitions(
+		Instant conditionDateTime,
+		int count,
+		Collection<Integer> partitions
+	) {
+		Map<Integer, List<TimerMessageStoreValue>> result = new LinkedHashMap<>();
+		for (Integer partition : partitions) {
+			result.put(partition, this.claimReleaseValues(conditionDateTime, count, partition));
+		}
+		return result;
+	}
+
+	/**
+	 * Complete a claimed message. The message is removed from store.
+	 *
+	 * @param storeValueId
+	 * @param partition
+	 */
+	void acknowledge(UUID storeValueId, @Nullable Integer partition);
+
+	/**
+	 * Complete claimed messages of a partition at once.
+	 *
+	 * @param storeValueIds
+	 * @param partition
+	 */
+	default void acknowledgeAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		for (UUID storeValueId : storeValueIds) {
+			this.acknowledge(storeValueId, partition);
+		}
+	}
+
+	/**
+	 * Return a claimed message to store, to be released on next scheduling.
+	 *
+	 * @param storeValueId
+	 * @param partition
+	 */
+	void requeue(UUID storeValueId, @Nullable Integer partition);
+
+	/**
+	 * Return claimed messages of a partition to store at once.
+	 *
+	 * @param storeValueIds
+	 * @param partition
+	 */
+	default void requeueAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		for (UUID storeValueId : storeValueIds) {
+			this.requeue(storeValueId, partition);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.eventeria.timer.contract.store;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A registry of renewable leases on partitions of timer messages, shared by releasing nodes.
+ * <p/>
+ * A partition is released by the node which owns its lease only,
+ * so nodes release disjoint subsets of partitions concurrently instead of taking turns on a global lock.
+ * Nodes also register themselves as members with heartbeat,
+ * to know how many partitions each member should own.
+ */
+public interface PartitionLeaseRegistry {
+	/**
+	 * Register a member, or extend its membership.
+	 *
+	 * @param memberId
+	 * @param ttl the member is regarded as gone when it does not heartbeat again within ttl.
+	 */
+	void heartbeat(String memberId, Duration ttl);
+
+	/**
+	 * Unregister a member. Leases of the member are not released by this. (see {@link #release})
+	 *
+	 * @param memberId
+	 */
+	void leave(String memberId);
+
+	/**
+	 * @return ids of live members, in any order.
+	 */
+	List<String> findMembers();
+
+	/**
+	 * Acquire a lease of a partition, or renew it if the member already owns it.
+	 *
+	 * @param partition
+	 * @param memberId
+	 * @param ttl the lease is expired when it is not renewed within ttl.
+	 * @return true if the member owns the partition until ttl.
+	 */
+	boolean tryAcquire(int partition, String memberId, Duration ttl);
+
+	/**
+	 * Acquire or renew leases of partitions at once.
+	 *
+	 * @param partitions
+	 * @param memberId
+	 * @param ttl
+	 * @return partitions the member owns until ttl, in order of partitions.
+	 */
+	default Set<Integer> tryAcquireAll(Collection<Integer> partitions, String memberId, Duration ttl) {
+		Set<Integer> result = new LinkedHashSet<>();
+		for (Integer partition : partitions) {
+			if (this.tryAcquire(partition, memberId, ttl)) {
+				result.add(partition);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Release a lease of a partition, if the member owns it.
+	 *
+	 * @param partition
+	 * @param memberId
+	 */
+	void release(int partition, String memberId);
+}
@@ -19,7 +19,13 @@
 package com.navercorp.eventeria.timer.contract.store;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -32,6 +38,30 @@ public interface TimerMessageStore {
 
 	void remove(UUID storeValueId, @Nullable Integer partition);
 
+	/**
+	 * Save messages of a partition at once.
+	 *
+	 * @param storeValues
+	 * @param partition
+	 */
+	default void saveAll(Collection<TimerMessageStoreValue> storeValues, @Nullable Integer partition) {
+		for (TimerMessageStoreValue storeValue : storeValues) {
+			this.save(storeValue, partition);
+		}
+	}
+
+	/**
+	 * Remove messages of a partition at once.
+	 *
+	 * @param storeValueIds
+	 * @param partition
+	 */
+	default void removeAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		for (UUID storeValueId : storeValueIds) {
+			this.remove(storeValueId, partition);
+		}
+	}
+
 	long count(Instant conditionDateTime, @Nullable Integer partition);
 
 	/**
@@ -43,4 +73,63 @@ public interface TimerMessageStore {
 	 * @return
 	 */
 	List<TimerMessageStoreValue> findReleaseValues(Instant conditionDateTime, int count, @Nullable Integer partition);
+
+	/**
+	 * Group partitions which can be read together in a round trip, like partitions owned by the same node.
+	 *
+	 * @param partitions
+	 * @return groups of partitions. each partition is a group by default.
+	 */
+	default List<List<Integer>> groupPartitions(List<Integer> partitions) {
+		List<List<Integer>> result = new ArrayList<>(partitions.size());
+		for (Integer partition : partitions) {
+			result.add(List.of(partition));
+		}
+		return result;
+	}
+
+	/**
+	 * find messages by a scheduled time of partitions at once.
+	 *
+	 * @param conditionDateTime
+	 * @param count max count of messages per partition.
+	 * @param partitions a group of {@link #groupPartitions}.
+	 * @return messages per partition.
+	 */
+	default Map<Integer, List<TimerMessageStoreValue>> findReleaseValuesOfPartitions(
+		Instant conditionDateTime,
+		int count,
+		Collection<Integer> partitions
+	) {
+		Map<Integer, List<TimerMessageStoreValue>> result = new LinkedHashMap<>();
+		for (Integer partition : partitions) {
+			result.put(partition, this.findReleaseValues(conditionDateTime, count, partition));
+		}
+		return result;
+	}
+
+	/**
+	 * find the earliest scheduled time of a partition.
+	 * Implementations should read it from their index, not from {@link #findReleaseValues} of an unbounded time.
+	 * The default returns empty as unknown, so the release scheduler falls back to its max idle duration.
+	 *
+	 * @param partition
+	 * @return the earliest releaseDateTime of stored messages. empty if no message is stored or unknown.
+	 */
+	default Optional<Instant> findNextReleaseDateTime(@Nullable Integer partition) {
+		return Optional.empty();
+	}
+
+	/**
+	 * find the earliest scheduled time of partitions at once.
+	 *
+	 * @param partitions a group of {@link #groupPartitions}.
+	 * @return the earliest releaseDateTime of stored messages of the partitions. empty if no message is stored.
+	 */
+	default Optional<Instant> findNextReleaseDateTimeOfPartitions(Collection<Integer> partitions) {
+		return partitions.stream()
+			.map(this::findNextReleaseDateTime)
+			.flatMap(Optional::stream)
+			.min(Comparator.naturalOrder());
+	}
 }
@@ -18,6 +18,9 @@
 
 package com.navercorp.eventeria.timer.spring.integration.handler;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 
@@ -30,6 +33,8 @@ import org.springframework.lang.Nullable;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.support.GenericMessage;
 
+import com.navercorp.eventeria.timer.contract.handler.ReleaseBudget;
+import com.navercorp.eventeria.timer.contract.handler.ReleaseResult;
 import com.navercorp.eventeria.timer.contract.handler.TimerMessageHandler;
 
 /**
@@ -40,21 +45,59 @@ public class SpringTimerMessageHandler extends AbstractReplyProducingMessageHand
 	private final String lockKey;
 	private final int tryLockTimeoutMs;
 	private final LockRegistry lockRegistry;
+	private final ReleaseBudget releaseBudget;
 
 	public SpringTimerMessageHandler(TimerMessageHandler timerMessageHandler) {
 		this(timerMessageHandler, "spring-timer-message-schedule-lock", 60_000, new DefaultLockRegistry());
 	}
 
+	/**
+	 * @param timerMessageHandler
+	 * @param lockKey key of lock to guard {@link #reschedulePersistedMessages()}.
+	 * @param tryLockTimeoutMs
+	 * @param lockRegistry registry of lock. A distributed lock registry makes only one node release messages at once.
+	 *                     If the store of timerMessageHandler is
+	 *                     {@link com.navercorp.eventeria.timer.contract.store.LeasedTimerMessageStore},
+	 *                     a local lock registry is enough because claimed messages are not released twice.
+	 *                     {@code PartitionLeasingTimerMessageHandler} of eventeria-timer releases only partitions
+	 *                     leased to each node, but leases are not fenced. Without claims, a page being released
+	 *                     when its lease is lost can be released twice, unless a distributed lock registry is used.
+	 */
 	public SpringTimerMessageHandler(
 		TimerMessageHandler timerMessageHandler,
 		String lockKey,
 		int tryLockTimeoutMs,
 		LockRegistry lockRegistry
+	) {
+		this(timerMessageHandler, lockKey, tryLockTimeoutMs, lockRegistry, ReleaseBudget.UNLIMITED);
+	}
+
+	/**
+	 * @param timerMessageHandler
+	 * @param lockKey key of lock to guard {@link #reschedulePersistedMessages()}.
+	 * @param tryLockTimeoutMs
+	 * @param lockRegistry registry of lock. A distributed lock registry makes only one node release messages at once.
+	 *                     If the store of timerMessageHandler is
+	 *                     {@link com.navercorp.eventeria.timer.contract.store.LeasedTimerMessageStore},
+	 *                     a local lock registry is enough because claimed messages are not released twice.
+	 *                     {@code PartitionLeasingTimerMessageHandler} of eventeria-timer releases only partitions
+	 *                     leased to each node, but leases are not fenced. Without claims, a page being released
+	 *                     when its lease is lost can be released twice, unless a distributed lock registry is used.
+	 * @param releaseBudget limits of each {@link #reschedulePersistedMessages()},
+	 *                      not to flood the output channel with backlog after an outage.
+	 */
+	public SpringTimerMessageHandler(
+		TimerMessageHandler timerMessageHandler,
+		String lockKey,
+		int tryLockTimeoutMs,
+		LockRegistry lockRegistry,
+		ReleaseBudget releaseBudget
 	) {
 		this.timerMessageHandler = timerMessageHandler;
 		this.lockKey = lockKey;
 		this.tryLockTimeoutMs = tryLockTimeoutMs;
 		this.lockRegistry = lockRegistry;
+		this.releaseBudget = releaseBudget;
 	}
 
 	/**
@@ -63,6 +106,8 @@ public class SpringTimerMessageHandler extends AbstractReplyProducingMessageHand
 	 * If a message is not type of {@link com.navercorp.eventeria.timer.contract.TimerMessage}, just return.
 	 * If a message is type of {@link com.navercorp.eventeria.timer.contract.TimerMessage},
 	 * intercepts and registers to {@link TimerMessageHandler} without publishing to output channel.
+	 * If a payload is a collection, all {@link com.navercorp.eventeria.timer.contract.TimerMessage}s in it
+	 * are registered at once, and the others are returned.
 	 *
 	 * @param requestMessage The request message.
 	 * @return null if requestMessage is {@link com.navercorp.eventeria.timer.contract.TimerMessage},
@@ -73,6 +118,10 @@ public class SpringTimerMessageHandler extends AbstractReplyProducingMessageHand
 	protected Object handleRequestMessage(Message<?> requestMessage) {
 		Object payload = requestMessage.getPayload();
 
+		if (payload instanceof Collection<?> payloads) {
+			return this.handleRequestPayloads(requestMessage, payloads);
+		}
+
 		if (!this.timerMessageHandler.isTimerMessage(payload)) {
 			return requestMessage;
 		}
@@ -81,23 +130,68 @@ public class SpringTimerMessageHandler extends AbstractReplyProducingMessageHand
 		return null;
 	}
 
+	@Nullable
+	private Object handleRequestPayloads(Message<?> requestMessage, Collection<?> payloads) {
+		List<Object> timerMessages = new ArrayList<>();
+		List<Object> others = new ArrayList<>();
+		for (Object payload : payloads) {
+			if (this.timerMessageHandler.isTimerMessage(payload)) {
+				timerMessages.add(payload);
+			} else {
+				others.add(payload);
+			}
+		}
+
+		if (timerMessages.isEmpty()) {
+			return requestMessage;
+		}
+
+		this.timerMessageHandler.registerAll(timerMessages);
+		return others.isEmpty() ? null : others;
+	}
+
 	@Override
 	public int getDelayedMessageCount() {
 		return Long.valueOf(this.timerMessageHandler.getDelayedMessageCount()).intValue();
 	}
 
 	/**
-	 * Retrieve all persisted messages before called time, and send all to output channel.
+	 * Send a message released by timerMessageHandler by itself to output channel.
+	 * (ex. {@code localFastPathTimerMessageHandler.start(springTimerMessageHandler::releaseMessage)})
+	 * <p/>
+	 * The lock and the release budget are not applied, because such messages are kept only by this node,
+	 * and waiting for the lock would delay them up to tryLockTimeoutMs.
+	 * The releasing handler should throttle them by itself, with the rate limiter of the release budget.
+	 *
+	 * @param message released message.
+	 */
+	public void releaseMessage(Object message) {
+		this.sendOutputs(message, new GenericMessage<>(message));
+	}
+
+	/**
+	 * Retrieve persisted messages before called time within the release budget, and send them to output channel.
 	 */
 	@Override
 	public void reschedulePersistedMessages() {
+		this.reschedulePersistedMessages(this.releaseBudget);
+	}
+
+	/**
+	 * Retrieve persisted messages before called time within a budget, and send them to output channel.
+	 * Messages left by the budget are sent on next calls.
+	 *
+	 * @param releaseBudget limits of this call.
+	 * @return count of sent messages and remaining backlog.
+	 */
+	public ReleaseResult reschedulePersistedMessages(ReleaseBudget releaseBudget) {
 		Lock lock = this.lockRegistry.obtain(this.lockKey);
 		boolean acquired = false;
 		try {
 			acquired = lock.tryLock(this.tryLockTimeoutMs, TimeUnit.MILLISECONDS);
 			if (acquired) {
-				this.timerMessageHandler.releaseMessages(
-					message -> this.sendOutputs(message, new GenericMessage<>(message)));
+				return this.timerMessageHandler.releaseMessages(
+					message -> this.sendOutputs(message, new GenericMessage<>(message)), releaseBudget);
 			} else {
 				throw new CannotAcquireLockException(
 					"Acquire lock timeout. lockKey: " + lockKey + ", tryLockTimeout: " + this.tryLockTimeoutMs);
@@ -19,16 +19,22 @@
 package com.navercorp.eventeria.timer.handler;
 
 import java.time.Instant;
-import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import javax.annotation.Nullable;
 
@@ -36,6 +42,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.navercorp.eventeria.messaging.contract.distribution.PartitionGenerator;
+import com.navercorp.eventeria.timer.contract.handler.ReleaseBudget;
+import com.navercorp.eventeria.timer.contract.handler.ReleaseResult;
 import com.navercorp.eventeria.timer.contract.handler.TimerMessageHandler;
 import com.navercorp.eventeria.timer.contract.store.TimerMessageStore;
 import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
@@ -50,7 +58,11 @@ public class DistributedTimerMessageHandler implements TimerMessageHandler {
 	private final int countPerRelease;
 	private final PartitionGenerator partitionGenerator;
 	private final int registeredPartitionCount;
-	private final int seekPartitionCount;
+	// converged to registeredPartitionCount by TimerMessagePartitionMigrator.
+	private volatile int seekPartitionCount;
+	private final int releaseConcurrency;
+	// index of the group to start next release, where the previous release is stopped by budget.
+	private volatile int releaseCursor;
 
 	@Nullable
 	private final Executor executor;
@@ -63,6 +75,7 @@ public class DistributedTimerMessageHandler implements TimerMessageHandler {
 	 * @param seekPartitionCount partition count used on retrieve time.
 	 *                           Normally has same value with registeredPartitionCount,
 	 *                           but can be different when increasing partition for backward compatibility.
+	 *                           {@link TimerMessagePartitionMigrator} converges it to registeredPartitionCount.
 	 * @param executor
 	 */
 	public DistributedTimerMessageHandler(
@@ -73,11 +86,50 @@ public class DistributedTimerMessageHandler implements TimerMessageHandler {
 		int seekPartitionCount,
 		@Nullable Executor executor
 	) {
+		this(
+			timerMessageStore,
+			countPerRelease,
+			partitionGenerator,
+			registeredPartitionCount,
+			seekPartitionCount,
+			executor,
+			seekPartitionCount
+		);
+	}
+
+	/**
+	 * @param timerMessageStore
+	 * @param countPerRelease
+	 * @param partitionGenerator
+	 * @param registeredPartitionCount partition count used on register time.
+	 * @param seekPartitionCount partition count used on retrieve time.
+	 *                           Normally has same value with registeredPartitionCount,
+	 *                           but can be different when increasing partition for backward compatibility.
+	 *                           {@link TimerMessagePartitionMigrator} converges it to registeredPartitionCount.
+	 * @param executor
+	 * @param releaseConcurrency max count of partitions released concurrently on executor.
+	 *                           ignored when executor is null.
+	 */
+	public DistributedTimerMessageHandler(
+		TimerMessageStore timerMessageStore,
+		int countPerRelease,
+		PartitionGenerator partitionGenerator,
+		int registeredPartitionCount,
+		int seekPartitionCount,
+		@Nullable Executor executor,
+		int releaseConcurrency
+	) {
+		if (releaseConcurrency <= 0) {
+			throw new IllegalArgumentException("releaseConcurrency must be positive. releaseConcurrency: "
+				+ releaseConcurrency);
+		}
+
 		this.timerMessageStore = timerMessageStore;
 		this.countPerRelease = countPerRelease;
 		this.partitionGenerator = partitionGenerator;
 		this.registeredPartitionCount = registeredPartitionCount;
 		this.seekPartitionCount = seekPartitionCount;
+		this.releaseConcurrency = releaseConcurrency;
 		this.executor = executor;
 	}
 
@@ -91,124 +143,334 @@ public class DistributedTimerMessageHandler implements TimerMessageHandler {
 		TimerMessageStoreValue storeValue = TimerMessageHandlerSupports.toTimerMessageStoreValue(message);
 		int partition = this.getPartition(message);
 		this.timerMessageStore.save(storeValue, partition);
-		return this.registerId(storeValue.getId(), partition);
+		return TimerMessageHandlerSupports.registerId(storeValue.getId(), partition);
+	}
+
+	/**
+	 * Register messages at once per partition.
+	 *
+	 * @param messages messages to be scheduled
+	 * @return the identifier values of scheduled messages, in order of messages.
+	 */
+	@Override
+	public List<String> registerAll(List<?> messages) {
+		Map<Integer, List<TimerMessageStoreValue>> storeValuesByPartition = new LinkedHashMap<>();
+		List<String> registeredIds = new ArrayList<>(messages.size());
+		for (Object message : messages) {
+			TimerMessageStoreValue storeValue = TimerMessageHandlerSupports.toTimerMessageStoreValue(message);
+			int partition = this.getPartition(message);
+			storeValuesByPartition.computeIfAbsent(partition, it -> new ArrayList<>()).add(storeValue);
+			registeredIds.add(TimerMessageHandlerSupports.registerId(storeValue.getId(), partition));
+		}
+
+		storeValuesByPartition.forEach(
+			(partition, storeValues) -> this.timerMessageStore.saveAll(storeValues, partition)
+		);
+		return registeredIds;
 	}
 
 	@Override
 	public void releaseMessages(Consumer<Object> consumeReleasedMessage) {
+		this.releaseMessages(consumeReleasedMessage, ReleaseBudget.UNLIMITED);
+	}
+
+	/**
+	 * Release due messages of all partitions until the budget is exhausted.
+	 * The next release starts from the first group left undrained, so that every partition is released in turn.
+	 *
+	 * @param consumeReleasedMessage behavior per popped message.
+	 * @param releaseBudget limits of this release, shared by all partitions.
+	 * @return count of released messages, and count of due messages left if the budget is exhausted.
+	 */
+	@Override
+	public ReleaseResult releaseMessages(Consumer<Object> consumeReleasedMessage, ReleaseBudget releaseBudget) {
+		int seekPartitionCount = this.seekPartitionCount;
+		List<Integer> partitions = new ArrayList<>(seekPartitionCount);
+		for (int i = 0; i < seekPartitionCount; i++) {
+			partitions.add(i);
+		}
+		return this.releaseMessages(consumeReleasedMessage, releaseBudget, partitions);
+	}
+
+	/**
+	 * Release due messages of given partitions only, until the budget is exhausted.
+	 * Used by a node which owns a subset of partitions. (ex. {@link PartitionLeasingTimerMessageHandler})
+	 *
+	 * @param consumeReleasedMessage behavior per popped message.
+	 * @param releaseBudget limits of this release, shared by given partitions.
+	 * @param partitions partitions to release, less than {@link #getSeekPartitionCount()}.
+	 * @return count of released messages, and count of due messages of given partitions left
+	 *         if the budget is exhausted.
+	 */
+	public ReleaseResult releaseMessages(
+		Consumer<Object> consumeReleasedMessage,
+		ReleaseBudget releaseBudget,
+		Collection<Integer> partitions
+	) {
+		return this.releaseMessages(consumeReleasedMessage, releaseBudget, partitions, it -> true);
+	}
+
+	/**
+	 * Release due messages of given partitions only, until the budget is exhausted,
+	 * while each partition is still releasable on every page.
+	 * Used by a node which owns a subset of partitions by leases. (ex. {@link PartitionLeasingTimerMessageHandler})
+	 *
+	 * @param consumeReleasedMessage behavior per popped message.
+	 * @param releaseBudget limits of this release, shared by given partitions.
+	 * @param partitions partitions to release, less than {@link #getSeekPartitionCount()}.
+	 * @param releasable checked before each page of a partition. a partition is left as soon as it returns false.
+	 * @return count of released messages, and count of due messages of given partitions left
+	 *         if the budget is exhausted.
+	 */
+	public ReleaseResult releaseMessages(
+		Consumer<Object> consumeReleasedMessage,
+		ReleaseBudget releaseBudget,
+		Collection<Integer> partitions,
+		Predicate<Integer> releasable
+	) {
 		Instant scheduleTime = Instant.now();
+		ReleaseBudgetTracker budgetTracker = new ReleaseBudgetTracker(releaseBudget);
 
-		List<Integer> schedulePartitions = new ArrayList<>();
-		for (int i = 0; i < this.seekPartitionCount; i++) {
-			schedulePartitions.add(i);
+		// partitions of a group (ex. owned by the same redis cluster node) are fetched together.
+		List<List<Integer>> groups = this.timerMessageStore.groupPartitions(new ArrayList<>(partitions));
+		int groupCount = groups.size();
+		if (groupCount == 0) {
+			return budgetTracker.toResult(0L);
 		}
 
-		while (!schedulePartitions.isEmpty()) {
-			schedulePartitions = this.schedulePersistedMessages(schedulePartitions, scheduleTime,
-				consumeReleasedMessage);
+		int startGroupIndex = Math.floorMod(this.releaseCursor, groupCount);
+		Queue<Integer> scheduleGroupOrders = new ConcurrentLinkedQueue<>();
+		for (int i = 0; i < groupCount; i++) {
+			scheduleGroupOrders.add(i);
 		}
+		AtomicInteger firstUndrainedOrder = new AtomicInteger(Integer.MAX_VALUE);
+
+		// each worker takes a next group as soon as its group is drained,
+		// so a group with deep backlog does not hold up the others.
+		Runnable worker = () -> {
+			Integer order;
+			while ((order = scheduleGroupOrders.poll()) != null) {
+				List<Integer> group = groups.get((startGroupIndex + order) % groupCount);
+				try {
+					if (!this.drainPartitions(group, scheduleTime, consumeReleasedMessage, budgetTracker, releasable)) {
+						firstUndrainedOrder.accumulateAndGet(order, Math::min);
+					}
+				} catch (RuntimeException ex) {
+					// a failed group does not stop the worker, so the other groups are still released.
+					LOG.error(
+						"timer handler release partitions is failed. "
+							+ "These partitions would be ignored and retry next scheduling. partitions: {}",
+						group,
+						ex
+					);
+				}
+			}
+		};
+
+		if (this.executor == null) {
+			worker.run();
+		} else {
+			int workerCount = Math.min(this.releaseConcurrency, groupCount);
+			CompletableFuture<?>[] futures = new CompletableFuture<?>[workerCount];
+			for (int i = 0; i < workerCount; i++) {
+				futures[i] = CompletableFuture.runAsync(worker, this.executor);
+			}
+			CompletableFuture.allOf(futures).join();
+		}
+
+		if (!budgetTracker.isExhausted()) {
+			return budgetTracker.toResult(0L);
+		}
+
+		if (firstUndrainedOrder.get() != Integer.MAX_VALUE) {
+			this.releaseCursor = (startGroupIndex + firstUndrainedOrder.get()) % groupCount;
+		}
+		return budgetTracker.toResult(this.countDueMessages(scheduleTime, partitions));
 	}
 
 	@Override
 	public long getDelayedMessageCount() {
-		Instant now = Instant.now();
+		int seekPartitionCount = this.seekPartitionCount;
+		List<Integer> partitions = new ArrayList<>(seekPartitionCount);
+		for (int i = 0; i < seekPartitionCount; i++) {
+			partitions.add(i);
+		}
+		return this.countDueMessages(Instant.now(), partitions);
+	}
 
-		long count = 0;
-		for (int i = 0; i < this.seekPartitionCount; i++) {
-			long size = this.timerMessageStore.count(now, i);
-			count += size;
+	@Override
+	public Optional<Instant> getNextReleaseDateTime() {
+		int seekPartitionCount = this.seekPartitionCount;
+		List<Integer> partitions = new ArrayList<>(seekPartitionCount);
+		for (int i = 0; i < seekPartitionCount; i++) {
+			partitions.add(i);
 		}
-		return count;
+
+		// a round trip per group of partitions.
+		Instant result = null;
+		for (List<Integer> group : this.timerMessageStore.groupPartitions(partitions)) {
+			Optional<Instant> nextReleaseDateTime = this.timerMessageStore.findNextReleaseDateTimeOfPartitions(group);
+			if (nextReleaseDateTime.isPresent() && (result == null || nextReleaseDateTime.get().isBefore(result))) {
+				result = nextReleaseDateTime.get();
+			}
+		}
+		return Optional.ofNullable(result);
 	}
 
 	@Override
 	public void cancel(String registeredId) {
-		Entry<UUID, Integer> storeValueIdPartition = this.splitRegisterId(registeredId);
+		Entry<UUID, Integer> storeValueIdPartition = TimerMessageHandlerSupports.splitRegisterId(registeredId);
 		this.timerMessageStore.remove(storeValueIdPartition.getKey(), storeValueIdPartition.getValue());
 	}
 
-	// return need rescheduling partitions
-	private List<Integer> schedulePersistedMessages(
-		List<Integer> schedulePartitions, Instant scheduleTime, Consumer<Object> consumeReleaseMessage
+	/**
+	 * Release a group of partitions page by page until there are no more due messages.
+	 * Pages of the group are fetched at once, and partitions drained are left out from the next fetch.
+	 * The next page is fetched as soon as the previous page is released, regardless of other groups.
+	 *
+	 * @return false if the group is left undrained by budget.
+	 */
+	private boolean drainPartitions(
+		List<Integer> partitions,
+		Instant scheduleTime,
+		Consumer<Object> consumeReleaseMessage,
+		ReleaseBudgetTracker budgetTracker,
+		Predicate<Integer> releasable
 	) {
-		List<Integer> reschedulePartitions = new CopyOnWriteArrayList<>();
-		List<CompletableFuture<Void>> futures = new ArrayList<>();
-		for (int partition : schedulePartitions) {
-			Runnable runnable = () -> {
-				List<TimerMessageStoreValue> releaseValues = this.timerMessageStore.findReleaseValues(
-					scheduleTime, this.countPerRelease, partition);
-
-				if (releaseValues == null || releaseValues.isEmpty()) {
-					return;
-				}
+		List<Integer> remainingPartitions = partitions;
+		while (!remainingPartitions.isEmpty()) {
+			remainingPartitions = remainingPartitions.stream().filter(releasable).toList();
+			if (remainingPartitions.isEmpty()) {
+				break;
+			}
 
-				// add partition to reschedulePartition because there are remaining data to process
-				if (releaseValues.size() == this.countPerRelease) {
-					reschedulePartitions.add(partition);
-				}
+			int pageSize = budgetTracker.nextPageSize(this.countPerRelease);
+			if (pageSize == 0) {
+				return false;
+			}
 
-				releaseValues.sort(Comparator.comparing(TimerMessageStoreValue::getReleaseDateTime));
-
-				int successCount = 0;
-				for (TimerMessageStoreValue releaseValue : releaseValues) {
-					try {
-						consumeReleaseMessage.accept(releaseValue.getMessage());
-						this.timerMessageStore.remove(releaseValue.getId(), partition);
-						successCount++;
-					} catch (Throwable throwable) {
-						LOG.error(
-							"timer handler release message is failed. "
-								+ "This message would be ignored and retry next scheduling. storeValue: {}",
-							releaseValue
-						);
-					}
-				}
+			Map<Integer, List<TimerMessageStoreValue>> releaseValuesOfPartitions;
+			if (remainingPartitions.size() == 1) {
+				int partition = remainingPartitions.get(0);
+				releaseValuesOfPartitions = Map.of(partition, TimerMessageHandlerSupports.findReleaseValues(
+					this.timerMessageStore, scheduleTime, pageSize, partition));
+			} else {
+				releaseValuesOfPartitions = TimerMessageHandlerSupports.findReleaseValuesOfPartitions(
+					this.timerMessageStore, scheduleTime, pageSize, remainingPartitions);
+			}
 
-				// If there is no succeed message among release targets, do not reschedule.
-				if (successCount == 0 && reschedulePartitions.contains(partition)) {
-					reschedulePartitions.remove(partition);
+			List<Integer> nextPartitions = new ArrayList<>(remainingPartitions.size());
+			for (Integer partition : remainingPartitions) {
+				List<TimerMessageStoreValue> releaseValues = releaseValuesOfPartitions.get(partition);
+				if (this.releasePage(partition, releaseValues, pageSize, consumeReleaseMessage, budgetTracker)) {
+					nextPartitions.add(partition);
 				}
-			};
-
-			if (this.executor != null) {
-				futures.add(CompletableFuture.runAsync(runnable, this.executor));
-			} else {
-				runnable.run();
 			}
+			if (budgetTracker.isExhausted()) {
+				return false;
+			}
+			remainingPartitions = nextPartitions;
 		}
+		return true;
+	}
 
-		if (!futures.isEmpty()) {
-			CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]))
-				.join();
+	/**
+	 * @return whether there can be more due messages in the partition.
+	 */
+	private boolean releasePage(
+		int partition,
+		@Nullable List<TimerMessageStoreValue> releaseValues,
+		int pageSize,
+		Consumer<Object> consumeReleaseMessage,
+		ReleaseBudgetTracker budgetTracker
+	) {
+		if (releaseValues == null || releaseValues.isEmpty()) {
+			return false;
 		}
 
-		return reschedulePartitions;
+		releaseValues.sort(Comparator.comparing(TimerMessageStoreValue::getReleaseDateTime));
+
+		List<UUID> releasedIds = new ArrayList<>(releaseValues.size());
+		List<UUID> requeueIds = new ArrayList<>();
+		for (TimerMessageStoreValue releaseValue : releaseValues) {
+			if (!budgetTracker.tryAcquire()) {
+				// left to the next release.
+				requeueIds.add(releaseValue.getId());
+				continue;
+			}
+
+			try {
+				consumeReleaseMessage.accept(releaseValue.getMessage());
+				releasedIds.add(releaseValue.getId());
+				budgetTracker.released();
+			} catch (Throwable throwable) {
+				LOG.error(
+					"timer handler release message is failed. "
+						+ "This message would be ignored and retry next scheduling. storeValue: {}",
+					releaseValue
+				);
+				requeueIds.add(releaseValue.getId());
+			}
+		}
+		this.requeueAll(requeueIds, partition);
+
+		this.acknowledgeAll(releasedIds, partition);
+
+		// there are no remaining data to process,
+		// or there is no succeed message among release targets.
+		return releaseValues.size() >= pageSize && !releasedIds.isEmpty() && !budgetTracker.isExhausted();
 	}
 
-	private int getPartition(Object message) {
-		return this.partitionGenerator.partition(message, this.registeredPartitionCount);
+	public int getRegisteredPartitionCount() {
+		return this.registeredPartitionCount;
+	}
+
+	public int getSeekPartitionCount() {
+		return this.seekPartitionCount;
+	}
+
+	/**
+	 * Retrieve only registered partitions from now on.
+	 * Called after messages of the other partitions are moved by {@link TimerMessagePartitionMigrator}.
+	 */
+	void convergeSeekPartitionCount() {
+		this.seekPartitionCount = this.registeredPartitionCount;
 	}
 
-	private String registerId(UUID storeValueId, int partition) {
-		return storeValueId + ":{" + partition + "}";
+	TimerMessageStore getTimerMessageStore() {
+		return this.timerMessageStore;
 	}
 
-	private Entry<UUID, Integer> splitRegisterId(String registerId) {
-		int idIndex = registerId.indexOf(":{");
-		if (idIndex < 0) {
-			throw new IllegalArgumentException(
-				"registerId is not distributed timer message handler Id. registerId: " + registerId
-			);
+	private long countDueMessages(Instant conditionDateTime, Collection<Integer> partitions) {
+		long count = 0;
+		for (Integer partition : partitions) {
+			long size = this.timerMessageStore.count(conditionDateTime, partition);
+			count += size;
 		}
+		return count;
+	}
+
+	int getPartition(Object message) {
+		return this.partitionGenerator.partition(message, this.registeredPartitionCount);
+	}
+
+	private void acknowledgeAll(List<UUID> releasedIds, int partition) {
+		try {
+			TimerMessageHandlerSupports.acknowledgeAll(this.timerMessageStore, releasedIds, partition);
+		} catch (Exception ex) {
+			LOG.error("timer handler acknowledge released messages is failed. "
+				+ "These messages would be released again. partition: {}, storeValueIds: {}",
+				partition, releasedIds, ex);
+		}
+	}
 
+	private void requeueAll(List<UUID> requeueIds, @Nullable Integer partition) {
 		try {
-			String storeValueId = registerId.substring(0, idIndex);
-			String partition = registerId.substring(idIndex + 1, registerId.length() - 2);
-			return new SimpleEntry<>(UUID.fromString(storeValueId), Integer.valueOf(partition));
+			TimerMessageHandlerSupports.requeueAll(this.timerMessageStore, requeueIds, partition);
 		} catch (Exception ex) {
-			throw new IllegalArgumentException(
-				"registerId is not distributed timer message handler Id. registerId: " + registerId
-			);
+			LOG.warn("timer handler requeue messages is failed. "
+				+ "These messages would be released again after lease is expired. partition: {}, storeValueIds: {}",
+				partition, requeueIds, ex);
 		}
 	}
 }
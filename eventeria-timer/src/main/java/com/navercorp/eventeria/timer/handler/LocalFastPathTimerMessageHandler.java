@@ -0,0 +1,397 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.eventeria.timer.handler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.navercorp.eventeria.timer.contract.handler.ReleaseBudget;
+import com.navercorp.eventeria.timer.contract.handler.ReleaseResult;
+import com.navercorp.eventeria.timer.contract.handler.TimerMessageHandler;
+import com.navercorp.eventeria.timer.contract.handler.TokenBucketRateLimiter;
+
+/**
+ * A {@link TimerMessageHandler} which keeps messages due within a threshold in local memory,
+ * and fires them at their time without a round trip to the store of the delegate.
+ * Messages due later are registered to the delegate.
+ * <p/>
+ * Local messages are fired to the consumer given by {@link #start(Consumer)}.
+ * Messages fired before start, over the rate limit or failed to be consumed
+ * are released by the next {@link #releaseMessages} within its budget.
+ * A message failed to be consumed 3 times is registered to the delegate, not to be retried in memory forever.
+ * Fired messages are not guarded by the lock of {@code SpringTimerMessageHandler}, because they are never shared
+ * with other nodes. Give the rate limiter of its release budget to throttle fired messages together.
+ * Local messages are not persisted until {@link #close()}, which registers pending ones to the delegate,
+ * so they are lost when the process crashes. Keep the threshold short. (ex. debounce or retry delays)
+ *
+ * <pre>
+ * LocalFastPathTimerMessageHandler handler =
+ *     new LocalFastPathTimerMessageHandler(distributedTimerMessageHandler, Duration.ofSeconds(1));
+ * SpringTimerMessageHandler springTimerMessageHandler = new SpringTimerMessageHandler(handler);
+ * handler.start(springTimerMessageHandler::releaseMessage);
+ * </pre>
+ */
+public class LocalFastPathTimerMessageHandler implements TimerMessageHandler, AutoCloseable {
+	private static final Logger LOG = LoggerFactory.getLogger(LocalFastPathTimerMessageHandler.class);
+
+	private static final Duration DEFAULT_THRESHOLD = Duration.ofSeconds(1);
+	private static final String LOCAL_ID_PREFIX = "local:";
+	private static final int MAX_LOCAL_ATTEMPTS = 3;
+
+	private final TimerMessageHandler delegate;
+	private final Duration threshold;
+	@Nullable
+	private final TokenBucketRateLimiter rateLimiter;
+	private final ScheduledThreadPoolExecutor scheduler;
+	private final ConcurrentMap<String, LocalTimer> localTimers = new ConcurrentHashMap<>();
+	// fired before start, over the rate limit or failed to be consumed, released by next releaseMessages.
+	private final Queue<ReadyMessage> readyMessages = new ConcurrentLinkedQueue<>();
+
+	@Nullable
+	private volatile Consumer<Object> consumeReleasedMessage;
+	private volatile boolean closed;
+
+	public LocalFastPathTimerMessageHandler(TimerMessageHandler delegate) {
+		this(delegate, DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * @param delegate handler of messages due later than threshold.
+	 * @param threshold messages due within threshold from registration are kept in local memory.
+	 */
+	public LocalFastPathTimerMessageHandler(TimerMessageHandler delegate, Duration threshold) {
+		this(delegate, threshold, null);
+	}
+
+	/**
+	 * @param delegate handler of messages due later than threshold.
+	 * @param threshold messages due within threshold from registration are kept in local memory.
+	 * @param rateLimiter limiter of fired messages. messages over the limit wait for next releaseMessages.
+	 *                    null is unlimited.
+	 */
+	public LocalFastPathTimerMessageHandler(
+		TimerMessageHandler delegate,
+		Duration threshold,
+		@Nullable TokenBucketRateLimiter rateLimiter
+	) {
+		this.delegate = delegate;
+		this.threshold = threshold;
+		this.rateLimiter = rateLimiter;
+		this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "timer-message-local-fast-path");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.scheduler.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * Start firing local messages to consumeReleasedMessage at their time.
+	 *
+	 * @param consumeReleasedMessage behavior per fired message. (ex. SpringTimerMessageHandler#releaseMessage)
+	 */
+	public void start(Consumer<Object> consumeReleasedMessage) {
+		this.consumeReleasedMessage = consumeReleasedMessage;
+	}
+
+	@Override
+	public boolean isTimerMessage(Object message) {
+		return this.delegate.isTimerMessage(message);
+	}
+
+	@Override
+	public String register(Object message) {
+		Optional<Instant> releaseDateTime = TimerMessageHandlerSupports.getReleaseDateTime(message);
+		if (releaseDateTime.isEmpty() || !this.isLocal(releaseDateTime.get(), Instant.now())) {
+			return this.delegate.register(message);
+		}
+
+		String registeredId = this.registerLocal(message, releaseDateTime.get());
+		return registeredId != null ? registeredId : this.delegate.register(message);
+	}
+
+	/**
+	 * Keep messages due within threshold locally, and register the others to the delegate at once.
+	 *
+	 * @param messages messages to be scheduled
+	 * @return the identifier values of scheduled messages, in order of messages.
+	 */
+	@Override
+	public List<String> registerAll(List<?> messages) {
+		Instant now = Instant.now();
+		List<String> registeredIds = new ArrayList<>(Collections.nCopies(messages.size(), null));
+		List<Integer> delegatedIndexes = new ArrayList<>();
+		List<Object> delegatedMessages = new ArrayList<>();
+		for (int i = 0; i < messages.size(); i++) {
+			Object message = messages.get(i);
+			Optional<Instant> releaseDateTime = TimerMessageHandlerSupports.getReleaseDateTime(message);
+			String registeredId = releaseDateTime.isPresent() && this.isLocal(releaseDateTime.get(), now)
+				? this.registerLocal(message, releaseDateTime.get())
+				: null;
+			if (registeredId != null) {
+				registeredIds.set(i, registeredId);
+			} else {
+				delegatedIndexes.add(i);
+				delegatedMessages.add(message);
+			}
+		}
+
+		if (!delegatedMessages.isEmpty()) {
+			List<String> delegatedIds = this.delegate.registerAll(delegatedMessages);
+			for (int i = 0; i < delegatedIndexes.size(); i++) {
+				registeredIds.set(delegatedIndexes.get(i), delegatedIds.get(i));
+			}
+		}
+		return registeredIds;
+	}
+
+	@Override
+	public void releaseMessages(Consumer<Object> consumeReleasedMessage) {
+		this.releaseReadyMessages(consumeReleasedMessage, new ReleaseBudgetTracker(ReleaseBudget.UNLIMITED));
+		this.delegate.releaseMessages(consumeReleasedMessage);
+	}
+
+	/**
+	 * Release local messages fired before start, over the rate limit or failed to be consumed,
+	 * and then messages of the delegate. Both are counted by the budget and its rate limiter.
+	 *
+	 * @param consumeReleasedMessage behavior per popped message.
+	 * @param releaseBudget limits of this release.
+	 * @return count of released messages, and count of due messages left if the budget is exhausted.
+	 */
+	@Override
+	public ReleaseResult releaseMessages(Consumer<Object> consumeReleasedMessage, ReleaseBudget releaseBudget) {
+		ReleaseBudgetTracker budgetTracker = new ReleaseBudgetTracker(releaseBudget);
+		this.releaseReadyMessages(consumeReleasedMessage, budgetTracker);
+		long localReleasedCount = budgetTracker.toResult(0L).getReleasedCount();
+		ReleaseBudget remainingBudget = budgetTracker.remainingBudget();
+		if (remainingBudget == null) {
+			return new ReleaseResult(localReleasedCount, this.readyMessages.size(), true);
+		}
+
+		ReleaseResult releaseResult = this.delegate.releaseMessages(consumeReleasedMessage, remainingBudget);
+		return new ReleaseResult(
+			localReleasedCount + releaseResult.getReleasedCount(),
+			releaseResult.getRemainingCount(),
+			releaseResult.isExhausted()
+		);
+	}
+
+	@Override
+	public long getDelayedMessageCount() {
+		return this.delegate.getDelayedMessageCount() + this.readyMessages.size();
+	}
+
+	@Override
+	public Optional<Instant> getNextReleaseDateTime() {
+		Instant result = this.readyMessages.isEmpty() ? null : Instant.now();
+		for (LocalTimer localTimer : this.localTimers.values()) {
+			if (result == null || localTimer.releaseDateTime.isBefore(result)) {
+				result = localTimer.releaseDateTime;
+			}
+		}
+
+		Optional<Instant> nextReleaseDateTime = this.delegate.getNextReleaseDateTime();
+		if (nextReleaseDateTime.isPresent() && (result == null || nextReleaseDateTime.get().isBefore(result))) {
+			result = nextReleaseDateTime.get();
+		}
+		return Optional.ofNullable(result);
+	}
+
+	@Override
+	public void cancel(String registeredId) {
+		if (!registeredId.startsWith(LOCAL_ID_PREFIX)) {
+			this.delegate.cancel(registeredId);
+			return;
+		}
+
+		LocalTimer localTimer = this.localTimers.remove(registeredId);
+		ScheduledFuture<?> future = localTimer != null ? localTimer.future : null;
+		if (future != null) {
+			future.cancel(false);
+		}
+	}
+
+	/**
+	 * Stop firing local messages, and register pending and unreleased ones to the delegate not to lose them.
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		this.scheduler.shutdownNow();
+
+		List<Object> messages = new ArrayList<>();
+		for (String registeredId : new ArrayList<>(this.localTimers.keySet())) {
+			LocalTimer localTimer = this.localTimers.remove(registeredId);
+			if (localTimer != null) {
+				messages.add(localTimer.message);
+			}
+		}
+		ReadyMessage readyMessage;
+		while ((readyMessage = this.readyMessages.poll()) != null) {
+			messages.add(readyMessage.message);
+		}
+
+		if (!messages.isEmpty()) {
+			this.delegate.registerAll(messages);
+		}
+	}
+
+	private boolean isLocal(Instant releaseDateTime, Instant now) {
+		return !this.closed && Duration.between(now, releaseDateTime).compareTo(this.threshold) <= 0;
+	}
+
+	/**
+	 * @return registered id. null if the scheduler is closed.
+	 */
+	@Nullable
+	private String registerLocal(Object message, Instant releaseDateTime) {
+		String registeredId = LOCAL_ID_PREFIX + UUID.randomUUID();
+		LocalTimer localTimer = new LocalTimer(message, releaseDateTime);
+		this.localTimers.put(registeredId, localTimer);
+
+		long delayNanos = Math.max(0L, Duration.between(Instant.now(), releaseDateTime).toNanos());
+		try {
+			localTimer.future =
+				this.scheduler.schedule(() -> this.fire(registeredId), delayNanos, TimeUnit.NANOSECONDS);
+		} catch (RejectedExecutionException ex) {
+			this.localTimers.remove(registeredId);
+			return null;
+		}
+		return registeredId;
+	}
+
+	private void fire(String registeredId) {
+		LocalTimer localTimer = this.localTimers.remove(registeredId);
+		if (localTimer == null) {
+			return;
+		}
+
+		Consumer<Object> consumeReleasedMessage = this.consumeReleasedMessage;
+		if (consumeReleasedMessage == null || !this.tryAcquireRate()) {
+			this.readyMessages.add(new ReadyMessage(localTimer.message, 0));
+			return;
+		}
+
+		this.tryRelease(new ReadyMessage(localTimer.message, 0), consumeReleasedMessage);
+	}
+
+	private boolean tryAcquireRate() {
+		if (this.rateLimiter == null) {
+			return true;
+		}
+
+		try {
+			return this.rateLimiter.tryAcquire(0L);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private void releaseReadyMessages(Consumer<Object> consumeReleasedMessage, ReleaseBudgetTracker budgetTracker) {
+		// messages failed in this call are added again, and left to next calls.
+		int count = this.readyMessages.size();
+		for (int i = 0; i < count && !this.readyMessages.isEmpty(); i++) {
+			if (!budgetTracker.tryAcquire()) {
+				return;
+			}
+
+			ReadyMessage readyMessage = this.readyMessages.poll();
+			if (readyMessage == null) {
+				return;
+			}
+			if (this.tryRelease(readyMessage, consumeReleasedMessage)) {
+				budgetTracker.released();
+			}
+		}
+	}
+
+	/**
+	 * @return false if failed. the message is released again later, or registered to the delegate.
+	 */
+	private boolean tryRelease(ReadyMessage readyMessage, Consumer<Object> consumeReleasedMessage) {
+		try {
+			consumeReleasedMessage.accept(readyMessage.message);
+			return true;
+		} catch (RuntimeException ex) {
+			int attempts = readyMessage.attempts + 1;
+			if (attempts < MAX_LOCAL_ATTEMPTS) {
+				LOG.warn("local timer message release is failed. It would be released on next releaseMessages. "
+					+ "attempts: {}", attempts, ex);
+				this.readyMessages.add(new ReadyMessage(readyMessage.message, attempts));
+				return false;
+			}
+
+			try {
+				this.delegate.register(readyMessage.message);
+				LOG.warn("local timer message release is failed. It is registered to the delegate. attempts: {}",
+					attempts, ex);
+			} catch (RuntimeException registerException) {
+				registerException.addSuppressed(ex);
+				LOG.error("local timer message release is failed, and register to the delegate is failed. "
+					+ "It would be released on next releaseMessages. attempts: {}", attempts, registerException);
+				this.readyMessages.add(new ReadyMessage(readyMessage.message, attempts));
+			}
+			return false;
+		}
+	}
+
+	private static final class ReadyMessage {
+		private final Object message;
+		private final int attempts;
+
+		ReadyMessage(Object message, int attempts) {
+			this.message = message;
+			this.attempts = attempts;
+		}
+	}
+
+	private static final class LocalTimer {
+		private final Object message;
+		private final Instant releaseDateTime;
+		@Nullable
+		private volatile ScheduledFuture<?> future;
+
+		LocalTimer(Object message, Instant releaseDateTime) {
+			this.message = message;
+			this.releaseDateTime = releaseDateTime;
+		}
+	}
+}
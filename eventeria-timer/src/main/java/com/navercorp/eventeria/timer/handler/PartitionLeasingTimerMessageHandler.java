@@ -0,0 +1,337 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.eventeria.timer.handler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.navercorp.eventeria.timer.contract.handler.ReleaseBudget;
+import com.navercorp.eventeria.timer.contract.handler.ReleaseResult;
+import com.navercorp.eventeria.timer.contract.handler.TimerMessageHandler;
+import com.navercorp.eventeria.timer.contract.store.PartitionLeaseRegistry;
+
+/**
+ * A {@link TimerMessageHandler} which releases only partitions of the delegate leased to this node.
+ * <p/>
+ * Each node registers itself to {@link PartitionLeaseRegistry} as a member,
+ * and holds renewable leases on its fair share of partitions. ({@code ceil(partitionCount / memberCount)})
+ * When a member joins, the others give leases over the new fair share back, and the new member takes them.
+ * When a member leaves or dies, its leases are expired and taken by the others.
+ * So nodes release disjoint subsets of partitions at the same time, without a global lock,
+ * and release throughput scales with the count of nodes.
+ * <p/>
+ * Leases are rebalanced at the start of a release, and only renewed during the release.
+ * Before each page of a partition, leases are renewed if renewInterval is passed,
+ * and a partition of which lease is lost is left. So a long release does not outlive its leases.
+ * Leases are not fenced, so a page should be released within leaseDuration minus renewInterval.
+ * Otherwise messages of the page can be released by another node too, unless the store claims them.
+ *
+ * <pre>
+ * PartitionLeasingTimerMessageHandler handler =
+ *     new PartitionLeasingTimerMessageHandler(distributedTimerMessageHandler, partitionLeaseRegistry);
+ * </pre>
+ */
+public class PartitionLeasingTimerMessageHandler implements TimerMessageHandler, AutoCloseable {
+	private static final Logger LOG = LoggerFactory.getLogger(PartitionLeasingTimerMessageHandler.class);
+
+	private static final Duration DEFAULT_LEASE_DURATION = Duration.ofSeconds(30);
+
+	private final DistributedTimerMessageHandler delegate;
+	private final PartitionLeaseRegistry partitionLeaseRegistry;
+	private final String memberId;
+	private final Duration leaseDuration;
+	private final Duration renewInterval;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private Set<Integer> ownedPartitions = new TreeSet<>();    // guarded by lock
+	private Instant renewedDateTime = Instant.MIN;    // guarded by lock
+
+	public PartitionLeasingTimerMessageHandler(
+		DistributedTimerMessageHandler delegate,
+		PartitionLeaseRegistry partitionLeaseRegistry
+	) {
+		this(delegate, partitionLeaseRegistry, UUID.randomUUID().toString(), DEFAULT_LEASE_DURATION);
+	}
+
+	/**
+	 * @param delegate
+	 * @param partitionLeaseRegistry
+	 * @param memberId unique id of this node.
+	 * @param leaseDuration leases and membership of this node are expired without renewal for this duration.
+	 */
+	public PartitionLeasingTimerMessageHandler(
+		DistributedTimerMessageHandler delegate,
+		PartitionLeaseRegistry partitionLeaseRegistry,
+		String memberId,
+		Duration leaseDuration
+	) {
+		this(delegate, partitionLeaseRegistry, memberId, leaseDuration, leaseDuration.dividedBy(3));
+	}
+
+	/**
+	 * @param delegate
+	 * @param partitionLeaseRegistry
+	 * @param memberId unique id of this node.
+	 * @param leaseDuration leases and membership of this node are expired without renewal for this duration.
+	 * @param renewInterval leases are renewed and rebalanced on release, when renewInterval is passed since last.
+	 */
+	public PartitionLeasingTimerMessageHandler(
+		DistributedTimerMessageHandler delegate,
+		PartitionLeaseRegistry partitionLeaseRegistry,
+		String memberId,
+		Duration leaseDuration,
+		Duration renewInterval
+	) {
+		if (renewInterval.isNegative() || renewInterval.compareTo(leaseDuration) >= 0) {
+			throw new IllegalArgumentException("renewInterval must be shorter than leaseDuration. renewInterval: "
+				+ renewInterval + ", leaseDuration: " + leaseDuration);
+		}
+
+		this.delegate = delegate;
+		this.partitionLeaseRegistry = partitionLeaseRegistry;
+		this.memberId = memberId;
+		this.leaseDuration = leaseDuration;
+		this.renewInterval = renewInterval;
+	}
+
+	@Override
+	public boolean isTimerMessage(Object message) {
+		return this.delegate.isTimerMessage(message);
+	}
+
+	@Override
+	public String register(Object message) {
+		return this.delegate.register(message);
+	}
+
+	@Override
+	public List<String> registerAll(List<?> messages) {
+		return this.delegate.registerAll(messages);
+	}
+
+	@Override
+	public void releaseMessages(Consumer<Object> consumeReleasedMessage) {
+		this.releaseMessages(consumeReleasedMessage, ReleaseBudget.UNLIMITED);
+	}
+
+	/**
+	 * Renew and rebalance leases if needed, and release due messages of partitions owned by this node.
+	 *
+	 * @param consumeReleasedMessage behavior per popped message.
+	 * @param releaseBudget limits of this release, shared by owned partitions.
+	 * @return count of released messages, and count of due messages of owned partitions left
+	 *         if the budget is exhausted.
+	 */
+	@Override
+	public ReleaseResult releaseMessages(Consumer<Object> consumeReleasedMessage, ReleaseBudget releaseBudget) {
+		Set<Integer> ownedPartitions = this.renewLeases(true);
+		if (ownedPartitions.isEmpty()) {
+			return new ReleaseResult(0L, 0L, false);
+		}
+
+		return this.delegate.releaseMessages(
+			consumeReleasedMessage,
+			releaseBudget,
+			ownedPartitions,
+			this::isLeased
+		);
+	}
+
+	/**
+	 * @return count of due messages of all partitions, including ones owned by other nodes.
+	 */
+	@Override
+	public long getDelayedMessageCount() {
+		return this.delegate.getDelayedMessageCount();
+	}
+
+	@Override
+	public Optional<Instant> getNextReleaseDateTime() {
+		return this.delegate.getNextReleaseDateTime();
+	}
+
+	@Override
+	public void cancel(String registeredId) {
+		this.delegate.cancel(registeredId);
+	}
+
+	/**
+	 * @return partitions leased to this node on last renewal.
+	 */
+	public Set<Integer> getOwnedPartitions() {
+		this.lock.lock();
+		try {
+			return new TreeSet<>(this.ownedPartitions);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	public String getMemberId() {
+		return this.memberId;
+	}
+
+	/**
+	 * Give all leases back and leave membership, so that other nodes take the partitions without waiting expiry.
+	 */
+	@Override
+	public void close() {
+		this.lock.lock();
+		try {
+			for (Integer partition : this.ownedPartitions) {
+				this.partitionLeaseRegistry.release(partition, this.memberId);
+			}
+			this.ownedPartitions = new TreeSet<>();
+			this.renewedDateTime = Instant.MIN;
+			this.partitionLeaseRegistry.leave(this.memberId);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Checked before each page of a partition while releasing.
+	 * Leases are renewed without rebalance, not to give a partition back in the middle of its release.
+	 */
+	private boolean isLeased(Integer partition) {
+		try {
+			return this.renewLeases(false).contains(partition);
+		} catch (RuntimeException ex) {
+			LOG.warn("timer message partition leases are failed to be renewed while releasing. "
+				+ "Release of owned partitions is stopped. memberId: {}", this.memberId, ex);
+			return false;
+		}
+	}
+
+	/**
+	 * @param rebalance whether to give excess leases back and take more, or only renew owned leases.
+	 * @return partitions owned for leaseDuration minus renewInterval at least.
+	 */
+	private Set<Integer> renewLeases(boolean rebalance) {
+		this.lock.lock();
+		try {
+			Instant now = Instant.now();
+			if (now.isBefore(this.renewedDateTime.plus(this.renewInterval))) {
+				return this.ownedPartitions;
+			}
+
+			try {
+				this.ownedPartitions = rebalance ? this.rebalance() : this.renewOwnedLeases();
+				this.renewedDateTime = now;
+			} catch (RuntimeException ex) {
+				// leases not renewed may be taken by other nodes, so nothing is released until renewed.
+				this.ownedPartitions = new TreeSet<>();
+				this.renewedDateTime = Instant.MIN;
+				throw ex;
+			}
+			return this.ownedPartitions;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	private Set<Integer> renewOwnedLeases() {
+		this.partitionLeaseRegistry.heartbeat(this.memberId, this.leaseDuration);
+		Set<Integer> result = new TreeSet<>(
+			this.partitionLeaseRegistry.tryAcquireAll(this.ownedPartitions, this.memberId, this.leaseDuration));
+		if (!result.equals(this.ownedPartitions)) {
+			LOG.warn("timer message partition leases are lost while releasing. memberId: {}, partitions: {}",
+				this.memberId, result);
+		}
+		return result;
+	}
+
+	private Set<Integer> rebalance() {
+		int partitionCount = this.delegate.getSeekPartitionCount();
+		this.partitionLeaseRegistry.heartbeat(this.memberId, this.leaseDuration);
+		if (partitionCount <= 0) {
+			return new TreeSet<>();
+		}
+
+		List<String> members = new ArrayList<>(this.partitionLeaseRegistry.findMembers());
+		if (!members.contains(this.memberId)) {
+			members.add(this.memberId);
+		}
+		members.sort(null);
+		int memberCount = members.size();
+		int fairShare = (partitionCount + memberCount - 1) / memberCount;
+		// members prefer different ranges of partitions, not to contend for the same ones.
+		int preferredStart = (int)((long)members.indexOf(this.memberId) * partitionCount / memberCount);
+		Comparator<Integer> preference =
+			Comparator.comparingInt(it -> Math.floorMod(it - preferredStart, partitionCount));
+
+		List<Integer> renewing = new ArrayList<>();
+		for (Integer partition : this.ownedPartitions) {
+			if (partition < partitionCount) {
+				renewing.add(partition);
+			} else {
+				// partition count is decreased by migration.
+				this.partitionLeaseRegistry.release(partition, this.memberId);
+			}
+		}
+		List<Integer> owned = new ArrayList<>(
+			this.partitionLeaseRegistry.tryAcquireAll(renewing, this.memberId, this.leaseDuration));
+		owned.sort(preference);
+
+		// give leases over the fair share back, to be taken by joined members.
+		while (owned.size() > fairShare) {
+			Integer partition = owned.remove(owned.size() - 1);
+			this.partitionLeaseRegistry.release(partition, this.memberId);
+		}
+
+		// take partitions not owned by others, up to the fair share.
+		if (owned.size() < fairShare) {
+			List<Integer> candidates = new ArrayList<>(partitionCount);
+			for (int i = 0; i < partitionCount; i++) {
+				int partition = (preferredStart + i) % partitionCount;
+				if (!owned.contains(partition)) {
+					candidates.add(partition);
+				}
+			}
+
+			int index = 0;
+			while (owned.size() < fairShare && index < candidates.size()) {
+				int toIndex = Math.min(candidates.size(), index + fairShare - owned.size());
+				owned.addAll(this.partitionLeaseRegistry.tryAcquireAll(
+					candidates.subList(index, toIndex), this.memberId, this.leaseDuration));
+				index = toIndex;
+			}
+		}
+
+		Set<Integer> result = new TreeSet<>(owned);
+		if (!result.equals(this.ownedPartitions)) {
+			LOG.info("timer message partition leases are rebalanced. memberId: {}, memberCount: {}, partitions: {}",
+				this.memberId, memberCount, result);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,353 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.handler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import com.navercorp.eventeria.messaging.contract.distribution.PartitionGenerator;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+import com.navercorp.eventeria.timer.store.ReactiveTimerMessageStore;
+
+/**
+ * A non-blocking counterpart of {@link DistributedTimerMessageHandler} on {@link ReactiveTimerMessageStore}.
+ * <p/>
+ * Partitions are released concurrently up to releaseConcurrency, and messages of a page are released concurrently
+ * in order of release time. Each partition claims its next page only after the previous page is released
+ * and acknowledged.
+ * So at most releaseConcurrency * countPerRelease messages are in flight,
+ * regardless of partition count and backlog.
+ * Requires reactor-core on the classpath.
+ *
+ * <pre>
+ * handler.releaseMessagesPeriodically(Duration.ofSeconds(1), message -> kafkaSender.send(toRecord(message)))
+ *     .subscribe();
+ * </pre>
+ */
+public class ReactiveDistributedTimerMessageHandler {
+	private static final Logger LOG = LoggerFactory.getLogger(ReactiveDistributedTimerMessageHandler.class);
+
+	private static final int DEFAULT_RELEASE_CONCURRENCY = 32;
+
+	private final ReactiveTimerMessageStore timerMessageStore;
+	private final int countPerRelease;
+	private final PartitionGenerator partitionGenerator;
+	private final int registeredPartitionCount;
+	private final int seekPartitionCount;
+	private final int releaseConcurrency;
+
+	/**
+	 * @param timerMessageStore
+	 * @param countPerRelease
+	 * @param partitionGenerator
+	 * @param registeredPartitionCount partition count used on register time.
+	 * @param seekPartitionCount partition count used on retrieve time.
+	 */
+	public ReactiveDistributedTimerMessageHandler(
+		ReactiveTimerMessageStore timerMessageStore,
+		int countPerRelease,
+		PartitionGenerator partitionGenerator,
+		int registeredPartitionCount,
+		int seekPartitionCount
+	) {
+		this(
+			timerMessageStore,
+			countPerRelease,
+			partitionGenerator,
+			registeredPartitionCount,
+			seekPartitionCount,
+			DEFAULT_RELEASE_CONCURRENCY
+		);
+	}
+
+	/**
+	 * @param timerMessageStore
+	 * @param countPerRelease
+	 * @param partitionGenerator
+	 * @param registeredPartitionCount partition count used on register time.
+	 * @param seekPartitionCount partition count used on retrieve time.
+	 * @param releaseConcurrency max count of partitions released concurrently.
+	 */
+	public ReactiveDistributedTimerMessageHandler(
+		ReactiveTimerMessageStore timerMessageStore,
+		int countPerRelease,
+		PartitionGenerator partitionGenerator,
+		int registeredPartitionCount,
+		int seekPartitionCount,
+		int releaseConcurrency
+	) {
+		if (countPerRelease <= 0) {
+			throw new IllegalArgumentException("countPerRelease must be positive. countPerRelease: "
+				+ countPerRelease);
+		}
+		if (releaseConcurrency <= 0) {
+			throw new IllegalArgumentException("releaseConcurrency must be positive. releaseConcurrency: "
+				+ releaseConcurrency);
+		}
+
+		this.timerMessageStore = timerMessageStore;
+		this.countPerRelease = countPerRelease;
+		this.partitionGenerator = partitionGenerator;
+		this.registeredPartitionCount = registeredPartitionCount;
+		this.seekPartitionCount = seekPartitionCount;
+		this.releaseConcurrency = releaseConcurrency;
+	}
+
+	public boolean isTimerMessage(Object message) {
+		return TimerMessageHandlerSupports.getReleaseDateTime(message).isPresent();
+	}
+
+	/**
+	 * @param message message to be scheduled
+	 * @return the identifier value of scheduled message
+	 */
+	public Mono<String> register(Object message) {
+		return Mono.defer(() -> {
+			TimerMessageStoreValue storeValue = TimerMessageHandlerSupports.toTimerMessageStoreValue(message);
+			int partition = this.getPartition(message);
+			return this.timerMessageStore.save(storeValue, partition)
+				.thenReturn(TimerMessageHandlerSupports.registerId(storeValue.getId(), partition));
+		});
+	}
+
+	/**
+	 * Register messages at once per partition.
+	 *
+	 * @param messages messages to be scheduled
+	 * @return the identifier values of scheduled messages, in order of messages.
+	 */
+	public Mono<List<String>> registerAll(List<?> messages) {
+		return Mono.defer(() -> {
+			Map<Integer, List<TimerMessageStoreValue>> storeValuesByPartition = new LinkedHashMap<>();
+			List<String> registeredIds = new ArrayList<>(messages.size());
+			for (Object message : messages) {
+				TimerMessageStoreValue storeValue = TimerMessageHandlerSupports.toTimerMessageStoreValue(message);
+				int partition = this.getPartition(message);
+				storeValuesByPartition.computeIfAbsent(partition, it -> new ArrayList<>()).add(storeValue);
+				registeredIds.add(TimerMessageHandlerSupports.registerId(storeValue.getId(), partition));
+			}
+
+			return Flux.fromIterable(storeValuesByPartition.entrySet())
+				.concatMap(it -> this.timerMessageStore.saveAll(it.getValue(), it.getKey()))
+				.then(Mono.just(registeredIds));
+		});
+	}
+
+	/**
+	 * Release due messages of all partitions.
+	 * A message is acknowledged after the publisher returned by releaseMessage is completed,
+	 * and requeued if the publisher is failed.
+	 *
+	 * @param releaseMessage behavior per released message. (ex. sending to a reactive kafka sender)
+	 * @return count of released messages.
+	 */
+	public Mono<Long> releaseMessages(Function<Object, ? extends Publisher<?>> releaseMessage) {
+		return Mono.defer(() -> {
+			Instant scheduleTime = Instant.now();
+			return Flux.range(0, this.seekPartitionCount)
+				.flatMap(
+					partition -> this.drainPartition(partition, scheduleTime, releaseMessage),
+					this.releaseConcurrency
+				)
+				.reduce(0L, Long::sum);
+		});
+	}
+
+	/**
+	 * Release due messages every interval.
+	 * A tick is dropped while the previous release is running, so releases never overlap.
+	 *
+	 * @param interval
+	 * @param releaseMessage behavior per released message.
+	 * @return count of released messages per release.
+	 */
+	public Flux<Long> releaseMessagesPeriodically(
+		Duration interval,
+		Function<Object, ? extends Publisher<?>> releaseMessage
+	) {
+		return Flux.interval(Duration.ZERO, interval)
+			.onBackpressureDrop()
+			.concatMap(
+				tick -> this.releaseMessages(releaseMessage)
+					.onErrorResume(throwable -> {
+						LOG.error("timer message release is failed. It would be retried on next scheduling.",
+							throwable);
+						return Mono.just(0L);
+					}),
+				1
+			);
+	}
+
+	public Mono<Long> getDelayedMessageCount() {
+		return Mono.defer(() -> {
+			Instant now = Instant.now();
+			return Flux.range(0, this.seekPartitionCount)
+				.flatMap(partition -> this.timerMessageStore.count(now, partition), this.releaseConcurrency)
+				.reduce(0L, Long::sum);
+		});
+	}
+
+	public Mono<Void> cancel(String registeredId) {
+		return Mono.defer(() -> {
+			Entry<UUID, Integer> storeValueIdPartition = TimerMessageHandlerSupports.splitRegisterId(registeredId);
+			return this.timerMessageStore.remove(storeValueIdPartition.getKey(), storeValueIdPartition.getValue());
+		});
+	}
+
+	public int getRegisteredPartitionCount() {
+		return this.registeredPartitionCount;
+	}
+
+	public int getSeekPartitionCount() {
+		return this.seekPartitionCount;
+	}
+
+	/**
+	 * Release a partition page by page until there are no more due messages.
+	 *
+	 * @return count of released messages of the partition.
+	 */
+	private Mono<Long> drainPartition(
+		int partition,
+		Instant scheduleTime,
+		Function<Object, ? extends Publisher<?>> releaseMessage
+	) {
+		return this.releasePage(partition, scheduleTime, releaseMessage)
+			.expand(page -> page.hasNext(this.countPerRelease)
+				? this.releasePage(partition, scheduleTime, releaseMessage)
+				: Mono.empty())
+			.map(page -> (long)page.releasedCount)
+			.reduce(0L, Long::sum);
+	}
+
+	private Mono<ReleasedPage> releasePage(
+		int partition,
+		Instant scheduleTime,
+		Function<Object, ? extends Publisher<?>> releaseMessage
+	) {
+		return this.timerMessageStore.claimReleaseValues(scheduleTime, this.countPerRelease, partition)
+			.collectList()
+			.flatMap(releaseValues -> {
+				if (releaseValues.isEmpty()) {
+					return Mono.just(new ReleasedPage(0, 0));
+				}
+
+				List<TimerMessageStoreValue> sortedReleaseValues = new ArrayList<>(releaseValues);
+				sortedReleaseValues.sort(Comparator.comparing(TimerMessageStoreValue::getReleaseDateTime));
+
+				// subscribed in order of release time, without waiting for the previous message.
+				return Flux.fromIterable(sortedReleaseValues)
+					.flatMapSequential(
+						releaseValue -> this.release(releaseValue, partition, releaseMessage),
+						this.countPerRelease
+					)
+					.collectList()
+					.flatMap(releasedIds -> this.acknowledgeAll(releasedIds, partition)
+						.thenReturn(new ReleasedPage(sortedReleaseValues.size(), releasedIds.size())));
+			});
+	}
+
+	/**
+	 * @return id of the released message. empty if release is failed.
+	 */
+	private Mono<UUID> release(
+		TimerMessageStoreValue releaseValue,
+		int partition,
+		Function<Object, ? extends Publisher<?>> releaseMessage
+	) {
+		return Mono.defer(() -> Flux.from(releaseMessage.apply(releaseValue.getMessage())).then())
+			.thenReturn(releaseValue.getId())
+			.onErrorResume(throwable -> {
+				LOG.error(
+					"timer handler release message is failed. "
+						+ "This message would be ignored and retry next scheduling. storeValue: {}",
+					releaseValue,
+					throwable
+				);
+				return this.requeue(releaseValue, partition).then(Mono.empty());
+			});
+	}
+
+	private int getPartition(Object message) {
+		return this.partitionGenerator.partition(message, this.registeredPartitionCount);
+	}
+
+	private Mono<Void> acknowledgeAll(List<UUID> releasedIds, int partition) {
+		if (releasedIds.isEmpty()) {
+			return Mono.empty();
+		}
+
+		return this.timerMessageStore.acknowledgeAll(releasedIds, partition)
+			.onErrorResume(throwable -> {
+				LOG.error("timer handler acknowledge released messages is failed. "
+					+ "These messages would be released again. partition: {}, storeValueIds: {}",
+					partition, releasedIds, throwable);
+				return Mono.empty();
+			});
+	}
+
+	private Mono<Void> requeue(TimerMessageStoreValue releaseValue, @Nullable Integer partition) {
+		return this.timerMessageStore.requeue(releaseValue.getId(), partition)
+			.onErrorResume(throwable -> {
+				LOG.warn("timer handler requeue message is failed. "
+					+ "This message would be released again after lease is expired. storeValue: {}",
+					releaseValue, throwable);
+				return Mono.empty();
+			});
+	}
+
+	/**
+	 * Result of a page released.
+	 */
+	private static final class ReleasedPage {
+		private final int fetchedCount;
+		private final int releasedCount;
+
+		ReleasedPage(int fetchedCount, int releasedCount) {
+			this.fetchedCount = fetchedCount;
+			this.releasedCount = releasedCount;
+		}
+
+		/**
+		 * @return whether there can be more due messages in the partition.
+		 */
+		boolean hasNext(int countPerRelease) {
+			// there are no remaining data to process,
+			// or there is no succeed message among release targets.
+			return this.fetchedCount >= countPerRelease && this.releasedCount > 0;
+		}
+	}
+}
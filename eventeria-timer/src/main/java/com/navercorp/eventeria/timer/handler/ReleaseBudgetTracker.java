@@ -0,0 +1,138 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.handler;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import com.navercorp.eventeria.timer.contract.handler.ReleaseBudget;
+import com.navercorp.eventeria.timer.contract.handler.ReleaseResult;
+import com.navercorp.eventeria.timer.contract.handler.TokenBucketRateLimiter;
+
+/**
+ * Consumption of a {@link ReleaseBudget} in a release cycle, shared by release workers.
+ */
+final class ReleaseBudgetTracker {
+	private final long maxCount;
+	@Nullable
+	private final TokenBucketRateLimiter rateLimiter;
+	private final long startNanos;
+	private final long maxDurationNanos;
+
+	private final AtomicLong acquiredCount = new AtomicLong();
+	private final AtomicLong releasedCount = new AtomicLong();
+	private volatile boolean exhausted;
+
+	ReleaseBudgetTracker(ReleaseBudget releaseBudget) {
+		Duration maxDuration = releaseBudget.getMaxDuration();
+		this.maxCount = releaseBudget.getMaxCount();
+		this.rateLimiter = releaseBudget.getRateLimiter();
+		this.startNanos = System.nanoTime();
+		this.maxDurationNanos = maxDuration == null ? Long.MAX_VALUE : saturatedNanos(maxDuration);
+	}
+
+	/**
+	 * @return count of messages to fetch for next page. 0 if the budget is exhausted.
+	 */
+	int nextPageSize(int countPerRelease) {
+		long remaining = this.maxCount - this.acquiredCount.get();
+		if (this.exhausted || remaining <= 0L || this.remainingNanos() <= 0L) {
+			this.exhausted = true;
+			return 0;
+		}
+		return (int)Math.min(countPerRelease, remaining);
+	}
+
+	/**
+	 * Acquire the budget to release a message. Waits for a permit of rate limiter.
+	 *
+	 * @return false if the budget is exhausted. the message should be left to the next cycle.
+	 */
+	boolean tryAcquire() {
+		if (this.exhausted) {
+			return false;
+		}
+		if (this.acquiredCount.incrementAndGet() > this.maxCount || this.remainingNanos() <= 0L) {
+			this.exhausted = true;
+			return false;
+		}
+		if (this.rateLimiter == null) {
+			return true;
+		}
+
+		try {
+			if (this.rateLimiter.tryAcquire(this.remainingNanos())) {
+				return true;
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		this.exhausted = true;
+		return false;
+	}
+
+	void released() {
+		this.releasedCount.incrementAndGet();
+	}
+
+	boolean isExhausted() {
+		return this.exhausted;
+	}
+
+	/**
+	 * @return the budget left for the rest of this cycle, sharing the rate limiter. null if nothing is left.
+	 */
+	@Nullable
+	ReleaseBudget remainingBudget() {
+		long remainingCount = this.maxCount - this.acquiredCount.get();
+		long remainingNanos = this.remainingNanos();
+		if (this.exhausted || remainingCount <= 0L || remainingNanos <= 0L) {
+			return null;
+		}
+		return new ReleaseBudget(
+			remainingCount,
+			remainingNanos == Long.MAX_VALUE ? null : Duration.ofNanos(remainingNanos),
+			this.rateLimiter
+		);
+	}
+
+	/**
+	 * @param remainingCount count of due messages left. ignored if the budget is not exhausted.
+	 */
+	ReleaseResult toResult(long remainingCount) {
+		return new ReleaseResult(this.releasedCount.get(), this.exhausted ? remainingCount : 0L, this.exhausted);
+	}
+
+	private long remainingNanos() {
+		if (this.maxDurationNanos == Long.MAX_VALUE) {
+			return Long.MAX_VALUE;
+		}
+		return this.maxDurationNanos - (System.nanoTime() - this.startNanos);
+	}
+
+	private static long saturatedNanos(Duration duration) {
+		try {
+			return duration.toNanos();
+		} catch (ArithmeticException ex) {
+			return Long.MAX_VALUE;
+		}
+	}
+}
@@ -19,14 +19,20 @@
 package com.navercorp.eventeria.timer.handler;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.function.Consumer;
 
+import javax.annotation.Nullable;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.navercorp.eventeria.timer.contract.handler.ReleaseBudget;
+import com.navercorp.eventeria.timer.contract.handler.ReleaseResult;
 import com.navercorp.eventeria.timer.contract.handler.TimerMessageHandler;
 import com.navercorp.eventeria.timer.contract.store.TimerMessageStore;
 import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
@@ -57,14 +63,53 @@ public class SimpleTimerMessageHandler implements TimerMessageHandler {
 		return storeValue.getId().toString();
 	}
 
+	/**
+	 * Register messages at once.
+	 *
+	 * @param messages messages to be scheduled
+	 * @return the identifier values of scheduled messages, in order of messages.
+	 */
+	@Override
+	public List<String> registerAll(List<?> messages) {
+		List<TimerMessageStoreValue> storeValues = new ArrayList<>(messages.size());
+		List<String> registeredIds = new ArrayList<>(messages.size());
+		for (Object message : messages) {
+			TimerMessageStoreValue storeValue = TimerMessageHandlerSupports.toTimerMessageStoreValue(message);
+			storeValues.add(storeValue);
+			registeredIds.add(storeValue.getId().toString());
+		}
+
+		this.timerMessageStore.saveAll(storeValues, null);
+		return registeredIds;
+	}
+
 	@Override
 	public void releaseMessages(Consumer<Object> consumeReleasedMessage) {
+		this.releaseMessages(consumeReleasedMessage, ReleaseBudget.UNLIMITED);
+	}
+
+	/**
+	 * Release due messages page by page until the budget is exhausted.
+	 * The next cycle resumes from the earliest messages left.
+	 *
+	 * @param consumeReleasedMessage behavior per popped message.
+	 * @param releaseBudget limits of this cycle.
+	 * @return count of released messages, and count of due messages left if the budget is exhausted.
+	 */
+	@Override
+	public ReleaseResult releaseMessages(Consumer<Object> consumeReleasedMessage, ReleaseBudget releaseBudget) {
 		Instant scheduleTime = Instant.now();
+		ReleaseBudgetTracker budgetTracker = new ReleaseBudgetTracker(releaseBudget);
 
 		boolean schedule = true;
 		while (schedule) {
-			schedule = this.schedulePersistedMessages(scheduleTime, consumeReleasedMessage);
+			schedule = this.schedulePersistedMessages(scheduleTime, consumeReleasedMessage, budgetTracker);
+		}
+
+		if (!budgetTracker.isExhausted()) {
+			return budgetTracker.toResult(0L);
 		}
+		return budgetTracker.toResult(this.timerMessageStore.count(scheduleTime, null));
 	}
 
 	@Override
@@ -72,38 +117,81 @@ public class SimpleTimerMessageHandler implements TimerMessageHandler {
 		return this.timerMessageStore.count(Instant.now(), null);
 	}
 
+	@Override
+	public Optional<Instant> getNextReleaseDateTime() {
+		return this.timerMessageStore.findNextReleaseDateTime(null);
+	}
+
 	@Override
 	public void cancel(String registeredId) {
 		this.timerMessageStore.remove(UUID.fromString(registeredId), null);
 	}
 
 	// return need rescheduling partitions
-	private boolean schedulePersistedMessages(Instant scheduleTime, Consumer<Object> consumeReleaseMessage) {
-		List<TimerMessageStoreValue> releaseValues = this.timerMessageStore.findReleaseValues(
-			scheduleTime, this.countPerRelease, null);
+	private boolean schedulePersistedMessages(
+		Instant scheduleTime,
+		Consumer<Object> consumeReleaseMessage,
+		ReleaseBudgetTracker budgetTracker
+	) {
+		int pageSize = budgetTracker.nextPageSize(this.countPerRelease);
+		if (pageSize == 0) {
+			return false;
+		}
+
+		List<TimerMessageStoreValue> releaseValues = TimerMessageHandlerSupports.findReleaseValues(
+			this.timerMessageStore, scheduleTime, pageSize, null);
 
 		if (releaseValues == null || releaseValues.isEmpty()) {
 			return false;
 		}
 
 		// mark that rescheduling is needed because there are remaining data to process
-		boolean needReschedule = releaseValues.size() == this.countPerRelease;
+		boolean needReschedule = releaseValues.size() == pageSize;
 
 		releaseValues.sort(Comparator.comparing(TimerMessageStoreValue::getReleaseDateTime));
 
+		List<UUID> releasedIds = new ArrayList<>(releaseValues.size());
+		List<UUID> requeueIds = new ArrayList<>();
 		for (TimerMessageStoreValue releaseValue : releaseValues) {
+			if (!budgetTracker.tryAcquire()) {
+				// left to the next cycle.
+				requeueIds.add(releaseValue.getId());
+				needReschedule = false;
+				continue;
+			}
+
 			try {
 				consumeReleaseMessage.accept(releaseValue.getMessage());
-				this.timerMessageStore.remove(releaseValue.getId(), null);
+				releasedIds.add(releaseValue.getId());
+				budgetTracker.released();
 			} catch (Throwable throwable) {
 				LOG.error(
 					"timer handler release message is failed. "
 						+ "This message would be ignored and retry next scheduling. storeValue: {}",
 					releaseValue
 				);
+				requeueIds.add(releaseValue.getId());
 			}
 		}
+		this.requeueAll(requeueIds, null);
+
+		try {
+			TimerMessageHandlerSupports.acknowledgeAll(this.timerMessageStore, releasedIds, null);
+		} catch (Exception ex) {
+			LOG.error("timer handler acknowledge released messages is failed. "
+				+ "These messages would be released again. storeValueIds: {}", releasedIds, ex);
+		}
 
 		return needReschedule;
 	}
+
+	private void requeueAll(List<UUID> requeueIds, @Nullable Integer partition) {
+		try {
+			TimerMessageHandlerSupports.requeueAll(this.timerMessageStore, requeueIds, partition);
+		} catch (Exception ex) {
+			LOG.warn("timer handler requeue messages is failed. "
+				+ "These messages would be released again after lease is expired. partition: {}, storeValueIds: {}",
+				partition, requeueIds, ex);
+		}
+	}
 }
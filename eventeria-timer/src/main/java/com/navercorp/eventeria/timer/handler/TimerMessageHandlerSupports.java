@@ -19,9 +19,19 @@
 package com.navercorp.eventeria.timer.handler;
 
 import java.time.Instant;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
 
 import com.navercorp.eventeria.timer.contract.TimerMessage;
+import com.navercorp.eventeria.timer.contract.store.LeasedTimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStore;
 import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
 
 class TimerMessageHandlerSupports {
@@ -43,4 +53,116 @@ class TimerMessageHandlerSupports {
 		Instant releaseDateTime = getReleaseDateTime(message).orElseGet(Instant::now);
 		return new TimerMessageStoreValue(message, releaseDateTime);
 	}
+
+	/**
+	 * Generate an id of a registered message, which contains its partition.
+	 */
+	static String registerId(UUID storeValueId, int partition) {
+		return storeValueId + ":{" + partition + "}";
+	}
+
+	/**
+	 * Split an id generated by {@link #registerId} to storeValueId and partition.
+	 */
+	static Entry<UUID, Integer> splitRegisterId(String registerId) {
+		int idIndex = registerId.indexOf(":{");
+		if (idIndex < 0 || !registerId.endsWith("}")) {
+			throw new IllegalArgumentException(
+				"registerId is not distributed timer message handler Id. registerId: " + registerId
+			);
+		}
+
+		try {
+			String storeValueId = registerId.substring(0, idIndex);
+			String partition = registerId.substring(idIndex + 2, registerId.length() - 1);
+			return new SimpleEntry<>(UUID.fromString(storeValueId), Integer.valueOf(partition));
+		} catch (Exception ex) {
+			throw new IllegalArgumentException(
+				"registerId is not distributed timer message handler Id. registerId: " + registerId
+			);
+		}
+	}
+
+	/**
+	 * Find messages to release. Claims messages with lease if the store is {@link LeasedTimerMessageStore}.
+	 */
+	static List<TimerMessageStoreValue> findReleaseValues(
+		TimerMessageStore timerMessageStore,
+		Instant conditionDateTime,
+		int count,
+		@Nullable Integer partition
+	) {
+		if (timerMessageStore instanceof LeasedTimerMessageStore leasedTimerMessageStore) {
+			return leasedTimerMessageStore.claimReleaseValues(conditionDateTime, count, partition);
+		}
+
+		return timerMessageStore.findReleaseValues(conditionDateTime, count, partition);
+	}
+
+	/**
+	 * Find messages to release of partitions at once.
+	 * Claims messages with lease if the store is {@link LeasedTimerMessageStore}.
+	 */
+	static Map<Integer, List<TimerMessageStoreValue>> findReleaseValuesOfPartitions(
+		TimerMessageStore timerMessageStore,
+		Instant conditionDateTime,
+		int count,
+		Collection<Integer> partitions
+	) {
+		if (timerMessageStore instanceof LeasedTimerMessageStore leasedTimerMessageStore) {
+			return leasedTimerMessageStore.claimReleaseValuesOfPartitions(conditionDateTime, count, partitions);
+		}
+
+		return timerMessageStore.findReleaseValuesOfPartitions(conditionDateTime, count, partitions);
+	}
+
+	/**
+	 * Remove a released message from store.
+	 */
+	static void acknowledge(TimerMessageStore timerMessageStore, UUID storeValueId, @Nullable Integer partition) {
+		if (timerMessageStore instanceof LeasedTimerMessageStore leasedTimerMessageStore) {
+			leasedTimerMessageStore.acknowledge(storeValueId, partition);
+			return;
+		}
+
+		timerMessageStore.remove(storeValueId, partition);
+	}
+
+	/**
+	 * Remove released messages from store at once.
+	 */
+	static void acknowledgeAll(
+		TimerMessageStore timerMessageStore,
+		Collection<UUID> storeValueIds,
+		@Nullable Integer partition
+	) {
+		if (storeValueIds.isEmpty()) {
+			return;
+		}
+
+		if (timerMessageStore instanceof LeasedTimerMessageStore leasedTimerMessageStore) {
+			leasedTimerMessageStore.acknowledgeAll(storeValueIds, partition);
+			return;
+		}
+
+		timerMessageStore.removeAll(storeValueIds, partition);
+	}
+
+	/**
+	 * Return messages left or failed to release to store at once.
+	 * Nothing to do if the store is not {@link LeasedTimerMessageStore}, because the messages are not claimed.
+	 */
+	static void requeueAll(
+		TimerMessageStore timerMessageStore,
+		Collection<UUID> storeValueIds,
+		@Nullable Integer partition
+	) {
+		if (storeValueIds.isEmpty()) {
+			return;
+		}
+
+		if (timerMessageStore instanceof LeasedTimerMessageStore leasedTimerMessageStore) {
+			leasedTimerMessageStore.requeueAll(storeValueIds, partition);
+		}
+	}
 }
@@ -0,0 +1,191 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.handler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+
+/**
+ * A background task which moves timer messages out of partitions not used for register any more,
+ * (from registeredPartitionCount to seekPartitionCount of {@link DistributedTimerMessageHandler})
+ * into the partitions of current layout.
+ * <p/>
+ * Messages are moved in batches, each saved to the new partition before removed from the old partition.
+ * Progress is kept by the store itself, so the task can be stopped and run again at any time.
+ * Messages claimed from a {@link com.navercorp.eventeria.timer.contract.store.LeasedTimerMessageStore}
+ * are hidden from the migrator, so a partition is left only after they are acknowledged,
+ * or moved when their leases are expired.
+ * When all of them are moved, the handler retrieves only registered partitions.
+ * <p/>
+ * A message released while it is being moved can be released once more from the new partition.
+ * A registered id issued before the move refers to the old partition, so it can not cancel the moved message.
+ *
+ * <pre>
+ * executor.execute(new TimerMessagePartitionMigrator(distributedTimerMessageHandler, 1000));
+ * </pre>
+ */
+public class TimerMessagePartitionMigrator implements Runnable {
+	private static final Logger LOG = LoggerFactory.getLogger(TimerMessagePartitionMigrator.class);
+	// Instant.MAX overflows epoch millis of stores.
+	private static final Instant UNBOUNDED_DATE_TIME = Instant.ofEpochMilli(Long.MAX_VALUE);
+	private static final Duration IN_FLIGHT_CHECK_INTERVAL = Duration.ofMillis(100L);
+
+	private final DistributedTimerMessageHandler handler;
+	private final int countPerBatch;
+	private final Duration batchInterval;
+
+	private volatile boolean stopped;
+	private volatile long movedCount;
+	private volatile int migratingPartition = -1;
+
+	public TimerMessagePartitionMigrator(DistributedTimerMessageHandler handler, int countPerBatch) {
+		this(handler, countPerBatch, Duration.ZERO);
+	}
+
+	/**
+	 * @param handler
+	 * @param countPerBatch max count of messages moved at once.
+	 * @param batchInterval sleep between batches, not to overload the store.
+	 */
+	public TimerMessagePartitionMigrator(
+		DistributedTimerMessageHandler handler,
+		int countPerBatch,
+		Duration batchInterval
+	) {
+		this.handler = handler;
+		this.countPerBatch = countPerBatch;
+		this.batchInterval = batchInterval;
+	}
+
+	@Override
+	public void run() {
+		this.stopped = false;
+		int registeredPartitionCount = this.handler.getRegisteredPartitionCount();
+		int seekPartitionCount = this.handler.getSeekPartitionCount();
+		LOG.info("timer message partition migration is started. partitions: [{}, {}) -> [0, {})",
+			registeredPartitionCount, seekPartitionCount, registeredPartitionCount);
+
+		try {
+			for (int partition = registeredPartitionCount; partition < seekPartitionCount; partition++) {
+				this.migratingPartition = partition;
+				if (!this.migratePartition(partition)) {
+					LOG.info("timer message partition migration is stopped. It can be resumed by run again. "
+						+ "partition: {}, movedCount: {}", partition, this.movedCount);
+					return;
+				}
+				LOG.info("timer message partition is migrated. partition: {}, movedCount: {}",
+					partition, this.movedCount);
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return;
+		} finally {
+			this.migratingPartition = -1;
+		}
+
+		this.handler.convergeSeekPartitionCount();
+		LOG.info("timer message partition migration is completed. seekPartitionCount: {}, movedCount: {}",
+			registeredPartitionCount, this.movedCount);
+	}
+
+	/**
+	 * Stop after the current batch.
+	 */
+	public void stop() {
+		this.stopped = true;
+	}
+
+	public boolean isCompleted() {
+		return this.handler.getSeekPartitionCount() == this.handler.getRegisteredPartitionCount();
+	}
+
+	/**
+	 * @return count of messages moved by this migrator.
+	 */
+	public long getMovedCount() {
+		return this.movedCount;
+	}
+
+	/**
+	 * @return the partition being migrated. -1 if not running.
+	 */
+	public int getMigratingPartition() {
+		return this.migratingPartition;
+	}
+
+	/**
+	 * @return count of messages left in partitions to be migrated.
+	 */
+	public long getRemainingCount() {
+		TimerMessageStore timerMessageStore = this.handler.getTimerMessageStore();
+		long count = 0L;
+		for (int i = this.handler.getRegisteredPartitionCount(); i < this.handler.getSeekPartitionCount(); i++) {
+			count += timerMessageStore.count(UNBOUNDED_DATE_TIME, i);
+		}
+		return count;
+	}
+
+	/**
+	 * @return false if stopped before the partition is empty.
+	 */
+	private boolean migratePartition(int partition) throws InterruptedException {
+		TimerMessageStore timerMessageStore = this.handler.getTimerMessageStore();
+		while (!this.stopped) {
+			// every message of the partition moves out, so the first page is always the next batch.
+			List<TimerMessageStoreValue> storeValues =
+				timerMessageStore.findReleaseValues(UNBOUNDED_DATE_TIME, this.countPerBatch, partition);
+			if (storeValues.isEmpty()) {
+				// claimed messages are still stored. they are released by the handler, or found again on expiry.
+				if (timerMessageStore.findNextReleaseDateTime(partition).isEmpty()) {
+					return true;
+				}
+				Thread.sleep(IN_FLIGHT_CHECK_INTERVAL.toMillis());
+				continue;
+			}
+
+			Map<Integer, List<TimerMessageStoreValue>> storeValuesByPartition = new LinkedHashMap<>();
+			List<UUID> storeValueIds = new ArrayList<>(storeValues.size());
+			for (TimerMessageStoreValue storeValue : storeValues) {
+				int newPartition = this.handler.getPartition(storeValue.getMessage());
+				storeValuesByPartition.computeIfAbsent(newPartition, it -> new ArrayList<>()).add(storeValue);
+				storeValueIds.add(storeValue.getId());
+			}
+
+			storeValuesByPartition.forEach((newPartition, values) -> timerMessageStore.saveAll(values, newPartition));
+			timerMessageStore.removeAll(storeValueIds, partition);
+			this.movedCount += storeValues.size();
+
+			if (!this.batchInterval.isZero()) {
+				Thread.sleep(this.batchInterval.toMillis());
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,331 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.handler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.navercorp.eventeria.timer.contract.handler.ReleaseBudget;
+import com.navercorp.eventeria.timer.contract.handler.ReleaseResult;
+import com.navercorp.eventeria.timer.contract.handler.TimerMessageHandler;
+
+/**
+ * A {@link TimerMessageHandler} which releases messages of the delegate by itself,
+ * at the earliest scheduled time instead of fixed polling.
+ * <p/>
+ * After each release, the scheduler peeks {@link TimerMessageHandler#getNextReleaseDateTime()} and sleeps until then,
+ * but not longer than maxIdleDuration to pick up messages registered by other nodes.
+ * If a message scheduled earlier is registered through this handler, the scheduler wakes up at that time.
+ * <p/>
+ * A release is considered failed when it throws, or when messages scheduled before its end are still left
+ * without being stopped by a budget (ex. messages requeued on publish failures).
+ * On consecutive failures, the interval between releases is doubled from minIdleDuration up to maxIdleDuration.
+ *
+ * <pre>
+ * TimerMessageReleaseScheduler scheduler = new TimerMessageReleaseScheduler(timerMessageHandler);
+ * SpringTimerMessageHandler springTimerMessageHandler = new SpringTimerMessageHandler(scheduler);
+ * scheduler.start(springTimerMessageHandler::reschedulePersistedMessages);
+ * </pre>
+ */
+public class TimerMessageReleaseScheduler implements TimerMessageHandler, AutoCloseable {
+	private static final Logger LOG = LoggerFactory.getLogger(TimerMessageReleaseScheduler.class);
+
+	private static final Duration DEFAULT_MIN_IDLE_DURATION = Duration.ofMillis(10);
+	private static final Duration DEFAULT_MAX_IDLE_DURATION = Duration.ofSeconds(1);
+
+	private final TimerMessageHandler delegate;
+	private final Duration minIdleDuration;
+	private final Duration maxIdleDuration;
+
+	// not synchronized, not to pin a virtual thread calling stop while joining.
+	private final ReentrantLock lifecycleLock = new ReentrantLock();
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition wakeUpCondition = this.lock.newCondition();
+	private Instant wakeUpDateTime = Instant.MAX;    // guarded by lock
+
+	@Nullable
+	private volatile Thread thread;
+
+	public TimerMessageReleaseScheduler(TimerMessageHandler delegate) {
+		this(delegate, DEFAULT_MIN_IDLE_DURATION, DEFAULT_MAX_IDLE_DURATION);
+	}
+
+	/**
+	 * @param delegate
+	 * @param minIdleDuration minimum interval between releases,
+	 *                        to prevent busy loop on overdue messages failed to release.
+	 *                        It is doubled on each consecutive failed release.
+	 * @param maxIdleDuration maximum sleep between releases.
+	 */
+	public TimerMessageReleaseScheduler(
+		TimerMessageHandler delegate,
+		Duration minIdleDuration,
+		Duration maxIdleDuration
+	) {
+		this.delegate = delegate;
+		this.minIdleDuration = minIdleDuration;
+		this.maxIdleDuration = maxIdleDuration;
+	}
+
+	/**
+	 * Start releasing messages of delegate to consumeReleasedMessage.
+	 *
+	 * @param consumeReleasedMessage behavior per popped message.
+	 */
+	public void start(Consumer<Object> consumeReleasedMessage) {
+		this.start(() -> this.delegate.releaseMessages(consumeReleasedMessage));
+	}
+
+	/**
+	 * Start releasing messages of delegate to consumeReleasedMessage within a budget per release.
+	 * A release stopped by the budget is followed by the next release after minIdleDuration.
+	 *
+	 * @param consumeReleasedMessage behavior per popped message.
+	 * @param releaseBudget limits of each release.
+	 */
+	public void start(Consumer<Object> consumeReleasedMessage, ReleaseBudget releaseBudget) {
+		this.startThread(() -> {
+			ReleaseResult releaseResult = this.delegate.releaseMessages(consumeReleasedMessage, releaseBudget);
+			if (releaseResult.isExhausted()) {
+				LOG.debug("timer message release is stopped by budget. releaseResult: {}", releaseResult);
+			}
+			return releaseResult.isExhausted();
+		});
+	}
+
+	/**
+	 * Start running releaseTask.
+	 *
+	 * @param releaseTask a task which calls {@link #releaseMessages}. (ex. reschedulePersistedMessages)
+	 */
+	public void start(Runnable releaseTask) {
+		this.startThread(() -> {
+			releaseTask.run();
+			return false;
+		});
+	}
+
+	private void startThread(ReleaseTask releaseTask) {
+		this.lifecycleLock.lock();
+		try {
+			if (this.thread != null) {
+				throw new IllegalStateException("TimerMessageReleaseScheduler is already started.");
+			}
+
+			Thread thread = new Thread(() -> this.run(releaseTask), "timer-message-release-scheduler");
+			thread.setDaemon(true);
+			this.thread = thread;
+			thread.start();
+		} finally {
+			this.lifecycleLock.unlock();
+		}
+	}
+
+	/**
+	 * Stop releasing messages and wait for running release to be finished.
+	 */
+	public void stop() {
+		this.lifecycleLock.lock();
+		try {
+			Thread thread = this.thread;
+			if (thread == null) {
+				return;
+			}
+
+			this.thread = null;
+			thread.interrupt();
+			try {
+				thread.join();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		} finally {
+			this.lifecycleLock.unlock();
+		}
+	}
+
+	@Override
+	public void close() {
+		this.stop();
+	}
+
+	@Override
+	public boolean isTimerMessage(Object message) {
+		return this.delegate.isTimerMessage(message);
+	}
+
+	@Override
+	public String register(Object message) {
+		String registeredId = this.delegate.register(message);
+		TimerMessageHandlerSupports.getReleaseDateTime(message).ifPresent(this::wakeUpAt);
+		return registeredId;
+	}
+
+	@Override
+	public List<String> registerAll(List<?> messages) {
+		List<String> registeredIds = this.delegate.registerAll(messages);
+		messages.stream()
+			.map(TimerMessageHandlerSupports::getReleaseDateTime)
+			.flatMap(Optional::stream)
+			.min(Instant::compareTo)
+			.ifPresent(this::wakeUpAt);
+		return registeredIds;
+	}
+
+	@Override
+	public void releaseMessages(Consumer<Object> consumeReleasedMessage) {
+		this.delegate.releaseMessages(consumeReleasedMessage);
+	}
+
+	@Override
+	public ReleaseResult releaseMessages(Consumer<Object> consumeReleasedMessage, ReleaseBudget releaseBudget) {
+		return this.delegate.releaseMessages(consumeReleasedMessage, releaseBudget);
+	}
+
+	@Override
+	public long getDelayedMessageCount() {
+		return this.delegate.getDelayedMessageCount();
+	}
+
+	@Override
+	public Optional<Instant> getNextReleaseDateTime() {
+		return this.delegate.getNextReleaseDateTime();
+	}
+
+	@Override
+	public void cancel(String registeredId) {
+		this.delegate.cancel(registeredId);
+	}
+
+	private void run(ReleaseTask releaseTask) {
+		int failureCount = 0;
+		while (this.thread == Thread.currentThread()) {
+			Instant releaseStartDateTime = Instant.now();
+			boolean failed = false;
+			boolean exhausted = false;
+			try {
+				exhausted = releaseTask.release();
+			} catch (Throwable throwable) {
+				failed = true;
+				LOG.error("timer message release is failed. It would be retried on next scheduling.", throwable);
+			}
+			Instant releaseEndDateTime = Instant.now();
+
+			Optional<Instant> nextReleaseDateTime = this.findNextReleaseDateTime();
+			if (!failed && !exhausted && nextReleaseDateTime.isPresent()
+				&& !nextReleaseDateTime.get().isAfter(releaseEndDateTime)) {
+				LOG.debug("overdue timer messages are left after release. next: {}", nextReleaseDateTime.get());
+				failed = true;
+			}
+			failureCount = failed ? failureCount + 1 : 0;
+
+			try {
+				this.sleepUntilNextRelease(
+					releaseStartDateTime.plus(this.idleDuration(failureCount)),
+					nextReleaseDateTime
+				);
+			} catch (InterruptedException ex) {
+				return;
+			}
+		}
+	}
+
+	private Optional<Instant> findNextReleaseDateTime() {
+		try {
+			return this.delegate.getNextReleaseDateTime();
+		} catch (Exception ex) {
+			LOG.warn("find next release time is failed. Next release would be run after {}.", this.maxIdleDuration, ex);
+			return Optional.empty();
+		}
+	}
+
+	private Duration idleDuration(int failureCount) {
+		if (failureCount == 0) {
+			return this.minIdleDuration;
+		}
+
+		Duration idleDuration = this.minIdleDuration.isZero() ? Duration.ofMillis(1L) : this.minIdleDuration;
+		for (int i = 0; i < failureCount && idleDuration.compareTo(this.maxIdleDuration) < 0; i++) {
+			idleDuration = idleDuration.multipliedBy(2L);
+		}
+		return idleDuration.compareTo(this.maxIdleDuration) > 0 ? this.maxIdleDuration : idleDuration;
+	}
+
+	private void sleepUntilNextRelease(
+		Instant earliest,
+		Optional<Instant> nextReleaseDateTime
+	) throws InterruptedException {
+		Instant latest = Instant.now().plus(this.maxIdleDuration);
+
+		Instant next = latest;
+		if (nextReleaseDateTime.isPresent() && nextReleaseDateTime.get().isBefore(latest)) {
+			next = nextReleaseDateTime.get();
+		}
+
+		this.lock.lockInterruptibly();
+		try {
+			// keep earlier time registered while releasing.
+			if (next.isBefore(this.wakeUpDateTime)) {
+				this.wakeUpDateTime = next;
+			}
+			while (true) {
+				// wakeUpDateTime can be moved earlier by register while waiting.
+				Instant wakeUp = this.wakeUpDateTime.isBefore(earliest) ? earliest : this.wakeUpDateTime;
+				long waitNanos = Duration.between(Instant.now(), wakeUp).toNanos();
+				if (waitNanos <= 0L) {
+					break;
+				}
+				this.wakeUpCondition.awaitNanos(waitNanos);
+			}
+			this.wakeUpDateTime = Instant.MAX;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	private void wakeUpAt(Instant releaseDateTime) {
+		this.lock.lock();
+		try {
+			if (releaseDateTime.isBefore(this.wakeUpDateTime)) {
+				this.wakeUpDateTime = releaseDateTime;
+				this.wakeUpCondition.signalAll();
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * A release returning whether it is stopped by a budget.
+	 */
+	@FunctionalInterface
+	private interface ReleaseTask {
+		boolean release();
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.metrics;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import com.navercorp.eventeria.timer.contract.store.LeasedTimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+
+/**
+ * A {@link MeteredTimerMessageStore} of a {@link LeasedTimerMessageStore}.
+ * Claimed messages are counted as pending until they are acknowledged.
+ */
+public class MeteredLeasedTimerMessageStore extends MeteredTimerMessageStore implements LeasedTimerMessageStore {
+	private final LeasedTimerMessageStore delegate;
+
+	public MeteredLeasedTimerMessageStore(
+		LeasedTimerMessageStore delegate,
+		MeterRegistry meterRegistry,
+		String storeName
+	) {
+		super(delegate, meterRegistry, storeName);
+		this.delegate = delegate;
+	}
+
+	/**
+	 * @param delegate
+	 * @param meterRegistry
+	 * @param storeName value of store tag. (ex. redis, in-memory)
+	 * @param recountInterval min interval to count pending messages again by the delegate.
+	 */
+	public MeteredLeasedTimerMessageStore(
+		LeasedTimerMessageStore delegate,
+		MeterRegistry meterRegistry,
+		String storeName,
+		Duration recountInterval
+	) {
+		super(delegate, meterRegistry, storeName, recountInterval);
+		this.delegate = delegate;
+	}
+
+	@Override
+	public List<TimerMessageStoreValue> claimReleaseValues(
+		Instant conditionDateTime,
+		int count,
+		@Nullable Integer partition
+	) {
+		List<TimerMessageStoreValue> storeValues = this.timer("claimReleaseValues").record(
+			() -> this.delegate.claimReleaseValues(conditionDateTime, count, partition)
+		);
+		this.recordReleaseLag(storeValues);
+		return storeValues;
+	}
+
+	@Override
+	public Map<Integer, List<TimerMessageStoreValue>> claimReleaseValuesOfPartitions(
+		Instant conditionDateTime,
+		int count,
+		Collection<Integer> partitions
+	) {
+		Map<Integer, List<TimerMessageStoreValue>> storeValues = this.timer("claimReleaseValuesOfPartitions").record(
+			() -> this.delegate.claimReleaseValuesOfPartitions(conditionDateTime, count, partitions)
+		);
+		storeValues.values().forEach(this::recordReleaseLag);
+		return storeValues;
+	}
+
+	@Override
+	public void acknowledge(UUID storeValueId, @Nullable Integer partition) {
+		this.recordMutation("acknowledge", partition, -1, () -> this.delegate.acknowledge(storeValueId, partition));
+	}
+
+	@Override
+	public void acknowledgeAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		this.recordMutation(
+			"acknowledgeAll",
+			partition,
+			-new HashSet<>(storeValueIds).size(),
+			() -> this.delegate.acknowledgeAll(storeValueIds, partition)
+		);
+	}
+
+	@Override
+	public void requeue(UUID storeValueId, @Nullable Integer partition) {
+		this.timer("requeue").record(() -> this.delegate.requeue(storeValueId, partition));
+	}
+
+	@Override
+	public void requeueAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		this.timer("requeueAll").record(() -> this.delegate.requeueAll(storeValueIds, partition));
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.metrics;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import com.navercorp.eventeria.timer.contract.TimerMessage;
+import com.navercorp.eventeria.timer.contract.handler.ReleaseBudget;
+import com.navercorp.eventeria.timer.contract.handler.ReleaseResult;
+import com.navercorp.eventeria.timer.contract.handler.TimerMessageHandler;
+
+/**
+ * A {@link TimerMessageHandler} which records metrics of the delegate.
+ * <p/>
+ * <ul>
+ *     <li>{@code eventeria.timer.messages}: counter of messages, tagged by operation(register, release, cancel)
+ *     and result(success, failure).</li>
+ *     <li>{@code eventeria.timer.release.lag}: histogram of released time minus scheduled time of messages,
+ *     which are {@link TimerMessage}s. Lag of the other messages (ex. CloudEvents) is recorded from store values
+ *     by {@code eventeria.timer.store.release.lag} of {@link MeteredTimerMessageStore}.</li>
+ *     <li>{@code eventeria.timer.release.remaining}: due messages left by the last release stopped by budget.</li>
+ * </ul>
+ * Compare the lag with {@code eventeria.timer.store.operations} of {@link MeteredTimerMessageStore},
+ * to tell whether messages are late by a slow store or by a slow release scheduling.
+ */
+public class MeteredTimerMessageHandler implements TimerMessageHandler {
+	private static final String MESSAGES_METER_NAME = "eventeria.timer.messages";
+	private static final String RELEASE_LAG_METER_NAME = "eventeria.timer.release.lag";
+	private static final String RELEASE_REMAINING_METER_NAME = "eventeria.timer.release.remaining";
+
+	private final TimerMessageHandler delegate;
+	private final Counter registerSuccessCounter;
+	private final Counter registerFailureCounter;
+	private final Counter releaseSuccessCounter;
+	private final Counter releaseFailureCounter;
+	private final Counter cancelSuccessCounter;
+	private final Counter cancelFailureCounter;
+	private final Timer releaseLagTimer;
+	private final AtomicLong releaseRemainingCount = new AtomicLong();
+
+	public MeteredTimerMessageHandler(TimerMessageHandler delegate, MeterRegistry meterRegistry) {
+		this.delegate = delegate;
+		this.registerSuccessCounter = counter(meterRegistry, "register", "success");
+		this.registerFailureCounter = counter(meterRegistry, "register", "failure");
+		this.releaseSuccessCounter = counter(meterRegistry, "release", "success");
+		this.releaseFailureCounter = counter(meterRegistry, "release", "failure");
+		this.cancelSuccessCounter = counter(meterRegistry, "cancel", "success");
+		this.cancelFailureCounter = counter(meterRegistry, "cancel", "failure");
+		this.releaseLagTimer = Timer.builder(RELEASE_LAG_METER_NAME)
+			.description("released time minus scheduled time of timer messages")
+			.publishPercentileHistogram()
+			.register(meterRegistry);
+		Gauge.builder(RELEASE_REMAINING_METER_NAME, this.releaseRemainingCount, AtomicLong::get)
+			.description("due timer messages left by the last release stopped by budget")
+			.register(meterRegistry);
+	}
+
+	@Override
+	public boolean isTimerMessage(Object message) {
+		return this.delegate.isTimerMessage(message);
+	}
+
+	@Override
+	public String register(Object message) {
+		try {
+			String registeredId = this.delegate.register(message);
+			this.registerSuccessCounter.increment();
+			return registeredId;
+		} catch (RuntimeException | Error ex) {
+			this.registerFailureCounter.increment();
+			throw ex;
+		}
+	}
+
+	@Override
+	public List<String> registerAll(List<?> messages) {
+		try {
+			List<String> registeredIds = this.delegate.registerAll(messages);
+			this.registerSuccessCounter.increment(messages.size());
+			return registeredIds;
+		} catch (RuntimeException | Error ex) {
+			this.registerFailureCounter.increment(messages.size());
+			throw ex;
+		}
+	}
+
+	@Override
+	public void releaseMessages(Consumer<Object> consumeReleasedMessage) {
+		this.delegate.releaseMessages(this.metered(consumeReleasedMessage));
+	}
+
+	@Override
+	public ReleaseResult releaseMessages(Consumer<Object> consumeReleasedMessage, ReleaseBudget releaseBudget) {
+		ReleaseResult releaseResult = this.delegate.releaseMessages(
+			this.metered(consumeReleasedMessage), releaseBudget);
+		this.releaseRemainingCount.set(releaseResult.getRemainingCount());
+		return releaseResult;
+	}
+
+	@Override
+	public long getDelayedMessageCount() {
+		return this.delegate.getDelayedMessageCount();
+	}
+
+	@Override
+	public Optional<Instant> getNextReleaseDateTime() {
+		return this.delegate.getNextReleaseDateTime();
+	}
+
+	@Override
+	public void cancel(String registeredId) {
+		try {
+			this.delegate.cancel(registeredId);
+			this.cancelSuccessCounter.increment();
+		} catch (RuntimeException | Error ex) {
+			this.cancelFailureCounter.increment();
+			throw ex;
+		}
+	}
+
+	private Consumer<Object> metered(Consumer<Object> consumeReleasedMessage) {
+		return message -> {
+			this.recordReleaseLag(message);
+			try {
+				consumeReleasedMessage.accept(message);
+				this.releaseSuccessCounter.increment();
+			} catch (RuntimeException | Error ex) {
+				this.releaseFailureCounter.increment();
+				throw ex;
+			}
+		};
+	}
+
+	private void recordReleaseLag(Object message) {
+		if (message instanceof TimerMessage timerMessage) {
+			timerMessage.timerTime().ifPresent(
+				releaseDateTime -> this.releaseLagTimer.record(Duration.between(releaseDateTime, Instant.now()))
+			);
+		}
+	}
+
+	private static Counter counter(MeterRegistry meterRegistry, String operation, String result) {
+		return Counter.builder(MESSAGES_METER_NAME)
+			.tag("operation", operation)
+			.tag("result", result)
+			.register(meterRegistry);
+	}
+}
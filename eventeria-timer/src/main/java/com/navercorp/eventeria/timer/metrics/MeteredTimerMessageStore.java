@@ -0,0 +1,321 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.metrics;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import com.navercorp.eventeria.timer.contract.store.LeasedTimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+
+/**
+ * A {@link TimerMessageStore} which records metrics of the delegate.
+ * <p/>
+ * <ul>
+ *     <li>{@code eventeria.timer.store.operations}: timer of each operation, tagged by store and operation.</li>
+ *     <li>{@code eventeria.timer.store.pending}: gauge of stored messages, tagged by store and partition.</li>
+ *     <li>{@code eventeria.timer.store.release.lag}: histogram of found time minus release time of store values
+ *     found or claimed for release, tagged by store. It covers messages of any type, such as CloudEvents.</li>
+ * </ul>
+ * A pending gauge is counted by {@link TimerMessageStore#count} when the partition is used first,
+ * and is kept by saved and removed counts of this instance after then.
+ * The store does not report how many messages are actually saved or removed (ex. cancel of a removed message),
+ * and other nodes may share the store, so the gauge is counted again by the delegate on a mutation
+ * once recountInterval is passed from the last count.
+ * <p/>
+ * Use {@link #of} to keep {@link LeasedTimerMessageStore} capability of the delegate.
+ */
+public class MeteredTimerMessageStore implements TimerMessageStore {
+	private static final Logger LOG = LoggerFactory.getLogger(MeteredTimerMessageStore.class);
+
+	private static final String OPERATIONS_METER_NAME = "eventeria.timer.store.operations";
+	private static final String PENDING_METER_NAME = "eventeria.timer.store.pending";
+	private static final String RELEASE_LAG_METER_NAME = "eventeria.timer.store.release.lag";
+	private static final int NULL_PARTITION = -1;
+	private static final Duration DEFAULT_RECOUNT_INTERVAL = Duration.ofMinutes(1);
+	// stores may convert conditions to epoch millis, Instant.MAX overflows it.
+	private static final Instant UNBOUNDED_DATE_TIME = Instant.ofEpochMilli(Long.MAX_VALUE);
+
+	private final TimerMessageStore delegate;
+	private final MeterRegistry meterRegistry;
+	private final String storeName;
+	private final long recountIntervalNanos;
+	private final Timer releaseLagTimer;
+	private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+	private final Map<Integer, PendingCount> pendingCounts = new ConcurrentHashMap<>();
+
+	public MeteredTimerMessageStore(TimerMessageStore delegate, MeterRegistry meterRegistry, String storeName) {
+		this(delegate, meterRegistry, storeName, DEFAULT_RECOUNT_INTERVAL);
+	}
+
+	/**
+	 * @param delegate
+	 * @param meterRegistry
+	 * @param storeName value of store tag. (ex. redis, in-memory)
+	 * @param recountInterval min interval to count pending messages again by the delegate.
+	 */
+	public MeteredTimerMessageStore(
+		TimerMessageStore delegate,
+		MeterRegistry meterRegistry,
+		String storeName,
+		Duration recountInterval
+	) {
+		if (recountInterval.isNegative()) {
+			throw new IllegalArgumentException("recountInterval must not be negative. recountInterval: "
+				+ recountInterval);
+		}
+
+		this.delegate = delegate;
+		this.meterRegistry = meterRegistry;
+		this.storeName = storeName;
+		this.recountIntervalNanos = recountInterval.toNanos();
+		this.releaseLagTimer = Timer.builder(RELEASE_LAG_METER_NAME)
+			.description("found time minus release time of timer store values found for release")
+			.tag("store", storeName)
+			.publishPercentileHistogram()
+			.register(meterRegistry);
+	}
+
+	/**
+	 * @return {@link MeteredLeasedTimerMessageStore} if delegate is a {@link LeasedTimerMessageStore},
+	 * otherwise {@link MeteredTimerMessageStore}.
+	 */
+	public static MeteredTimerMessageStore of(
+		TimerMessageStore delegate,
+		MeterRegistry meterRegistry,
+		String storeName
+	) {
+		return of(delegate, meterRegistry, storeName, DEFAULT_RECOUNT_INTERVAL);
+	}
+
+	/**
+	 * @return {@link MeteredLeasedTimerMessageStore} if delegate is a {@link LeasedTimerMessageStore},
+	 * otherwise {@link MeteredTimerMessageStore}.
+	 */
+	public static MeteredTimerMessageStore of(
+		TimerMessageStore delegate,
+		MeterRegistry meterRegistry,
+		String storeName,
+		Duration recountInterval
+	) {
+		if (delegate instanceof LeasedTimerMessageStore leasedTimerMessageStore) {
+			return new MeteredLeasedTimerMessageStore(
+				leasedTimerMessageStore, meterRegistry, storeName, recountInterval);
+		}
+
+		return new MeteredTimerMessageStore(delegate, meterRegistry, storeName, recountInterval);
+	}
+
+	@Override
+	public void save(TimerMessageStoreValue storeValue, @Nullable Integer partition) {
+		this.recordMutation("save", partition, 1, () -> this.delegate.save(storeValue, partition));
+	}
+
+	@Override
+	public void remove(UUID storeValueId, @Nullable Integer partition) {
+		this.recordMutation("remove", partition, -1, () -> this.delegate.remove(storeValueId, partition));
+	}
+
+	@Override
+	public void saveAll(Collection<TimerMessageStoreValue> storeValues, @Nullable Integer partition) {
+		long savedCount = storeValues.stream().map(TimerMessageStoreValue::getId).distinct().count();
+		this.recordMutation("saveAll", partition, savedCount, () -> this.delegate.saveAll(storeValues, partition));
+	}
+
+	@Override
+	public void removeAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		this.recordMutation(
+			"removeAll",
+			partition,
+			-new HashSet<>(storeValueIds).size(),
+			() -> this.delegate.removeAll(storeValueIds, partition)
+		);
+	}
+
+	@Override
+	public long count(Instant conditionDateTime, @Nullable Integer partition) {
+		return this.timer("count").record(() -> this.delegate.count(conditionDateTime, partition));
+	}
+
+	@Override
+	public List<TimerMessageStoreValue> findReleaseValues(
+		Instant conditionDateTime,
+		int count,
+		@Nullable Integer partition
+	) {
+		List<TimerMessageStoreValue> storeValues = this.timer("findReleaseValues").record(
+			() -> this.delegate.findReleaseValues(conditionDateTime, count, partition)
+		);
+		this.recordReleaseLag(storeValues);
+		return storeValues;
+	}
+
+	@Override
+	public List<List<Integer>> groupPartitions(List<Integer> partitions) {
+		return this.delegate.groupPartitions(partitions);
+	}
+
+	@Override
+	public Map<Integer, List<TimerMessageStoreValue>> findReleaseValuesOfPartitions(
+		Instant conditionDateTime,
+		int count,
+		Collection<Integer> partitions
+	) {
+		Map<Integer, List<TimerMessageStoreValue>> storeValues = this.timer("findReleaseValuesOfPartitions").record(
+			() -> this.delegate.findReleaseValuesOfPartitions(conditionDateTime, count, partitions)
+		);
+		storeValues.values().forEach(this::recordReleaseLag);
+		return storeValues;
+	}
+
+	@Override
+	public Optional<Instant> findNextReleaseDateTime(@Nullable Integer partition) {
+		return this.timer("findNextReleaseDateTime").record(() -> this.delegate.findNextReleaseDateTime(partition));
+	}
+
+	@Override
+	public Optional<Instant> findNextReleaseDateTimeOfPartitions(Collection<Integer> partitions) {
+		return this.timer("findNextReleaseDateTimeOfPartitions").record(
+			() -> this.delegate.findNextReleaseDateTimeOfPartitions(partitions)
+		);
+	}
+
+	/**
+	 * @return the latest pending count of the partition tracked by this instance.
+	 */
+	public long getPendingCount(@Nullable Integer partition) {
+		return this.pending(partition).get();
+	}
+
+	Timer timer(String operation) {
+		return this.timers.computeIfAbsent(operation, it -> Timer.builder(OPERATIONS_METER_NAME)
+			.tag("store", this.storeName)
+			.tag("operation", it)
+			.register(this.meterRegistry));
+	}
+
+	/**
+	 * Run an operation changing count of stored messages, and apply delta to the pending gauge if succeed.
+	 * The gauge is counted again by the delegate instead, if recountInterval is passed from the last count.
+	 */
+	void recordMutation(String operation, @Nullable Integer partition, long delta, Runnable runnable) {
+		// count the gauge before the operation, not to count the operation twice.
+		PendingCount pending = this.pending(partition);
+		this.timer(operation).record(runnable);
+		if (pending.isRecountDue(this.recountIntervalNanos)) {
+			this.recount(partition, pending, delta);
+		} else {
+			pending.add(delta);
+		}
+	}
+
+	/**
+	 * Record lag of store values already due, which are to be released.
+	 */
+	void recordReleaseLag(@Nullable List<TimerMessageStoreValue> storeValues) {
+		if (storeValues == null || storeValues.isEmpty()) {
+			return;
+		}
+
+		Instant now = Instant.now();
+		for (TimerMessageStoreValue storeValue : storeValues) {
+			if (!storeValue.getReleaseDateTime().isAfter(now)) {
+				this.releaseLagTimer.record(Duration.between(storeValue.getReleaseDateTime(), now));
+			}
+		}
+	}
+
+	private PendingCount pending(@Nullable Integer partition) {
+		int key = partition == null ? NULL_PARTITION : partition;
+		PendingCount pending = this.pendingCounts.computeIfAbsent(key, it -> {
+			PendingCount created = new PendingCount();
+			Gauge.builder(PENDING_METER_NAME, created, PendingCount::get)
+				.tag("store", this.storeName)
+				.tag("partition", partition == null ? "none" : String.valueOf(partition))
+				.register(this.meterRegistry);
+			return created;
+		});
+
+		// count by the delegate out of computeIfAbsent, not to block updates of the map during the I/O.
+		if (!pending.isCounted()) {
+			this.recount(partition, pending, 0L);
+		}
+		return pending;
+	}
+
+	private void recount(@Nullable Integer partition, PendingCount pending, long delta) {
+		try {
+			pending.set(this.delegate.count(UNBOUNDED_DATE_TIME, partition));
+		} catch (Exception ex) {
+			LOG.warn("count pending timer messages is failed. It would be counted again on next mutation. "
+				+ "partition: {}", partition, ex);
+			pending.add(delta);
+		}
+	}
+
+	/**
+	 * Pending count of a partition, and when it is counted by the delegate.
+	 */
+	private static final class PendingCount {
+		private final AtomicLong count = new AtomicLong();
+		// null if not counted by the delegate yet.
+		@Nullable
+		private volatile Long countedNanos;
+
+		long get() {
+			return this.count.get();
+		}
+
+		void add(long delta) {
+			this.count.updateAndGet(it -> Math.max(0L, it + delta));
+		}
+
+		void set(long count) {
+			this.count.set(count);
+			this.countedNanos = System.nanoTime();
+		}
+
+		boolean isCounted() {
+			return this.countedNanos != null;
+		}
+
+		boolean isRecountDue(long recountIntervalNanos) {
+			Long counted = this.countedNanos;
+			return counted == null || System.nanoTime() - counted >= recountIntervalNanos;
+		}
+	}
+}
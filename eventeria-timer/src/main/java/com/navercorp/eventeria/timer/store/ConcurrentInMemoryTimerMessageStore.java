@@ -0,0 +1,124 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.store;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.annotation.Nullable;
+
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+
+/**
+ * A lock-free in-memory implementation of {@link TimerMessageStore}.
+ * <p/>
+ * Each partition owns an independent {@link ConcurrentSkipListMap} ordered by releaseDateTime,
+ * so producers and release workers of different partitions never contend with each other.
+ */
+public class ConcurrentInMemoryTimerMessageStore implements TimerMessageStore {
+	private final ConcurrentMap<Integer, Partition> store = new ConcurrentHashMap<>();
+
+	@Override
+	public void save(TimerMessageStoreValue storeValue, @Nullable Integer partition) {
+		this.getPartition(partition).add(storeValue);
+	}
+
+	@Override
+	public void remove(UUID storeValueId, @Nullable Integer partition) {
+		this.getPartition(partition).remove(storeValueId);
+	}
+
+	@Override
+	public long count(Instant conditionDateTime, @Nullable Integer partition) {
+		return this.getPartition(partition).headMap(conditionDateTime).size();
+	}
+
+	@Override
+	public List<TimerMessageStoreValue> findReleaseValues(
+		Instant conditionDateTime,
+		int count,
+		@Nullable Integer partition
+	) {
+		List<TimerMessageStoreValue> result = new ArrayList<>();
+		for (TimerMessageStoreValue value : this.getPartition(partition).headMap(conditionDateTime).values()) {
+			if (result.size() >= count) {
+				break;
+			}
+			result.add(value);
+		}
+		return result;
+	}
+
+	@Override
+	public Optional<Instant> findNextReleaseDateTime(@Nullable Integer partition) {
+		Map.Entry<IndexKey, TimerMessageStoreValue> first = this.getPartition(partition).values.firstEntry();
+		if (first == null) {
+			return Optional.empty();
+		}
+
+		return Optional.of(first.getKey().getReleaseDateTime());
+	}
+
+	private Partition getPartition(@Nullable Integer partition) {
+		if (partition == null) {
+			partition = 0;
+		}
+
+		return this.store.computeIfAbsent(partition, it -> new Partition());
+	}
+
+	/**
+	 * Values of a partition ordered by releaseDateTime and id.
+	 */
+	private static final class Partition {
+		private final ConcurrentSkipListMap<IndexKey, TimerMessageStoreValue> values =
+			new ConcurrentSkipListMap<>();
+		private final ConcurrentMap<UUID, IndexKey> keys = new ConcurrentHashMap<>();
+
+		void add(TimerMessageStoreValue storeValue) {
+			IndexKey key = new IndexKey(storeValue.getReleaseDateTime(), storeValue.getId());
+			this.values.put(key, storeValue);
+
+			IndexKey previous = this.keys.put(storeValue.getId(), key);
+			if (previous != null && !previous.equals(key)) {
+				this.values.remove(previous);
+			}
+		}
+
+		void remove(UUID storeValueId) {
+			IndexKey key = this.keys.remove(storeValueId);
+			if (key != null) {
+				this.values.remove(key);
+			}
+		}
+
+		ConcurrentNavigableMap<IndexKey, TimerMessageStoreValue> headMap(Instant conditionDateTime) {
+			return this.values.headMap(IndexKey.lowerBound(conditionDateTime), false);
+		}
+	}
+}
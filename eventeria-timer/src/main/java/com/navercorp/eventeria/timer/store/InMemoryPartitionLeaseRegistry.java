@@ -0,0 +1,120 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.eventeria.timer.store;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.navercorp.eventeria.timer.contract.store.PartitionLeaseRegistry;
+
+/**
+ * An in-memory implementation of {@link PartitionLeaseRegistry}.
+ * <p/>
+ * Leases are shared by handlers of the same process only. (ex. several releasers of a single node, or tests)
+ */
+public class InMemoryPartitionLeaseRegistry implements PartitionLeaseRegistry {
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Map<String, Instant> members = new TreeMap<>();
+	private final Map<Integer, Lease> leases = new HashMap<>();
+
+	@Override
+	public void heartbeat(String memberId, Duration ttl) {
+		this.lock.lock();
+		try {
+			this.members.put(memberId, Instant.now().plus(ttl));
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public void leave(String memberId) {
+		this.lock.lock();
+		try {
+			this.members.remove(memberId);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public List<String> findMembers() {
+		this.lock.lock();
+		try {
+			Instant now = Instant.now();
+			Iterator<Instant> expiries = this.members.values().iterator();
+			while (expiries.hasNext()) {
+				if (!expiries.next().isAfter(now)) {
+					expiries.remove();
+				}
+			}
+			return new ArrayList<>(this.members.keySet());
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean tryAcquire(int partition, String memberId, Duration ttl) {
+		this.lock.lock();
+		try {
+			Instant now = Instant.now();
+			Lease lease = this.leases.get(partition);
+			if (lease != null && lease.expiry.isAfter(now) && !lease.memberId.equals(memberId)) {
+				return false;
+			}
+
+			this.leases.put(partition, new Lease(memberId, now.plus(ttl)));
+			return true;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public void release(int partition, String memberId) {
+		this.lock.lock();
+		try {
+			Lease lease = this.leases.get(partition);
+			if (lease != null && lease.memberId.equals(memberId)) {
+				this.leases.remove(partition);
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	private static final class Lease {
+		private final String memberId;
+		private final Instant expiry;
+
+		Lease(String memberId, Instant expiry) {
+			this.memberId = memberId;
+			this.expiry = expiry;
+		}
+	}
+}
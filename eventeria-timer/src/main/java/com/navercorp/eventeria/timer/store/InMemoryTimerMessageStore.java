@@ -20,11 +20,16 @@ package com.navercorp.eventeria.timer.store;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
@@ -33,38 +38,99 @@ import com.navercorp.eventeria.timer.contract.store.TimerMessageStore;
 import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
 
 public class InMemoryTimerMessageStore implements TimerMessageStore {
+	// a waiting virtual thread unmounts from its carrier on ReentrantLock, unlike synchronized on older JDKs.
+	private final ReentrantLock lock = new ReentrantLock();
 	private final Map<Integer, List<TimerMessageStoreValue>> store = new HashMap<>();
 
 	@Override
-	public synchronized void save(TimerMessageStoreValue storeValue, @Nullable Integer partition) {
-		List<TimerMessageStoreValue> list = this.getList(partition);
-		list.add(storeValue);
-		list.sort(Comparator.comparing(TimerMessageStoreValue::getReleaseDateTime));
+	public void save(TimerMessageStoreValue storeValue, @Nullable Integer partition) {
+		this.lock.lock();
+		try {
+			List<TimerMessageStoreValue> list = this.getList(partition);
+			list.add(storeValue);
+			list.sort(Comparator.comparing(TimerMessageStoreValue::getReleaseDateTime));
+		} finally {
+			this.lock.unlock();
+		}
 	}
 
 	@Override
-	public synchronized void remove(UUID storeValueId, @Nullable Integer partition) {
-		List<TimerMessageStoreValue> list = this.getList(partition);
-		list.removeIf(it -> it.getId().equals(storeValueId));
+	public void remove(UUID storeValueId, @Nullable Integer partition) {
+		this.lock.lock();
+		try {
+			List<TimerMessageStoreValue> list = this.getList(partition);
+			list.removeIf(it -> it.getId().equals(storeValueId));
+		} finally {
+			this.lock.unlock();
+		}
 	}
 
 	@Override
-	public synchronized long count(Instant conditionDateTime, @Nullable Integer partition) {
-		return this.getList(partition).stream()
-			.filter(it -> it.getReleaseDateTime().isBefore(conditionDateTime))
-			.count();
+	public void saveAll(Collection<TimerMessageStoreValue> storeValues, @Nullable Integer partition) {
+		this.lock.lock();
+		try {
+			List<TimerMessageStoreValue> list = this.getList(partition);
+			list.addAll(storeValues);
+			list.sort(Comparator.comparing(TimerMessageStoreValue::getReleaseDateTime));
+		} finally {
+			this.lock.unlock();
+		}
 	}
 
 	@Override
-	public synchronized List<TimerMessageStoreValue> findReleaseValues(
+	public void removeAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		this.lock.lock();
+		try {
+			Set<UUID> removeIds = new HashSet<>(storeValueIds);
+			List<TimerMessageStoreValue> list = this.getList(partition);
+			list.removeIf(it -> removeIds.contains(it.getId()));
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public long count(Instant conditionDateTime, @Nullable Integer partition) {
+		this.lock.lock();
+		try {
+			return this.getList(partition).stream()
+				.filter(it -> it.getReleaseDateTime().isBefore(conditionDateTime))
+				.count();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public List<TimerMessageStoreValue> findReleaseValues(
 		Instant conditionDateTime,
 		int count,
 		@Nullable Integer partition
 	) {
-		return this.getList(partition).stream()
-			.filter(it -> it.getReleaseDateTime().isBefore(conditionDateTime))
-			.limit(count)
-			.collect(Collectors.toList());
+		this.lock.lock();
+		try {
+			return this.getList(partition).stream()
+				.filter(it -> it.getReleaseDateTime().isBefore(conditionDateTime))
+				.limit(count)
+				.collect(Collectors.toList());
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public Optional<Instant> findNextReleaseDateTime(@Nullable Integer partition) {
+		this.lock.lock();
+		try {
+			List<TimerMessageStoreValue> list = this.getList(partition);
+			if (list.isEmpty()) {
+				return Optional.empty();
+			}
+
+			return Optional.of(list.get(0).getReleaseDateTime());
+		} finally {
+			this.lock.unlock();
+		}
 	}
 
 	private List<TimerMessageStoreValue> getList(@Nullable Integer partition) {
@@ -0,0 +1,80 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.store;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * A key of a timer message ordered by releaseDateTime and id.
+ */
+final class IndexKey implements Comparable<IndexKey> {
+	private static final UUID MIN_ID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+	private static final Comparator<IndexKey> COMPARATOR = Comparator
+		.comparing((IndexKey it) -> it.releaseDateTime)
+		.thenComparing(it -> it.id);
+
+	private final Instant releaseDateTime;
+	private final UUID id;
+
+	IndexKey(Instant releaseDateTime, UUID id) {
+		this.releaseDateTime = releaseDateTime;
+		this.id = id;
+	}
+
+	/**
+	 * @return a key lower than every key of which releaseDateTime is equal or after conditionDateTime.
+	 */
+	static IndexKey lowerBound(Instant conditionDateTime) {
+		return new IndexKey(conditionDateTime, MIN_ID);
+	}
+
+	Instant getReleaseDateTime() {
+		return this.releaseDateTime;
+	}
+
+	UUID getId() {
+		return this.id;
+	}
+
+	@Override
+	public int compareTo(IndexKey other) {
+		return COMPARATOR.compare(this, other);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+
+		IndexKey that = (IndexKey)obj;
+		return this.releaseDateTime.equals(that.releaseDateTime) && this.id.equals(that.id);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * this.releaseDateTime.hashCode() + this.id.hashCode();
+	}
+}
@@ -0,0 +1,681 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+
+/**
+ * A durable local implementation of {@link TimerMessageStore} on memory-mapped append-only segment files.
+ * <p/>
+ * {@link #save} appends a record with a serialized message to the latest segment,
+ * and {@link #remove} appends a tombstone. Only the ids, release times and record locations are kept in heap,
+ * and messages are read from segments on {@link #findReleaseValues}.
+ * Values are kept per partition like {@link InMemoryTimerMessageStore}, so {@link #remove} of a partition
+ * does not remove the value saved with the same id to another partition.
+ * On start, the index is rebuilt by scanning segments in order.
+ * A segment is scanned until a torn or corrupted record, and the rest of it is zeroed.
+ * <p/>
+ * The compaction copies live records of a segment to a new file out of lock, and replaces the segment with it,
+ * when ratio of live records in the segment is equal or less than compactionLiveRatio.
+ * The new file keeps the sequence of the segment, so records are replayed in the same order.
+ * A segment without live records is deleted. The latest segment is not compacted.
+ * Tombstones of removed ids are copied as well to keep hiding older records,
+ * except the ones in the oldest segment, which have no older record to hide.
+ * <p/>
+ * Written records survive a process crash. Call {@link #flush} to survive an OS crash as well.
+ * Segments are unmapped on {@link #close}, and the store can not be used after closed.
+ */
+public class MappedFileTimerMessageStore implements TimerMessageStore, AutoCloseable {
+	private static final Logger LOG = LoggerFactory.getLogger(MappedFileTimerMessageStore.class);
+
+	private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+	private static final Duration DEFAULT_COMPACTION_INTERVAL = Duration.ofMinutes(1);
+	private static final double DEFAULT_COMPACTION_LIVE_RATIO = 0.5;
+	private static final String SEGMENT_FILE_SUFFIX = ".segment";
+	private static final String COMPACTING_FILE_SUFFIX = ".compacting";
+
+	private static final byte RECORD_TYPE_PUT = 1;
+	private static final byte RECORD_TYPE_TOMBSTONE = 2;
+	private static final int TOMBSTONE_SIZE = Byte.BYTES + 2 * Long.BYTES + Integer.BYTES;
+	private static final int PUT_HEADER_SIZE = TOMBSTONE_SIZE + Long.BYTES + Integer.BYTES;
+
+	private final Path directory;
+	private final TimerMessageSerializer timerMessageSerializer;
+	private final int segmentSize;
+	private final double compactionLiveRatio;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	// serializes compactions, and keeps segments mapped while a compaction reads them out of lock.
+	private final ReentrantLock compactionLock = new ReentrantLock();
+	private final LinkedList<MappedSegment> segments = new LinkedList<>();    // ordered by sequence
+	private final Map<EntryKey, Entry> entries = new HashMap<>();
+	private final Map<Integer, TreeSet<IndexKey>> index = new HashMap<>();
+	private boolean closed;    // guarded by lock
+	private volatile boolean closing;
+
+	@Nullable
+	private final ScheduledExecutorService compactionExecutor;
+
+	/**
+	 * @param directory directory of segment files. created if not exists.
+	 * @param timerMessageSerializer
+	 */
+	public MappedFileTimerMessageStore(Path directory, TimerMessageSerializer timerMessageSerializer) {
+		this(
+			directory,
+			timerMessageSerializer,
+			DEFAULT_SEGMENT_SIZE,
+			DEFAULT_COMPACTION_INTERVAL,
+			DEFAULT_COMPACTION_LIVE_RATIO
+		);
+	}
+
+	/**
+	 * @param directory directory of segment files. created if not exists.
+	 * @param timerMessageSerializer
+	 * @param segmentSize size of a segment file. a record larger than this is written to a segment of its size.
+	 * @param compactionInterval interval of background compaction. no background compaction if null.
+	 * @param compactionLiveRatio max ratio of live records of a segment to be compacted. (0.0 ~ 1.0)
+	 */
+	public MappedFileTimerMessageStore(
+		Path directory,
+		TimerMessageSerializer timerMessageSerializer,
+		int segmentSize,
+		@Nullable Duration compactionInterval,
+		double compactionLiveRatio
+	) {
+		if (segmentSize <= MappedSegment.HEADER_SIZE) {
+			throw new IllegalArgumentException("segmentSize is too small. segmentSize: " + segmentSize);
+		}
+
+		this.directory = directory;
+		this.timerMessageSerializer = timerMessageSerializer;
+		this.segmentSize = segmentSize;
+		this.compactionLiveRatio = compactionLiveRatio;
+
+		try {
+			Files.createDirectories(directory);
+			this.load();
+		} catch (IOException ex) {
+			throw new UncheckedIOException("load segments is failed. directory: " + directory, ex);
+		}
+
+		if (compactionInterval != null) {
+			this.compactionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "timer-message-store-compaction");
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.compactionExecutor.scheduleWithFixedDelay(
+				this::compactQuietly,
+				compactionInterval.toMillis(),
+				compactionInterval.toMillis(),
+				TimeUnit.MILLISECONDS
+			);
+		} else {
+			this.compactionExecutor = null;
+		}
+	}
+
+	@Override
+	public void save(TimerMessageStoreValue storeValue, @Nullable Integer partition) {
+		this.saveAll(List.of(storeValue), partition);
+	}
+
+	@Override
+	public void remove(UUID storeValueId, @Nullable Integer partition) {
+		this.removeAll(List.of(storeValueId), partition);
+	}
+
+	@Override
+	public void saveAll(Collection<TimerMessageStoreValue> storeValues, @Nullable Integer partition) {
+		int partitionValue = partition(partition);
+
+		// serialize out of lock
+		List<byte[]> bodies = new ArrayList<>(storeValues.size());
+		for (TimerMessageStoreValue storeValue : storeValues) {
+			bodies.add(this.encodePut(storeValue, partitionValue));
+		}
+
+		this.lock.lock();
+		try {
+			this.ensureOpen();
+			Iterator<byte[]> bodyIterator = bodies.iterator();
+			for (TimerMessageStoreValue storeValue : storeValues) {
+				Location location = this.append(bodyIterator.next());
+				this.indexPut(
+					new EntryKey(partitionValue, storeValue.getId()),
+					storeValue.getReleaseDateTime(),
+					location
+				);
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public void removeAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		int partitionValue = partition(partition);
+
+		this.lock.lock();
+		try {
+			this.ensureOpen();
+			for (UUID storeValueId : storeValueIds) {
+				// skip ids not stored in the partition, not to remove the ones moved to another partition.
+				EntryKey key = new EntryKey(partitionValue, storeValueId);
+				if (!this.entries.containsKey(key)) {
+					continue;
+				}
+
+				this.append(encodeTombstone(storeValueId, partitionValue));
+				this.indexRemove(key);
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public long count(Instant conditionDateTime, @Nullable Integer partition) {
+		this.lock.lock();
+		try {
+			this.ensureOpen();
+			return this.headSet(conditionDateTime, partition).size();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public List<TimerMessageStoreValue> findReleaseValues(
+		Instant conditionDateTime,
+		int count,
+		@Nullable Integer partition
+	) {
+		List<TimerMessageStoreValue> result = new ArrayList<>();
+		List<UUID> brokenIds = new ArrayList<>();
+		this.lock.lock();
+		try {
+			this.ensureOpen();
+			for (IndexKey key : this.headSet(conditionDateTime, partition)) {
+				if (result.size() >= count) {
+					break;
+				}
+
+				Location location = this.entries.get(new EntryKey(partition(partition), key.getId())).location;
+				byte[] body = location.segment.read(location.offset);
+				try {
+					Object message = this.timerMessageSerializer.deserialize(
+						Arrays.copyOfRange(body, PUT_HEADER_SIZE, body.length));
+					result.add(new TimerMessageStoreValue(key.getId(), message, key.getReleaseDateTime()));
+				} catch (Exception ex) {
+					LOG.error("deserialize timer message is failed. It would be removed. storeValueId: {}",
+						key.getId(), ex);
+					brokenIds.add(key.getId());
+				}
+			}
+		} finally {
+			this.lock.unlock();
+		}
+
+		if (!brokenIds.isEmpty()) {
+			this.removeAll(brokenIds, partition);
+		}
+		return result;
+	}
+
+	@Override
+	public Optional<Instant> findNextReleaseDateTime(@Nullable Integer partition) {
+		this.lock.lock();
+		try {
+			this.ensureOpen();
+			TreeSet<IndexKey> keys = this.index.get(partition(partition));
+			if (keys == null || keys.isEmpty()) {
+				return Optional.empty();
+			}
+
+			return Optional.of(keys.first().getReleaseDateTime());
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Compact segments of which ratio of live records is equal or less than compactionLiveRatio.
+	 * The latest segment is not compacted. Nothing is compacted after closed.
+	 */
+	public void compact() {
+		this.compactionLock.lock();
+		try {
+			List<MappedSegment> candidates = new ArrayList<>();
+			this.lock.lock();
+			try {
+				if (this.closed) {
+					return;
+				}
+
+				for (MappedSegment segment : this.segments.subList(0, this.segments.size() - 1)) {
+					if (segment.liveRatio() <= this.compactionLiveRatio) {
+						candidates.add(segment);
+					}
+				}
+			} finally {
+				this.lock.unlock();
+			}
+
+			for (MappedSegment segment : candidates) {
+				if (this.closing) {
+					return;
+				}
+				this.compact(segment);
+			}
+		} catch (IOException ex) {
+			throw new UncheckedIOException("compact segments is failed. directory: " + this.directory, ex);
+		} finally {
+			this.compactionLock.unlock();
+		}
+	}
+
+	/**
+	 * Force written records to the storage device.
+	 */
+	public void flush() {
+		this.lock.lock();
+		try {
+			this.ensureOpen();
+			this.segments.getLast().force();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public void close() {
+		if (this.compactionExecutor != null) {
+			this.compactionExecutor.shutdownNow();
+		}
+
+		// wait for a running compaction, which stops at the next segment.
+		this.closing = true;
+		this.compactionLock.lock();
+		try {
+			this.lock.lock();
+			try {
+				if (this.closed) {
+					return;
+				}
+
+				this.closed = true;
+				for (MappedSegment segment : this.segments) {
+					segment.close();
+				}
+				this.segments.clear();
+				this.entries.clear();
+				this.index.clear();
+			} finally {
+				this.lock.unlock();
+			}
+		} finally {
+			this.compactionLock.unlock();
+		}
+	}
+
+	private void load() throws IOException {
+		// copies of a compaction stopped before replacing its segment.
+		try (DirectoryStream<Path> paths = Files.newDirectoryStream(this.directory, "*" + COMPACTING_FILE_SUFFIX)) {
+			for (Path path : paths) {
+				Files.deleteIfExists(path);
+			}
+		}
+
+		TreeMap<Long, Path> segmentPaths = new TreeMap<>();
+		try (DirectoryStream<Path> paths = Files.newDirectoryStream(this.directory, "*" + SEGMENT_FILE_SUFFIX)) {
+			for (Path path : paths) {
+				String fileName = path.getFileName().toString();
+				try {
+					String sequence = fileName.substring(0, fileName.length() - SEGMENT_FILE_SUFFIX.length());
+					segmentPaths.put(Long.parseLong(sequence), path);
+				} catch (NumberFormatException ex) {
+					LOG.warn("unknown file in timer message store directory is ignored. file: {}", path);
+				}
+			}
+		}
+
+		for (Map.Entry<Long, Path> segmentPath : segmentPaths.entrySet()) {
+			MappedSegment segment = MappedSegment.open(segmentPath.getValue(), segmentPath.getKey());
+			if (segment == null) {
+				// deleted by compaction, but the file remained.
+				Files.deleteIfExists(segmentPath.getValue());
+				continue;
+			}
+
+			if (segment.scan((offset, body) -> this.replay(segment, offset, body))) {
+				LOG.warn("timer message store segment has a corrupted record. Records after it are discarded. "
+					+ "segment: {}, offset: {}", segmentPath.getValue(), segment.getPosition());
+			}
+			this.segments.add(segment);
+		}
+
+		if (this.segments.isEmpty()) {
+			this.segments.add(this.createSegment(0L, this.segmentSize));
+		}
+
+		LOG.info("timer message store is loaded. directory: {}, segments: {}, values: {}",
+			this.directory, this.segments.size(), this.entries.size());
+	}
+
+	/**
+	 * Copy needed records of a segment to a new file out of lock, and replace the segment with it under lock.
+	 * The segment is deleted if no record is needed.
+	 * The segment is not appended anymore, as it is not the latest, so it is read out of lock.
+	 */
+	private void compact(MappedSegment segment) throws IOException {
+		boolean oldest;
+		this.lock.lock();
+		try {
+			oldest = this.segments.getFirst() == segment;
+		} finally {
+			this.lock.unlock();
+		}
+
+		// a record removed after checked is copied as a dead record, and skipped on replacing locations.
+		List<Integer> copiedOffsets = new ArrayList<>();
+		List<byte[]> copiedBodies = new ArrayList<>();
+		segment.visit((offset, body) -> {
+			if (this.isNeeded(segment, offset, body, oldest)) {
+				copiedOffsets.add(offset);
+				copiedBodies.add(body);
+			}
+		});
+
+		if (copiedBodies.isEmpty()) {
+			this.lock.lock();
+			try {
+				this.segments.remove(segment);
+				segment.delete();
+			} finally {
+				this.lock.unlock();
+			}
+			LOG.debug("timer message store segment is deleted. segment: {}", segment.getSequence());
+			return;
+		}
+
+		int capacity = MappedSegment.HEADER_SIZE;
+		for (byte[] body : copiedBodies) {
+			capacity += MappedSegment.recordSize(body.length);
+		}
+		Path segmentPath = this.segmentPath(segment.getSequence());
+		MappedSegment compacted = MappedSegment.create(
+			segmentPath.resolveSibling(segmentPath.getFileName() + COMPACTING_FILE_SUFFIX),
+			segment.getSequence(),
+			capacity
+		);
+		int[] offsets = new int[copiedBodies.size()];
+		for (int i = 0; i < copiedBodies.size(); i++) {
+			offsets[i] = compacted.append(copiedBodies.get(i));
+		}
+		// copied records should be durable before replacing their origin.
+		compacted.force();
+
+		this.lock.lock();
+		try {
+			try {
+				compacted.moveTo(segmentPath);
+			} catch (IOException ex) {
+				compacted.delete();
+				throw ex;
+			}
+
+			for (int i = 0; i < copiedBodies.size(); i++) {
+				byte[] body = copiedBodies.get(i);
+				EntryKey key = readKey(body);
+				Entry entry = this.entries.get(key);
+				if (body[0] == RECORD_TYPE_PUT && entry != null
+					&& entry.location.segment == segment && entry.location.offset == copiedOffsets.get(i)) {
+					this.entries.put(key, new Entry(new Location(compacted, offsets[i]), entry.releaseDateTime));
+					compacted.addLiveBytes(MappedSegment.recordSize(body.length));
+				}
+			}
+			this.segments.set(this.segments.indexOf(segment), compacted);
+			segment.close();
+		} finally {
+			this.lock.unlock();
+		}
+		LOG.debug("timer message store segment is compacted. segment: {}", segment.getSequence());
+	}
+
+	/**
+	 * @return whether a record of the segment should be copied by compaction.
+	 */
+	private boolean isNeeded(MappedSegment segment, int offset, byte[] body, boolean oldest) {
+		EntryKey key = readKey(body);
+		this.lock.lock();
+		try {
+			Entry entry = this.entries.get(key);
+			if (body[0] == RECORD_TYPE_TOMBSTONE) {
+				// a tombstone of an id saved again is superseded by the later record.
+				return !oldest && entry == null;
+			}
+			return entry != null && entry.location.segment == segment && entry.location.offset == offset;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	private void replay(MappedSegment segment, int offset, byte[] body) {
+		ByteBuffer buffer = ByteBuffer.wrap(body);
+		byte type = buffer.get();
+		UUID id = new UUID(buffer.getLong(), buffer.getLong());
+		int partition = buffer.getInt();
+
+		if (type == RECORD_TYPE_PUT) {
+			Instant releaseDateTime = Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+			this.indexPut(new EntryKey(partition, id), releaseDateTime, new Location(segment, offset));
+		} else if (type == RECORD_TYPE_TOMBSTONE) {
+			this.indexRemove(new EntryKey(partition, id));
+		}
+	}
+
+	private Location append(byte[] body) {
+		MappedSegment segment = this.segments.getLast();
+		int offset = segment.append(body);
+		if (offset < 0) {
+			int recordCapacity = MappedSegment.HEADER_SIZE + MappedSegment.recordSize(body.length);
+			segment = this.createSegment(segment.getSequence() + 1, Math.max(this.segmentSize, recordCapacity));
+			this.segments.add(segment);
+			offset = segment.append(body);
+		}
+		return new Location(segment, offset);
+	}
+
+	private MappedSegment createSegment(long sequence, int capacity) {
+		Path path = this.segmentPath(sequence);
+		try {
+			return MappedSegment.create(path, sequence, capacity);
+		} catch (IOException ex) {
+			throw new UncheckedIOException("create segment is failed. path: " + path, ex);
+		}
+	}
+
+	private Path segmentPath(long sequence) {
+		return this.directory.resolve(String.format("%020d%s", sequence, SEGMENT_FILE_SUFFIX));
+	}
+
+	private void indexPut(EntryKey key, Instant releaseDateTime, Location location) {
+		this.indexRemove(key);
+
+		this.entries.put(key, new Entry(location, releaseDateTime));
+		this.index.computeIfAbsent(key.partition, it -> new TreeSet<>())
+			.add(new IndexKey(releaseDateTime, key.id));
+		location.segment.addLiveBytes(location.segment.recordSizeAt(location.offset));
+	}
+
+	private void indexRemove(EntryKey key) {
+		Entry entry = this.entries.remove(key);
+		if (entry == null) {
+			return;
+		}
+
+		TreeSet<IndexKey> keys = this.index.get(key.partition);
+		if (keys != null) {
+			keys.remove(new IndexKey(entry.releaseDateTime, key.id));
+		}
+		entry.location.segment.addLiveBytes(-entry.location.segment.recordSizeAt(entry.location.offset));
+	}
+
+	private NavigableSet<IndexKey> headSet(Instant conditionDateTime, @Nullable Integer partition) {
+		TreeSet<IndexKey> keys = this.index.get(partition(partition));
+		if (keys == null) {
+			return new TreeSet<>();
+		}
+
+		return keys.headSet(IndexKey.lowerBound(conditionDateTime), false);
+	}
+
+	private void ensureOpen() {
+		if (this.closed) {
+			throw new IllegalStateException("timer message store is closed. directory: " + this.directory);
+		}
+	}
+
+	private void compactQuietly() {
+		try {
+			this.compact();
+		} catch (Exception ex) {
+			LOG.error("timer message store compaction is failed. It would be retried on next compaction.", ex);
+		}
+	}
+
+	private byte[] encodePut(TimerMessageStoreValue storeValue, int partition) {
+		byte[] message = this.timerMessageSerializer.serialize(storeValue.getMessage());
+		return ByteBuffer.allocate(PUT_HEADER_SIZE + message.length)
+			.put(RECORD_TYPE_PUT)
+			.putLong(storeValue.getId().getMostSignificantBits())
+			.putLong(storeValue.getId().getLeastSignificantBits())
+			.putInt(partition)
+			.putLong(storeValue.getReleaseDateTime().getEpochSecond())
+			.putInt(storeValue.getReleaseDateTime().getNano())
+			.put(message)
+			.array();
+	}
+
+	private static byte[] encodeTombstone(UUID id, int partition) {
+		return ByteBuffer.allocate(TOMBSTONE_SIZE)
+			.put(RECORD_TYPE_TOMBSTONE)
+			.putLong(id.getMostSignificantBits())
+			.putLong(id.getLeastSignificantBits())
+			.putInt(partition)
+			.array();
+	}
+
+	private static EntryKey readKey(byte[] body) {
+		ByteBuffer buffer = ByteBuffer.wrap(body, Byte.BYTES, 2 * Long.BYTES + Integer.BYTES);
+		UUID id = new UUID(buffer.getLong(), buffer.getLong());
+		return new EntryKey(buffer.getInt(), id);
+	}
+
+	private static int partition(@Nullable Integer partition) {
+		return partition == null ? 0 : partition;
+	}
+
+	private static final class Location {
+		private final MappedSegment segment;
+		private final int offset;
+
+		Location(MappedSegment segment, int offset) {
+			this.segment = segment;
+			this.offset = offset;
+		}
+	}
+
+	private static final class Entry {
+		private final Location location;
+		private final Instant releaseDateTime;
+
+		Entry(Location location, Instant releaseDateTime) {
+			this.location = location;
+			this.releaseDateTime = releaseDateTime;
+		}
+	}
+
+	/**
+	 * A stored value is identified by its partition and id.
+	 */
+	private static final class EntryKey {
+		private final int partition;
+		private final UUID id;
+
+		EntryKey(int partition, UUID id) {
+			this.partition = partition;
+			this.id = id;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+
+			EntryKey that = (EntryKey)obj;
+			return this.partition == that.partition && this.id.equals(that.id);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * this.partition + this.id.hashCode();
+		}
+	}
+}
@@ -0,0 +1,311 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.store;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only segment file mapped to memory.
+ * <p/>
+ * Layout: {@code [magic][version]} followed by records of {@code [body length][crc32 of body][body]}.
+ * The unwritten area of a file is filled with zero, so a zero length marks the end of records.
+ */
+final class MappedSegment {
+	private static final Logger LOG = LoggerFactory.getLogger(MappedSegment.class);
+
+	static final int HEADER_SIZE = 2 * Integer.BYTES;
+	static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+
+	private static final int MAGIC = 0x45544D53;
+	private static final int VERSION = 1;
+
+	// sun.misc.Unsafe#invokeCleaner to unmap buffers without waiting for GC. null if not accessible.
+	@Nullable
+	private static final Object UNSAFE;
+	@Nullable
+	private static final Method INVOKE_CLEANER;
+
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			unsafe = theUnsafe.get(null);
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+		} catch (ReflectiveOperationException | RuntimeException ex) {
+			LOG.warn("sun.misc.Unsafe#invokeCleaner is not accessible. Segments would be unmapped by GC, "
+				+ "and files of deleted segments may remain until then.", ex);
+			unsafe = null;
+			invokeCleaner = null;
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	private final long sequence;
+	private Path path;
+	private final MappedByteBuffer buffer;
+	private int position;
+	private long liveBytes;
+
+	private MappedSegment(long sequence, Path path, MappedByteBuffer buffer, int position) {
+		this.sequence = sequence;
+		this.path = path;
+		this.buffer = buffer;
+		this.position = position;
+	}
+
+	static MappedSegment create(Path path, long sequence, int capacity) throws IOException {
+		MappedByteBuffer buffer = map(path, capacity);
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(Integer.BYTES, VERSION);
+		return new MappedSegment(sequence, path, buffer, HEADER_SIZE);
+	}
+
+	/**
+	 * @return null if the file is not a segment, or deleted by compaction.
+	 */
+	@Nullable
+	static MappedSegment open(Path path, long sequence) throws IOException {
+		long size = Files.size(path);
+		if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+			return null;
+		}
+
+		MappedByteBuffer buffer = map(path, (int)size);
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+			return null;
+		}
+		return new MappedSegment(sequence, path, buffer, HEADER_SIZE);
+	}
+
+	private static MappedByteBuffer map(Path path, int capacity) throws IOException {
+		try (FileChannel channel = FileChannel.open(
+			path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+		}
+	}
+
+	/**
+	 * Visit valid records from the first, and move the write position to the end of valid records.
+	 * A torn write or a corrupted record ends scanning, and the rest of the segment is zeroed,
+	 * not to replay records after it once new records are appended over it.
+	 *
+	 * @return true if a corrupted record is found and the rest is zeroed.
+	 */
+	boolean scan(RecordVisitor visitor) {
+		int offset = HEADER_SIZE;
+		boolean corrupted = false;
+		while (offset + RECORD_HEADER_SIZE <= this.buffer.capacity()) {
+			int length = this.buffer.getInt(offset);
+			if (length == 0) {
+				break;
+			}
+			if (length < 0 || length > this.buffer.capacity() - offset - RECORD_HEADER_SIZE) {
+				corrupted = true;
+				break;
+			}
+
+			byte[] body = new byte[length];
+			this.buffer.get(offset + RECORD_HEADER_SIZE, body);
+			if (this.buffer.getInt(offset + Integer.BYTES) != crc(body)) {
+				corrupted = true;
+				break;
+			}
+
+			visitor.visit(offset, body);
+			offset += RECORD_HEADER_SIZE + length;
+		}
+		this.position = offset;
+
+		if (corrupted) {
+			this.zero(offset);
+		}
+		return corrupted;
+	}
+
+	/**
+	 * Visit records until the write position, without validating them again.
+	 * The segment should not be appended while visiting, so it can be visited out of lock of the store.
+	 */
+	void visit(RecordVisitor visitor) {
+		int end = this.position;
+		int offset = HEADER_SIZE;
+		while (offset < end) {
+			byte[] body = this.read(offset);
+			visitor.visit(offset, body);
+			offset += recordSize(body.length);
+		}
+	}
+
+	/**
+	 * @return offset of the appended record. -1 if there is not enough space.
+	 */
+	int append(byte[] body) {
+		int offset = this.position;
+		if (this.buffer.capacity() - offset < recordSize(body.length)) {
+			return -1;
+		}
+
+		this.buffer.putInt(offset + Integer.BYTES, crc(body));
+		this.buffer.put(offset + RECORD_HEADER_SIZE, body);
+		// length is written last, so a torn record is not visible on scan.
+		this.buffer.putInt(offset, body.length);
+		this.position = offset + recordSize(body.length);
+		return offset;
+	}
+
+	byte[] read(int offset) {
+		byte[] body = new byte[this.buffer.getInt(offset)];
+		this.buffer.get(offset + RECORD_HEADER_SIZE, body);
+		return body;
+	}
+
+	int recordSizeAt(int offset) {
+		return recordSize(this.buffer.getInt(offset));
+	}
+
+	static int recordSize(int bodyLength) {
+		return RECORD_HEADER_SIZE + bodyLength;
+	}
+
+	void force() {
+		this.buffer.force();
+	}
+
+	/**
+	 * Force written records and unmap the file. The segment must not be accessed after closed.
+	 */
+	void close() {
+		this.buffer.force();
+		this.unmap();
+	}
+
+	/**
+	 * Invalidate the header before deleting the file,
+	 * not to be loaded again even if the file is not deleted. (ex. mapped file on windows)
+	 * The segment must not be accessed after deleted.
+	 */
+	void delete() throws IOException {
+		this.buffer.putInt(0, 0);
+		this.buffer.force();
+		boolean unmapped = this.unmap();
+		try {
+			Files.deleteIfExists(this.path);
+		} catch (IOException ex) {
+			if (unmapped) {
+				throw ex;
+			}
+
+			// a mapped file can not be deleted on some platforms. it is deleted on next load, as it is invalidated.
+			LOG.warn("delete a mapped segment file is failed. It would be deleted on next load. path: {}",
+				this.path, ex);
+			this.path.toFile().deleteOnExit();
+		}
+	}
+
+	/**
+	 * Move the file to replace the target atomically. The mapping is kept.
+	 */
+	void moveTo(Path target) throws IOException {
+		Files.move(this.path, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		this.path = target;
+	}
+
+	long getSequence() {
+		return this.sequence;
+	}
+
+	int getCapacity() {
+		return this.buffer.capacity();
+	}
+
+	int getPosition() {
+		return this.position;
+	}
+
+	long getLiveBytes() {
+		return this.liveBytes;
+	}
+
+	void addLiveBytes(long delta) {
+		this.liveBytes += delta;
+	}
+
+	/**
+	 * @return ratio of bytes of live records to written records.
+	 */
+	double liveRatio() {
+		int written = this.position - HEADER_SIZE;
+		return written == 0 ? 1.0 : (double)this.liveBytes / written;
+	}
+
+	private void zero(int fromOffset) {
+		byte[] zeros = new byte[Math.min(64 * 1024, Math.max(0, this.buffer.capacity() - fromOffset))];
+		for (int offset = fromOffset; offset < this.buffer.capacity(); offset += zeros.length) {
+			this.buffer.put(offset, zeros, 0, Math.min(zeros.length, this.buffer.capacity() - offset));
+		}
+		this.buffer.force();
+	}
+
+	/**
+	 * @return false if the buffer is left to be unmapped by GC.
+	 */
+	private boolean unmap() {
+		if (UNSAFE == null || INVOKE_CLEANER == null) {
+			return false;
+		}
+
+		try {
+			INVOKE_CLEANER.invoke(UNSAFE, this.buffer);
+			return true;
+		} catch (ReflectiveOperationException | RuntimeException ex) {
+			LOG.warn("unmap a segment is failed. It would be unmapped by GC. path: {}", this.path, ex);
+			return false;
+		}
+	}
+
+	private static int crc(byte[] body) {
+		CRC32 crc32 = new CRC32();
+		crc32.update(body);
+		return (int)crc32.getValue();
+	}
+
+	@FunctionalInterface
+	interface RecordVisitor {
+		void visit(int offset, byte[] body);
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.eventeria.timer.store;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import com.navercorp.eventeria.timer.contract.store.LeasedTimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+
+/**
+ * A {@link PrefetchingTimerMessageStore} of a {@link LeasedTimerMessageStore}, which is safe with multiple nodes.
+ * <p/>
+ * The local index only tells whether a partition has messages to release, and when.
+ * Messages are always claimed from the delegate at release time,
+ * so messages released or removed by other nodes are not released again.
+ * A claim is skipped while the local index covers the time and has nothing to release,
+ * which saves a round trip to the delegate per release.
+ * Local messages which are not claimed by a claim under its count are released or removed by other nodes,
+ * and dropped from the local index.
+ * <p/>
+ * Messages claimed by a node which died are in no index until their leases expire.
+ * So each prefetch also reads the next release time of the delegate, which includes lease deadlines,
+ * and a partition is claimed once it is due even if the local index has nothing to release.
+ */
+public class PrefetchingLeasedTimerMessageStore extends PrefetchingTimerMessageStore
+	implements LeasedTimerMessageStore {
+	private final LeasedTimerMessageStore delegate;
+
+	// next release time of the delegate read on the last prefetch, per partition. (null key for no partition)
+	private final Map<Integer, Instant> delegateNextReleaseDateTimes = Collections.synchronizedMap(new HashMap<>());
+
+	public PrefetchingLeasedTimerMessageStore(LeasedTimerMessageStore delegate) {
+		super(delegate);
+		this.delegate = delegate;
+	}
+
+	/**
+	 * @param delegate
+	 * @param horizon range of messages to prefetch from now.
+	 * @param refreshInterval interval between prefetches of a partition. should not be longer than horizon.
+	 * @param prefetchCount max count of messages to prefetch per partition.
+	 */
+	public PrefetchingLeasedTimerMessageStore(
+		LeasedTimerMessageStore delegate,
+		Duration horizon,
+		Duration refreshInterval,
+		int prefetchCount
+	) {
+		super(delegate, horizon, refreshInterval, prefetchCount);
+		this.delegate = delegate;
+	}
+
+	@Override
+	public List<TimerMessageStoreValue> claimReleaseValues(
+		Instant conditionDateTime,
+		int count,
+		@Nullable Integer partition
+	) {
+		if (this.refreshAndCheckNothingToRelease(conditionDateTime, partition)
+			&& !this.isDelegateDue(conditionDateTime, partition)) {
+			return List.of();
+		}
+
+		Set<UUID> localIds = this.findLocalReleaseIds(conditionDateTime, partition);
+		List<TimerMessageStoreValue> claimed = this.delegate.claimReleaseValues(conditionDateTime, count, partition);
+		this.applyClaimed(localIds, claimed, count, partition);
+		return claimed;
+	}
+
+	@Override
+	public Map<Integer, List<TimerMessageStoreValue>> claimReleaseValuesOfPartitions(
+		Instant conditionDateTime,
+		int count,
+		Collection<Integer> partitions
+	) {
+		this.refreshPartitions(partitions);
+
+		Map<Integer, Set<UUID>> localIdsOfPartitions = new LinkedHashMap<>();
+		List<Integer> claimPartitions = new ArrayList<>();
+		for (Integer partition : partitions) {
+			if (!this.refreshAndCheckNothingToRelease(conditionDateTime, partition)
+				|| this.isDelegateDue(conditionDateTime, partition)) {
+				localIdsOfPartitions.put(partition, this.findLocalReleaseIds(conditionDateTime, partition));
+				claimPartitions.add(partition);
+			}
+		}
+
+		Map<Integer, List<TimerMessageStoreValue>> result = new LinkedHashMap<>();
+		Map<Integer, List<TimerMessageStoreValue>> claimedOfPartitions = claimPartitions.isEmpty()
+			? Map.of()
+			: this.delegate.claimReleaseValuesOfPartitions(conditionDateTime, count, claimPartitions);
+		for (Integer partition : partitions) {
+			List<TimerMessageStoreValue> claimed = claimedOfPartitions.getOrDefault(partition, List.of());
+			if (localIdsOfPartitions.containsKey(partition)) {
+				this.applyClaimed(localIdsOfPartitions.get(partition), claimed, count, partition);
+			}
+			result.put(partition, claimed);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the earliest of the local index and the next release time of the delegate on the last prefetch,
+	 *         which includes lease deadlines of claimed messages.
+	 */
+	@Override
+	public Optional<Instant> findNextReleaseDateTime(@Nullable Integer partition) {
+		return earliest(super.findNextReleaseDateTime(partition), this.delegateNextReleaseDateTimes.get(partition));
+	}
+
+	@Override
+	public Optional<Instant> findNextReleaseDateTimeOfPartitions(Collection<Integer> partitions) {
+		Optional<Instant> result = super.findNextReleaseDateTimeOfPartitions(partitions);
+		for (Integer partition : partitions) {
+			result = earliest(result, this.delegateNextReleaseDateTimes.get(partition));
+		}
+		return result;
+	}
+
+	@Override
+	public void acknowledge(UUID storeValueId, @Nullable Integer partition) {
+		this.delegate.acknowledge(storeValueId, partition);
+		this.forgetLocal(List.of(storeValueId), partition);
+	}
+
+	@Override
+	public void acknowledgeAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		this.delegate.acknowledgeAll(storeValueIds, partition);
+		this.forgetLocal(storeValueIds, partition);
+	}
+
+	/**
+	 * Return a claimed message to the delegate, and prefetch the partition again to release it on next claim.
+	 */
+	@Override
+	public void requeue(UUID storeValueId, @Nullable Integer partition) {
+		this.delegate.requeue(storeValueId, partition);
+		this.invalidateLocal(partition);
+	}
+
+	/**
+	 * Return claimed messages to the delegate at once, and prefetch the partition again.
+	 */
+	@Override
+	public void requeueAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		this.delegate.requeueAll(storeValueIds, partition);
+		this.invalidateLocal(partition);
+	}
+
+	/**
+	 * Read the next release time of partitions prefetched together in a round trip.
+	 * It is the earliest of the partitions, so a due one makes all of them claimed until the next prefetch.
+	 */
+	@Override
+	void afterPrefetch(Collection<Integer> partitions) {
+		Optional<Instant> nextReleaseDateTime = partitions.size() == 1
+			? this.delegate.findNextReleaseDateTime(partitions.iterator().next())
+			: this.delegate.findNextReleaseDateTimeOfPartitions(partitions);
+		for (Integer partition : partitions) {
+			this.delegateNextReleaseDateTimes.put(partition, nextReleaseDateTime.orElse(null));
+		}
+	}
+
+	private boolean isDelegateDue(Instant conditionDateTime, @Nullable Integer partition) {
+		Instant nextReleaseDateTime = this.delegateNextReleaseDateTimes.get(partition);
+		return nextReleaseDateTime != null && !nextReleaseDateTime.isAfter(conditionDateTime);
+	}
+
+	private void applyClaimed(
+		Set<UUID> localIds,
+		List<TimerMessageStoreValue> claimed,
+		int count,
+		@Nullable Integer partition
+	) {
+		List<UUID> claimedIds = new ArrayList<>(claimed.size());
+		for (TimerMessageStoreValue storeValue : claimed) {
+			claimedIds.add(storeValue.getId());
+		}
+		this.forgetLocal(claimedIds, partition);
+
+		// every due message of the delegate is claimed. the others are released or removed by other nodes.
+		if (claimed.size() < count) {
+			localIds.removeAll(claimedIds);
+			this.forgetLocal(localIds, partition);
+			this.delegateNextReleaseDateTimes.remove(partition);
+		}
+	}
+
+	private static Optional<Instant> earliest(Optional<Instant> dateTime, @Nullable Instant other) {
+		if (other == null || dateTime.isPresent() && !other.isBefore(dateTime.get())) {
+			return dateTime;
+		}
+		return Optional.of(other);
+	}
+}
@@ -0,0 +1,557 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.store;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nullable;
+
+import com.navercorp.eventeria.timer.contract.store.LeasedTimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+
+/**
+ * A {@link TimerMessageStore} which keeps messages due within a horizon of a remote delegate in memory.
+ * <p/>
+ * Once per refreshInterval, messages of a partition due until {@code now + horizon} are prefetched from the delegate
+ * into a local index, and {@link #findReleaseValues} and {@link #findNextReleaseDateTime} are answered from it.
+ * So the delegate is read once per refreshInterval instead of every release,
+ * and {@link TimerMessageReleaseScheduler} wakes up at the exact time of prefetched messages.
+ * Saves and removes are written to the delegate first, and then applied to the local index.
+ * <p/>
+ * Messages saved through other nodes are picked up on the next prefetch, so they can be late up to refreshInterval.
+ * If a prefetch hits prefetchCount, the partition is read from the delegate until the next prefetch.
+ * <p/>
+ * Each instance releases from its own prefetched index, which does not see releases and removes of other nodes
+ * until the next prefetch. So this store is only safe when a single node releases the delegate,
+ * and a lock does not help: a message released and removed by a node is released again by another node.
+ * When multiple nodes release, wrap a {@link LeasedTimerMessageStore} by {@link #of},
+ * which claims messages from the delegate at release time.
+ */
+public class PrefetchingTimerMessageStore implements TimerMessageStore {
+	private static final Duration DEFAULT_HORIZON = Duration.ofSeconds(30);
+	private static final Duration DEFAULT_REFRESH_INTERVAL = Duration.ofSeconds(1);
+	private static final int DEFAULT_PREFETCH_COUNT = 10_000;
+
+	private final TimerMessageStore delegate;
+	private final Duration horizon;
+	private final Duration refreshInterval;
+	private final int prefetchCount;
+
+	private final ConcurrentMap<Integer, Partition> partitions = new ConcurrentHashMap<>();
+	private final Partition defaultPartition = new Partition();
+
+	public PrefetchingTimerMessageStore(TimerMessageStore delegate) {
+		this(delegate, DEFAULT_HORIZON, DEFAULT_REFRESH_INTERVAL, DEFAULT_PREFETCH_COUNT);
+	}
+
+	/**
+	 * @param delegate
+	 * @param horizon range of messages to prefetch from now.
+	 * @param refreshInterval interval between prefetches of a partition. should not be longer than horizon.
+	 */
+	public PrefetchingTimerMessageStore(TimerMessageStore delegate, Duration horizon, Duration refreshInterval) {
+		this(delegate, horizon, refreshInterval, DEFAULT_PREFETCH_COUNT);
+	}
+
+	/**
+	 * @param delegate
+	 * @param horizon range of messages to prefetch from now.
+	 * @param refreshInterval interval between prefetches of a partition. should not be longer than horizon.
+	 * @param prefetchCount max count of messages to prefetch per partition.
+	 */
+	public PrefetchingTimerMessageStore(
+		TimerMessageStore delegate,
+		Duration horizon,
+		Duration refreshInterval,
+		int prefetchCount
+	) {
+		if (refreshInterval.isNegative() || refreshInterval.isZero() || refreshInterval.compareTo(horizon) > 0) {
+			throw new IllegalArgumentException("refreshInterval must be positive and not longer than horizon. "
+				+ "refreshInterval: " + refreshInterval + ", horizon: " + horizon);
+		}
+		if (prefetchCount <= 0) {
+			throw new IllegalArgumentException("prefetchCount must be positive. prefetchCount: " + prefetchCount);
+		}
+
+		this.delegate = delegate;
+		this.horizon = horizon;
+		this.refreshInterval = refreshInterval;
+		this.prefetchCount = prefetchCount;
+	}
+
+	/**
+	 * @return {@link PrefetchingLeasedTimerMessageStore} if delegate is a {@link LeasedTimerMessageStore},
+	 * otherwise {@link PrefetchingTimerMessageStore} for a single node.
+	 */
+	public static PrefetchingTimerMessageStore of(
+		TimerMessageStore delegate,
+		Duration horizon,
+		Duration refreshInterval,
+		int prefetchCount
+	) {
+		if (delegate instanceof LeasedTimerMessageStore leasedTimerMessageStore) {
+			return new PrefetchingLeasedTimerMessageStore(
+				leasedTimerMessageStore,
+				horizon,
+				refreshInterval,
+				prefetchCount
+			);
+		}
+
+		return new PrefetchingTimerMessageStore(delegate, horizon, refreshInterval, prefetchCount);
+	}
+
+	@Override
+	public void save(TimerMessageStoreValue storeValue, @Nullable Integer partition) {
+		this.delegate.save(storeValue, partition);
+		this.getPartition(partition).add(storeValue);
+	}
+
+	@Override
+	public void remove(UUID storeValueId, @Nullable Integer partition) {
+		this.delegate.remove(storeValueId, partition);
+		this.getPartition(partition).remove(storeValueId);
+	}
+
+	@Override
+	public void saveAll(Collection<TimerMessageStoreValue> storeValues, @Nullable Integer partition) {
+		this.delegate.saveAll(storeValues, partition);
+		Partition localPartition = this.getPartition(partition);
+		for (TimerMessageStoreValue storeValue : storeValues) {
+			localPartition.add(storeValue);
+		}
+	}
+
+	@Override
+	public void removeAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		this.delegate.removeAll(storeValueIds, partition);
+		Partition localPartition = this.getPartition(partition);
+		for (UUID storeValueId : storeValueIds) {
+			localPartition.remove(storeValueId);
+		}
+	}
+
+	@Override
+	public long count(Instant conditionDateTime, @Nullable Integer partition) {
+		return this.delegate.count(conditionDateTime, partition);
+	}
+
+	@Override
+	public List<TimerMessageStoreValue> findReleaseValues(
+		Instant conditionDateTime,
+		int count,
+		@Nullable Integer partition
+	) {
+		Partition localPartition = this.refreshPartition(partition);
+		if (localPartition.covers(conditionDateTime)) {
+			return localPartition.findReleaseValues(conditionDateTime, count);
+		}
+		return this.delegate.findReleaseValues(conditionDateTime, count, partition);
+	}
+
+	@Override
+	public List<List<Integer>> groupPartitions(List<Integer> partitions) {
+		return this.delegate.groupPartitions(partitions);
+	}
+
+	/**
+	 * Prefetch partitions of which refreshInterval is elapsed at once, and find messages from local indexes.
+	 * Partitions not covered by local indexes are read from the delegate at once.
+	 */
+	@Override
+	public Map<Integer, List<TimerMessageStoreValue>> findReleaseValuesOfPartitions(
+		Instant conditionDateTime,
+		int count,
+		Collection<Integer> partitions
+	) {
+		this.refreshPartitions(partitions);
+
+		Map<Integer, List<TimerMessageStoreValue>> result = new LinkedHashMap<>();
+		List<Integer> remotePartitions = new ArrayList<>();
+		for (Integer partition : partitions) {
+			Partition localPartition = this.getPartition(partition);
+			if (localPartition.covers(conditionDateTime)) {
+				result.put(partition, localPartition.findReleaseValues(conditionDateTime, count));
+			} else {
+				remotePartitions.add(partition);
+			}
+		}
+		if (!remotePartitions.isEmpty()) {
+			result.putAll(this.delegate.findReleaseValuesOfPartitions(conditionDateTime, count, remotePartitions));
+		}
+		return result;
+	}
+
+	/**
+	 * @return the earliest releaseDateTime of local index while it is covered.
+	 *         empty if no message is due within the horizon.
+	 */
+	@Override
+	public Optional<Instant> findNextReleaseDateTime(@Nullable Integer partition) {
+		Partition localPartition = this.getPartition(partition);
+		if (localPartition.covers(Instant.now())) {
+			return localPartition.findNextReleaseDateTime();
+		}
+		return this.delegate.findNextReleaseDateTime(partition);
+	}
+
+	/**
+	 * Answer partitions covered by local indexes locally, and read the others from the delegate at once.
+	 */
+	@Override
+	public Optional<Instant> findNextReleaseDateTimeOfPartitions(Collection<Integer> partitions) {
+		Instant now = Instant.now();
+		Instant result = null;
+		List<Integer> remotePartitions = new ArrayList<>();
+		for (Integer partition : partitions) {
+			Partition localPartition = this.getPartition(partition);
+			if (!localPartition.covers(now)) {
+				remotePartitions.add(partition);
+				continue;
+			}
+
+			Optional<Instant> nextReleaseDateTime = localPartition.findNextReleaseDateTime();
+			if (nextReleaseDateTime.isPresent() && (result == null || nextReleaseDateTime.get().isBefore(result))) {
+				result = nextReleaseDateTime.get();
+			}
+		}
+		if (!remotePartitions.isEmpty()) {
+			Optional<Instant> nextReleaseDateTime = this.delegate.findNextReleaseDateTimeOfPartitions(remotePartitions);
+			if (nextReleaseDateTime.isPresent() && (result == null || nextReleaseDateTime.get().isBefore(result))) {
+				result = nextReleaseDateTime.get();
+			}
+		}
+		return Optional.ofNullable(result);
+	}
+
+	/**
+	 * Prefetch a partition if refreshInterval is elapsed.
+	 *
+	 * @return true if the local index covers conditionDateTime and has no message to release.
+	 */
+	boolean refreshAndCheckNothingToRelease(Instant conditionDateTime, @Nullable Integer partition) {
+		Partition localPartition = this.refreshPartition(partition);
+		return localPartition.covers(conditionDateTime)
+			&& localPartition.findReleaseValues(conditionDateTime, 1).isEmpty();
+	}
+
+	/**
+	 * Prefetch partitions of which refreshInterval is elapsed at once.
+	 */
+	void refreshPartitions(Collection<Integer> partitions) {
+		Instant now = Instant.now();
+		Map<Integer, Partition> prefetchPartitions = new LinkedHashMap<>();
+		for (Integer partition : partitions) {
+			Partition localPartition = this.getPartition(partition);
+			if (localPartition.isPrefetchDue(now, this.refreshInterval)) {
+				prefetchPartitions.put(partition, localPartition);
+			}
+		}
+		if (prefetchPartitions.size() == 1) {
+			Map.Entry<Integer, Partition> entry = prefetchPartitions.entrySet().iterator().next();
+			this.prefetch(entry.getValue(), entry.getKey(), now);
+		} else if (!prefetchPartitions.isEmpty()) {
+			this.prefetchAll(prefetchPartitions, now);
+		}
+	}
+
+	/**
+	 * @return ids of locally indexed messages to release until conditionDateTime.
+	 */
+	Set<UUID> findLocalReleaseIds(Instant conditionDateTime, @Nullable Integer partition) {
+		Set<UUID> ids = new HashSet<>();
+		for (TimerMessageStoreValue storeValue : this.getPartition(partition)
+			.findReleaseValues(conditionDateTime, Integer.MAX_VALUE)) {
+			ids.add(storeValue.getId());
+		}
+		return ids;
+	}
+
+	/**
+	 * Called after partitions are prefetched together, to read more of the delegate on each prefetch.
+	 */
+	void afterPrefetch(Collection<Integer> partitions) {
+	}
+
+	/**
+	 * Remove messages from the local index only. (ex. claimed, released by other nodes)
+	 */
+	void forgetLocal(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		Partition localPartition = this.getPartition(partition);
+		for (UUID storeValueId : storeValueIds) {
+			localPartition.remove(storeValueId);
+		}
+	}
+
+	/**
+	 * Drop the local index of a partition, to be prefetched again on next read.
+	 */
+	void invalidateLocal(@Nullable Integer partition) {
+		this.getPartition(partition).invalidate();
+	}
+
+	private Partition refreshPartition(@Nullable Integer partition) {
+		Partition localPartition = this.getPartition(partition);
+		Instant now = Instant.now();
+		if (localPartition.isPrefetchDue(now, this.refreshInterval)) {
+			this.prefetch(localPartition, partition, now);
+		}
+		return localPartition;
+	}
+
+	private void prefetch(Partition localPartition, @Nullable Integer partition, Instant now) {
+		Instant coveredUntil = now.plus(this.horizon);
+		localPartition.startPrefetch();
+		try {
+			List<TimerMessageStoreValue> prefetched =
+				this.delegate.findReleaseValues(coveredUntil, this.prefetchCount, partition);
+			localPartition.completePrefetch(prefetched, this.toCoveredUntil(prefetched, coveredUntil), now);
+		} catch (RuntimeException ex) {
+			localPartition.failPrefetch();
+			throw ex;
+		}
+		this.afterPrefetch(Collections.singletonList(partition));
+	}
+
+	private void prefetchAll(Map<Integer, Partition> localPartitions, Instant now) {
+		Instant coveredUntil = now.plus(this.horizon);
+		localPartitions.values().forEach(Partition::startPrefetch);
+		Map<Integer, List<TimerMessageStoreValue>> prefetchedOfPartitions;
+		try {
+			prefetchedOfPartitions = this.delegate.findReleaseValuesOfPartitions(
+				coveredUntil, this.prefetchCount, localPartitions.keySet());
+		} catch (RuntimeException ex) {
+			localPartitions.values().forEach(Partition::failPrefetch);
+			throw ex;
+		}
+
+		localPartitions.forEach((partition, localPartition) -> {
+			List<TimerMessageStoreValue> prefetched = prefetchedOfPartitions.getOrDefault(partition, List.of());
+			localPartition.completePrefetch(prefetched, this.toCoveredUntil(prefetched, coveredUntil), now);
+		});
+		this.afterPrefetch(localPartitions.keySet());
+	}
+
+	/**
+	 * @return null if prefetched messages can be truncated by prefetchCount.
+	 */
+	@Nullable
+	private Instant toCoveredUntil(List<TimerMessageStoreValue> prefetched, Instant coveredUntil) {
+		return prefetched.size() < this.prefetchCount ? coveredUntil : null;
+	}
+
+	private Partition getPartition(@Nullable Integer partition) {
+		if (partition == null) {
+			return this.defaultPartition;
+		}
+
+		return this.partitions.computeIfAbsent(partition, it -> new Partition());
+	}
+
+	/**
+	 * Local index of a partition.
+	 * Saves and removes during a prefetch are recorded, and applied again on the prefetched messages.
+	 */
+	private static final class Partition {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final TreeMap<IndexKey, TimerMessageStoreValue> values = new TreeMap<>();
+		private final Map<UUID, IndexKey> keys = new HashMap<>();
+		private final Map<UUID, TimerMessageStoreValue> savedWhilePrefetching = new HashMap<>();
+		private final Set<UUID> removedWhilePrefetching = new HashSet<>();
+
+		// every message released before this is in values. null if not covered.
+		@Nullable
+		private Instant coveredUntil;
+		@Nullable
+		private Instant prefetchedAt;
+		private boolean prefetching;
+
+		boolean isPrefetchDue(Instant now, Duration refreshInterval) {
+			this.lock.lock();
+			try {
+				return this.prefetchedAt == null || !now.isBefore(this.prefetchedAt.plus(refreshInterval));
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		boolean covers(Instant conditionDateTime) {
+			this.lock.lock();
+			try {
+				return this.coveredUntil != null && !conditionDateTime.isAfter(this.coveredUntil);
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		void add(TimerMessageStoreValue storeValue) {
+			this.lock.lock();
+			try {
+				if (this.prefetching) {
+					this.savedWhilePrefetching.put(storeValue.getId(), storeValue);
+					this.removedWhilePrefetching.remove(storeValue.getId());
+				}
+				this.put(storeValue);
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		void remove(UUID storeValueId) {
+			this.lock.lock();
+			try {
+				if (this.prefetching) {
+					this.removedWhilePrefetching.add(storeValueId);
+					this.savedWhilePrefetching.remove(storeValueId);
+				}
+				this.delete(storeValueId);
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		List<TimerMessageStoreValue> findReleaseValues(Instant conditionDateTime, int count) {
+			this.lock.lock();
+			try {
+				List<TimerMessageStoreValue> result = new ArrayList<>();
+				IndexKey lowerBound = IndexKey.lowerBound(conditionDateTime);
+				for (TimerMessageStoreValue value : this.values.headMap(lowerBound).values()) {
+					if (result.size() >= count) {
+						break;
+					}
+					result.add(value);
+				}
+				return result;
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		Optional<Instant> findNextReleaseDateTime() {
+			this.lock.lock();
+			try {
+				if (this.values.isEmpty()) {
+					return Optional.empty();
+				}
+				return Optional.of(this.values.firstKey().getReleaseDateTime());
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		void startPrefetch() {
+			this.lock.lock();
+			try {
+				this.prefetching = true;
+				this.savedWhilePrefetching.clear();
+				this.removedWhilePrefetching.clear();
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		void completePrefetch(
+			List<TimerMessageStoreValue> prefetched,
+			@Nullable Instant coveredUntil,
+			Instant prefetchedAt
+		) {
+			this.lock.lock();
+			try {
+				this.values.clear();
+				this.keys.clear();
+				this.coveredUntil = coveredUntil;
+				this.prefetchedAt = prefetchedAt;
+				for (TimerMessageStoreValue storeValue : prefetched) {
+					if (!this.removedWhilePrefetching.contains(storeValue.getId())) {
+						this.put(storeValue);
+					}
+				}
+				this.savedWhilePrefetching.values().forEach(this::put);
+				this.endPrefetch();
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		void invalidate() {
+			this.lock.lock();
+			try {
+				this.values.clear();
+				this.keys.clear();
+				this.coveredUntil = null;
+				this.prefetchedAt = null;
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		void failPrefetch() {
+			this.lock.lock();
+			try {
+				this.endPrefetch();
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		private void endPrefetch() {
+			this.prefetching = false;
+			this.savedWhilePrefetching.clear();
+			this.removedWhilePrefetching.clear();
+		}
+
+		/**
+		 * Put a message if it is released before coveredUntil. Otherwise it is found on the delegate.
+		 */
+		private void put(TimerMessageStoreValue storeValue) {
+			this.delete(storeValue.getId());
+			if (this.coveredUntil == null || !storeValue.getReleaseDateTime().isBefore(this.coveredUntil)) {
+				return;
+			}
+
+			IndexKey key = new IndexKey(storeValue.getReleaseDateTime(), storeValue.getId());
+			this.values.put(key, storeValue);
+			this.keys.put(storeValue.getId(), key);
+		}
+
+		private void delete(UUID storeValueId) {
+			IndexKey key = this.keys.remove(storeValueId);
+			if (key != null) {
+				this.values.remove(key);
+			}
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.store;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import com.navercorp.eventeria.timer.contract.store.LeasedTimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+
+/**
+ * A non-blocking counterpart of {@link LeasedTimerMessageStore}.
+ * <p/>
+ * Claimed messages are hidden from other claims until they are acknowledged or requeued.
+ * If a lease is expired before acknowledgement, the message is delivered again.
+ * Requires reactor-core on the classpath.
+ */
+public interface ReactiveTimerMessageStore {
+	default Mono<Void> save(TimerMessageStoreValue storeValue, @Nullable Integer partition) {
+		return this.saveAll(List.of(storeValue), partition);
+	}
+
+	/**
+	 * Save messages of a partition at once.
+	 *
+	 * @param storeValues
+	 * @param partition
+	 */
+	Mono<Void> saveAll(Collection<TimerMessageStoreValue> storeValues, @Nullable Integer partition);
+
+	default Mono<Void> remove(UUID storeValueId, @Nullable Integer partition) {
+		return this.removeAll(List.of(storeValueId), partition);
+	}
+
+	/**
+	 * Remove messages of a partition at once, whether they are claimed or not.
+	 *
+	 * @param storeValueIds
+	 * @param partition
+	 */
+	Mono<Void> removeAll(Collection<UUID> storeValueIds, @Nullable Integer partition);
+
+	Mono<Long> count(Instant conditionDateTime, @Nullable Integer partition);
+
+	/**
+	 * Claim messages by a scheduled time and partition.
+	 *
+	 * @param conditionDateTime
+	 * @param count max count of messages to claim.
+	 * @param partition
+	 * @return claimed messages. each message should be {@link #acknowledgeAll}d or {@link #requeue}d.
+	 */
+	Flux<TimerMessageStoreValue> claimReleaseValues(Instant conditionDateTime, int count, @Nullable Integer partition);
+
+	/**
+	 * Complete claimed messages of a partition. The messages are removed from store.
+	 *
+	 * @param storeValueIds
+	 * @param partition
+	 */
+	default Mono<Void> acknowledgeAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		return this.removeAll(storeValueIds, partition);
+	}
+
+	/**
+	 * Return a claimed message to store, to be released on next scheduling.
+	 *
+	 * @param storeValueId
+	 * @param partition
+	 */
+	Mono<Void> requeue(UUID storeValueId, @Nullable Integer partition);
+}
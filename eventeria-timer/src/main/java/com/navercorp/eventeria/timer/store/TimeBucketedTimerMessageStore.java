@@ -0,0 +1,320 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.store;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nullable;
+
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+
+/**
+ * An in-memory implementation of {@link TimerMessageStore} which indexes values by time buckets.
+ * <p/>
+ * Each value is put into the bucket of its release tick ({@code releaseDateTime / tickDuration}),
+ * and a lookup table by id points to that bucket.
+ * So {@link #save} and {@link #remove} run in constant time,
+ * and {@link #findReleaseValues} visits only the buckets between the oldest pending tick and the condition tick.
+ * <p/>
+ * Values in the same bucket are not ordered by releaseDateTime.
+ */
+public class TimeBucketedTimerMessageStore implements TimerMessageStore {
+	private static final Duration DEFAULT_TICK_DURATION = Duration.ofMillis(100);
+
+	private final long tickMillis;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Map<Integer, Buckets> store = new HashMap<>();
+
+	public TimeBucketedTimerMessageStore() {
+		this(DEFAULT_TICK_DURATION);
+	}
+
+	/**
+	 * @param tickDuration time range covered by a bucket.
+	 */
+	public TimeBucketedTimerMessageStore(Duration tickDuration) {
+		if (tickDuration.toMillis() <= 0) {
+			throw new IllegalArgumentException("tickDuration must be at least 1 millisecond. tickDuration: "
+				+ tickDuration);
+		}
+
+		this.tickMillis = tickDuration.toMillis();
+	}
+
+	@Override
+	public void save(TimerMessageStoreValue storeValue, @Nullable Integer partition) {
+		this.lock.lock();
+		try {
+			this.getBuckets(partition).add(storeValue, this.toTick(storeValue.getReleaseDateTime()));
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public void remove(UUID storeValueId, @Nullable Integer partition) {
+		this.lock.lock();
+		try {
+			this.getBuckets(partition).remove(storeValueId);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public void saveAll(Collection<TimerMessageStoreValue> storeValues, @Nullable Integer partition) {
+		this.lock.lock();
+		try {
+			Buckets buckets = this.getBuckets(partition);
+			for (TimerMessageStoreValue storeValue : storeValues) {
+				buckets.add(storeValue, this.toTick(storeValue.getReleaseDateTime()));
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public void removeAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		this.lock.lock();
+		try {
+			Buckets buckets = this.getBuckets(partition);
+			for (UUID storeValueId : storeValueIds) {
+				buckets.remove(storeValueId);
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public long count(Instant conditionDateTime, @Nullable Integer partition) {
+		this.lock.lock();
+		try {
+			long count = 0L;
+			Buckets buckets = this.getBuckets(partition);
+			for (Map<UUID, TimerMessageStoreValue> bucket : buckets.dueBuckets(this.toTick(conditionDateTime))) {
+				for (TimerMessageStoreValue value : bucket.values()) {
+					if (value.getReleaseDateTime().isBefore(conditionDateTime)) {
+						count++;
+					}
+				}
+			}
+			return count;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public List<TimerMessageStoreValue> findReleaseValues(
+		Instant conditionDateTime,
+		int count,
+		@Nullable Integer partition
+	) {
+		this.lock.lock();
+		try {
+			List<TimerMessageStoreValue> result = new ArrayList<>();
+			Buckets buckets = this.getBuckets(partition);
+			for (Map<UUID, TimerMessageStoreValue> bucket : buckets.dueBuckets(this.toTick(conditionDateTime))) {
+				for (TimerMessageStoreValue value : bucket.values()) {
+					if (result.size() >= count) {
+						return result;
+					}
+
+					if (value.getReleaseDateTime().isBefore(conditionDateTime)) {
+						result.add(value);
+					}
+				}
+			}
+			return result;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public Optional<Instant> findNextReleaseDateTime(@Nullable Integer partition) {
+		this.lock.lock();
+		try {
+			Map<UUID, TimerMessageStoreValue> firstBucket = this.getBuckets(partition).firstBucket();
+			if (firstBucket == null) {
+				return Optional.empty();
+			}
+
+			Instant result = null;
+			for (TimerMessageStoreValue value : firstBucket.values()) {
+				if (result == null || value.getReleaseDateTime().isBefore(result)) {
+					result = value.getReleaseDateTime();
+				}
+			}
+			return Optional.ofNullable(result);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	private Buckets getBuckets(@Nullable Integer partition) {
+		if (partition == null) {
+			partition = 0;
+		}
+
+		return this.store.computeIfAbsent(partition, it -> new Buckets());
+	}
+
+	private long toTick(Instant dateTime) {
+		long epochMilli;
+		try {
+			epochMilli = dateTime.toEpochMilli();
+		} catch (ArithmeticException ex) {
+			epochMilli = dateTime.isBefore(Instant.EPOCH) ? Long.MIN_VALUE : Long.MAX_VALUE;
+		}
+		return Math.floorDiv(epochMilli, this.tickMillis);
+	}
+
+	/**
+	 * Buckets of a partition keyed by tick.
+	 */
+	private static final class Buckets {
+		private final Map<Long, Map<UUID, TimerMessageStoreValue>> buckets = new HashMap<>();
+		private final Map<UUID, Long> ticks = new HashMap<>();
+
+		// every pending value has a tick equal or greater than this.
+		private long lowestTick = Long.MAX_VALUE;
+
+		void add(TimerMessageStoreValue storeValue, long tick) {
+			this.remove(storeValue.getId());
+
+			this.buckets.computeIfAbsent(tick, it -> new LinkedHashMap<>()).put(storeValue.getId(), storeValue);
+			this.ticks.put(storeValue.getId(), tick);
+			this.lowestTick = Math.min(this.lowestTick, tick);
+		}
+
+		void remove(UUID storeValueId) {
+			Long tick = this.ticks.remove(storeValueId);
+			if (tick == null) {
+				return;
+			}
+
+			Map<UUID, TimerMessageStoreValue> bucket = this.buckets.get(tick);
+			bucket.remove(storeValueId);
+			if (bucket.isEmpty()) {
+				this.buckets.remove(tick);
+			}
+
+			if (this.ticks.isEmpty()) {
+				this.lowestTick = Long.MAX_VALUE;
+			}
+		}
+
+		/**
+		 * @return the bucket of the lowest tick. null if there is no bucket.
+		 */
+		@Nullable
+		Map<UUID, TimerMessageStoreValue> firstBucket() {
+			if (this.buckets.isEmpty()) {
+				return null;
+			}
+
+			long firstTick = Long.MAX_VALUE;
+			if (this.buckets.containsKey(this.lowestTick)) {
+				firstTick = this.lowestTick;
+			} else {
+				for (Long tick : this.buckets.keySet()) {
+					firstTick = Math.min(firstTick, tick);
+				}
+				this.lowestTick = firstTick;
+			}
+			return this.buckets.get(firstTick);
+		}
+
+		/**
+		 * @return non-empty buckets of which tick is equal or less than conditionTick, ordered by tick.
+		 */
+		List<Map<UUID, TimerMessageStoreValue>> dueBuckets(long conditionTick) {
+			List<Map<UUID, TimerMessageStoreValue>> result = new ArrayList<>();
+			if (this.buckets.isEmpty() || conditionTick < this.lowestTick) {
+				return result;
+			}
+
+			// walk ticks one by one while the range is narrower than the number of buckets,
+			// otherwise pick due buckets from all buckets.
+			if (isNarrowerThan(this.lowestTick, conditionTick, this.buckets.size())) {
+				Long firstTick = null;
+				for (long tick = this.lowestTick; ; tick++) {
+					Map<UUID, TimerMessageStoreValue> bucket = this.buckets.get(tick);
+					if (bucket != null) {
+						result.add(bucket);
+						if (firstTick == null) {
+							firstTick = tick;
+						}
+					}
+
+					// stop at conditionTick not to overflow on Long.MAX_VALUE.
+					if (tick == conditionTick) {
+						break;
+					}
+				}
+				if (firstTick != null) {
+					this.lowestTick = firstTick;
+				} else {
+					this.lowestTick = conditionTick == Long.MAX_VALUE ? Long.MAX_VALUE : conditionTick + 1;
+				}
+				return result;
+			}
+
+			List<Long> dueTicks = new ArrayList<>();
+			for (Long tick : this.buckets.keySet()) {
+				if (tick <= conditionTick) {
+					dueTicks.add(tick);
+				}
+			}
+			dueTicks.sort(null);
+			for (Long tick : dueTicks) {
+				result.add(this.buckets.get(tick));
+			}
+			if (!dueTicks.isEmpty()) {
+				this.lowestTick = dueTicks.get(0);
+			}
+			return result;
+		}
+
+		/**
+		 * @return true if the count of ticks from fromTick to toTick is less than count, without overflow.
+		 */
+		private static boolean isNarrowerThan(long fromTick, long toTick, int count) {
+			try {
+				return Math.subtractExact(toTick, fromTick) < count;
+			} catch (ArithmeticException ex) {
+				return false;
+			}
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.store;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.navercorp.eventeria.messaging.contract.Message;
+import com.navercorp.eventeria.messaging.contract.serializer.MessageSerializerDeserializer;
+
+/**
+ * (De)serializer of timer messages persisted to files by {@link MappedFileTimerMessageStore}.
+ */
+public interface TimerMessageSerializer {
+	byte[] serialize(Object message);
+
+	Object deserialize(byte[] serialized);
+
+	/**
+	 * A serializer of {@link Message}s which writes the message type before the serialized message,
+	 * to deserialize by the type.
+	 *
+	 * @param messageSerializerDeserializer
+	 * @return
+	 */
+	static TimerMessageSerializer typed(MessageSerializerDeserializer messageSerializerDeserializer) {
+		return new TimerMessageSerializer() {
+			@Override
+			public byte[] serialize(Object message) {
+				if (!(message instanceof Message msg)) {
+					throw new IllegalArgumentException("message should be a Message. message: " + message);
+				}
+
+				byte[] type = msg.getClass().getName().getBytes(StandardCharsets.UTF_8);
+				byte[] value = messageSerializerDeserializer.serialize(msg);
+				return ByteBuffer.allocate(Integer.BYTES + type.length + value.length)
+					.putInt(type.length)
+					.put(type)
+					.put(value)
+					.array();
+			}
+
+			@Override
+			public Object deserialize(byte[] serialized) {
+				ByteBuffer buffer = ByteBuffer.wrap(serialized);
+				byte[] type = new byte[buffer.getInt()];
+				buffer.get(type);
+				byte[] value = new byte[buffer.remaining()];
+				buffer.get(value);
+
+				String typeName = new String(type, StandardCharsets.UTF_8);
+				ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+				if (classLoader == null) {
+					classLoader = TimerMessageSerializer.class.getClassLoader();
+				}
+
+				try {
+					Class<?> messageType = Class.forName(typeName, true, classLoader);
+					return messageSerializerDeserializer.deserialize(value, messageType.asSubclass(Message.class));
+				} catch (ClassNotFoundException ex) {
+					throw new IllegalStateException("message type is not found. type: " + typeName, ex);
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.eventeria.timer.store;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import com.navercorp.eventeria.timer.contract.store.LeasedTimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+
+/**
+ * A {@link WriteBehindTimerMessageStore} of a {@link LeasedTimerMessageStore}.
+ * Claims are forwarded to the delegate, so buffered messages are claimed after they are flushed.
+ * Acknowledges drop a buffered value of the same id as removes do.
+ */
+public class WriteBehindLeasedTimerMessageStore extends WriteBehindTimerMessageStore
+	implements LeasedTimerMessageStore {
+	private final LeasedTimerMessageStore delegate;
+
+	public WriteBehindLeasedTimerMessageStore(LeasedTimerMessageStore delegate) {
+		super(delegate);
+		this.delegate = delegate;
+	}
+
+	/**
+	 * @param delegate
+	 * @param bufferCapacity max count of buffered messages.
+	 * @param maxBatchSize max count of messages saved at once. a flush is started when it is buffered.
+	 * @param flushInterval max time of a message to be buffered.
+	 * @param offerTimeout max time to wait for a room of the full buffer, before saving to the delegate directly.
+	 * @param maxSaveAttempts max count of flushes trying to save a message alone, before it is dead-lettered.
+	 * @param deadLetterHandler behavior per message dropped after maxSaveAttempts.
+	 */
+	public WriteBehindLeasedTimerMessageStore(
+		LeasedTimerMessageStore delegate,
+		int bufferCapacity,
+		int maxBatchSize,
+		Duration flushInterval,
+		Duration offerTimeout,
+		int maxSaveAttempts,
+		DeadLetterHandler deadLetterHandler
+	) {
+		super(
+			delegate,
+			bufferCapacity,
+			maxBatchSize,
+			flushInterval,
+			offerTimeout,
+			maxSaveAttempts,
+			deadLetterHandler
+		);
+		this.delegate = delegate;
+	}
+
+	@Override
+	public List<TimerMessageStoreValue> claimReleaseValues(
+		Instant conditionDateTime,
+		int count,
+		@Nullable Integer partition
+	) {
+		return this.delegate.claimReleaseValues(conditionDateTime, count, partition);
+	}
+
+	@Override
+	public Map<Integer, List<TimerMessageStoreValue>> claimReleaseValuesOfPartitions(
+		Instant conditionDateTime,
+		int count,
+		Collection<Integer> partitions
+	) {
+		return this.delegate.claimReleaseValuesOfPartitions(conditionDateTime, count, partitions);
+	}
+
+	@Override
+	public void acknowledge(UUID storeValueId, @Nullable Integer partition) {
+		this.lockFlush();
+		try {
+			this.discardPending(storeValueId, partition);
+			this.delegate.acknowledge(storeValueId, partition);
+		} finally {
+			this.unlockFlush();
+		}
+	}
+
+	@Override
+	public void acknowledgeAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		this.lockFlush();
+		try {
+			for (UUID storeValueId : storeValueIds) {
+				this.discardPending(storeValueId, partition);
+			}
+			this.delegate.acknowledgeAll(storeValueIds, partition);
+		} finally {
+			this.unlockFlush();
+		}
+	}
+
+	@Override
+	public void requeue(UUID storeValueId, @Nullable Integer partition) {
+		this.delegate.requeue(storeValueId, partition);
+	}
+
+	@Override
+	public void requeueAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		this.delegate.requeueAll(storeValueIds, partition);
+	}
+}
@@ -0,0 +1,550 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.eventeria.timer.store;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.navercorp.eventeria.timer.contract.store.LeasedTimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+
+/**
+ * A {@link TimerMessageStore} which buffers saves and writes them to the delegate in batches behind the caller.
+ * <p/>
+ * {@link #save} returns as soon as the message is put into a bounded buffer,
+ * and a flusher thread saves buffered messages by {@link TimerMessageStore#saveAll} per partition,
+ * every flushInterval or as soon as maxBatchSize messages are buffered.
+ * So the latency of a remote store is not added to each register on the publishing thread.
+ * <p/>
+ * When the buffer is full, save waits for a room up to offerTimeout,
+ * and then saves the message to the delegate by itself. So callers are slowed down to the store, not failed.
+ * Buffered messages are not visible to reads until flushed, so they can be released late up to flushInterval.
+ * Removes are applied to the buffer and the delegate, after a running flush is finished.
+ * <p/>
+ * If a batch is failed, its messages are saved one by one, and messages failed alone are retried on next flushes.
+ * A message failed maxSaveAttempts times is dropped from the buffer and passed to the deadLetterHandler,
+ * so a message rejected by the delegate does not block other messages.
+ * <p/>
+ * Buffered messages are lost if the process crashes.
+ * {@link #close()} stops the flusher and returns after all buffered messages are saved or dead-lettered.
+ * Saves after close are written to the delegate directly.
+ * <p/>
+ * Use {@link #of} to keep {@link LeasedTimerMessageStore} capability of the delegate.
+ */
+public class WriteBehindTimerMessageStore implements TimerMessageStore, AutoCloseable {
+	private static final Logger LOG = LoggerFactory.getLogger(WriteBehindTimerMessageStore.class);
+
+	private static final int DEFAULT_BUFFER_CAPACITY = 10_000;
+	private static final int DEFAULT_MAX_BATCH_SIZE = 500;
+	private static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(50);
+	private static final Duration DEFAULT_OFFER_TIMEOUT = Duration.ofSeconds(1);
+	private static final int DEFAULT_MAX_SAVE_ATTEMPTS = 3;
+	private static final DeadLetterHandler LOGGING_DEAD_LETTER_HANDLER = (storeValue, partition, exception) ->
+		LOG.error("write-behind timer message is dropped after save attempts. id: {}, partition: {}, message: {}",
+			storeValue.getId(), partition, storeValue.getMessage(), exception);
+
+	private final TimerMessageStore delegate;
+	private final int maxBatchSize;
+	private final Duration flushInterval;
+	private final Duration offerTimeout;
+	private final int maxSaveAttempts;
+	private final DeadLetterHandler deadLetterHandler;
+
+	private final BlockingQueue<PendingKey> buffer;
+	// latest value of buffered keys. a key is buffered again when it is saved again.
+	private final ConcurrentMap<PendingKey, TimerMessageStoreValue> pendingValues = new ConcurrentHashMap<>();
+	// keys failed to be saved alone, retried on next flush.
+	private final Queue<PendingKey> retryKeys = new ConcurrentLinkedQueue<>();
+	private final Map<PendingKey, Integer> failedAttempts = new ConcurrentHashMap<>();
+
+	// held while writing to the delegate, not to save removed messages again.
+	private final ReentrantLock flushLock = new ReentrantLock();
+	private final ReentrantLock signalLock = new ReentrantLock();
+	private final Condition flushCondition = this.signalLock.newCondition();
+	private final Thread flusher;
+	private volatile boolean closed;
+
+	public WriteBehindTimerMessageStore(TimerMessageStore delegate) {
+		this(delegate, DEFAULT_BUFFER_CAPACITY, DEFAULT_MAX_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL, DEFAULT_OFFER_TIMEOUT);
+	}
+
+	/**
+	 * @param delegate
+	 * @param bufferCapacity max count of buffered messages.
+	 * @param maxBatchSize max count of messages saved at once. a flush is started when it is buffered.
+	 * @param flushInterval max time of a message to be buffered.
+	 * @param offerTimeout max time to wait for a room of the full buffer, before saving to the delegate directly.
+	 */
+	public WriteBehindTimerMessageStore(
+		TimerMessageStore delegate,
+		int bufferCapacity,
+		int maxBatchSize,
+		Duration flushInterval,
+		Duration offerTimeout
+	) {
+		this(
+			delegate,
+			bufferCapacity,
+			maxBatchSize,
+			flushInterval,
+			offerTimeout,
+			DEFAULT_MAX_SAVE_ATTEMPTS,
+			LOGGING_DEAD_LETTER_HANDLER
+		);
+	}
+
+	/**
+	 * @param delegate
+	 * @param bufferCapacity max count of buffered messages.
+	 * @param maxBatchSize max count of messages saved at once. a flush is started when it is buffered.
+	 * @param flushInterval max time of a message to be buffered.
+	 * @param offerTimeout max time to wait for a room of the full buffer, before saving to the delegate directly.
+	 * @param maxSaveAttempts max count of flushes trying to save a message alone, before it is dead-lettered.
+	 * @param deadLetterHandler behavior per message dropped after maxSaveAttempts.
+	 *                          (ex. logging, saving to another store)
+	 */
+	public WriteBehindTimerMessageStore(
+		TimerMessageStore delegate,
+		int bufferCapacity,
+		int maxBatchSize,
+		Duration flushInterval,
+		Duration offerTimeout,
+		int maxSaveAttempts,
+		DeadLetterHandler deadLetterHandler
+	) {
+		if (bufferCapacity <= 0 || maxBatchSize <= 0 || maxSaveAttempts <= 0) {
+			throw new IllegalArgumentException("bufferCapacity, maxBatchSize and maxSaveAttempts must be positive. "
+				+ "bufferCapacity: " + bufferCapacity + ", maxBatchSize: " + maxBatchSize
+				+ ", maxSaveAttempts: " + maxSaveAttempts);
+		}
+		if (flushInterval.isNegative() || flushInterval.isZero()) {
+			throw new IllegalArgumentException("flushInterval must be positive. flushInterval: " + flushInterval);
+		}
+
+		this.delegate = delegate;
+		this.maxBatchSize = maxBatchSize;
+		this.flushInterval = flushInterval;
+		this.offerTimeout = offerTimeout;
+		this.maxSaveAttempts = maxSaveAttempts;
+		this.deadLetterHandler = deadLetterHandler;
+		this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+
+		this.flusher = new Thread(this::runFlusher, "timer-message-write-behind");
+		this.flusher.setDaemon(true);
+		this.flusher.start();
+	}
+
+	/**
+	 * @return {@link WriteBehindLeasedTimerMessageStore} if delegate is a {@link LeasedTimerMessageStore},
+	 * otherwise {@link WriteBehindTimerMessageStore}.
+	 */
+	public static WriteBehindTimerMessageStore of(TimerMessageStore delegate) {
+		return of(
+			delegate,
+			DEFAULT_BUFFER_CAPACITY,
+			DEFAULT_MAX_BATCH_SIZE,
+			DEFAULT_FLUSH_INTERVAL,
+			DEFAULT_OFFER_TIMEOUT,
+			DEFAULT_MAX_SAVE_ATTEMPTS,
+			LOGGING_DEAD_LETTER_HANDLER
+		);
+	}
+
+	/**
+	 * @return {@link WriteBehindLeasedTimerMessageStore} if delegate is a {@link LeasedTimerMessageStore},
+	 * otherwise {@link WriteBehindTimerMessageStore}.
+	 */
+	public static WriteBehindTimerMessageStore of(
+		TimerMessageStore delegate,
+		int bufferCapacity,
+		int maxBatchSize,
+		Duration flushInterval,
+		Duration offerTimeout,
+		int maxSaveAttempts,
+		DeadLetterHandler deadLetterHandler
+	) {
+		if (delegate instanceof LeasedTimerMessageStore leasedTimerMessageStore) {
+			return new WriteBehindLeasedTimerMessageStore(
+				leasedTimerMessageStore,
+				bufferCapacity,
+				maxBatchSize,
+				flushInterval,
+				offerTimeout,
+				maxSaveAttempts,
+				deadLetterHandler
+			);
+		}
+
+		return new WriteBehindTimerMessageStore(
+			delegate,
+			bufferCapacity,
+			maxBatchSize,
+			flushInterval,
+			offerTimeout,
+			maxSaveAttempts,
+			deadLetterHandler
+		);
+	}
+
+	/**
+	 * Put a message into the buffer. Wait for a room up to offerTimeout if the buffer is full,
+	 * and then save it to the delegate directly.
+	 *
+	 * @param storeValue
+	 * @param partition
+	 */
+	@Override
+	public void save(TimerMessageStoreValue storeValue, @Nullable Integer partition) {
+		if (this.closed) {
+			this.delegate.save(storeValue, partition);
+			return;
+		}
+
+		PendingKey key = new PendingKey(storeValue.getId(), partition);
+		this.pendingValues.put(key, storeValue);
+
+		boolean buffered;
+		try {
+			buffered = this.buffer.offer(key, this.offerTimeout.toNanos(), TimeUnit.NANOSECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			buffered = false;
+		}
+
+		if (!buffered) {
+			// backpressure. the caller waits for the delegate.
+			this.flushLock.lock();
+			try {
+				this.pendingValues.remove(key, storeValue);
+				this.delegate.save(storeValue, partition);
+			} finally {
+				this.flushLock.unlock();
+			}
+			return;
+		}
+
+		if (this.closed) {
+			// buffered while closing, maybe after the last flush of close.
+			this.flush();
+		} else if (this.buffer.size() >= this.maxBatchSize) {
+			this.signalFlusher();
+		}
+	}
+
+	@Override
+	public void saveAll(Collection<TimerMessageStoreValue> storeValues, @Nullable Integer partition) {
+		for (TimerMessageStoreValue storeValue : storeValues) {
+			this.save(storeValue, partition);
+		}
+	}
+
+	@Override
+	public void remove(UUID storeValueId, @Nullable Integer partition) {
+		this.flushLock.lock();
+		try {
+			this.discardPending(storeValueId, partition);
+			this.delegate.remove(storeValueId, partition);
+		} finally {
+			this.flushLock.unlock();
+		}
+	}
+
+	@Override
+	public void removeAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+		this.flushLock.lock();
+		try {
+			for (UUID storeValueId : storeValueIds) {
+				this.discardPending(storeValueId, partition);
+			}
+			this.delegate.removeAll(storeValueIds, partition);
+		} finally {
+			this.flushLock.unlock();
+		}
+	}
+
+	@Override
+	public long count(Instant conditionDateTime, @Nullable Integer partition) {
+		return this.delegate.count(conditionDateTime, partition);
+	}
+
+	@Override
+	public List<TimerMessageStoreValue> findReleaseValues(
+		Instant conditionDateTime,
+		int count,
+		@Nullable Integer partition
+	) {
+		return this.delegate.findReleaseValues(conditionDateTime, count, partition);
+	}
+
+	@Override
+	public List<List<Integer>> groupPartitions(List<Integer> partitions) {
+		return this.delegate.groupPartitions(partitions);
+	}
+
+	@Override
+	public Map<Integer, List<TimerMessageStoreValue>> findReleaseValuesOfPartitions(
+		Instant conditionDateTime,
+		int count,
+		Collection<Integer> partitions
+	) {
+		return this.delegate.findReleaseValuesOfPartitions(conditionDateTime, count, partitions);
+	}
+
+	@Override
+	public Optional<Instant> findNextReleaseDateTime(@Nullable Integer partition) {
+		return this.delegate.findNextReleaseDateTime(partition);
+	}
+
+	@Override
+	public Optional<Instant> findNextReleaseDateTimeOfPartitions(Collection<Integer> partitions) {
+		return this.delegate.findNextReleaseDateTimeOfPartitions(partitions);
+	}
+
+	/**
+	 * @return count of messages buffered and not saved to the delegate yet.
+	 */
+	public int getBufferedCount() {
+		return this.pendingValues.size();
+	}
+
+	/**
+	 * Save all buffered messages to the delegate now.
+	 * Messages failed to be saved are kept for next flushes or dead-lettered, and not thrown.
+	 */
+	public void flush() {
+		this.flushLock.lock();
+		try {
+			// retry failed keys once per flush, not to spin on a message the delegate keeps rejecting.
+			List<PendingKey> retries = new ArrayList<>();
+			PendingKey retryKey;
+			while ((retryKey = this.retryKeys.poll()) != null) {
+				retries.add(retryKey);
+			}
+			for (int from = 0; from < retries.size(); from += this.maxBatchSize) {
+				this.flushBatch(retries.subList(from, Math.min(from + this.maxBatchSize, retries.size())));
+			}
+
+			List<PendingKey> drained = new ArrayList<>();
+			while (this.buffer.drainTo(drained, this.maxBatchSize) > 0) {
+				this.flushBatch(drained);
+				drained.clear();
+			}
+		} finally {
+			this.flushLock.unlock();
+		}
+	}
+
+	/**
+	 * Stop buffering and the flusher, and save all buffered messages to the delegate before return.
+	 * Messages which can not be saved within maxSaveAttempts are passed to the deadLetterHandler.
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		this.flusher.interrupt();
+		try {
+			this.flusher.join();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+
+		// each flush counts an attempt of failed messages, so it ends within maxSaveAttempts.
+		do {
+			this.flush();
+		} while (!this.retryKeys.isEmpty());
+	}
+
+	/**
+	 * Drop a buffered message not to be saved. should be called with flushLock.
+	 */
+	void discardPending(UUID storeValueId, @Nullable Integer partition) {
+		PendingKey key = new PendingKey(storeValueId, partition);
+		this.pendingValues.remove(key);
+		this.failedAttempts.remove(key);
+	}
+
+	void lockFlush() {
+		this.flushLock.lock();
+	}
+
+	void unlockFlush() {
+		this.flushLock.unlock();
+	}
+
+	private void runFlusher() {
+		while (!this.closed) {
+			try {
+				this.awaitFlush();
+			} catch (InterruptedException ex) {
+				return;
+			}
+
+			try {
+				this.flush();
+			} catch (Exception ex) {
+				LOG.error("write-behind timer messages are failed to be saved. It would be retried on next flush.", ex);
+			}
+		}
+	}
+
+	private void awaitFlush() throws InterruptedException {
+		long waitNanos = this.flushInterval.toNanos();
+		this.signalLock.lockInterruptibly();
+		try {
+			while (waitNanos > 0L && this.buffer.size() < this.maxBatchSize) {
+				waitNanos = this.flushCondition.awaitNanos(waitNanos);
+			}
+		} finally {
+			this.signalLock.unlock();
+		}
+	}
+
+	private void signalFlusher() {
+		this.signalLock.lock();
+		try {
+			this.flushCondition.signalAll();
+		} finally {
+			this.signalLock.unlock();
+		}
+	}
+
+	/**
+	 * Save buffered messages of keys per partition. should be called with flushLock.
+	 */
+	private void flushBatch(Collection<PendingKey> keys) {
+		Map<Integer, Map<PendingKey, TimerMessageStoreValue>> batches = new LinkedHashMap<>();
+		Map<PendingKey, TimerMessageStoreValue> batchWithoutPartition = new LinkedHashMap<>();
+		for (PendingKey key : new LinkedHashSet<>(keys)) {
+			// removed or saved already.
+			TimerMessageStoreValue storeValue = this.pendingValues.get(key);
+			if (storeValue == null) {
+				continue;
+			}
+
+			if (key.partition == null) {
+				batchWithoutPartition.put(key, storeValue);
+			} else {
+				batches.computeIfAbsent(key.partition, it -> new LinkedHashMap<>()).put(key, storeValue);
+			}
+		}
+
+		if (!batchWithoutPartition.isEmpty()) {
+			this.flushPartition(batchWithoutPartition, null);
+		}
+		batches.forEach((partition, batch) -> this.flushPartition(batch, partition));
+	}
+
+	private void flushPartition(Map<PendingKey, TimerMessageStoreValue> batch, @Nullable Integer partition) {
+		try {
+			this.delegate.saveAll(batch.values(), partition);
+			batch.forEach(this::completePending);
+		} catch (RuntimeException ex) {
+			LOG.warn("write-behind timer messages are failed to be saved in a batch. They would be saved one by one. "
+				+ "partition: {}, size: {}", partition, batch.size(), ex);
+			batch.forEach((key, storeValue) -> this.flushAlone(key, storeValue, partition));
+		}
+	}
+
+	private void flushAlone(PendingKey key, TimerMessageStoreValue storeValue, @Nullable Integer partition) {
+		try {
+			this.delegate.save(storeValue, partition);
+			this.completePending(key, storeValue);
+		} catch (RuntimeException ex) {
+			int attempts = this.failedAttempts.merge(key, 1, Integer::sum);
+			if (attempts < this.maxSaveAttempts) {
+				this.retryKeys.add(key);
+				return;
+			}
+
+			this.completePending(key, storeValue);
+			try {
+				this.deadLetterHandler.handle(storeValue, partition, ex);
+			} catch (RuntimeException handlerException) {
+				LOG.error("dead letter handler is failed. id: {}", storeValue.getId(), handlerException);
+			}
+		}
+	}
+
+	private void completePending(PendingKey key, TimerMessageStoreValue storeValue) {
+		// a value saved again while flushing is buffered again, and kept for the next flush.
+		if (this.pendingValues.remove(key, storeValue)) {
+			this.failedAttempts.remove(key);
+		}
+	}
+
+	/**
+	 * Behavior per buffered message which can not be saved to the delegate.
+	 */
+	@FunctionalInterface
+	public interface DeadLetterHandler {
+		void handle(TimerMessageStoreValue storeValue, @Nullable Integer partition, RuntimeException exception);
+	}
+
+	private static final class PendingKey {
+		private final UUID storeValueId;
+		@Nullable
+		private final Integer partition;
+
+		PendingKey(UUID storeValueId, @Nullable Integer partition) {
+			this.storeValueId = storeValueId;
+			this.partition = partition;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof PendingKey that)) {
+				return false;
+			}
+			return this.storeValueId.equals(that.storeValueId) && Objects.equals(this.partition, that.partition);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.storeValueId, this.partition);
+		}
+	}
+}
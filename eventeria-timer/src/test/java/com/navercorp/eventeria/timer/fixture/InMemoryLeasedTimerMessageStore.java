@@ -0,0 +1,153 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.eventeria.timer.fixture;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
+
+import com.navercorp.eventeria.timer.contract.store.LeasedTimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+import com.navercorp.eventeria.timer.store.ConcurrentInMemoryTimerMessageStore;
+
+/**
+ * An in-memory {@link LeasedTimerMessageStore} of which claims never expire, unless a lease duration is given.
+ */
+public class InMemoryLeasedTimerMessageStore implements LeasedTimerMessageStore {
+	private final ConcurrentInMemoryTimerMessageStore store = new ConcurrentInMemoryTimerMessageStore();
+	private final Map<UUID, TimerMessageStoreValue> claimed = new ConcurrentHashMap<>();
+	private final Map<UUID, Integer> claimedPartitions = new ConcurrentHashMap<>();
+	private final Map<UUID, Instant> leaseDeadlines = new ConcurrentHashMap<>();
+	@Nullable
+	private final Duration leaseDuration;
+
+	public InMemoryLeasedTimerMessageStore() {
+		this(null);
+	}
+
+	/**
+	 * @param leaseDuration claims not acknowledged in this duration are claimed again. never expire if null.
+	 */
+	public InMemoryLeasedTimerMessageStore(@Nullable Duration leaseDuration) {
+		this.leaseDuration = leaseDuration;
+	}
+
+	@Override
+	public void save(TimerMessageStoreValue storeValue, @Nullable Integer partition) {
+		this.store.save(storeValue, partition);
+	}
+
+	@Override
+	public void remove(UUID storeValueId, @Nullable Integer partition) {
+		this.store.remove(storeValueId, partition);
+		this.forgetClaim(storeValueId);
+	}
+
+	@Override
+	public long count(Instant conditionDateTime, @Nullable Integer partition) {
+		return this.store.count(conditionDateTime, partition);
+	}
+
+	@Override
+	public List<TimerMessageStoreValue> findReleaseValues(
+		Instant conditionDateTime,
+		int count,
+		@Nullable Integer partition
+	) {
+		return this.store.findReleaseValues(conditionDateTime, count, partition);
+	}
+
+	@Override
+	public Optional<Instant> findNextReleaseDateTime(@Nullable Integer partition) {
+		// claimed messages are still stored until acknowledged, and released again at their lease deadlines.
+		Optional<Instant> claimedReleaseDateTime = this.claimed.values().stream()
+			.filter(it -> Objects.equals(this.claimedPartitions.get(it.getId()), partition))
+			.map(it -> this.leaseDuration == null ? it.getReleaseDateTime() : this.leaseDeadlines.get(it.getId()))
+			.filter(Objects::nonNull)
+			.min(Comparator.naturalOrder());
+		return Stream.of(this.store.findNextReleaseDateTime(partition), claimedReleaseDateTime)
+			.flatMap(Optional::stream)
+			.min(Comparator.naturalOrder());
+	}
+
+	@Override
+	public List<TimerMessageStoreValue> claimReleaseValues(
+		Instant conditionDateTime,
+		int count,
+		@Nullable Integer partition
+	) {
+		Instant now = Instant.now();
+		for (Map.Entry<UUID, Instant> leaseDeadline : this.leaseDeadlines.entrySet()) {
+			UUID storeValueId = leaseDeadline.getKey();
+			if (!leaseDeadline.getValue().isAfter(now)
+				&& Objects.equals(this.claimedPartitions.get(storeValueId), partition)) {
+				this.requeue(storeValueId, partition);
+			}
+		}
+
+		List<TimerMessageStoreValue> claimedValues = new ArrayList<>();
+		for (TimerMessageStoreValue storeValue : this.store.findReleaseValues(conditionDateTime, count, partition)) {
+			this.store.remove(storeValue.getId(), partition);
+			this.claimed.put(storeValue.getId(), storeValue);
+			if (partition != null) {
+				this.claimedPartitions.put(storeValue.getId(), partition);
+			}
+			if (this.leaseDuration != null) {
+				this.leaseDeadlines.put(storeValue.getId(), now.plus(this.leaseDuration));
+			}
+			claimedValues.add(storeValue);
+		}
+		return claimedValues;
+	}
+
+	@Override
+	public void acknowledge(UUID storeValueId, @Nullable Integer partition) {
+		this.forgetClaim(storeValueId);
+	}
+
+	@Override
+	public void requeue(UUID storeValueId, @Nullable Integer partition) {
+		TimerMessageStoreValue storeValue = this.forgetClaim(storeValueId);
+		if (storeValue != null) {
+			this.store.save(storeValue, partition);
+		}
+	}
+
+	public int getClaimedCount() {
+		return this.claimed.size();
+	}
+
+	@Nullable
+	private TimerMessageStoreValue forgetClaim(UUID storeValueId) {
+		this.claimedPartitions.remove(storeValueId);
+		this.leaseDeadlines.remove(storeValueId);
+		return this.claimed.remove(storeValueId);
+	}
+}
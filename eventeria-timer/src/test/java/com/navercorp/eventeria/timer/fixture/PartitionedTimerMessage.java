@@ -0,0 +1,71 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.eventeria.timer.fixture;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import javax.annotation.Nullable;
+
+import com.navercorp.eventeria.messaging.contract.distribution.PartitionGenerator;
+import com.navercorp.eventeria.timer.contract.TimerMessage;
+
+/**
+ * A {@link TimerMessage} which is registered to a given partition by {@link #PARTITION_GENERATOR}.
+ */
+public class PartitionedTimerMessage implements TimerMessage {
+	public static final PartitionGenerator PARTITION_GENERATOR = PartitionedTimerMessage::partition;
+
+	private final String name;
+	private final Instant releaseDateTime;
+	private final int partition;
+
+	public PartitionedTimerMessage(String name, Instant releaseDateTime, int partition) {
+		this.name = name;
+		this.releaseDateTime = releaseDateTime;
+		this.partition = partition;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public int getPartition() {
+		return this.partition;
+	}
+
+	@Override
+	public Optional<Instant> timerTime() {
+		return Optional.of(this.releaseDateTime);
+	}
+
+	@Override
+	public String toString() {
+		return "PartitionedTimerMessage{name='" + this.name + "', partition=" + this.partition + '}';
+	}
+
+	private static int partition(Object payload, int numOfPartition, @Nullable Supplier<Integer> fallbackPartition) {
+		if (payload instanceof PartitionedTimerMessage message) {
+			return message.partition % numOfPartition;
+		}
+		return fallbackPartition == null ? 0 : fallbackPartition.get();
+	}
+}
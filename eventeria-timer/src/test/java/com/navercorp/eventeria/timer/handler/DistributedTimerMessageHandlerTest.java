@@ -0,0 +1,252 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.Nullable;
+
+import net.jqwik.api.Example;
+
+import com.navercorp.eventeria.timer.contract.handler.ReleaseBudget;
+import com.navercorp.eventeria.timer.contract.handler.ReleaseResult;
+import com.navercorp.eventeria.timer.contract.handler.TokenBucketRateLimiter;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+import com.navercorp.eventeria.timer.fixture.InMemoryLeasedTimerMessageStore;
+import com.navercorp.eventeria.timer.fixture.PartitionedTimerMessage;
+import com.navercorp.eventeria.timer.store.ConcurrentInMemoryTimerMessageStore;
+
+class DistributedTimerMessageHandlerTest {
+	private static final int PARTITION_COUNT = 4;
+
+	private final GroupingTimerMessageStore store = new GroupingTimerMessageStore();
+	private final DistributedTimerMessageHandler sut = new DistributedTimerMessageHandler(
+		this.store,
+		10,
+		PartitionedTimerMessage.PARTITION_GENERATOR,
+		PARTITION_COUNT,
+		PARTITION_COUNT,
+		null
+	);
+
+	@Example
+	void getNextReleaseDateTimeFindsEarliestPerGroupOfPartitions() {
+		// given
+		Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+		this.sut.register(new PartitionedTimerMessage("later", now.plusSeconds(30), 0));
+		this.sut.register(new PartitionedTimerMessage("earliest", now.plusSeconds(10), 3));
+		this.sut.register(new PartitionedTimerMessage("latest", now.plusSeconds(60), 3));
+
+		// when
+		Optional<Instant> result = this.sut.getNextReleaseDateTime();
+
+		// then
+		assertThat(result).contains(now.plusSeconds(10));
+		assertThat(this.store.queriedGroups).containsExactly(List.of(0, 1), List.of(2, 3));
+	}
+
+	@Example
+	void getNextReleaseDateTimeIsEmptyWithoutMessages() {
+		// when
+		Optional<Instant> result = this.sut.getNextReleaseDateTime();
+
+		// then
+		assertThat(result).isEmpty();
+		assertThat(this.store.queriedGroups).hasSize(2);
+	}
+
+	@Example
+	void releaseOtherGroupsWhenGroupFails() {
+		// given
+		Instant now = Instant.now();
+		this.sut.register(new PartitionedTimerMessage("failing", now.minusSeconds(1), 0));
+		this.sut.register(new PartitionedTimerMessage("released", now.minusSeconds(1), 3));
+		this.store.failingPartition = 0;
+		List<Object> released = new ArrayList<>();
+
+		// when
+		this.sut.releaseMessages(released::add);
+
+		// then
+		assertThat(released).extracting(it -> ((PartitionedTimerMessage)it).getName()).containsExactly("released");
+		assertThat(this.store.count(Instant.now(), 0)).isEqualTo(1L);
+	}
+
+	@Example
+	void releaseOtherGroupsWhenGroupFailsOnExecutor() {
+		// given
+		ExecutorService executor = Executors.newFixedThreadPool(1);
+		DistributedTimerMessageHandler sut = new DistributedTimerMessageHandler(
+			this.store,
+			10,
+			PartitionedTimerMessage.PARTITION_GENERATOR,
+			PARTITION_COUNT,
+			PARTITION_COUNT,
+			executor
+		);
+		Instant now = Instant.now();
+		sut.register(new PartitionedTimerMessage("failing", now.minusSeconds(1), 0));
+		sut.register(new PartitionedTimerMessage("released", now.minusSeconds(1), 3));
+		this.store.failingPartition = 0;
+		List<Object> released = new CopyOnWriteArrayList<>();
+
+		try {
+			// when
+			sut.releaseMessages(released::add);
+
+			// then
+			assertThat(released).extracting(it -> ((PartitionedTimerMessage)it).getName())
+				.containsExactly("released");
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Example
+	void releaseResumesFromGroupStoppedByBudget() {
+		// given
+		ConcurrentInMemoryTimerMessageStore store = new ConcurrentInMemoryTimerMessageStore();
+		DistributedTimerMessageHandler sut = new DistributedTimerMessageHandler(
+			store,
+			10,
+			PartitionedTimerMessage.PARTITION_GENERATOR,
+			PARTITION_COUNT,
+			PARTITION_COUNT,
+			null
+		);
+		Instant now = Instant.now();
+		for (int partition = 0; partition < PARTITION_COUNT; partition++) {
+			sut.register(new PartitionedTimerMessage("first-" + partition, now.minusSeconds(2), partition));
+			sut.register(new PartitionedTimerMessage("second-" + partition, now.minusSeconds(1), partition));
+		}
+		List<Object> firstReleased = new ArrayList<>();
+		List<Object> secondReleased = new ArrayList<>();
+
+		// when
+		ReleaseResult first = sut.releaseMessages(firstReleased::add, new ReleaseBudget(3, null));
+		ReleaseResult second = sut.releaseMessages(secondReleased::add, new ReleaseBudget(1, null));
+
+		// then
+		assertThat(first.getReleasedCount()).isEqualTo(3L);
+		assertThat(first.getRemainingCount()).isEqualTo(5L);
+		assertThat(first.isExhausted()).isTrue();
+		assertThat(firstReleased).extracting(it -> ((PartitionedTimerMessage)it).getName())
+			.containsExactly("first-0", "second-0", "first-1");
+		assertThat(second.getRemainingCount()).isEqualTo(4L);
+		assertThat(secondReleased).extracting(it -> ((PartitionedTimerMessage)it).getName())
+			.containsExactly("second-1");
+	}
+
+	@Example
+	void requeueMessagesLeftByBudgetAtOnce() {
+		// given
+		RequeueRecordingTimerMessageStore store = new RequeueRecordingTimerMessageStore();
+		DistributedTimerMessageHandler sut = new DistributedTimerMessageHandler(
+			store,
+			10,
+			PartitionedTimerMessage.PARTITION_GENERATOR,
+			PARTITION_COUNT,
+			PARTITION_COUNT,
+			null
+		);
+		Instant now = Instant.now();
+		for (int i = 0; i < 5; i++) {
+			sut.register(new PartitionedTimerMessage("message-" + i, now.minusSeconds(5 - i), 0));
+		}
+		ReleaseBudget releaseBudget = new ReleaseBudget(
+			10,
+			Duration.ofMillis(200),
+			new TokenBucketRateLimiter(1.0, 2.0)
+		);
+		List<Object> released = new ArrayList<>();
+
+		// when
+		ReleaseResult result = sut.releaseMessages(released::add, releaseBudget);
+
+		// then
+		assertThat(result.getReleasedCount()).isEqualTo(2L);
+		assertThat(result.getRemainingCount()).isEqualTo(3L);
+		assertThat(released).hasSize(2);
+		assertThat(store.requeuedBatches).hasSize(1);
+		assertThat(store.requeuedBatches.get(0)).hasSize(3);
+		assertThat(store.getClaimedCount()).isZero();
+	}
+
+	/**
+	 * Groups partitions by two, like partitions on the same node, and records queried groups.
+	 */
+	private static final class GroupingTimerMessageStore extends ConcurrentInMemoryTimerMessageStore {
+		private final List<List<Integer>> queriedGroups = new ArrayList<>();
+		@Nullable
+		private volatile Integer failingPartition;
+
+		@Override
+		public List<List<Integer>> groupPartitions(List<Integer> partitions) {
+			List<List<Integer>> result = new ArrayList<>();
+			for (int i = 0; i < partitions.size(); i += 2) {
+				result.add(partitions.subList(i, Math.min(i + 2, partitions.size())));
+			}
+			return result;
+		}
+
+		@Override
+		public Map<Integer, List<TimerMessageStoreValue>> findReleaseValuesOfPartitions(
+			Instant conditionDateTime,
+			int count,
+			Collection<Integer> partitions
+		) {
+			if (partitions.contains(this.failingPartition)) {
+				throw new IllegalStateException("failed to find partitions: " + partitions);
+			}
+			return super.findReleaseValuesOfPartitions(conditionDateTime, count, partitions);
+		}
+
+		@Override
+		public Optional<Instant> findNextReleaseDateTimeOfPartitions(Collection<Integer> partitions) {
+			this.queriedGroups.add(new ArrayList<>(partitions));
+			return super.findNextReleaseDateTimeOfPartitions(partitions);
+		}
+	}
+
+	/**
+	 * Records ids requeued at once.
+	 */
+	private static final class RequeueRecordingTimerMessageStore extends InMemoryLeasedTimerMessageStore {
+		private final List<List<UUID>> requeuedBatches = new ArrayList<>();
+
+		@Override
+		public void requeueAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+			this.requeuedBatches.add(new ArrayList<>(storeValueIds));
+			super.requeueAll(storeValueIds, partition);
+		}
+	}
+}
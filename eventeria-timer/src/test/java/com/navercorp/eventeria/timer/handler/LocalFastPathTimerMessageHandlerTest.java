@@ -0,0 +1,178 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import net.jqwik.api.Example;
+
+import com.navercorp.eventeria.timer.contract.handler.ReleaseBudget;
+import com.navercorp.eventeria.timer.contract.handler.ReleaseResult;
+import com.navercorp.eventeria.timer.contract.handler.TimerMessageHandler;
+import com.navercorp.eventeria.timer.contract.handler.TokenBucketRateLimiter;
+import com.navercorp.eventeria.timer.fixture.PartitionedTimerMessage;
+
+class LocalFastPathTimerMessageHandlerTest {
+	private final RecordingTimerMessageHandler delegate = new RecordingTimerMessageHandler();
+
+	@Example
+	void fireLocalMessageAtTime() throws InterruptedException {
+		try (LocalFastPathTimerMessageHandler sut = new LocalFastPathTimerMessageHandler(this.delegate)) {
+			// given
+			List<Object> released = Collections.synchronizedList(new ArrayList<>());
+			sut.start(released::add);
+
+			// when
+			sut.register(new PartitionedTimerMessage("local", Instant.now().plusMillis(50), 0));
+			sut.register(new PartitionedTimerMessage("later", Instant.now().plusSeconds(60), 0));
+
+			// then
+			awaitUntil(() -> !released.isEmpty());
+			assertThat(released).hasSize(1);
+			assertThat(((PartitionedTimerMessage)released.get(0)).getName()).isEqualTo("local");
+			assertThat(this.delegate.registered).hasSize(1);
+		}
+	}
+
+	@Example
+	void registerToDelegateAfterRetries() throws InterruptedException {
+		try (LocalFastPathTimerMessageHandler sut = new LocalFastPathTimerMessageHandler(this.delegate)) {
+			// given
+			sut.register(new PartitionedTimerMessage("poison", Instant.now(), 0));
+			sut.register(new PartitionedTimerMessage("hello", Instant.now(), 0));
+			awaitUntil(() -> sut.getDelayedMessageCount() == 2L);
+
+			AtomicInteger poisonAttempts = new AtomicInteger();
+			List<Object> released = new ArrayList<>();
+			Consumer<Object> consumer = it -> {
+				if (((PartitionedTimerMessage)it).getName().equals("poison")) {
+					poisonAttempts.incrementAndGet();
+					throw new IllegalStateException("poison");
+				}
+				released.add(it);
+			};
+
+			// when
+			ReleaseResult first = sut.releaseMessages(consumer, ReleaseBudget.UNLIMITED);
+			sut.releaseMessages(consumer, ReleaseBudget.UNLIMITED);
+			sut.releaseMessages(consumer, ReleaseBudget.UNLIMITED);
+
+			// then
+			assertThat(first.getReleasedCount()).isEqualTo(1L);
+			assertThat(released).hasSize(1);
+			assertThat(poisonAttempts.get()).isEqualTo(3);
+			assertThat(this.delegate.registered).hasSize(1);
+			assertThat(((PartitionedTimerMessage)this.delegate.registered.get(0)).getName()).isEqualTo("poison");
+			assertThat(sut.getDelayedMessageCount()).isEqualTo(1L);
+		}
+	}
+
+	@Example
+	void countLocalReleasesByBudget() throws InterruptedException {
+		try (LocalFastPathTimerMessageHandler sut = new LocalFastPathTimerMessageHandler(this.delegate)) {
+			// given
+			for (int i = 0; i < 3; i++) {
+				sut.register(new PartitionedTimerMessage("message-" + i, Instant.now(), 0));
+			}
+			awaitUntil(() -> sut.getDelayedMessageCount() == 3L);
+
+			// when
+			List<Object> released = new ArrayList<>();
+			ReleaseResult actual = sut.releaseMessages(released::add, new ReleaseBudget(2L, null));
+
+			// then
+			assertThat(released).hasSize(2);
+			assertThat(actual.getReleasedCount()).isEqualTo(2L);
+			assertThat(actual.getRemainingCount()).isEqualTo(1L);
+			assertThat(actual.isExhausted()).isTrue();
+		}
+	}
+
+	@Example
+	void leaveFiredMessagesOverRateLimit() throws InterruptedException {
+		TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(1.0, 1.0);
+		try (
+			LocalFastPathTimerMessageHandler sut =
+				new LocalFastPathTimerMessageHandler(this.delegate, Duration.ofSeconds(1), rateLimiter)
+		) {
+			// given
+			List<Object> released = Collections.synchronizedList(new ArrayList<>());
+			sut.start(released::add);
+
+			// when
+			for (int i = 0; i < 3; i++) {
+				sut.register(new PartitionedTimerMessage("message-" + i, Instant.now(), 0));
+			}
+
+			// then
+			awaitUntil(() -> released.size() + sut.getDelayedMessageCount() == 3L);
+			assertThat(released).hasSize(1);
+			assertThat(sut.getDelayedMessageCount()).isEqualTo(2L);
+			assertThat(sut.getNextReleaseDateTime()).isPresent();
+		}
+	}
+
+	private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+		Instant deadline = Instant.now().plusSeconds(2);
+		while (!condition.getAsBoolean() && Instant.now().isBefore(deadline)) {
+			Thread.sleep(10L);
+		}
+	}
+
+	/**
+	 * A delegate which keeps registered messages and releases nothing.
+	 */
+	private static class RecordingTimerMessageHandler implements TimerMessageHandler {
+		private final List<Object> registered = Collections.synchronizedList(new ArrayList<>());
+
+		@Override
+		public boolean isTimerMessage(Object message) {
+			return true;
+		}
+
+		@Override
+		public String register(Object message) {
+			this.registered.add(message);
+			return UUID.randomUUID().toString();
+		}
+
+		@Override
+		public void releaseMessages(Consumer<Object> consumeReleasedMessage) {
+		}
+
+		@Override
+		public long getDelayedMessageCount() {
+			return this.registered.size();
+		}
+
+		@Override
+		public void cancel(String registeredId) {
+		}
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.eventeria.timer.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import net.jqwik.api.Example;
+
+import com.navercorp.eventeria.timer.contract.handler.ReleaseBudget;
+import com.navercorp.eventeria.timer.fixture.PartitionedTimerMessage;
+import com.navercorp.eventeria.timer.store.ConcurrentInMemoryTimerMessageStore;
+import com.navercorp.eventeria.timer.store.InMemoryPartitionLeaseRegistry;
+
+class PartitionLeasingTimerMessageHandlerTest {
+	private static final int PARTITION_COUNT = 4;
+
+	private final ConcurrentInMemoryTimerMessageStore store = new ConcurrentInMemoryTimerMessageStore();
+	private final DistributedTimerMessageHandler delegate = new DistributedTimerMessageHandler(
+		this.store,
+		1,
+		PartitionedTimerMessage.PARTITION_GENERATOR,
+		PARTITION_COUNT,
+		PARTITION_COUNT,
+		null
+	);
+	private final InMemoryPartitionLeaseRegistry registry = new InMemoryPartitionLeaseRegistry();
+
+	@Example
+	void joinedMemberTakesFairShare() {
+		// given
+		PartitionLeasingTimerMessageHandler nodeA = this.leasing("a", Duration.ofSeconds(10), Duration.ZERO);
+		PartitionLeasingTimerMessageHandler nodeB = this.leasing("b", Duration.ofSeconds(10), Duration.ZERO);
+		nodeA.releaseMessages(it -> {
+		});
+		assertThat(nodeA.getOwnedPartitions()).containsExactly(0, 1, 2, 3);
+
+		// when
+		nodeB.releaseMessages(it -> {
+		});
+		nodeA.releaseMessages(it -> {
+		});
+		nodeB.releaseMessages(it -> {
+		});
+
+		// then
+		assertThat(nodeA.getOwnedPartitions()).hasSize(2);
+		assertThat(nodeB.getOwnedPartitions()).hasSize(2);
+		List<Integer> all = new ArrayList<>(nodeA.getOwnedPartitions());
+		all.addAll(nodeB.getOwnedPartitions());
+		assertThat(all).containsExactlyInAnyOrder(0, 1, 2, 3);
+	}
+
+	@Example
+	void closedMemberGivesLeasesBack() {
+		// given
+		PartitionLeasingTimerMessageHandler nodeA = this.leasing("a", Duration.ofSeconds(10), Duration.ZERO);
+		PartitionLeasingTimerMessageHandler nodeB = this.leasing("b", Duration.ofSeconds(10), Duration.ZERO);
+		nodeA.releaseMessages(it -> {
+		});
+
+		// when
+		nodeA.close();
+		nodeB.releaseMessages(it -> {
+		});
+
+		// then
+		assertThat(nodeB.getOwnedPartitions()).containsExactly(0, 1, 2, 3);
+	}
+
+	@Example
+	void expiredLeasesAreTakenByOthers() throws InterruptedException {
+		// given
+		PartitionLeasingTimerMessageHandler nodeA = this.leasing("a", Duration.ofMillis(100), Duration.ZERO);
+		PartitionLeasingTimerMessageHandler nodeB = this.leasing("b", Duration.ofMillis(100), Duration.ZERO);
+		nodeA.releaseMessages(it -> {
+		});
+		nodeB.releaseMessages(it -> {
+		});
+		assertThat(nodeB.getOwnedPartitions()).isEmpty();
+
+		// when
+		Thread.sleep(200L);
+		nodeB.releaseMessages(it -> {
+		});
+
+		// then
+		assertThat(nodeB.getOwnedPartitions()).containsExactly(0, 1, 2, 3);
+	}
+
+	@Example
+	void releaseOnlyOwnedPartitions() {
+		// given
+		PartitionLeasingTimerMessageHandler nodeA = this.leasing("a", Duration.ofSeconds(10), Duration.ZERO);
+		PartitionLeasingTimerMessageHandler nodeB = this.leasing("b", Duration.ofSeconds(10), Duration.ZERO);
+		this.registerDue(PARTITION_COUNT * 2);
+		nodeA.releaseMessages(it -> {
+		}, new ReleaseBudget(1L, null));
+		nodeB.releaseMessages(it -> {
+		}, new ReleaseBudget(1L, null));
+		nodeA.releaseMessages(it -> {
+		}, new ReleaseBudget(1L, null));
+
+		// when
+		List<Object> releasedByB = new ArrayList<>();
+		nodeB.releaseMessages(releasedByB::add);
+
+		// then
+		Set<Integer> ownedByB = nodeB.getOwnedPartitions();
+		assertThat(ownedByB).hasSize(2);
+		assertThat(releasedByB).isNotEmpty();
+		assertThat(releasedByB).allMatch(it -> ownedByB.contains(((PartitionedTimerMessage)it).getPartition()));
+	}
+
+	@Example
+	void leasesAreRenewedDuringLongRelease() {
+		// given
+		Duration leaseDuration = Duration.ofMillis(150);
+		PartitionLeasingTimerMessageHandler nodeA = this.leasing("a", leaseDuration, Duration.ofMillis(50));
+		this.registerDue(PARTITION_COUNT * 5);
+		List<Boolean> acquiredByOthers = Collections.synchronizedList(new ArrayList<>());
+		List<Object> released = new ArrayList<>();
+
+		// when
+		nodeA.releaseMessages(it -> {
+			sleep(20L);
+			released.add(it);
+			acquiredByOthers.add(this.registry.tryAcquire(
+				((PartitionedTimerMessage)it).getPartition(), "b", leaseDuration));
+		});
+
+		// then
+		assertThat(released).hasSize(PARTITION_COUNT * 5);
+		assertThat(acquiredByOthers).doesNotContain(true);
+	}
+
+	@Example
+	void releaseStopsOnLostLease() {
+		// given
+		Duration leaseDuration = Duration.ofSeconds(10);
+		PartitionLeasingTimerMessageHandler nodeA = this.leasing("a", leaseDuration, Duration.ZERO);
+		this.registerDue(PARTITION_COUNT * 5);
+		List<Object> released = new ArrayList<>();
+
+		// when
+		nodeA.releaseMessages(it -> {
+			released.add(it);
+			int partition = ((PartitionedTimerMessage)it).getPartition();
+			this.registry.release(partition, "a");
+			this.registry.tryAcquire(partition, "b", leaseDuration);
+		});
+
+		// then
+		assertThat(released).hasSize(PARTITION_COUNT);
+		assertThat(this.store.count(Instant.MAX, 0)).isEqualTo(4L);
+		assertThat(nodeA.getOwnedPartitions()).isEmpty();
+	}
+
+	private PartitionLeasingTimerMessageHandler leasing(
+		String memberId,
+		Duration leaseDuration,
+		Duration renewInterval
+	) {
+		return new PartitionLeasingTimerMessageHandler(
+			this.delegate,
+			this.registry,
+			memberId,
+			leaseDuration,
+			renewInterval
+		);
+	}
+
+	private void registerDue(int count) {
+		for (int i = 0; i < count; i++) {
+			this.delegate.register(
+				new PartitionedTimerMessage("message-" + i, Instant.now().minusSeconds(1), i % PARTITION_COUNT));
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import net.jqwik.api.Example;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+import com.navercorp.eventeria.timer.fixture.InMemoryLeasedTimerMessageStore;
+import com.navercorp.eventeria.timer.fixture.PartitionedTimerMessage;
+import com.navercorp.eventeria.timer.store.ReactiveTimerMessageStore;
+
+class ReactiveDistributedTimerMessageHandlerTest {
+	private static final int PARTITION_COUNT = 2;
+
+	private final InMemoryLeasedTimerMessageStore store = new InMemoryLeasedTimerMessageStore();
+
+	@Example
+	void releaseDueMessagesOfAllPartitions() {
+		// given
+		ReactiveDistributedTimerMessageHandler sut = this.handler(2);
+		Instant past = Instant.now().minusSeconds(1);
+		sut.registerAll(List.of(
+			new PartitionedTimerMessage("first", past, 0),
+			new PartitionedTimerMessage("second", past, 1),
+			new PartitionedTimerMessage("third", past, 1),
+			new PartitionedTimerMessage("notDue", Instant.now().plusSeconds(60), 1)
+		)).block();
+
+		// when
+		Long releasedCount = sut.releaseMessages(message -> Mono.empty()).block();
+
+		// then
+		assertThat(releasedCount).isEqualTo(3L);
+		assertThat(this.store.getClaimedCount()).isZero();
+		assertThat(this.store.findReleaseValues(Instant.now().plusSeconds(61), 10, 1))
+			.extracting(it -> ((PartitionedTimerMessage)it.getMessage()).getName())
+			.containsExactly("notDue");
+	}
+
+	@Example
+	void requeueMessageFailedToBeReleased() {
+		// given
+		ReactiveDistributedTimerMessageHandler sut = this.handler(10);
+		Instant past = Instant.now().minusSeconds(1);
+		sut.register(new PartitionedTimerMessage("released", past, 0)).block();
+		sut.register(new PartitionedTimerMessage("failed", past, 0)).block();
+
+		// when
+		Long releasedCount = sut.releaseMessages(message ->
+			"failed".equals(((PartitionedTimerMessage)message).getName())
+				? Mono.error(new IllegalStateException("release is failed."))
+				: Mono.empty()
+		).block();
+
+		// then
+		assertThat(releasedCount).isEqualTo(1L);
+		assertThat(this.store.getClaimedCount()).isZero();
+		assertThat(this.store.findReleaseValues(Instant.now(), 10, 0))
+			.extracting(it -> ((PartitionedTimerMessage)it.getMessage()).getName())
+			.containsExactly("failed");
+	}
+
+	@Example
+	void releaseMessagesOfPageConcurrently() {
+		// given
+		ReactiveDistributedTimerMessageHandler sut = this.handler(10);
+		Instant past = Instant.now().minusSeconds(1);
+		for (int i = 0; i < 5; i++) {
+			sut.register(new PartitionedTimerMessage("message-" + i, past, 0)).block();
+		}
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicInteger maxInFlight = new AtomicInteger();
+
+		// when
+		Long releasedCount = sut.releaseMessages(message -> Mono.defer(() -> {
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			return Mono.delay(Duration.ofMillis(100)).doFinally(signal -> inFlight.decrementAndGet());
+		})).block();
+
+		// then
+		assertThat(releasedCount).isEqualTo(5L);
+		assertThat(maxInFlight.get()).isEqualTo(5);
+	}
+
+	@Example
+	void cancelRegisteredMessage() {
+		// given
+		ReactiveDistributedTimerMessageHandler sut = this.handler(10);
+		String registerId = sut.register(
+			new PartitionedTimerMessage("cancelled", Instant.now().plusSeconds(60), 1)).block();
+
+		// when
+		sut.cancel(registerId).block();
+
+		// then
+		assertThat(this.store.findNextReleaseDateTime(1)).isEmpty();
+	}
+
+	private ReactiveDistributedTimerMessageHandler handler(int countPerRelease) {
+		return new ReactiveDistributedTimerMessageHandler(
+			new ReactiveInMemoryTimerMessageStore(this.store),
+			countPerRelease,
+			PartitionedTimerMessage.PARTITION_GENERATOR,
+			PARTITION_COUNT,
+			PARTITION_COUNT
+		);
+	}
+
+	/**
+	 * A {@link ReactiveTimerMessageStore} adapting {@link InMemoryLeasedTimerMessageStore}.
+	 */
+	private static class ReactiveInMemoryTimerMessageStore implements ReactiveTimerMessageStore {
+		private final InMemoryLeasedTimerMessageStore delegate;
+
+		ReactiveInMemoryTimerMessageStore(InMemoryLeasedTimerMessageStore delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public Mono<Void> saveAll(Collection<TimerMessageStoreValue> storeValues, @Nullable Integer partition) {
+			return Mono.fromRunnable(() -> this.delegate.saveAll(storeValues, partition));
+		}
+
+		@Override
+		public Mono<Void> removeAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+			return Mono.fromRunnable(() -> this.delegate.removeAll(storeValueIds, partition));
+		}
+
+		@Override
+		public Mono<Long> count(Instant conditionDateTime, @Nullable Integer partition) {
+			return Mono.fromCallable(() -> this.delegate.count(conditionDateTime, partition));
+		}
+
+		@Override
+		public Flux<TimerMessageStoreValue> claimReleaseValues(
+			Instant conditionDateTime,
+			int count,
+			@Nullable Integer partition
+		) {
+			return Flux.defer(() -> Flux.fromIterable(
+				this.delegate.claimReleaseValues(conditionDateTime, count, partition)));
+		}
+
+		@Override
+		public Mono<Void> acknowledgeAll(Collection<UUID> storeValueIds, @Nullable Integer partition) {
+			return Mono.fromRunnable(() -> this.delegate.acknowledgeAll(storeValueIds, partition));
+		}
+
+		@Override
+		public Mono<Void> requeue(UUID storeValueId, @Nullable Integer partition) {
+			return Mono.fromRunnable(() -> this.delegate.requeue(storeValueId, partition));
+		}
+	}
+}
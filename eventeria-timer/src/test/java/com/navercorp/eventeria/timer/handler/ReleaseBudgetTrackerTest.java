@@ -0,0 +1,136 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+
+import net.jqwik.api.Example;
+
+import com.navercorp.eventeria.timer.contract.handler.ReleaseBudget;
+import com.navercorp.eventeria.timer.contract.handler.ReleaseResult;
+import com.navercorp.eventeria.timer.contract.handler.TokenBucketRateLimiter;
+
+class ReleaseBudgetTrackerTest {
+	@Example
+	void exhaustedByMaxCount() {
+		// given
+		ReleaseBudgetTracker sut = new ReleaseBudgetTracker(new ReleaseBudget(3, null));
+		assertThat(sut.nextPageSize(10)).isEqualTo(3);
+
+		// when
+		for (int i = 0; i < 3; i++) {
+			assertThat(sut.tryAcquire()).isTrue();
+			sut.released();
+		}
+		boolean acquiredOverMaxCount = sut.tryAcquire();
+
+		// then
+		assertThat(acquiredOverMaxCount).isFalse();
+		assertThat(sut.isExhausted()).isTrue();
+		assertThat(sut.nextPageSize(10)).isZero();
+		ReleaseResult result = sut.toResult(7L);
+		assertThat(result.getReleasedCount()).isEqualTo(3L);
+		assertThat(result.getRemainingCount()).isEqualTo(7L);
+		assertThat(result.isExhausted()).isTrue();
+	}
+
+	@Example
+	void nextPageSizeIsBoundedByRemainingCount() {
+		// given
+		ReleaseBudgetTracker sut = new ReleaseBudgetTracker(new ReleaseBudget(5, null));
+
+		// when
+		sut.tryAcquire();
+		sut.tryAcquire();
+
+		// then
+		assertThat(sut.nextPageSize(10)).isEqualTo(3);
+		assertThat(sut.nextPageSize(2)).isEqualTo(2);
+		assertThat(sut.isExhausted()).isFalse();
+	}
+
+	@Example
+	void exhaustedByMaxDuration() throws InterruptedException {
+		// given
+		ReleaseBudgetTracker sut = new ReleaseBudgetTracker(new ReleaseBudget(10, Duration.ofMillis(50)));
+		assertThat(sut.tryAcquire()).isTrue();
+
+		// when
+		Thread.sleep(100L);
+
+		// then
+		assertThat(sut.tryAcquire()).isFalse();
+		assertThat(sut.isExhausted()).isTrue();
+		assertThat(sut.remainingBudget()).isNull();
+	}
+
+	@Example
+	void exhaustedWhenRateLimiterCannotPermitInTime() {
+		// given
+		TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(1.0);
+		ReleaseBudgetTracker sut = new ReleaseBudgetTracker(
+			new ReleaseBudget(10, Duration.ofMillis(200), rateLimiter)
+		);
+
+		// when
+		boolean first = sut.tryAcquire();
+		boolean second = sut.tryAcquire();
+
+		// then
+		assertThat(first).isTrue();
+		assertThat(second).isFalse();
+		assertThat(sut.isExhausted()).isTrue();
+	}
+
+	@Example
+	void notExhaustedResultHasNoRemainingCount() {
+		// given
+		ReleaseBudgetTracker sut = new ReleaseBudgetTracker(ReleaseBudget.UNLIMITED);
+
+		// when
+		sut.tryAcquire();
+		sut.released();
+
+		// then
+		ReleaseResult result = sut.toResult(5L);
+		assertThat(result.getReleasedCount()).isEqualTo(1L);
+		assertThat(result.getRemainingCount()).isZero();
+		assertThat(result.isExhausted()).isFalse();
+	}
+
+	@Example
+	void remainingBudgetSharesRateLimiter() {
+		// given
+		TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(100.0);
+		ReleaseBudgetTracker sut = new ReleaseBudgetTracker(new ReleaseBudget(5, null, rateLimiter));
+
+		// when
+		sut.tryAcquire();
+		sut.tryAcquire();
+		ReleaseBudget remainingBudget = sut.remainingBudget();
+
+		// then
+		assertThat(remainingBudget).isNotNull();
+		assertThat(remainingBudget.getMaxCount()).isEqualTo(3L);
+		assertThat(remainingBudget.getMaxDuration()).isNull();
+		assertThat(remainingBudget.getRateLimiter()).isSameAs(rateLimiter);
+	}
+}
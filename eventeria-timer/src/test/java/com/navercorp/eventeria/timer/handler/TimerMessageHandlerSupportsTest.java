@@ -0,0 +1,75 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Instant;
+import java.util.Map.Entry;
+import java.util.UUID;
+
+import net.jqwik.api.Example;
+
+import com.navercorp.eventeria.timer.fixture.InMemoryLeasedTimerMessageStore;
+import com.navercorp.eventeria.timer.fixture.PartitionedTimerMessage;
+
+class TimerMessageHandlerSupportsTest {
+	@Example
+	void splitRegisterIdOfMultiDigitPartition() {
+		// given
+		UUID storeValueId = UUID.randomUUID();
+		String registerId = TimerMessageHandlerSupports.registerId(storeValueId, 12);
+
+		// when
+		Entry<UUID, Integer> actual = TimerMessageHandlerSupports.splitRegisterId(registerId);
+
+		// then
+		assertThat(actual.getKey()).isEqualTo(storeValueId);
+		assertThat(actual.getValue()).isEqualTo(12);
+	}
+
+	@Example
+	void rejectInvalidRegisterId() {
+		String storeValueId = UUID.randomUUID().toString();
+
+		assertThatThrownBy(() -> TimerMessageHandlerSupports.splitRegisterId(storeValueId))
+			.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> TimerMessageHandlerSupports.splitRegisterId(storeValueId + ":{}"))
+			.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> TimerMessageHandlerSupports.splitRegisterId("invalid:{1}"))
+			.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Example
+	void cancelRegisteredMessage() {
+		// given
+		InMemoryLeasedTimerMessageStore store = new InMemoryLeasedTimerMessageStore();
+		DistributedTimerMessageHandler handler =
+			new DistributedTimerMessageHandler(store, 10, PartitionedTimerMessage.PARTITION_GENERATOR, 2, 2, null);
+		Instant releaseDateTime = Instant.now().plusSeconds(60);
+		String registerId = handler.register(new PartitionedTimerMessage("cancelled", releaseDateTime, 1));
+
+		// when
+		handler.cancel(registerId);
+
+		// then
+		assertThat(store.findNextReleaseDateTime(1)).isEmpty();
+	}
+}
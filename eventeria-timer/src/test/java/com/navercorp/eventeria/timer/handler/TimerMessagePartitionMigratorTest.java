@@ -0,0 +1,108 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import net.jqwik.api.Example;
+
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+import com.navercorp.eventeria.timer.fixture.InMemoryLeasedTimerMessageStore;
+import com.navercorp.eventeria.timer.fixture.PartitionedTimerMessage;
+
+class TimerMessagePartitionMigratorTest {
+	private static final int REGISTERED_PARTITION_COUNT = 2;
+	private static final int SEEK_PARTITION_COUNT = 4;
+
+	private final InMemoryLeasedTimerMessageStore store = new InMemoryLeasedTimerMessageStore();
+	private final DistributedTimerMessageHandler handler = new DistributedTimerMessageHandler(
+		this.store,
+		10,
+		PartitionedTimerMessage.PARTITION_GENERATOR,
+		REGISTERED_PARTITION_COUNT,
+		SEEK_PARTITION_COUNT,
+		null
+	);
+
+	@Example
+	void moveMessagesOfUnregisteredPartitions() {
+		// given
+		Instant farFuture = Instant.now().plusSeconds(365L * 24 * 60 * 60);
+		for (int i = 0; i < 10; i++) {
+			this.saveToOldPartition("message-" + i, farFuture, i);
+		}
+		TimerMessagePartitionMigrator sut = new TimerMessagePartitionMigrator(this.handler, 3);
+		assertThat(sut.getRemainingCount()).isEqualTo(10L);
+
+		// when
+		sut.run();
+
+		// then
+		assertThat(sut.isCompleted()).isTrue();
+		assertThat(sut.getMovedCount()).isEqualTo(10L);
+		assertThat(this.handler.getSeekPartitionCount()).isEqualTo(REGISTERED_PARTITION_COUNT);
+		assertThat(this.store.findNextReleaseDateTime(2)).isEmpty();
+		assertThat(this.store.findNextReleaseDateTime(3)).isEmpty();
+		List<TimerMessageStoreValue> moved = this.store.findReleaseValues(farFuture.plusSeconds(1), 10, 0);
+		assertThat(moved).hasSize(5);
+		assertThat(moved).allMatch(it -> ((PartitionedTimerMessage)it.getMessage()).getPartition() % 2 == 0);
+		assertThat(this.store.findReleaseValues(farFuture.plusSeconds(1), 10, 1)).hasSize(5);
+	}
+
+	@Example
+	void waitForClaimedMessagesBeforeConverge() throws Exception {
+		// given
+		Instant past = Instant.now().minusSeconds(1);
+		this.saveToOldPartition("claimed", past, 2);
+		this.saveToOldPartition("waiting", past, 3);
+		List<TimerMessageStoreValue> claimed = this.store.claimReleaseValues(Instant.now(), 10, 2);
+		TimerMessagePartitionMigrator sut = new TimerMessagePartitionMigrator(this.handler, 10);
+
+		// when
+		CompletableFuture<Void> migration = CompletableFuture.runAsync(sut);
+		Thread.sleep(300L);
+
+		// then
+		assertThat(sut.isCompleted()).isFalse();
+		assertThat(sut.getMigratingPartition()).isEqualTo(2);
+
+		this.store.acknowledge(claimed.get(0).getId(), 2);
+		migration.get(5L, TimeUnit.SECONDS);
+		assertThat(sut.isCompleted()).isTrue();
+		assertThat(sut.getMovedCount()).isEqualTo(1L);
+		assertThat(this.store.findReleaseValues(Instant.now(), 10, 1)).hasSize(1);
+	}
+
+	private void saveToOldPartition(String name, Instant releaseDateTime, int partition) {
+		this.store.save(
+			new TimerMessageStoreValue(
+				UUID.randomUUID(),
+				new PartitionedTimerMessage(name, releaseDateTime, partition),
+				releaseDateTime
+			),
+			REGISTERED_PARTITION_COUNT + partition % REGISTERED_PARTITION_COUNT
+		);
+	}
+}
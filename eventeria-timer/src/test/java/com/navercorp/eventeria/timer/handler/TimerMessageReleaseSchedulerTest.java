@@ -0,0 +1,194 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import net.jqwik.api.Example;
+
+import com.navercorp.eventeria.timer.contract.handler.ReleaseBudget;
+import com.navercorp.eventeria.timer.contract.handler.ReleaseResult;
+import com.navercorp.eventeria.timer.contract.handler.TimerMessageHandler;
+import com.navercorp.eventeria.timer.fixture.PartitionedTimerMessage;
+
+class TimerMessageReleaseSchedulerTest {
+	private final ScriptedTimerMessageHandler delegate = new ScriptedTimerMessageHandler();
+
+	@Example
+	void wakeUpOnRegisteredMessage() throws InterruptedException {
+		try (
+			TimerMessageReleaseScheduler sut =
+				new TimerMessageReleaseScheduler(this.delegate, Duration.ofMillis(10), Duration.ofSeconds(10))
+		) {
+			// given
+			sut.start(it -> {
+			});
+			awaitUntil(() -> this.delegate.releaseCount.get() == 1);
+			Thread.sleep(50L);
+			assertThat(this.delegate.releaseCount.get()).isEqualTo(1);
+
+			// when
+			sut.register(new PartitionedTimerMessage("hello", Instant.now().plusMillis(50), 0));
+
+			// then
+			awaitUntil(() -> this.delegate.releaseCount.get() == 2);
+			assertThat(this.delegate.releaseCount.get()).isEqualTo(2);
+		}
+	}
+
+	@Example
+	void sleepNoLongerThanMaxIdleDuration() throws InterruptedException {
+		try (
+			TimerMessageReleaseScheduler sut =
+				new TimerMessageReleaseScheduler(this.delegate, Duration.ofMillis(10), Duration.ofMillis(100))
+		) {
+			// given
+			this.delegate.nextReleaseDateTime = Optional.of(Instant.now().plusSeconds(3600));
+
+			// when
+			sut.start(it -> {
+			});
+			Thread.sleep(550L);
+
+			// then
+			assertThat(this.delegate.releaseCount.get()).isBetween(3, 8);
+		}
+	}
+
+	@Example
+	void backOffOnConsecutiveFailedReleases() throws InterruptedException {
+		try (
+			TimerMessageReleaseScheduler sut =
+				new TimerMessageReleaseScheduler(this.delegate, Duration.ofMillis(10), Duration.ofSeconds(1))
+		) {
+			// given
+			this.delegate.nextReleaseDateTime = Optional.of(Instant.EPOCH);
+			this.delegate.failing = true;
+
+			// when
+			sut.start(it -> {
+			});
+			Thread.sleep(600L);
+
+			// then
+			assertThat(this.delegate.releaseCount.get()).isBetween(3, 8);
+		}
+	}
+
+	@Example
+	void backOffWhileOverdueMessagesAreLeft() throws InterruptedException {
+		try (
+			TimerMessageReleaseScheduler sut =
+				new TimerMessageReleaseScheduler(this.delegate, Duration.ofMillis(10), Duration.ofSeconds(1))
+		) {
+			// given
+			this.delegate.nextReleaseDateTime = Optional.of(Instant.EPOCH);
+
+			// when
+			sut.start(it -> {
+			});
+			Thread.sleep(600L);
+
+			// then
+			assertThat(this.delegate.releaseCount.get()).isBetween(3, 8);
+		}
+	}
+
+	@Example
+	void notBackOffWhenReleaseIsStoppedByBudget() throws InterruptedException {
+		try (
+			TimerMessageReleaseScheduler sut =
+				new TimerMessageReleaseScheduler(this.delegate, Duration.ofMillis(10), Duration.ofSeconds(1))
+		) {
+			// given
+			this.delegate.nextReleaseDateTime = Optional.of(Instant.EPOCH);
+
+			// when
+			sut.start(it -> {
+			}, new ReleaseBudget(1L, null));
+			Thread.sleep(600L);
+
+			// then
+			assertThat(this.delegate.releaseCount.get()).isGreaterThan(20);
+		}
+	}
+
+	private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+		Instant deadline = Instant.now().plusSeconds(2);
+		while (!condition.getAsBoolean() && Instant.now().isBefore(deadline)) {
+			Thread.sleep(10L);
+		}
+	}
+
+	/**
+	 * A delegate which releases nothing and reports a given next release time.
+	 * Releases by budget are always exhausted.
+	 */
+	private static class ScriptedTimerMessageHandler implements TimerMessageHandler {
+		private final AtomicInteger releaseCount = new AtomicInteger();
+		private volatile Optional<Instant> nextReleaseDateTime = Optional.empty();
+		private volatile boolean failing;
+
+		@Override
+		public boolean isTimerMessage(Object message) {
+			return true;
+		}
+
+		@Override
+		public String register(Object message) {
+			return UUID.randomUUID().toString();
+		}
+
+		@Override
+		public void releaseMessages(Consumer<Object> consumeReleasedMessage) {
+			this.releaseCount.incrementAndGet();
+			if (this.failing) {
+				throw new IllegalStateException("failing");
+			}
+		}
+
+		@Override
+		public ReleaseResult releaseMessages(Consumer<Object> consumeReleasedMessage, ReleaseBudget releaseBudget) {
+			this.releaseMessages(consumeReleasedMessage);
+			return new ReleaseResult(1L, 1L, true);
+		}
+
+		@Override
+		public long getDelayedMessageCount() {
+			return 0L;
+		}
+
+		@Override
+		public Optional<Instant> getNextReleaseDateTime() {
+			return this.nextReleaseDateTime;
+		}
+
+		@Override
+		public void cancel(String registeredId) {
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.TimeUnit;
+
+import net.jqwik.api.Example;
+
+import com.navercorp.eventeria.timer.contract.handler.TokenBucketRateLimiter;
+
+class TokenBucketRateLimiterTest {
+	@Example
+	void acquireBurstWithoutWaiting() throws InterruptedException {
+		// given
+		TokenBucketRateLimiter sut = new TokenBucketRateLimiter(1.0, 3.0);
+
+		// when
+		boolean first = sut.tryAcquire(0L);
+		boolean second = sut.tryAcquire(0L);
+		boolean third = sut.tryAcquire(0L);
+		boolean overBurst = sut.tryAcquire(0L);
+
+		// then
+		assertThat(first).isTrue();
+		assertThat(second).isTrue();
+		assertThat(third).isTrue();
+		assertThat(overBurst).isFalse();
+	}
+
+	@Example
+	void waitForRefilledPermit() throws InterruptedException {
+		// given
+		TokenBucketRateLimiter sut = new TokenBucketRateLimiter(20.0, 1.0);
+		assertThat(sut.tryAcquire(0L)).isTrue();
+		long startNanos = System.nanoTime();
+
+		// when
+		boolean acquired = sut.tryAcquire(TimeUnit.SECONDS.toNanos(1));
+
+		// then
+		assertThat(acquired).isTrue();
+		// a permit is refilled every 50ms.
+		assertThat(System.nanoTime() - startNanos).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(30));
+	}
+
+	@Example
+	void notReserveWhenTimeoutIsShorterThanWait() throws InterruptedException {
+		// given
+		TokenBucketRateLimiter sut = new TokenBucketRateLimiter(20.0, 1.0);
+		assertThat(sut.tryAcquire(0L)).isTrue();
+
+		// when
+		boolean timedOut = sut.tryAcquire(TimeUnit.MILLISECONDS.toNanos(1));
+		boolean acquired = sut.tryAcquire(TimeUnit.SECONDS.toNanos(1));
+
+		// then
+		assertThat(timedOut).isFalse();
+		assertThat(acquired).isTrue();
+	}
+
+	@Example
+	void rejectInvalidArguments() {
+		assertThatThrownBy(() -> new TokenBucketRateLimiter(0.0)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new TokenBucketRateLimiter(10.0, 0.5)).isInstanceOf(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import net.jqwik.api.Example;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.navercorp.eventeria.timer.contract.handler.ReleaseBudget;
+import com.navercorp.eventeria.timer.contract.handler.ReleaseResult;
+import com.navercorp.eventeria.timer.fixture.PartitionedTimerMessage;
+import com.navercorp.eventeria.timer.handler.SimpleTimerMessageHandler;
+import com.navercorp.eventeria.timer.store.ConcurrentInMemoryTimerMessageStore;
+
+class MeteredTimerMessageHandlerTest {
+	private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final MeteredTimerMessageHandler sut = new MeteredTimerMessageHandler(
+		new SimpleTimerMessageHandler(new ConcurrentInMemoryTimerMessageStore(), 10),
+		this.meterRegistry
+	);
+
+	@Example
+	void countReleasedMessagesByResult() {
+		// given
+		Instant now = Instant.now();
+		this.sut.register(new PartitionedTimerMessage("first", now.minusSeconds(2), 0));
+		this.sut.register(new PartitionedTimerMessage("poison", now.minusSeconds(1), 0));
+		this.sut.register(new PartitionedTimerMessage("later", now.plusSeconds(60), 0));
+		List<Object> released = new ArrayList<>();
+		Consumer<Object> consumer = it -> {
+			if (((PartitionedTimerMessage)it).getName().equals("poison")) {
+				throw new IllegalStateException("poison");
+			}
+			released.add(it);
+		};
+
+		// when
+		this.sut.releaseMessages(consumer);
+
+		// then
+		assertThat(released).hasSize(1);
+		assertThat(this.messageCount("register", "success")).isEqualTo(3.0);
+		assertThat(this.messageCount("release", "success")).isEqualTo(1.0);
+		assertThat(this.messageCount("release", "failure")).isEqualTo(1.0);
+	}
+
+	@Example
+	void gaugeRemainingCountOfLastRelease() {
+		// given
+		Instant now = Instant.now();
+		for (int i = 0; i < 3; i++) {
+			this.sut.register(new PartitionedTimerMessage("message-" + i, now.minusSeconds(3 - i), 0));
+		}
+		List<Object> released = new ArrayList<>();
+
+		// when
+		ReleaseResult first = this.sut.releaseMessages(released::add, new ReleaseBudget(1L, null));
+		double remainingAfterFirst = this.releaseRemaining();
+		this.sut.releaseMessages(released::add, ReleaseBudget.UNLIMITED);
+
+		// then
+		assertThat(first.getRemainingCount()).isEqualTo(2L);
+		assertThat(remainingAfterFirst).isEqualTo(2.0);
+		assertThat(this.releaseRemaining()).isEqualTo(0.0);
+		assertThat(released).hasSize(3);
+		assertThat(this.messageCount("release", "success")).isEqualTo(3.0);
+	}
+
+	private double messageCount(String operation, String result) {
+		return this.meterRegistry.get("eventeria.timer.messages")
+			.tag("operation", operation)
+			.tag("result", result)
+			.counter()
+			.count();
+	}
+
+	private double releaseRemaining() {
+		return this.meterRegistry.get("eventeria.timer.release.remaining").gauge().value();
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+
+import net.jqwik.api.Example;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+import com.navercorp.eventeria.timer.fixture.InMemoryLeasedTimerMessageStore;
+import com.navercorp.eventeria.timer.fixture.PartitionedTimerMessage;
+import com.navercorp.eventeria.timer.store.ConcurrentInMemoryTimerMessageStore;
+
+class MeteredTimerMessageStoreTest {
+	private static final String STORE_NAME = "test";
+
+	private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Example
+	void seedPendingCountByUnboundedCount() {
+		// given
+		ConcurrentInMemoryTimerMessageStore delegate = new ConcurrentInMemoryTimerMessageStore() {
+			@Override
+			public long count(Instant conditionDateTime, @Nullable Integer partition) {
+				// as stores converting conditions to epoch millis.
+				conditionDateTime.toEpochMilli();
+				return super.count(conditionDateTime, partition);
+			}
+		};
+		delegate.save(storeValue("stored", Instant.now().plusSeconds(60)), 0);
+		MeteredTimerMessageStore sut = MeteredTimerMessageStore.of(delegate, this.meterRegistry, STORE_NAME);
+
+		// when
+		sut.save(storeValue("saved", Instant.now().plusSeconds(60)), 0);
+
+		// then
+		assertThat(sut.getPendingCount(0)).isEqualTo(2L);
+		assertThat(this.pendingGauge(0)).isEqualTo(2.0);
+	}
+
+	@Example
+	void countDuplicatedIdsOnce() {
+		// given
+		MeteredTimerMessageStore sut = MeteredTimerMessageStore.of(
+			new ConcurrentInMemoryTimerMessageStore(), this.meterRegistry, STORE_NAME, Duration.ofHours(1));
+		TimerMessageStoreValue first = storeValue("first", Instant.now().plusSeconds(60));
+		TimerMessageStoreValue second = storeValue("second", Instant.now().plusSeconds(60));
+		sut.saveAll(List.of(first, second, first), 0);
+
+		// when
+		sut.removeAll(List.of(first.getId(), first.getId()), 0);
+
+		// then
+		assertThat(sut.getPendingCount(0)).isEqualTo(1L);
+	}
+
+	@Example
+	void recountPendingCountByDelegate() {
+		// given
+		MeteredTimerMessageStore sut = MeteredTimerMessageStore.of(
+			new ConcurrentInMemoryTimerMessageStore(), this.meterRegistry, STORE_NAME, Duration.ZERO);
+		TimerMessageStoreValue first = storeValue("first", Instant.now().plusSeconds(60));
+		TimerMessageStoreValue second = storeValue("second", Instant.now().plusSeconds(60));
+		sut.saveAll(List.of(first, second), 0);
+
+		// when
+		sut.remove(first.getId(), 0);
+		sut.remove(first.getId(), 0);
+
+		// then
+		assertThat(sut.getPendingCount(0)).isEqualTo(1L);
+	}
+
+	@Example
+	void countAgainAfterSeedFailed() {
+		// given
+		AtomicBoolean countFailure = new AtomicBoolean(true);
+		ConcurrentInMemoryTimerMessageStore delegate = new ConcurrentInMemoryTimerMessageStore() {
+			@Override
+			public long count(Instant conditionDateTime, @Nullable Integer partition) {
+				if (countFailure.get()) {
+					throw new IllegalStateException("count is failed.");
+				}
+				return super.count(conditionDateTime, partition);
+			}
+		};
+		delegate.save(storeValue("stored", Instant.now().plusSeconds(60)), 0);
+		MeteredTimerMessageStore sut =
+			MeteredTimerMessageStore.of(delegate, this.meterRegistry, STORE_NAME, Duration.ofHours(1));
+		sut.save(storeValue("first", Instant.now().plusSeconds(60)), 0);
+		assertThat(sut.getPendingCount(0)).isEqualTo(1L);
+
+		// when
+		countFailure.set(false);
+		sut.save(storeValue("second", Instant.now().plusSeconds(60)), 0);
+
+		// then
+		assertThat(sut.getPendingCount(0)).isEqualTo(3L);
+	}
+
+	@Example
+	void recordReleaseLagOfClaimedValues() {
+		// given
+		MeteredTimerMessageStore sut =
+			MeteredTimerMessageStore.of(new InMemoryLeasedTimerMessageStore(), this.meterRegistry, STORE_NAME);
+		assertThat(sut).isInstanceOf(MeteredLeasedTimerMessageStore.class);
+		sut.save(storeValue("due", Instant.now().minusSeconds(2)), 0);
+		sut.save(storeValue("notDue", Instant.now().plusSeconds(60)), 0);
+
+		// when
+		List<TimerMessageStoreValue> claimed =
+			((MeteredLeasedTimerMessageStore)sut).claimReleaseValues(Instant.now(), 10, 0);
+
+		// then
+		assertThat(claimed).hasSize(1);
+		Timer releaseLag = this.meterRegistry.get("eventeria.timer.store.release.lag").tag("store", STORE_NAME).timer();
+		assertThat(releaseLag.count()).isEqualTo(1L);
+		assertThat(releaseLag.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(2000.0);
+	}
+
+	private double pendingGauge(int partition) {
+		return this.meterRegistry.get("eventeria.timer.store.pending")
+			.tag("store", STORE_NAME)
+			.tag("partition", String.valueOf(partition))
+			.gauge()
+			.value();
+	}
+
+	private static TimerMessageStoreValue storeValue(String name, Instant releaseDateTime) {
+		return new TimerMessageStoreValue(
+			UUID.randomUUID(),
+			new PartitionedTimerMessage(name, releaseDateTime, 0),
+			releaseDateTime
+		);
+	}
+}
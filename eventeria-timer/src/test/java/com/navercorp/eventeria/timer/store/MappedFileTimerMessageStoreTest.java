@@ -0,0 +1,322 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.eventeria.timer.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import net.jqwik.api.Example;
+import net.jqwik.api.lifecycle.AfterTry;
+import net.jqwik.api.lifecycle.BeforeTry;
+
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+import com.navercorp.eventeria.timer.fixture.PartitionedTimerMessage;
+import com.navercorp.eventeria.timer.handler.DistributedTimerMessageHandler;
+import com.navercorp.eventeria.timer.handler.TimerMessagePartitionMigrator;
+
+class MappedFileTimerMessageStoreTest {
+	private static final TimerMessageSerializer STRING_SERIALIZER = new TimerMessageSerializer() {
+		@Override
+		public byte[] serialize(Object message) {
+			return ((String)message).getBytes(StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public Object deserialize(byte[] serialized) {
+			return new String(serialized, StandardCharsets.UTF_8);
+		}
+	};
+
+	// [length][crc] + [type][id][partition][epochSecond][nano] + "message-000"
+	private static final int PUT_RECORD_SIZE = 8 + 33 + 11;
+	// 4 records per segment
+	private static final int SEGMENT_SIZE = 8 + PUT_RECORD_SIZE * 4;
+	// [length][crc] + [type][id][partition]
+	private static final int TOMBSTONE_RECORD_SIZE = 8 + 21;
+	private static final TimerMessageSerializer PARTITIONED_SERIALIZER = new TimerMessageSerializer() {
+		@Override
+		public byte[] serialize(Object message) {
+			PartitionedTimerMessage partitioned = (PartitionedTimerMessage)message;
+			String serialized = partitioned.getName() + "," + partitioned.timerTime().orElseThrow().toEpochMilli()
+				+ "," + partitioned.getPartition();
+			return serialized.getBytes(StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public Object deserialize(byte[] serialized) {
+			String[] fields = new String(serialized, StandardCharsets.UTF_8).split(",");
+			return new PartitionedTimerMessage(
+				fields[0],
+				Instant.ofEpochMilli(Long.parseLong(fields[1])),
+				Integer.parseInt(fields[2])
+			);
+		}
+	};
+
+	private final Instant releaseDateTime = Instant.parse("2024-01-01T00:00:00Z");
+	private final List<MappedFileTimerMessageStore> stores = new ArrayList<>();
+	private Path directory;
+
+	@BeforeTry
+	void setUp() throws IOException {
+		this.directory = Files.createTempDirectory("timer-message-store");
+	}
+
+	@AfterTry
+	void tearDown() throws IOException {
+		this.stores.forEach(MappedFileTimerMessageStore::close);
+		try (Stream<Path> paths = Files.walk(this.directory)) {
+			for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+				Files.deleteIfExists(path);
+			}
+		}
+	}
+
+	@Example
+	void reloadSavedAndRemovedValues() {
+		// given
+		MappedFileTimerMessageStore sut = this.open();
+		List<TimerMessageStoreValue> storeValues = this.storeValues(0, 6);
+		sut.saveAll(storeValues, 1);
+		sut.remove(storeValues.get(1).getId(), 1);
+		sut.remove(storeValues.get(4).getId(), 1);
+
+		// when
+		sut.close();
+		MappedFileTimerMessageStore reloaded = this.open();
+
+		// then
+		assertThat(messages(reloaded, 1)).containsExactly(
+			"message-000", "message-002", "message-003", "message-005");
+		assertThat(reloaded.count(Instant.MAX, 2)).isZero();
+	}
+
+	@Example
+	void corruptedRecordIsDiscardedWithRecordsAfterIt() throws IOException {
+		// given
+		MappedFileTimerMessageStore sut = this.open();
+		sut.saveAll(this.storeValues(0, 3), 1);
+		sut.close();
+		this.corrupt("message-001");
+
+		// when
+		MappedFileTimerMessageStore reloaded = this.open();
+
+		// then
+		assertThat(messages(reloaded, 1)).containsExactly("message-000");
+
+		// records after the corrupted record are not revived by appending over it.
+		reloaded.save(this.storeValue(5), 1);
+		reloaded.close();
+		assertThat(messages(this.open(), 1)).containsExactly("message-000", "message-005");
+	}
+
+	@Example
+	void compactSegmentAfterTheOldest() throws IOException {
+		// given
+		MappedFileTimerMessageStore sut = this.open();
+		List<TimerMessageStoreValue> storeValues = this.storeValues(0, 12);
+		sut.saveAll(storeValues.subList(0, 8), 1);
+		sut.saveAll(storeValues.subList(8, 9), 1);
+		sut.removeAll(storeValues.subList(4, 8).stream().map(TimerMessageStoreValue::getId).toList(), 1);
+		assertThat(this.segmentCount()).isEqualTo(3L);
+
+		// when
+		sut.compact();
+
+		// then
+		assertThat(this.segmentCount()).isEqualTo(2L);
+		assertThat(messages(sut, 1)).containsExactly(
+			"message-000", "message-001", "message-002", "message-003", "message-008");
+
+		sut.close();
+		assertThat(messages(this.open(), 1)).containsExactly(
+			"message-000", "message-001", "message-002", "message-003", "message-008");
+	}
+
+	@Example
+	void compactionKeepsTombstonesHidingOlderRecords() throws IOException {
+		// given
+		MappedFileTimerMessageStore sut = this.open();
+		List<TimerMessageStoreValue> storeValues = this.storeValues(0, 8);
+		sut.saveAll(storeValues.subList(0, 4), 1);
+		// tombstone of message-000 is written to the second segment, followed by message-004 ~ 006
+		sut.remove(storeValues.get(0).getId(), 1);
+		sut.saveAll(storeValues.subList(4, 7), 1);
+		sut.save(storeValues.get(7), 1);
+		sut.removeAll(storeValues.subList(4, 7).stream().map(TimerMessageStoreValue::getId).toList(), 1);
+		assertThat(this.segmentCount()).isEqualTo(3L);
+
+		// when
+		sut.compact();
+
+		// then
+		// the second segment is replaced by a file of the tombstone only.
+		assertThat(this.segmentCount()).isEqualTo(3L);
+		assertThat(this.segmentBytes()).isEqualTo(2L * SEGMENT_SIZE + 8 + TOMBSTONE_RECORD_SIZE);
+		sut.close();
+		assertThat(messages(this.open(), 1)).containsExactly(
+			"message-001", "message-002", "message-003", "message-007");
+	}
+
+	@Example
+	void removeOfAnotherPartitionKeepsValue() {
+		// given
+		MappedFileTimerMessageStore sut = this.open();
+		TimerMessageStoreValue storeValue = this.storeValue(0);
+		sut.save(storeValue, 1);
+
+		// when
+		sut.remove(storeValue.getId(), 2);
+
+		// then
+		assertThat(messages(sut, 1)).containsExactly("message-000");
+		sut.close();
+		assertThat(messages(this.open(), 1)).containsExactly("message-000");
+	}
+
+	@Example
+	void migrateMessagesToRegisteredPartitions() {
+		// given
+		MappedFileTimerMessageStore sut = new MappedFileTimerMessageStore(
+			this.directory, PARTITIONED_SERIALIZER, 1024 * 1024, null, 0.5);
+		this.stores.add(sut);
+		DistributedTimerMessageHandler handler = new DistributedTimerMessageHandler(
+			sut, 10, PartitionedTimerMessage.PARTITION_GENERATOR, 2, 4, null);
+		for (int i = 0; i < 6; i++) {
+			PartitionedTimerMessage message = new PartitionedTimerMessage(
+				String.format("message-%03d", i), this.releaseDateTime.plusSeconds(i), i);
+			// saved to the old partitions 2 and 3.
+			sut.save(new TimerMessageStoreValue(UUID.randomUUID(), message, this.releaseDateTime.plusSeconds(i)),
+				2 + i % 2);
+		}
+
+		// when
+		new TimerMessagePartitionMigrator(handler, 2).run();
+
+		// then
+		assertThat(sut.count(Instant.MAX, 0)).isEqualTo(3L);
+		assertThat(sut.count(Instant.MAX, 1)).isEqualTo(3L);
+		assertThat(sut.count(Instant.MAX, 2)).isZero();
+		assertThat(sut.count(Instant.MAX, 3)).isZero();
+
+		sut.close();
+		MappedFileTimerMessageStore reloaded = new MappedFileTimerMessageStore(
+			this.directory, PARTITIONED_SERIALIZER, 1024 * 1024, null, 0.5);
+		this.stores.add(reloaded);
+		assertThat(reloaded.count(Instant.MAX, 0)).isEqualTo(3L);
+		assertThat(reloaded.count(Instant.MAX, 1)).isEqualTo(3L);
+		assertThat(reloaded.count(Instant.MAX, 2) + reloaded.count(Instant.MAX, 3)).isZero();
+	}
+
+	@Example
+	void closedStoreRejectsAccess() {
+		// given
+		MappedFileTimerMessageStore sut = this.open();
+		sut.save(this.storeValue(0), 1);
+
+		// when
+		sut.close();
+
+		// then
+		assertThatThrownBy(() -> sut.save(this.storeValue(1), 1)).isInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(() -> sut.findReleaseValues(Instant.MAX, 10, 1))
+			.isInstanceOf(IllegalStateException.class);
+		sut.compact();
+		sut.close();
+	}
+
+	private MappedFileTimerMessageStore open() {
+		MappedFileTimerMessageStore store =
+			new MappedFileTimerMessageStore(this.directory, STRING_SERIALIZER, SEGMENT_SIZE, null, 0.5);
+		this.stores.add(store);
+		return store;
+	}
+
+	private long segmentCount() throws IOException {
+		try (Stream<Path> paths = Files.list(this.directory)) {
+			return paths.filter(it -> it.toString().endsWith(".segment")).count();
+		}
+	}
+
+	private long segmentBytes() throws IOException {
+		long bytes = 0L;
+		try (Stream<Path> paths = Files.list(this.directory)) {
+			for (Path path : paths.filter(it -> it.toString().endsWith(".segment")).toList()) {
+				bytes += Files.size(path);
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Flip a byte of the message in segment files.
+	 */
+	private void corrupt(String message) throws IOException {
+		byte[] target = message.getBytes(StandardCharsets.UTF_8);
+		try (Stream<Path> paths = Files.list(this.directory)) {
+			for (Path path : paths.toList()) {
+				byte[] bytes = Files.readAllBytes(path);
+				for (int i = 0; i + target.length <= bytes.length; i++) {
+					if (Arrays.equals(bytes, i, i + target.length, target, 0, target.length)) {
+						bytes[i] ^= 0x7F;
+						Files.write(path, bytes);
+						return;
+					}
+				}
+			}
+		}
+		throw new IllegalStateException("message is not found. message: " + message);
+	}
+
+	private List<TimerMessageStoreValue> storeValues(int from, int to) {
+		List<TimerMessageStoreValue> result = new ArrayList<>();
+		for (int i = from; i < to; i++) {
+			result.add(this.storeValue(i));
+		}
+		return result;
+	}
+
+	private TimerMessageStoreValue storeValue(int index) {
+		return new TimerMessageStoreValue(
+			UUID.randomUUID(),
+			String.format("message-%03d", index),
+			this.releaseDateTime.plusSeconds(index)
+		);
+	}
+
+	private static List<Object> messages(MappedFileTimerMessageStore store, int partition) {
+		return store.findReleaseValues(Instant.MAX, 100, partition).stream()
+			.map(TimerMessageStoreValue::getMessage)
+			.toList();
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.eventeria.timer.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import net.jqwik.api.Example;
+
+import com.navercorp.eventeria.timer.contract.store.LeasedTimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+import com.navercorp.eventeria.timer.fixture.InMemoryLeasedTimerMessageStore;
+
+class PrefetchingTimerMessageStoreTest {
+	private static final Duration HORIZON = Duration.ofMinutes(1);
+	private static final Duration REFRESH_INTERVAL = Duration.ofMinutes(1);
+
+	@Example
+	void releaseFromLocalIndexWithinRefreshInterval() {
+		// given
+		CountingTimerMessageStore delegate = new CountingTimerMessageStore();
+		TimerMessageStoreValue due = storeValue(Instant.now().minusSeconds(1));
+		delegate.save(due, 1);
+		PrefetchingTimerMessageStore sut = new PrefetchingTimerMessageStore(delegate, HORIZON, REFRESH_INTERVAL);
+
+		// when
+		List<TimerMessageStoreValue> first = sut.findReleaseValues(Instant.now(), 10, 1);
+		List<TimerMessageStoreValue> second = sut.findReleaseValues(Instant.now(), 10, 1);
+
+		// then
+		assertThat(first).containsExactly(due);
+		assertThat(second).containsExactly(due);
+		assertThat(delegate.finds.get()).isEqualTo(1);
+	}
+
+	@Example
+	void savesAndRemovesAreAppliedToLocalIndex() {
+		// given
+		CountingTimerMessageStore delegate = new CountingTimerMessageStore();
+		PrefetchingTimerMessageStore sut = new PrefetchingTimerMessageStore(delegate, HORIZON, REFRESH_INTERVAL);
+		assertThat(sut.findReleaseValues(Instant.now(), 10, 1)).isEmpty();
+		TimerMessageStoreValue saved = storeValue(Instant.now().plusSeconds(1));
+		TimerMessageStoreValue removed = storeValue(Instant.now().plusSeconds(2));
+
+		// when
+		sut.saveAll(List.of(saved, removed), 1);
+		sut.remove(removed.getId(), 1);
+
+		// then
+		Instant later = Instant.now().plusSeconds(5);
+		assertThat(sut.findReleaseValues(later, 10, 1)).containsExactly(saved);
+		assertThat(sut.findNextReleaseDateTime(1)).hasValue(saved.getReleaseDateTime());
+		assertThat(delegate.findReleaseValues(later, 10, 1)).containsExactly(saved);
+		assertThat(delegate.finds.get()).isEqualTo(2);
+	}
+
+	@Example
+	void readDelegateBeyondHorizon() {
+		// given
+		CountingTimerMessageStore delegate = new CountingTimerMessageStore();
+		TimerMessageStoreValue far = storeValue(Instant.now().plus(Duration.ofHours(1)));
+		delegate.save(far, 1);
+		PrefetchingTimerMessageStore sut = new PrefetchingTimerMessageStore(delegate, HORIZON, REFRESH_INTERVAL);
+
+		// when
+		List<TimerMessageStoreValue> actual = sut.findReleaseValues(Instant.now().plus(Duration.ofHours(2)), 10, 1);
+
+		// then
+		assertThat(actual).containsExactly(far);
+	}
+
+	@Example
+	void ofKeepsLeasedCapability() {
+		assertThat(PrefetchingTimerMessageStore.of(
+			new InMemoryLeasedTimerMessageStore(), HORIZON, REFRESH_INTERVAL, 10
+		))
+			.isInstanceOf(LeasedTimerMessageStore.class);
+		assertThat(PrefetchingTimerMessageStore.of(
+			new ConcurrentInMemoryTimerMessageStore(), HORIZON, REFRESH_INTERVAL, 10
+		))
+			.isNotInstanceOf(LeasedTimerMessageStore.class);
+	}
+
+	@Example
+	void messageReleasedByOtherNodeIsNotReleasedAgain() {
+		// given
+		CountingTimerMessageStore delegate = new CountingTimerMessageStore();
+		PrefetchingLeasedTimerMessageStore nodeA = leased(delegate);
+		PrefetchingLeasedTimerMessageStore nodeB = leased(delegate);
+		TimerMessageStoreValue due = storeValue(Instant.now().minusSeconds(1));
+		delegate.save(due, 1);
+		assertThat(nodeA.findReleaseValues(Instant.now(), 10, 1)).containsExactly(due);
+		assertThat(nodeB.findReleaseValues(Instant.now(), 10, 1)).containsExactly(due);
+
+		// when
+		List<TimerMessageStoreValue> releasedByA = nodeA.claimReleaseValues(Instant.now(), 10, 1);
+		nodeA.acknowledge(due.getId(), 1);
+		List<TimerMessageStoreValue> releasedByB = nodeB.claimReleaseValues(Instant.now(), 10, 1);
+
+		// then
+		assertThat(releasedByA).containsExactly(due);
+		assertThat(releasedByB).isEmpty();
+		assertThat(nodeB.findNextReleaseDateTime(1)).isEmpty();
+	}
+
+	@Example
+	void messageRemovedByOtherNodeIsNotReleased() {
+		// given
+		CountingTimerMessageStore delegate = new CountingTimerMessageStore();
+		PrefetchingLeasedTimerMessageStore nodeA = leased(delegate);
+		PrefetchingLeasedTimerMessageStore nodeB = leased(delegate);
+		TimerMessageStoreValue due = storeValue(Instant.now().minusSeconds(1));
+		nodeA.save(due, 1);
+		assertThat(nodeB.findReleaseValues(Instant.now(), 10, 1)).containsExactly(due);
+
+		// when
+		nodeA.remove(due.getId(), 1);
+
+		// then
+		assertThat(nodeB.claimReleaseValues(Instant.now(), 10, 1)).isEmpty();
+	}
+
+	@Example
+	void claimIsSkippedWhileNothingToRelease() {
+		// given
+		CountingTimerMessageStore delegate = new CountingTimerMessageStore();
+		PrefetchingLeasedTimerMessageStore sut = leased(delegate);
+		TimerMessageStoreValue notDue = storeValue(Instant.now().plusSeconds(30));
+		sut.save(notDue, 1);
+
+		// when
+		Map<Integer, List<TimerMessageStoreValue>> claimed =
+			sut.claimReleaseValuesOfPartitions(Instant.now(), 10, List.of(1, 2));
+		sut.claimReleaseValues(Instant.now(), 10, 1);
+
+		// then
+		assertThat(claimed.get(1)).isEmpty();
+		assertThat(claimed.get(2)).isEmpty();
+		assertThat(delegate.claims.get()).isZero();
+		assertThat(sut.findNextReleaseDateTime(1)).hasValue(notDue.getReleaseDateTime());
+	}
+
+	@Example
+	void requeuedMessageIsClaimedAgain() {
+		// given
+		CountingTimerMessageStore delegate = new CountingTimerMessageStore();
+		PrefetchingLeasedTimerMessageStore sut = leased(delegate);
+		TimerMessageStoreValue due = storeValue(Instant.now().minusSeconds(1));
+		sut.save(due, 1);
+		assertThat(sut.claimReleaseValuesOfPartitions(Instant.now(), 10, List.of(1)).get(1)).containsExactly(due);
+
+		// when
+		sut.requeue(due.getId(), 1);
+
+		// then
+		assertThat(sut.claimReleaseValues(Instant.now(), 10, 1)).containsExactly(due);
+	}
+
+	@Example
+	void messageClaimedByDeadNodeIsClaimedAfterLeaseExpired() throws InterruptedException {
+		// given
+		InMemoryLeasedTimerMessageStore delegate = new InMemoryLeasedTimerMessageStore(Duration.ofMillis(100));
+		PrefetchingLeasedTimerMessageStore sut = leased(delegate);
+		TimerMessageStoreValue due = storeValue(Instant.now().minusSeconds(1));
+		delegate.save(due, 1);
+
+		// claimed by a node which dies without acknowledge.
+		assertThat(delegate.claimReleaseValues(Instant.now(), 10, 1)).containsExactly(due);
+		assertThat(sut.claimReleaseValues(Instant.now(), 10, 1)).isEmpty();
+		assertThat(sut.findNextReleaseDateTime(1)).hasValueSatisfying(
+			it -> assertThat(it).isBefore(Instant.now().plusSeconds(1)));
+
+		// when
+		Thread.sleep(200L);
+		List<TimerMessageStoreValue> claimed = sut.claimReleaseValues(Instant.now(), 10, 1);
+
+		// then
+		assertThat(claimed).containsExactly(due);
+	}
+
+	private static PrefetchingLeasedTimerMessageStore leased(LeasedTimerMessageStore delegate) {
+		return new PrefetchingLeasedTimerMessageStore(delegate, HORIZON, REFRESH_INTERVAL, 100);
+	}
+
+	private static TimerMessageStoreValue storeValue(Instant releaseDateTime) {
+		return new TimerMessageStoreValue(UUID.randomUUID(), "message", releaseDateTime);
+	}
+
+	private static class CountingTimerMessageStore extends InMemoryLeasedTimerMessageStore {
+		private final AtomicInteger finds = new AtomicInteger();
+		private final AtomicInteger claims = new AtomicInteger();
+
+		@Override
+		public List<TimerMessageStoreValue> findReleaseValues(
+			Instant conditionDateTime,
+			int count,
+			@Nullable Integer partition
+		) {
+			this.finds.incrementAndGet();
+			return super.findReleaseValues(conditionDateTime, count, partition);
+		}
+
+		@Override
+		public List<TimerMessageStoreValue> claimReleaseValues(
+			Instant conditionDateTime,
+			int count,
+			@Nullable Integer partition
+		) {
+			this.claims.incrementAndGet();
+			return super.claimReleaseValues(conditionDateTime, count, partition);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.eventeria.timer.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import net.jqwik.api.Example;
+
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+
+class TimeBucketedTimerMessageStoreTest {
+	private static final Instant BASE = Instant.ofEpochSecond(1_700_000_000L);
+
+	@Example
+	void findReleaseValuesOrderedByBucket() {
+		// given
+		TimeBucketedTimerMessageStore sut = new TimeBucketedTimerMessageStore(Duration.ofSeconds(1));
+		TimerMessageStoreValue third = storeValue(BASE.plusMillis(2500));
+		TimerMessageStoreValue first = storeValue(BASE.plusMillis(200));
+		TimerMessageStoreValue second = storeValue(BASE.plusMillis(1700));
+		sut.saveAll(List.of(third, first, second), 1);
+
+		// when
+		List<TimerMessageStoreValue> all = sut.findReleaseValues(BASE.plusSeconds(10), 10, 1);
+		List<TimerMessageStoreValue> limited = sut.findReleaseValues(BASE.plusSeconds(10), 2, 1);
+
+		// then
+		assertThat(all).containsExactly(first, second, third);
+		assertThat(limited).containsExactly(first, second);
+		assertThat(sut.findNextReleaseDateTime(1)).hasValue(first.getReleaseDateTime());
+	}
+
+	@Example
+	void findReleaseValuesBeforeConditionInBoundaryBucket() {
+		// given
+		TimeBucketedTimerMessageStore sut = new TimeBucketedTimerMessageStore(Duration.ofSeconds(1));
+		TimerMessageStoreValue lastOfPrevious = storeValue(BASE.minusMillis(1));
+		TimerMessageStoreValue firstOfBoundary = storeValue(BASE);
+		TimerMessageStoreValue lastOfBoundary = storeValue(BASE.plusMillis(999));
+		sut.saveAll(List.of(lastOfPrevious, firstOfBoundary, lastOfBoundary), 1);
+
+		// when
+		List<TimerMessageStoreValue> beforeBoundary = sut.findReleaseValues(BASE, 10, 1);
+		List<TimerMessageStoreValue> inBoundary = sut.findReleaseValues(BASE.plusMillis(999), 10, 1);
+		List<TimerMessageStoreValue> afterBoundary = sut.findReleaseValues(BASE.plusSeconds(1), 10, 1);
+
+		// then
+		assertThat(beforeBoundary).containsExactly(lastOfPrevious);
+		assertThat(inBoundary).containsExactlyInAnyOrder(lastOfPrevious, firstOfBoundary);
+		assertThat(afterBoundary).containsExactlyInAnyOrder(lastOfPrevious, firstOfBoundary, lastOfBoundary);
+		assertThat(sut.count(BASE.plusMillis(999), 1)).isEqualTo(2L);
+	}
+
+	@Example
+	void removedValuesAreNotFound() {
+		// given
+		TimeBucketedTimerMessageStore sut = new TimeBucketedTimerMessageStore(Duration.ofSeconds(1));
+		TimerMessageStoreValue removed = storeValue(BASE);
+		TimerMessageStoreValue sameBucket = storeValue(BASE.plusMillis(500));
+		TimerMessageStoreValue laterBucket = storeValue(BASE.plusSeconds(5));
+		TimerMessageStoreValue removedAll = storeValue(BASE.plusSeconds(6));
+		sut.saveAll(List.of(removed, sameBucket, laterBucket, removedAll), 1);
+
+		// when
+		sut.remove(removed.getId(), 1);
+		sut.removeAll(List.of(removedAll.getId(), UUID.randomUUID()), 1);
+
+		// then
+		assertThat(sut.findReleaseValues(BASE.plusSeconds(10), 10, 1)).containsExactly(sameBucket, laterBucket);
+		assertThat(sut.findNextReleaseDateTime(1)).hasValue(sameBucket.getReleaseDateTime());
+		sut.remove(sameBucket.getId(), 1);
+		assertThat(sut.findNextReleaseDateTime(1)).hasValue(laterBucket.getReleaseDateTime());
+		sut.remove(laterBucket.getId(), 1);
+		assertThat(sut.findNextReleaseDateTime(1)).isEmpty();
+		assertThat(sut.count(Instant.MAX, 1)).isZero();
+	}
+
+	@Example
+	void findReleaseValuesOfExtremeTicks() {
+		// given
+		TimeBucketedTimerMessageStore sut = new TimeBucketedTimerMessageStore(Duration.ofMillis(1));
+		TimerMessageStoreValue earliest = storeValue(Instant.MIN);
+		TimerMessageStoreValue latest = storeValue(Instant.ofEpochMilli(Long.MAX_VALUE));
+		sut.save(latest, 1);
+
+		// when
+		List<TimerMessageStoreValue> ofLatest = sut.findReleaseValues(Instant.MAX, 10, 1);
+		sut.save(earliest, 1);
+		List<TimerMessageStoreValue> ofAll = sut.findReleaseValues(Instant.MAX, 10, 1);
+
+		// then
+		assertThat(ofLatest).containsExactly(latest);
+		assertThat(ofAll).containsExactly(earliest, latest);
+		assertThat(sut.count(Instant.MAX, 1)).isEqualTo(2L);
+	}
+
+	private static TimerMessageStoreValue storeValue(Instant releaseDateTime) {
+		return new TimerMessageStoreValue(UUID.randomUUID(), "message", releaseDateTime);
+	}
+}
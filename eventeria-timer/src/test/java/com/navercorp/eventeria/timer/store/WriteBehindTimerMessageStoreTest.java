@@ -0,0 +1,328 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.eventeria.timer.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+import net.jqwik.api.Example;
+
+import com.navercorp.eventeria.timer.contract.store.LeasedTimerMessageStore;
+import com.navercorp.eventeria.timer.contract.store.TimerMessageStoreValue;
+import com.navercorp.eventeria.timer.fixture.InMemoryLeasedTimerMessageStore;
+
+class WriteBehindTimerMessageStoreTest {
+	private static final Duration LONG_FLUSH_INTERVAL = Duration.ofMinutes(1);
+
+	@Example
+	void bufferedUntilFlush() {
+		// given
+		ConcurrentInMemoryTimerMessageStore delegate = new ConcurrentInMemoryTimerMessageStore();
+		try (WriteBehindTimerMessageStore sut = writeBehind(delegate, 10, 10, LONG_FLUSH_INTERVAL)) {
+			TimerMessageStoreValue storeValue = storeValue();
+
+			// when
+			sut.save(storeValue, 1);
+
+			// then
+			assertThat(sut.getBufferedCount()).isEqualTo(1);
+			assertThat(delegate.count(Instant.MAX, 1)).isZero();
+
+			sut.flush();
+			assertThat(sut.getBufferedCount()).isZero();
+			assertThat(delegate.findReleaseValues(Instant.MAX, 10, 1)).containsExactly(storeValue);
+		}
+	}
+
+	@Example
+	void flushedByInterval() throws InterruptedException {
+		// given
+		ConcurrentInMemoryTimerMessageStore delegate = new ConcurrentInMemoryTimerMessageStore();
+		try (WriteBehindTimerMessageStore sut = writeBehind(delegate, 10, 10, Duration.ofMillis(10))) {
+			sut.save(storeValue(), 1);
+			sut.save(storeValue(), null);
+
+			// when
+			awaitFlushed(sut);
+
+			// then
+			assertThat(delegate.count(Instant.MAX, 1)).isEqualTo(1L);
+			assertThat(delegate.count(Instant.MAX, null)).isEqualTo(1L);
+		}
+	}
+
+	@Example
+	void flushedByBatchSize() throws InterruptedException {
+		// given
+		ConcurrentInMemoryTimerMessageStore delegate = new ConcurrentInMemoryTimerMessageStore();
+		try (WriteBehindTimerMessageStore sut = writeBehind(delegate, 10, 2, LONG_FLUSH_INTERVAL)) {
+			// when
+			sut.save(storeValue(), 1);
+			sut.save(storeValue(), 1);
+
+			// then
+			awaitFlushed(sut);
+			assertThat(delegate.count(Instant.MAX, 1)).isEqualTo(2L);
+		}
+	}
+
+	@Example
+	void saveToDelegateWhenBufferIsFull() {
+		// given
+		ConcurrentInMemoryTimerMessageStore delegate = new ConcurrentInMemoryTimerMessageStore();
+		try (WriteBehindTimerMessageStore sut = writeBehind(delegate, 2, 10, LONG_FLUSH_INTERVAL)) {
+			TimerMessageStoreValue overflow = storeValue();
+
+			// when
+			sut.save(storeValue(), 1);
+			sut.save(storeValue(), 1);
+			sut.save(overflow, 1);
+
+			// then
+			assertThat(sut.getBufferedCount()).isEqualTo(2);
+			assertThat(delegate.findReleaseValues(Instant.MAX, 10, 1)).containsExactly(overflow);
+		}
+	}
+
+	@Example
+	void removeDropsBufferedValue() {
+		// given
+		ConcurrentInMemoryTimerMessageStore delegate = new ConcurrentInMemoryTimerMessageStore();
+		try (WriteBehindTimerMessageStore sut = writeBehind(delegate, 10, 10, LONG_FLUSH_INTERVAL)) {
+			TimerMessageStoreValue removed = storeValue();
+			TimerMessageStoreValue kept = storeValue();
+			sut.saveAll(List.of(removed, kept), 1);
+
+			// when
+			sut.remove(removed.getId(), 1);
+			sut.flush();
+
+			// then
+			assertThat(delegate.findReleaseValues(Instant.MAX, 10, 1)).containsExactly(kept);
+		}
+	}
+
+	@Example
+	void closeFlushesBufferedValues() {
+		// given
+		ConcurrentInMemoryTimerMessageStore delegate = new ConcurrentInMemoryTimerMessageStore();
+		WriteBehindTimerMessageStore sut = writeBehind(delegate, 100, 100, LONG_FLUSH_INTERVAL);
+		for (int i = 0; i < 30; i++) {
+			sut.save(storeValue(), i % 3);
+		}
+
+		// when
+		sut.close();
+
+		// then
+		assertThat(sut.getBufferedCount()).isZero();
+		assertThat(delegate.count(Instant.MAX, 0) + delegate.count(Instant.MAX, 1) + delegate.count(Instant.MAX, 2))
+			.isEqualTo(30L);
+	}
+
+	@Example
+	void saveAfterCloseWritesThrough() {
+		// given
+		ConcurrentInMemoryTimerMessageStore delegate = new ConcurrentInMemoryTimerMessageStore();
+		WriteBehindTimerMessageStore sut = writeBehind(delegate, 10, 10, LONG_FLUSH_INTERVAL);
+		sut.close();
+
+		// when
+		sut.save(storeValue(), 1);
+
+		// then
+		assertThat(sut.getBufferedCount()).isZero();
+		assertThat(delegate.count(Instant.MAX, 1)).isEqualTo(1L);
+	}
+
+	@Example
+	void concurrentSavesWhileClosingAreNotLost() throws InterruptedException {
+		// given
+		ConcurrentInMemoryTimerMessageStore delegate = new ConcurrentInMemoryTimerMessageStore();
+		WriteBehindTimerMessageStore sut = writeBehind(delegate, 10_000, 100, Duration.ofMillis(5));
+		List<Thread> producers = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			Thread producer = new Thread(() -> {
+				for (int j = 0; j < 500; j++) {
+					sut.save(storeValue(), 1);
+				}
+			});
+			producers.add(producer);
+			producer.start();
+		}
+
+		// when
+		sut.close();
+		for (Thread producer : producers) {
+			producer.join();
+		}
+
+		// then
+		assertThat(sut.getBufferedCount()).isZero();
+		assertThat(delegate.count(Instant.MAX, 1)).isEqualTo(2000L);
+	}
+
+	@Example
+	void rejectedValueIsDeadLetteredWithoutBlockingOthers() {
+		// given
+		RejectingTimerMessageStore delegate = new RejectingTimerMessageStore();
+		List<UUID> deadLetters = new ArrayList<>();
+		TimerMessageStoreValue rejected = storeValue();
+		TimerMessageStoreValue accepted = storeValue();
+		delegate.reject(rejected.getId());
+		try (WriteBehindTimerMessageStore sut = new WriteBehindTimerMessageStore(
+			delegate,
+			10,
+			10,
+			LONG_FLUSH_INTERVAL,
+			Duration.ofMillis(1),
+			2,
+			(storeValue, partition, exception) -> deadLetters.add(storeValue.getId())
+		)) {
+			sut.saveAll(List.of(rejected, accepted), 1);
+
+			// when
+			sut.flush();
+
+			// then
+			assertThat(delegate.findReleaseValues(Instant.MAX, 10, 1)).containsExactly(accepted);
+			assertThat(sut.getBufferedCount()).isEqualTo(1);
+			assertThat(deadLetters).isEmpty();
+
+			TimerMessageStoreValue next = storeValue();
+			sut.save(next, 1);
+			sut.flush();
+			assertThat(delegate.findReleaseValues(Instant.MAX, 10, 1)).contains(next);
+			assertThat(sut.getBufferedCount()).isZero();
+			assertThat(deadLetters).containsExactly(rejected.getId());
+		}
+	}
+
+	@Example
+	void closeDeadLettersValuesFailedOnShutdown() {
+		// given
+		RejectingTimerMessageStore delegate = new RejectingTimerMessageStore();
+		List<UUID> deadLetters = new ArrayList<>();
+		TimerMessageStoreValue rejected = storeValue();
+		delegate.reject(rejected.getId());
+		WriteBehindTimerMessageStore sut = new WriteBehindTimerMessageStore(
+			delegate,
+			10,
+			10,
+			LONG_FLUSH_INTERVAL,
+			Duration.ofMillis(1),
+			3,
+			(storeValue, partition, exception) -> deadLetters.add(storeValue.getId())
+		);
+		sut.save(rejected, 1);
+
+		// when
+		sut.close();
+
+		// then
+		assertThat(sut.getBufferedCount()).isZero();
+		assertThat(deadLetters).containsExactly(rejected.getId());
+	}
+
+	@Example
+	void ofKeepsLeasedCapability() {
+		// given
+		InMemoryLeasedTimerMessageStore delegate = new InMemoryLeasedTimerMessageStore();
+
+		// when
+		try (
+			WriteBehindTimerMessageStore leased = WriteBehindTimerMessageStore.of(delegate);
+			WriteBehindTimerMessageStore notLeased = WriteBehindTimerMessageStore.of(
+				new ConcurrentInMemoryTimerMessageStore()
+			)
+		) {
+			// then
+			assertThat(leased).isInstanceOf(LeasedTimerMessageStore.class);
+			assertThat(notLeased).isNotInstanceOf(LeasedTimerMessageStore.class);
+
+			TimerMessageStoreValue storeValue = storeValue();
+			leased.save(storeValue, 1);
+			leased.flush();
+			LeasedTimerMessageStore sut = (LeasedTimerMessageStore)leased;
+			assertThat(sut.claimReleaseValues(Instant.MAX, 10, 1)).containsExactly(storeValue);
+			assertThat(sut.claimReleaseValues(Instant.MAX, 10, 1)).isEmpty();
+
+			sut.acknowledge(storeValue.getId(), 1);
+			assertThat(delegate.getClaimedCount()).isZero();
+		}
+	}
+
+	private static WriteBehindTimerMessageStore writeBehind(
+		ConcurrentInMemoryTimerMessageStore delegate,
+		int bufferCapacity,
+		int maxBatchSize,
+		Duration flushInterval
+	) {
+		Duration offerTimeout = Duration.ofMillis(1);
+		return new WriteBehindTimerMessageStore(delegate, bufferCapacity, maxBatchSize, flushInterval, offerTimeout);
+	}
+
+	private static void awaitFlushed(WriteBehindTimerMessageStore sut) throws InterruptedException {
+		Instant deadline = Instant.now().plusSeconds(5);
+		while (sut.getBufferedCount() > 0 && Instant.now().isBefore(deadline)) {
+			Thread.sleep(5L);
+		}
+	}
+
+	private static TimerMessageStoreValue storeValue() {
+		return new TimerMessageStoreValue(UUID.randomUUID(), "message", Instant.now());
+	}
+
+	private static class RejectingTimerMessageStore extends ConcurrentInMemoryTimerMessageStore {
+		private final Set<UUID> rejectedIds = ConcurrentHashMap.newKeySet();
+
+		void reject(UUID storeValueId) {
+			this.rejectedIds.add(storeValueId);
+		}
+
+		@Override
+		public void save(TimerMessageStoreValue storeValue, @Nullable Integer partition) {
+			if (this.rejectedIds.contains(storeValue.getId())) {
+				throw new IllegalArgumentException("rejected. id: " + storeValue.getId());
+			}
+			super.save(storeValue, partition);
+		}
+
+		@Override
+		public void saveAll(Collection<TimerMessageStoreValue> storeValues, @Nullable Integer partition) {
+			for (TimerMessageStoreValue storeValue : storeValues) {
+				if (this.rejectedIds.contains(storeValue.getId())) {
+					throw new IllegalArgumentException("rejected. id: " + storeValue.getId());
+				}
+			}
+			super.saveAll(storeValues, partition);
+		}
+	}
+}
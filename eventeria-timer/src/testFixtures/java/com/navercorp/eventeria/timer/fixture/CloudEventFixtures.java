@@ -0,0 +1,63 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.eventeria.timer.fixture;
+
+import com.navercorp.eventeria.messaging.contract.cloudevents.serializer.CloudEventMessageReaderWriter;
+import com.navercorp.eventeria.messaging.converter.CloudEventTypeAliasExtensionsConverter;
+import com.navercorp.eventeria.messaging.converter.CompositeCloudEventExtensionsConverter;
+import com.navercorp.eventeria.messaging.converter.DefaultCloudEventAttributesConverter;
+import com.navercorp.eventeria.messaging.converter.DefaultCloudEventMessageConverter;
+import com.navercorp.eventeria.messaging.converter.DefaultCloudEventToMessageConverter;
+import com.navercorp.eventeria.messaging.converter.DefaultMessageToCloudEventConverter;
+import com.navercorp.eventeria.messaging.converter.MessageCategoryExtensionsConverter;
+import com.navercorp.eventeria.messaging.converter.PartitionKeyExtensionsConverter;
+import com.navercorp.eventeria.messaging.jackson.serializer.JacksonCloudEventReaderWriter;
+import com.navercorp.eventeria.messaging.jackson.serializer.JacksonMessageSerializer;
+import com.navercorp.eventeria.messaging.typealias.CloudEventMessageTypeAliasMapper;
+
+/**
+ * Fixtures shared by tests of timer stores and handlers persisting messages as CloudEvents.
+ */
+public final class CloudEventFixtures {
+	private CloudEventFixtures() {
+	}
+
+	public static CloudEventMessageReaderWriter createCloudEventMessageReaderWriter() {
+		CloudEventMessageTypeAliasMapper typeAliasMapper = new CloudEventMessageTypeAliasMapper();
+		JacksonMessageSerializer messageSerializer = new JacksonMessageSerializer();
+		return new JacksonCloudEventReaderWriter(
+			new DefaultCloudEventMessageConverter(
+				new DefaultMessageToCloudEventConverter(
+					new DefaultCloudEventAttributesConverter(),
+					new CompositeCloudEventExtensionsConverter(
+						new CloudEventTypeAliasExtensionsConverter(typeAliasMapper),
+						new MessageCategoryExtensionsConverter(),
+						new PartitionKeyExtensionsConverter()
+					),
+					messageSerializer
+				),
+				new DefaultCloudEventToMessageConverter(
+					typeAliasMapper,
+					messageSerializer
+				)
+			)
+		);
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.eventeria.timer.fixture;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import com.navercorp.eventeria.messaging.contract.command.AbstractCommand;
+import com.navercorp.eventeria.timer.contract.TimerMessage;
+
+public class TestTimerCommand extends AbstractCommand implements TimerMessage {
+	private String name;
+	private Instant scheduledAt;
+
+	private TestTimerCommand() {
+	}
+
+	public TestTimerCommand(String name, Instant scheduledAt) {
+		this.name = name;
+		this.scheduledAt = scheduledAt;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public Instant getScheduledAt() {
+		return this.scheduledAt;
+	}
+
+	@Override
+	public String getSourceType() {
+		return Object.class.getName();
+	}
+
+	@Override
+	public Optional<Instant> timerTime() {
+		return Optional.of(this.scheduledAt);
+	}
+
+	@Override
+	public String toString() {
+		return "TestTimerCommand{"
+			+ "name='" + this.name + '\''
+			+ ", scheduledAt=" + this.scheduledAt
+			+ "} " + super.toString();
+	}
+}
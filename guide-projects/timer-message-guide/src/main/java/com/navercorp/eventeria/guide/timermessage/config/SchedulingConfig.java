@@ -1,5 +1,10 @@
 package com.navercorp.eventeria.guide.timermessage.config;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -7,6 +12,7 @@ import org.springframework.scheduling.annotation.Scheduled;
 import lombok.RequiredArgsConstructor;
 
 import com.navercorp.eventeria.timer.spring.integration.handler.SpringTimerMessageHandler;
+import com.navercorp.spring.boot.eventeria.config.TaskExecutorConfiguration;
 
 @EnableScheduling
 @Configuration
@@ -15,8 +21,35 @@ public class SchedulingConfig {
 
 	private final SpringTimerMessageHandler springTimerMessageHandler;
 
+	@Qualifier(TaskExecutorConfiguration.EVENTERIA_TASK_EXECUTOR_BEAN_NAME)
+	private final ObjectProvider<Executor> eventeriaTaskExecutor;
+
+	private final AtomicBoolean rescheduling = new AtomicBoolean();
+
+	/**
+	 * release work runs on a virtual thread when spring.threads.virtual.enabled=true on Java 21 or later,
+	 * otherwise on the scheduler thread. messages are still sent synchronously and in order by the release.
+	 */
 	@Scheduled(fixedDelay = 1000L)
 	void triggerReschedule() {
-		springTimerMessageHandler.reschedulePersistedMessages();
+		// skip while the previous release is running on the executor.
+		if (!rescheduling.compareAndSet(false, true)) {
+			return;
+		}
+
+		Runnable reschedule = () -> {
+			try {
+				springTimerMessageHandler.reschedulePersistedMessages();
+			} finally {
+				rescheduling.set(false);
+			}
+		};
+
+		Executor executor = eventeriaTaskExecutor.getIfAvailable();
+		if (executor == null) {
+			reschedule.run();
+		} else {
+			executor.execute(reschedule);
+		}
 	}
 }
@@ -22,6 +22,6 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 
 @Configuration
-@Import({MessageConfiguration.class})
+@Import({MessageConfiguration.class, TaskExecutorConfiguration.class})
 public class SpringBootEventeriaAutoConfiguration {
 }
@@ -0,0 +1,63 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.spring.boot.eventeria.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+/**
+ * Registers an executor running each task on a new virtual thread,
+ * when virtual threads are enabled by {@code spring.threads.virtual.enabled=true} on Java 21 or later.
+ * <p/>
+ * Releasing timer messages and sending external messages are mostly blocking calls to redis or kafka,
+ * so pass this executor to DistributedTimerMessageHandler and SpringMessagePublisher
+ * instead of a fixed size pool.
+ * The bean is not a default candidate, not to replace the application task executor of spring boot.
+ *
+ * <pre>
+ * &#64;Qualifier(TaskExecutorConfiguration.EVENTERIA_TASK_EXECUTOR_BEAN_NAME) Executor executor
+ * </pre>
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class TaskExecutorConfiguration {
+	public static final String EVENTERIA_TASK_EXECUTOR_BEAN_NAME = "eventeriaTaskExecutor";
+
+	/**
+	 * @param concurrencyLimit max count of running tasks. submitting over the limit blocks. -1 is unlimited.
+	 * @param terminationTimeoutMillis max time to wait for running tasks on close.
+	 */
+	@Bean(name = EVENTERIA_TASK_EXECUTOR_BEAN_NAME, defaultCandidate = false)
+	@ConditionalOnMissingBean(name = EVENTERIA_TASK_EXECUTOR_BEAN_NAME)
+	public SimpleAsyncTaskExecutor eventeriaTaskExecutor(
+		@Value("${eventeria.task-executor.concurrency-limit:-1}") int concurrencyLimit,
+		@Value("${eventeria.task-executor.termination-timeout-millis:10000}") long terminationTimeoutMillis
+	) {
+		SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("eventeria-");
+		executor.setVirtualThreads(true);
+		executor.setConcurrencyLimit(concurrencyLimit);
+		executor.setTaskTerminationTimeout(terminationTimeoutMillis);
+		return executor;
+	}
+}
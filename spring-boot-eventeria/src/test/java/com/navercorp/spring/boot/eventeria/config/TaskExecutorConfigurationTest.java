@@ -0,0 +1,65 @@
+/*
+ * Eventeria
+ *
+ * Copyright (c) 2022-present NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.spring.boot.eventeria.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+class TaskExecutorConfigurationTest {
+	private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+		.withUserConfiguration(TaskExecutorConfiguration.class);
+
+	@Test
+	@EnabledForJreRange(min = JRE.JAVA_21)
+	void runTasksOnVirtualThreads() {
+		this.contextRunner
+			.withPropertyValues("spring.threads.virtual.enabled=true", "eventeria.task-executor.concurrency-limit=2")
+			.run(context -> {
+				SimpleAsyncTaskExecutor executor = context.getBean(
+					TaskExecutorConfiguration.EVENTERIA_TASK_EXECUTOR_BEAN_NAME,
+					SimpleAsyncTaskExecutor.class
+				);
+				CompletableFuture<Thread> executed = new CompletableFuture<>();
+
+				executor.execute(() -> executed.complete(Thread.currentThread()));
+
+				Thread thread = executed.get(5, TimeUnit.SECONDS);
+				assertThat(thread.getName()).startsWith("eventeria-");
+				// Thread#isVirtual is not available on Java 17.
+				assertThat(Thread.class.getMethod("isVirtual").invoke(thread)).isEqualTo(true);
+				assertThat(executor.getConcurrencyLimit()).isEqualTo(2);
+			});
+	}
+
+	@Test
+	void notRegisteredWithoutVirtualThreads() {
+		this.contextRunner
+			.withPropertyValues("spring.threads.virtual.enabled=false")
+			.run(context -> assertThat(context)
+				.doesNotHaveBean(TaskExecutorConfiguration.EVENTERIA_TASK_EXECUTOR_BEAN_NAME));
+	}
+}